@@ -0,0 +1,37 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import java.sql.SQLException;
+
+/**
+ * Computes aggregate checksums of table rows on the database server.
+ * @author Paul Ferraro
+ */
+public interface ChecksumSupport
+{
+	/**
+	 * Returns a query that computes, for the rows of the specified table matching the specified predicate, the number of rows, followed by an order independent checksum of their columns.
+	 * Since the checksum is computed by the database server, only checksums computed using the same dialect are comparable.
+	 * @param table a table
+	 * @param predicate a SQL boolean expression, or null, to match all rows
+	 * @return a SQL query returning a single row with 2 columns
+	 * @throws SQLException if the columns of the table could not be determined
+	 */
+	String getChecksumSQL(TableProperties table, String predicate) throws SQLException;
+}
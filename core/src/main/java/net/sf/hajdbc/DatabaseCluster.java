@@ -113,6 +113,12 @@ public interface DatabaseCluster<Z, D extends Database<Z>> extends Lifecycle
 	 */
 	boolean isIdentityColumnDetectionEnabled();
 	
+	/**
+	 * Returns the allocator of explicit identity column values for this cluster.
+	 * @return an identity column allocator, or null, if identity column allocation is disabled.
+	 */
+	IdentityColumnAllocator getIdentityColumnAllocator();
+	
 	/**
 	 * Indicates whether or not non-deterministic CURRENT_DATE SQL functions will be evaluated to deterministic static values.
 	 * @return true, if temporal SQL replacement is enabled, false otherwise.
@@ -95,6 +95,18 @@ public interface DatabaseClusterConfiguration<Z, D extends Database<Z>>
 	 */
 	boolean isIdentityColumnDetectionEnabled();
 	
+	/**
+	 * Indicates whether or not explicit values for detected identity columns will be allocated by HA-JDBC, rather than generated by each database.
+	 * @return true, if identity column allocation is enabled, false otherwise.
+	 */
+	boolean isIdentityColumnAllocationEnabled();
+	
+	/**
+	 * Returns the number of identity column values allocated per table at a time, if identity column allocation is enabled.
+	 * @return a positive number of identity column values
+	 */
+	int getIdentityColumnBlockSize();
+	
 	/**
 	 * Indicates whether or not non-deterministic CURRENT_DATE SQL functions will be evaluated to deterministic static values.
 	 * @return true, if temporal SQL replacement is enabled, false otherwise.
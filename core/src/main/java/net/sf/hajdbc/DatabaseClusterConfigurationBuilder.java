@@ -50,6 +50,7 @@ import net.sf.hajdbc.management.DefaultMBeanRegistrarFactory;
 import net.sf.hajdbc.management.MBeanRegistrarFactory;
 import net.sf.hajdbc.messages.Messages;
 import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.sql.BlockIdentityColumnAllocator;
 import net.sf.hajdbc.sql.DefaultExecutorServiceProvider;
 import net.sf.hajdbc.sql.TransactionModeEnum;
 import net.sf.hajdbc.state.StateManagerFactory;
@@ -90,6 +91,8 @@ public class DatabaseClusterConfigurationBuilder<Z, D extends Database<Z>, B ext
 	private volatile boolean evalCurrentTimestamp = false;
 	private volatile boolean evalRand = false;
 	private volatile boolean detectIdentityColumns = false;
+	private volatile boolean allocateIdentityColumns = false;
+	private volatile int identityColumnBlockSize = BlockIdentityColumnAllocator.DEFAULT_BLOCK_SIZE;
 	private volatile boolean detectSequences = false;
 	private volatile boolean allowEmptyCluster = false;
 	
@@ -359,6 +362,18 @@ public class DatabaseClusterConfigurationBuilder<Z, D extends Database<Z>, B ext
 		return this;
 	}
 
+	public DatabaseClusterConfigurationBuilder<Z, D, B> allocateIdentityColumns(boolean enabled)
+	{
+		this.allocateIdentityColumns = enabled;
+		return this;
+	}
+
+	public DatabaseClusterConfigurationBuilder<Z, D, B> identityColumnBlockSize(int size)
+	{
+		this.identityColumnBlockSize = size;
+		return this;
+	}
+
 	public DatabaseClusterConfigurationBuilder<Z, D, B> detectSequences(boolean enabled)
 	{
 		this.detectSequences = enabled;
@@ -402,6 +417,8 @@ public class DatabaseClusterConfigurationBuilder<Z, D extends Database<Z>, B ext
 		final boolean evalCurrentTimestamp = this.evalCurrentTimestamp;
 		final boolean evalRand = this.evalRand;
 		final boolean detectIdentityColumns = this.detectIdentityColumns;
+		final boolean allocateIdentityColumns = this.allocateIdentityColumns;
+		final int identityColumnBlockSize = this.identityColumnBlockSize;
 		final boolean detectSequences = this.detectSequences;
 		final boolean allowEmptyCluster = this.allowEmptyCluster;
 		
@@ -520,6 +537,18 @@ public class DatabaseClusterConfigurationBuilder<Z, D extends Database<Z>, B ext
 				return detectIdentityColumns;
 			}
 
+			@Override
+			public boolean isIdentityColumnAllocationEnabled()
+			{
+				return allocateIdentityColumns;
+			}
+
+			@Override
+			public int getIdentityColumnBlockSize()
+			{
+				return identityColumnBlockSize;
+			}
+
 			@Override
 			public boolean isCurrentDateEvaluationEnabled()
 			{
@@ -0,0 +1,38 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2014  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Allocates explicit identity column values for INSERT statements.
+ * Statements supplying allocated values can execute concurrently, since they do not depend on the identity generators of the individual databases.
+ * @author Paul Ferraro
+ */
+public interface IdentityColumnAllocator
+{
+	/**
+	 * Allocates the next value of each identity column of the specified table.
+	 * The allocated values are consistent across all databases of the cluster, and are never generated natively by any database.
+	 * @param table a table containing identity columns
+	 * @return a map of identity column values, indexed by column name, or null, if no values are currently available, in which case the caller must rely on the identity generators of the individual databases
+	 * @throws SQLException if new values could not be allocated
+	 */
+	Map<String, Long> allocate(TableProperties table) throws SQLException;
+}
@@ -18,6 +18,7 @@
 package net.sf.hajdbc;
 
 import java.sql.SQLException;
+import java.util.Map;
 
 
 /**
@@ -44,4 +45,14 @@ public interface IdentityColumnSupport
 	 * @since 2.0.2
 	 */
 	String getAlterIdentityColumnSQL(TableProperties table, ColumnProperties column, long value) throws SQLException;
+
+	/**
+	 * Rewrites the specified single row INSERT statement such that it supplies explicit values for the specified identity columns.
+	 * @param sql an INSERT statement
+	 * @param values explicit identity column values, indexed by column name
+	 * @return a SQL statement, or null if the specified statement cannot be rewritten, e.g. it has no column list, inserts multiple rows, or already specifies an identity column.
+	 * @throws SQLException
+	 * @since 3.1
+	 */
+	String getInsertIdentityColumnSQL(String sql, Map<String, Long> values) throws SQLException;
 }
@@ -0,0 +1,37 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc;
+
+import net.sf.hajdbc.codec.Decoder;
+
+/**
+ * Dump/restore support for dump formats that can be written to, and read from, a stream, thereby avoiding an intermediate dump file.
+ * @author Paul Ferraro
+ */
+public interface StreamingDumpRestoreSupport extends DumpRestoreSupport
+{
+	/**
+	 * Creates a process that writes a dump of the specified database to its standard output.
+	 */
+	<Z, D extends Database<Z>> ProcessBuilder createDumpProcess(D database, Decoder decoder, boolean dataOnly) throws Exception;
+
+	/**
+	 * Creates a process that restores the specified database from a dump read from its standard input.
+	 */
+	<Z, D extends Database<Z>> ProcessBuilder createRestoreProcess(D database, Decoder decoder, boolean dataOnly) throws Exception;
+}
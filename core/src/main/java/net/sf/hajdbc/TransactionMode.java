@@ -26,4 +26,11 @@ import java.util.concurrent.ExecutorService;
 public interface TransactionMode
 {
 	ExecutorService getTransactionExecutor(ExecutorService executor, boolean end);
+
+	/**
+	 * Indicates whether write statements executed within a transaction return as soon as the primary database completes,
+	 * leaving the backup databases to apply them asynchronously, in order, prior to the end of the transaction.
+	 * @return true, if writes are pipelined, false otherwise
+	 */
+	boolean isPipelined();
 }
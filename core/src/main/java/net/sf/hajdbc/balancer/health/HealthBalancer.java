@@ -0,0 +1,353 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer.health;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.xa.XAException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.balancer.AbstractSetBalancer;
+import net.sf.hajdbc.balancer.ProbeListener;
+import net.sf.hajdbc.invocation.Invoker;
+
+/**
+ * Balancer implementation whose {@link #next()} implementation returns a random database,
+ * where the probability that a given database will be returned is: <em>weight * health / total-weighted-health</em>.
+ * The health of a database is a score between 0 and 1, which is reduced by connection errors, timeouts, and latency outliers observed during invocations,
+ * and by failed failure detection probes.
+ * Health recovers gradually over time, and more quickly after a successful probe.
+ * Consequently, read requests shift away from a degrading database well before it fails outright, and return to it progressively.
+ *
+ * @author  Paul Ferraro
+ * @param <D> either java.sql.Driver or javax.sql.DataSource
+ */
+public class HealthBalancer<Z, D extends Database<Z>> extends AbstractSetBalancer<Z, D> implements ProbeListener<D>
+{
+	// Multiplicative penalties applied to health
+	static final double ERROR_PENALTY = 0.5;
+	static final double TIMEOUT_PENALTY = 0.5;
+	static final double OUTLIER_PENALTY = 0.9;
+	static final double PROBE_PENALTY = 0.25;
+	// Health is never reduced below this, so that a degraded database continues to receive a trickle of requests
+	static final double MIN_HEALTH = 0.01;
+	// Time constant of health recovery, i.e. the time after which 1/e of a health deficit remains
+	static final long RECOVERY = TimeUnit.SECONDS.toNanos(30);
+	// A response is an outlier if its duration exceeds this multiple of the average response time
+	static final double OUTLIER_FACTOR = 4;
+	// Responses faster than this are never considered outliers
+	static final long OUTLIER_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private volatile Snapshot<D> snapshot;
+
+	/**
+	 * Constructs a new HealthBalancer
+	 * @param databases
+	 */
+	public HealthBalancer(Set<D> databases)
+	{
+		super(databases);
+		
+		this.snapshot = new Snapshot<>(this.getDatabases(), Collections.<D, Node<D>>emptyMap());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.Balancer#next()
+	 */
+	@Override
+	public D next()
+	{
+		Node<D>[] nodes = this.snapshot.nodes;
+		
+		if (nodes.length == 0) return this.primary();
+		if (nodes.length == 1) return nodes[0].database;
+		
+		long now = System.nanoTime();
+		double[] weights = new double[nodes.length];
+		double total = 0;
+		
+		for (int i = 0; i < nodes.length; ++i)
+		{
+			Node<D> node = nodes[i];
+			weights[i] = node.database.getWeight() * node.health(now);
+			total += weights[i];
+		}
+		
+		if (total == 0) return this.primary();
+		
+		double value = ThreadLocalRandom.current().nextDouble(total);
+		
+		for (int i = 0; i < nodes.length; ++i)
+		{
+			value -= weights[i];
+			
+			if ((value < 0) && (weights[i] > 0))
+			{
+				return nodes[i].database;
+			}
+		}
+		
+		// Compensate for rounding errors
+		for (int i = nodes.length - 1; i >= 0; --i)
+		{
+			if (weights[i] > 0)
+			{
+				return nodes[i].database;
+			}
+		}
+		
+		return this.primary();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#invoke(net.sf.hajdbc.invocation.Invoker, net.sf.hajdbc.Database, java.lang.Object)
+	 */
+	@Override
+	public <T, R, E extends Exception> R invoke(Invoker<Z, D, T, R, E> invoker, D database, T object) throws E
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		if (node == null)
+		{
+			return invoker.invoke(database, object);
+		}
+		
+		long start = System.nanoTime();
+		
+		try
+		{
+			R result = invoker.invoke(database, object);
+			
+			long end = System.nanoTime();
+			
+			node.observe(end - start, end);
+			
+			return result;
+		}
+		catch (Exception e)
+		{
+			if (e instanceof SQLTimeoutException)
+			{
+				node.penalize(TIMEOUT_PENALTY, System.nanoTime());
+			}
+			else if (indicatesError(e))
+			{
+				node.penalize(ERROR_PENALTY, System.nanoTime());
+			}
+			
+			throw e;
+		}
+	}
+
+	/**
+	 * Indicates whether the specified exception suggests a problem with the database itself, rather than with the request.
+	 */
+	private static boolean indicatesError(Exception e)
+	{
+		if ((e instanceof SQLTransientConnectionException) || (e instanceof SQLNonTransientConnectionException) || (e instanceof SQLRecoverableException)) return true;
+		
+		if (e instanceof XAException)
+		{
+			int code = ((XAException) e).errorCode;
+			
+			return (code == XAException.XAER_RMFAIL) || (code == XAException.XAER_RMERR);
+		}
+		
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.ProbeListener#probed(net.sf.hajdbc.Database, boolean)
+	 */
+	@Override
+	public void probed(D database, boolean alive)
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		if (node != null)
+		{
+			long now = System.nanoTime();
+			
+			if (alive)
+			{
+				node.recover(now);
+			}
+			else
+			{
+				node.penalize(PROBE_PENALTY, now);
+			}
+		}
+	}
+
+	/**
+	 * Returns the current health of the specified database.
+	 * @param database a database descriptor
+	 * @return a health score between 0 and 1, or 0 if the database is not contained in this balancer
+	 */
+	public double getHealth(D database)
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		return (node != null) ? node.health(System.nanoTime()) : 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#added(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void added(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#removed(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void removed(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#cleared()
+	 */
+	@Override
+	protected void cleared()
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * Rebuilds the snapshot from the current set of databases, retaining the health of existing databases.
+	 * Called while holding the balancer lock.
+	 */
+	private void rebuild()
+	{
+		this.snapshot = new Snapshot<>(this.getDatabases(), this.snapshot.nodeMap);
+	}
+
+	private static class Snapshot<D extends Database<?>>
+	{
+		final Node<D>[] nodes;
+		final Map<D, Node<D>> nodeMap;
+		
+		@SuppressWarnings("unchecked")
+		Snapshot(Set<D> databases, Map<D, Node<D>> existingNodeMap)
+		{
+			this.nodes = new Node[databases.size()];
+			this.nodeMap = new HashMap<>(databases.size() * 2);
+			
+			int index = 0;
+			for (D database: databases)
+			{
+				Node<D> node = existingNodeMap.get(database);
+				
+				if (node == null)
+				{
+					node = new Node<>(database);
+				}
+				
+				this.nodes[index++] = node;
+				this.nodeMap.put(database, node);
+			}
+		}
+	}
+	
+	private static class Node<D extends Database<?>>
+	{
+		final D database;
+		
+		// Health as of the time of the last update; written while holding this node's monitor
+		private volatile double health = 1;
+		private volatile long timestamp = System.nanoTime();
+		// Moving average response time, in nanoseconds; concurrent updates may be lost, which is harmless
+		private volatile double latency = 0;
+		
+		Node(D database)
+		{
+			this.database = database;
+		}
+		
+		/**
+		 * Returns the health of this database, including the recovery since the last update.
+		 * @param now the current time, in nanoseconds
+		 * @return a health score between 0 and 1
+		 */
+		double health(long now)
+		{
+			double deficit = 1 - this.health;
+			
+			if (deficit == 0) return 1;
+			
+			return 1 - (deficit * Math.exp(-Math.max(now - this.timestamp, 0L) / (double) RECOVERY));
+		}
+		
+		synchronized void penalize(double penalty, long now)
+		{
+			this.update(Math.max(this.health(now) * penalty, MIN_HEALTH), now);
+		}
+		
+		/**
+		 * Halves the remaining health deficit.
+		 */
+		synchronized void recover(long now)
+		{
+			this.update((1 + this.health(now)) / 2, now);
+		}
+		
+		/**
+		 * Records the response time of a successful invocation, penalizing this database if it was an outlier.
+		 * @param duration the duration of an invocation, in nanoseconds
+		 * @param now the current time, in nanoseconds
+		 */
+		void observe(long duration, long now)
+		{
+			double latency = this.latency;
+			
+			if ((latency > 0) && (duration > OUTLIER_THRESHOLD) && (duration > (latency * OUTLIER_FACTOR)))
+			{
+				this.penalize(OUTLIER_PENALTY, now);
+			}
+			
+			// Outliers only contribute gradually to the average, so that a persistently slow database remains penalized for a while
+			this.latency = (latency > 0) ? latency + ((duration - latency) / 10) : duration;
+		}
+		
+		private void update(double health, long now)
+		{
+			this.health = health;
+			this.timestamp = now;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer.latency;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.balancer.AbstractSetBalancer;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.util.concurrent.PaddedAtomicLong;
+
+/**
+ * Balancer implementation whose {@link #next()} implementation returns the database with the best expected latency.
+ * The expected latency of a database = <em>response-time * (concurrent-requests + 1) / weight</em>,
+ * where <em>response-time</em> is an exponentially weighted moving average of the duration of invocations against that database.
+ * The average reacts immediately to a slower response, but adapts gradually to faster responses,
+ * and decays over time, so that a database that was slow in the past is eventually retried.
+ * Until response times are observed, this behaves like the {@link net.sf.hajdbc.balancer.load.LoadBalancer}.
+ *
+ * @author  Paul Ferraro
+ * @param <D> either java.sql.Driver or javax.sql.DataSource
+ */
+public class LatencyBalancer<Z, D extends Database<Z>> extends AbstractSetBalancer<Z, D>
+{
+	// Time constant of the moving average, i.e. the age at which an observation retains 1/e of its influence
+	static final long DECAY = TimeUnit.SECONDS.toNanos(10);
+
+	private volatile Snapshot<D> snapshot;
+
+	/**
+	 * Constructs a new LatencyBalancer
+	 * @param databases
+	 */
+	public LatencyBalancer(Set<D> databases)
+	{
+		super(databases);
+		
+		this.snapshot = new Snapshot<>(this.getDatabases(), Collections.<D, Node<D>>emptyMap());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.Balancer#next()
+	 */
+	@Override
+	public D next()
+	{
+		Node<D>[] nodes = this.snapshot.nodes;
+		
+		if (nodes.length == 0) return this.primary();
+		if (nodes.length == 1) return nodes[0].database;
+		
+		long now = System.nanoTime();
+		
+		Node<D> result = nodes[0];
+		double cost = result.cost(now);
+		
+		for (int i = 1; i < nodes.length; ++i)
+		{
+			Node<D> node = nodes[i];
+			double nodeCost = node.cost(now);
+			
+			if (nodeCost < cost)
+			{
+				result = node;
+				cost = nodeCost;
+			}
+		}
+		
+		return result.database;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#invoke(net.sf.hajdbc.invocation.Invoker, net.sf.hajdbc.Database, java.lang.Object)
+	 */
+	@Override
+	public <T, R, E extends Exception> R invoke(Invoker<Z, D, T, R, E> invoker, D database, T object) throws E
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		if (node == null)
+		{
+			return invoker.invoke(database, object);
+		}
+		
+		node.load.incrementAndGet();
+		
+		long start = System.nanoTime();
+		
+		try
+		{
+			return invoker.invoke(database, object);
+		}
+		finally
+		{
+			long end = System.nanoTime();
+			
+			node.load.decrementAndGet();
+			node.observe(end - start, end);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#added(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void added(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#removed(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void removed(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#cleared()
+	 */
+	@Override
+	protected void cleared()
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * Rebuilds the snapshot from the current set of databases, retaining the statistics of existing databases.
+	 * Called while holding the balancer lock.
+	 */
+	private void rebuild()
+	{
+		this.snapshot = new Snapshot<>(this.getDatabases(), this.snapshot.nodeMap);
+	}
+
+	private static class Snapshot<D extends Database<?>>
+	{
+		final Node<D>[] nodes;
+		final Map<D, Node<D>> nodeMap;
+		
+		@SuppressWarnings("unchecked")
+		Snapshot(Set<D> databases, Map<D, Node<D>> existingNodeMap)
+		{
+			this.nodes = new Node[databases.size()];
+			this.nodeMap = new HashMap<>(databases.size() * 2);
+			
+			int index = 0;
+			for (D database: databases)
+			{
+				Node<D> node = existingNodeMap.get(database);
+				
+				if (node == null)
+				{
+					node = new Node<>(database);
+				}
+				
+				this.nodes[index++] = node;
+				this.nodeMap.put(database, node);
+			}
+		}
+	}
+	
+	private static class Node<D extends Database<?>>
+	{
+		final D database;
+		final PaddedAtomicLong load = new PaddedAtomicLong();
+		
+		// Moving average response time, in nanoseconds, as of the time of the last observation
+		private volatile double latency = 0;
+		private volatile long timestamp = System.nanoTime();
+		
+		Node(D database)
+		{
+			this.database = database;
+		}
+		
+		/**
+		 * Records the response time of an invocation.
+		 * @param duration the duration of an invocation, in nanoseconds
+		 * @param now the current time, in nanoseconds
+		 */
+		synchronized void observe(long duration, long now)
+		{
+			double latency = this.latency;
+			
+			if (duration > latency)
+			{
+				// React immediately to slower responses
+				this.latency = duration;
+			}
+			else
+			{
+				double decay = Math.exp(-Math.max(now - this.timestamp, 0L) / (double) DECAY);
+				this.latency = (latency * decay) + (duration * (1 - decay));
+			}
+			
+			this.timestamp = now;
+		}
+		
+		/**
+		 * Returns the average response time, decayed by the time elapsed since the last observation.
+		 * @param now the current time, in nanoseconds
+		 * @return an average response time, in nanoseconds
+		 */
+		double latency(long now)
+		{
+			return this.latency * Math.exp(-Math.max(now - this.timestamp, 0L) / (double) DECAY);
+		}
+		
+		/**
+		 * Returns the expected latency of the next request sent to this database.
+		 * A database with a weight of 0 has an infinite cost.
+		 * @param now the current time, in nanoseconds
+		 * @return the cost of sending the next request to this database
+		 */
+		double cost(long now)
+		{
+			// Weights may change at runtime
+			int weight = this.database.getWeight();
+			
+			if (weight == 0) return Double.POSITIVE_INFINITY;
+			
+			// Count the prospective request, so that idle databases are still distinguished by weight
+			return (this.latency(now) + 1) * (this.load.get() + 1) / weight;
+		}
+	}
+}
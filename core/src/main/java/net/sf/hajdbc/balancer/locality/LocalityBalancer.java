@@ -0,0 +1,274 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer.locality;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.Locality;
+import net.sf.hajdbc.balancer.AbstractSetBalancer;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.util.concurrent.PaddedAtomicLong;
+
+/**
+ * Balancer implementation whose {@link #next()} implementation prefers databases by locality, i.e. embedded, then local, then remote.
+ * Within a locality tier, the database with the least load is chosen, where the load of a database = <em>concurrent-requests / weight</em>.
+ * A tier is skipped if it is saturated, i.e. if each of its databases has at least {@link #SATURATION} concurrent requests per unit of weight,
+ * which is also the case if a database stops responding.
+ * If every tier is saturated, the database with the least load is chosen, regardless of locality.
+ *
+ * @author  Paul Ferraro
+ * @param <D> either java.sql.Driver or javax.sql.DataSource
+ */
+public class LocalityBalancer<Z, D extends Database<Z>> extends AbstractSetBalancer<Z, D>
+{
+	/**
+	 * The number of concurrent requests per unit of weight, beyond which a database will not accept additional requests in preference to a less local database.
+	 */
+	public static final int SATURATION = 10;
+
+	private volatile Snapshot<D> snapshot;
+
+	/**
+	 * Constructs a new LocalityBalancer
+	 * @param databases
+	 */
+	public LocalityBalancer(Set<D> databases)
+	{
+		super(databases);
+		
+		this.snapshot = new Snapshot<>(this.getDatabases(), Collections.<D, Node<D>>emptyMap());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.Balancer#next()
+	 */
+	@Override
+	public D next()
+	{
+		Snapshot<D> snapshot = this.snapshot;
+		
+		if (snapshot.size == 0) return this.primary();
+		
+		Node<D> result = null;
+		
+		for (Node<D>[] tier: snapshot.tiers)
+		{
+			Node<D> node = min(tier);
+			
+			if (node != null)
+			{
+				if (!node.isSaturated()) return node.database;
+				
+				if ((result == null) || (node.compareTo(result) < 0))
+				{
+					result = node;
+				}
+			}
+		}
+		
+		return (result != null) ? result.database : this.primary();
+	}
+
+	/**
+	 * Returns the node with the least load, ignoring nodes with a weight of 0.
+	 */
+	private static <D extends Database<?>> Node<D> min(Node<D>[] nodes)
+	{
+		Node<D> result = null;
+		
+		for (Node<D> node: nodes)
+		{
+			if ((node.database.getWeight() > 0) && ((result == null) || (node.compareTo(result) < 0)))
+			{
+				result = node;
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#invoke(net.sf.hajdbc.invocation.Invoker, net.sf.hajdbc.Database, java.lang.Object)
+	 */
+	@Override
+	public <T, R, E extends Exception> R invoke(Invoker<Z, D, T, R, E> invoker, D database, T object) throws E
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		if (node != null)
+		{
+			node.load.incrementAndGet();
+		}
+		
+		try
+		{
+			return invoker.invoke(database, object);
+		}
+		finally
+		{
+			if (node != null)
+			{
+				node.load.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#added(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void added(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#removed(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void removed(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#cleared()
+	 */
+	@Override
+	protected void cleared()
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * Rebuilds the snapshot from the current set of databases, retaining the load counters of existing databases.
+	 * Called while holding the balancer lock.
+	 */
+	private void rebuild()
+	{
+		this.snapshot = new Snapshot<>(this.getDatabases(), this.snapshot.nodeMap);
+	}
+
+	private static class Snapshot<D extends Database<?>>
+	{
+		// Only non-empty tiers, in order of preference
+		final Node<D>[][] tiers;
+		final Map<D, Node<D>> nodeMap;
+		final int size;
+		
+		@SuppressWarnings("unchecked")
+		Snapshot(Set<D> databases, Map<D, Node<D>> existingNodeMap)
+		{
+			this.size = databases.size();
+			this.nodeMap = new HashMap<>(this.size * 2);
+			
+			Map<Locality, List<Node<D>>> tierMap = new EnumMap<>(Locality.class);
+			
+			for (D database: databases)
+			{
+				Node<D> node = existingNodeMap.get(database);
+				
+				if (node == null)
+				{
+					node = new Node<>(database);
+				}
+				
+				this.nodeMap.put(database, node);
+				
+				List<Node<D>> tier = tierMap.get(database.getLocality());
+				
+				if (tier == null)
+				{
+					tier = new ArrayList<>(this.size);
+					tierMap.put(database.getLocality(), tier);
+				}
+				
+				tier.add(node);
+			}
+			
+			List<Node<D>[]> tiers = new ArrayList<>(tierMap.size());
+			
+			// Order by locality, most local first
+			Locality[] localities = Locality.values();
+			for (int i = localities.length - 1; i >= 0; --i)
+			{
+				List<Node<D>> tier = tierMap.get(localities[i]);
+				
+				if (tier != null)
+				{
+					tiers.add(tier.toArray(new Node[tier.size()]));
+				}
+			}
+			
+			this.tiers = tiers.toArray(new Node[tiers.size()][]);
+		}
+	}
+	
+	private static class Node<D extends Database<?>> implements Comparable<Node<D>>
+	{
+		final D database;
+		final PaddedAtomicLong load = new PaddedAtomicLong();
+		
+		Node(D database)
+		{
+			this.database = database;
+		}
+		
+		boolean isSaturated()
+		{
+			return this.load.get() >= ((long) this.database.getWeight() * SATURATION);
+		}
+
+		/**
+		 * Compares the weighted loads of two nodes, without division.
+		 * A node with a weight of 0 has an infinite load.
+		 */
+		@Override
+		public int compareTo(Node<D> node)
+		{
+			// Count the prospective request, so that idle nodes are still distinguished by weight
+			long load1 = this.load.get() + 1;
+			long load2 = node.load.get() + 1;
+			// Weights may change at runtime
+			int weight1 = this.database.getWeight();
+			int weight2 = node.database.getWeight();
+			
+			// If weights are the same, we can simply compare the loads
+			if (weight1 == weight2)
+			{
+				return Long.compare(load1, load2);
+			}
+			if (weight1 == 0) return 1;
+			if (weight2 == 0) return -1;
+			
+			return Long.compare(load1 * weight2, load2 * weight1);
+		}
+	}
+}
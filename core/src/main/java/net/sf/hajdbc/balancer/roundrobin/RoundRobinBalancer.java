@@ -17,22 +17,26 @@
  */
 package net.sf.hajdbc.balancer.roundrobin;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.math.BigInteger;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.balancer.AbstractSetBalancer;
 
 /**
- * Balancer implementation whose {@link #next()} implementation uses a circular FIFO queue.
+ * Balancer implementation whose {@link #next()} implementation cycles through a precomputed sequence of databases.
+ * A database of weight <em>n</em> appears <em>n</em> times per <em>total-weight</em> entries of the sequence,
+ * interleaved with the other databases (i.e. smooth weighted round-robin), rather than in consecutive runs.
+ * The sequence is only recomputed when the set of databases changes, so {@link #next()} does not require locking.
  * 
  * @author  Paul Ferraro
  * @param <D> either java.sql.Driver or javax.sql.DataSource
  */
 public class RoundRobinBalancer<P, D extends Database<P>> extends AbstractSetBalancer<P, D>
 {
-	private Queue<D> databaseQueue = new LinkedList<>();
+	private final AtomicLong cursor = new AtomicLong();
+	private volatile Object[] sequence;
 
 	/**
 	 * Constructs a new RoundRobinBalancer
@@ -42,10 +46,7 @@ public class RoundRobinBalancer<P, D extends Database<P>> extends AbstractSetBal
 	{
 		super(databases);
 		
-		for (D database: databases)
-		{
-			this.added(database);
-		}
+		this.sequence = sequence(this.getDatabases());
 	}
 	
 	/**
@@ -55,12 +56,7 @@ public class RoundRobinBalancer<P, D extends Database<P>> extends AbstractSetBal
 	@Override
 	protected void added(D database)
 	{
-		int weight = database.getWeight();
-		
-		for (int i = 0; i < weight; ++i)
-		{
-			this.databaseQueue.add(database);
-		}
+		this.sequence = sequence(this.getDatabases());
 	}
 
 	/**
@@ -70,44 +66,35 @@ public class RoundRobinBalancer<P, D extends Database<P>> extends AbstractSetBal
 	@Override
 	protected void removed(D database)
 	{
-		int weight = database.getWeight();
-		
-		for (int i = 0; i < weight; ++i)
-		{
-			this.databaseQueue.remove(database);
-		}
+		this.sequence = sequence(this.getDatabases());
 	}
 	
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.balancer.Balancer#next()
 	 */
+	@SuppressWarnings("unchecked")
 	@Override
 	public D next()
 	{
-		this.getLock().lock();
+		Object[] sequence = this.sequence;
 		
-		try
+		switch (sequence.length)
 		{
-			if (this.databaseQueue.isEmpty())
+			case 0:
 			{
 				return this.primary();
 			}
-			
-			if (this.databaseQueue.size() == 1)
+			case 1:
 			{
-				return this.databaseQueue.element();
+				return (D) sequence[0];
+			}
+			default:
+			{
+				long index = this.cursor.getAndIncrement() & Long.MAX_VALUE;
+				
+				return (D) sequence[(int) (index % sequence.length)];
 			}
-			
-			D database = this.databaseQueue.remove();
-			
-			this.databaseQueue.add(database);
-			
-			return database;
-		}
-		finally
-		{
-			this.getLock().unlock();
 		}
 	}
 
@@ -118,6 +105,67 @@ public class RoundRobinBalancer<P, D extends Database<P>> extends AbstractSetBal
 	@Override
 	protected void cleared()
 	{
-		this.databaseQueue.clear();
+		this.sequence = new Object[0];
+	}
+	
+	/**
+	 * Computes a smooth weighted round-robin sequence of the specified databases.
+	 * For each entry, the current weight of every database is incremented by its weight;
+	 * the database with the largest current weight is chosen, and its current weight is decremented by the total weight.
+	 * Weights are first reduced by their greatest common divisor, to minimize the length of the sequence.
+	 * @param databases a set of databases
+	 * @return an array of databases, whose length is the reduced total weight
+	 */
+	private static <D extends Database<?>> Object[] sequence(Set<D> databases)
+	{
+		int size = databases.size();
+		Object[] candidates = new Object[size];
+		int[] weights = new int[size];
+		int count = 0;
+		int divisor = 0;
+		
+		for (D database: databases)
+		{
+			int weight = database.getWeight();
+			
+			// Databases with a weight of 0 never participate
+			if (weight > 0)
+			{
+				candidates[count] = database;
+				weights[count] = weight;
+				divisor = BigInteger.valueOf(divisor).gcd(BigInteger.valueOf(weight)).intValue();
+				count += 1;
+			}
+		}
+		
+		int total = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			weights[i] /= divisor;
+			total += weights[i];
+		}
+		
+		Object[] sequence = new Object[total];
+		int[] current = new int[count];
+		
+		for (int i = 0; i < total; ++i)
+		{
+			int selected = 0;
+			
+			for (int j = 0; j < count; ++j)
+			{
+				current[j] += weights[j];
+				
+				if (current[j] > current[selected])
+				{
+					selected = j;
+				}
+			}
+			
+			current[selected] -= total;
+			sequence[i] = candidates[selected];
+		}
+		
+		return sequence;
 	}
 }
@@ -0,0 +1,223 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer.twochoice;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.balancer.AbstractSetBalancer;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.util.concurrent.PaddedAtomicLong;
+
+/**
+ * Balancer implementation whose {@link #next()} implementation samples two distinct random databases and returns the one with the smaller load.
+ * As with the {@link net.sf.hajdbc.balancer.load.LoadBalancer}, the load of a database = <em>concurrent-requests / weight</em>.
+ * Unlike the {@link net.sf.hajdbc.balancer.load.LoadBalancer}, the cost of {@link #next()} does not depend on the number of databases.
+ * Databases and their load counters are read from an immutable snapshot, which is only rebuilt when the set of databases changes.
+ *
+ * @author  Paul Ferraro
+ * @param <D> either java.sql.Driver or javax.sql.DataSource
+ */
+public class TwoChoiceBalancer<Z, D extends Database<Z>> extends AbstractSetBalancer<Z, D>
+{
+	private volatile Snapshot<D> snapshot;
+
+	/**
+	 * Constructs a new TwoChoiceBalancer
+	 * @param databases
+	 */
+	public TwoChoiceBalancer(Set<D> databases)
+	{
+		super(databases);
+		
+		this.snapshot = new Snapshot<>(this.getDatabases(), Collections.<D, Node<D>>emptyMap());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.Balancer#next()
+	 */
+	@Override
+	public D next()
+	{
+		Node<D>[] nodes = this.snapshot.nodes;
+		
+		switch (nodes.length)
+		{
+			case 0:
+			{
+				return this.primary();
+			}
+			case 1:
+			{
+				return nodes[0].database;
+			}
+			default:
+			{
+				Random random = ThreadLocalRandom.current();
+				
+				int index1 = random.nextInt(nodes.length);
+				// Choose a distinct second candidate
+				int index2 = random.nextInt(nodes.length - 1);
+				if (index2 >= index1)
+				{
+					index2 += 1;
+				}
+				
+				Node<D> node1 = nodes[index1];
+				Node<D> node2 = nodes[index2];
+				
+				return (node1.compareTo(node2) <= 0) ? node1.database : node2.database;
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#invoke(net.sf.hajdbc.invocation.Invoker, net.sf.hajdbc.Database, java.lang.Object)
+	 */
+	@Override
+	public <T, R, E extends Exception> R invoke(Invoker<Z, D, T, R, E> invoker, D database, T object) throws E
+	{
+		Node<D> node = this.snapshot.nodeMap.get(database);
+		
+		if (node != null)
+		{
+			node.load.incrementAndGet();
+		}
+		
+		try
+		{
+			return invoker.invoke(database, object);
+		}
+		finally
+		{
+			if (node != null)
+			{
+				node.load.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#added(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void added(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#removed(net.sf.hajdbc.Database)
+	 */
+	@Override
+	protected void removed(D database)
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.balancer.AbstractSetBalancer#cleared()
+	 */
+	@Override
+	protected void cleared()
+	{
+		this.rebuild();
+	}
+
+	/**
+	 * Rebuilds the snapshot from the current set of databases, retaining the load counters of existing databases.
+	 * Called while holding the balancer lock.
+	 */
+	private void rebuild()
+	{
+		this.snapshot = new Snapshot<>(this.getDatabases(), this.snapshot.nodeMap);
+	}
+
+	private static class Snapshot<D extends Database<?>>
+	{
+		final Node<D>[] nodes;
+		final Map<D, Node<D>> nodeMap;
+		
+		@SuppressWarnings("unchecked")
+		Snapshot(Set<D> databases, Map<D, Node<D>> existingNodeMap)
+		{
+			this.nodes = new Node[databases.size()];
+			this.nodeMap = new HashMap<>(databases.size() * 2);
+			
+			int index = 0;
+			for (D database: databases)
+			{
+				Node<D> node = existingNodeMap.get(database);
+				
+				if (node == null)
+				{
+					node = new Node<>(database);
+				}
+				
+				this.nodes[index++] = node;
+				this.nodeMap.put(database, node);
+			}
+		}
+	}
+	
+	private static class Node<D extends Database<?>> implements Comparable<Node<D>>
+	{
+		final D database;
+		final PaddedAtomicLong load = new PaddedAtomicLong();
+		
+		Node(D database)
+		{
+			this.database = database;
+		}
+
+		/**
+		 * Compares the weighted loads of two nodes, without division.
+		 * A node with a weight of 0 has an infinite load.
+		 */
+		@Override
+		public int compareTo(Node<D> node)
+		{
+			// Count the prospective request, so that idle nodes are still distinguished by weight
+			long load1 = this.load.get() + 1;
+			long load2 = node.load.get() + 1;
+			// Weights may change at runtime
+			int weight1 = this.database.getWeight();
+			int weight2 = node.database.getWeight();
+			
+			// If weights are the same, we can simply compare the loads
+			if (weight1 == weight2)
+			{
+				return Long.compare(load1, load2);
+			}
+			if (weight1 == 0) return 1;
+			if (weight2 == 0) return -1;
+			
+			return Long.compare(load1 * weight2, load2 * weight1);
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.util.Map;
 
 import javax.transaction.xa.XAException;
 
+import net.sf.hajdbc.ChecksumSupport;
 import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.ColumnPropertiesFactory;
 import net.sf.hajdbc.Database;
@@ -52,6 +53,11 @@ import net.sf.hajdbc.codec.Decoder;
  */
 public interface Dialect
 {
+	/**
+	 * Schema containing the tables maintained by HA-JDBC itself, which are not considered user tables.
+	 */
+	String SCHEMA = "hajdbc";
+
 	/**
 	 * Returns a SQL statement used to truncate a table.
 	 * @param properties table meta data
@@ -179,10 +185,26 @@ public interface Dialect
 	
 	TriggerSupport getTriggerSupport();
 	
+	ChecksumSupport getChecksumSupport();
+	
 	String getCreateSchemaSQL(String schema);
 	
 	String getDropSchemaSQL(String schema);
 	
+	/**
+	 * Returns a SQL statement that creates an empty table with the columns of the specified query.
+	 * @param table a table name
+	 * @param query a SQL query
+	 * @return a SQL statement
+	 */
+	String getCreateTableAsSQL(String table, String query);
+	
+	/**
+	 * Returns a SQL query that evaluates the current timestamp of the database server.
+	 * @return a SQL query
+	 */
+	String getCurrentTimestampSQL();
+	
 	/**
 	 * Returns all tables in this database mapped by schema.
 	 * @param metaData a DatabaseMetaData implementation
@@ -29,6 +29,7 @@ import java.sql.SQLTransientConnectionException;
 import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,6 +37,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -44,6 +46,7 @@ import java.util.regex.Pattern;
 
 import javax.transaction.xa.XAException;
 
+import net.sf.hajdbc.ChecksumSupport;
 import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.ColumnPropertiesFactory;
 import net.sf.hajdbc.Database;
@@ -102,6 +105,8 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 	
 	private final Pattern selectForUpdatePattern = compile(this.selectForUpdatePattern());
 	private final Pattern insertIntoTablePattern = compile(this.insertIntoTablePattern());
+	private final Pattern insertValuesPattern = compile(this.insertValuesPattern());
+	private final Pattern multipleRowValuesPattern = compile(this.multipleRowValuesPattern());
 	private final Pattern sequencePattern = compile(this.sequencePattern());
 	private final Pattern currentTimestampPattern = compile(this.currentTimestampPattern());
 	private final Pattern currentDatePattern = compile(this.currentDatePattern());
@@ -134,6 +139,17 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 		return "INSERT\\s+(?:INTO\\s+)?'?([^'\\s\\(]+)";
 	}
 
+	protected String insertValuesPattern()
+	{
+		// Values may span multiple lines
+		return "(?s)^(\\s*INSERT\\s+(?:INTO\\s+)?'?[^'\\s\\(]+'?\\s*\\()([^\\)]+)(\\)\\s*VALUES\\s*\\()(.+)(\\)\\s*;?\\s*)$";
+	}
+
+	protected String multipleRowValuesPattern()
+	{
+		return "\\)\\s*,\\s*\\(";
+	}
+
 	protected String sequencePattern()
 	{
 		return "NEXT\\s+VALUE\\s+FOR\\s+'?([^',\\s\\(\\)]+)";
@@ -416,6 +432,47 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 		return MessageFormat.format(this.alterIdentityColumnFormat(), table.getName().getDDLName(), column.getName(), String.valueOf(value));
 	}
 
+	@Override
+	public String getInsertIdentityColumnSQL(String sql, Map<String, Long> values)
+	{
+		Matcher matcher = this.insertValuesPattern.matcher(sql);
+		
+		if (!matcher.matches()) return null;
+		
+		String columns = matcher.group(2);
+		String parameters = matcher.group(4);
+		
+		// Reject multi-row inserts
+		if (this.multipleRowValuesPattern.matcher(parameters).find()) return null;
+		
+		Set<String> columnSet = new HashSet<>();
+		for (String column: columns.split(Strings.COMMA))
+		{
+			columnSet.add(column.trim().toUpperCase(Locale.ENGLISH));
+		}
+		
+		List<String> identityColumns = new ArrayList<>(values.size());
+		List<String> identityValues = new ArrayList<>(values.size());
+		
+		for (Map.Entry<String, Long> entry: values.entrySet())
+		{
+			String column = entry.getKey();
+			
+			// Reject inserts that already specify an identity column
+			if (columnSet.contains(column.toUpperCase(Locale.ENGLISH))) return null;
+			
+			identityColumns.add(column);
+			identityValues.add(String.valueOf(entry.getValue()));
+		}
+		
+		StringBuilder builder = new StringBuilder(sql.length() + (identityColumns.size() * 32));
+		builder.append(matcher.group(1));
+		Strings.join(builder, identityColumns, Strings.PADDED_COMMA).append(Strings.PADDED_COMMA).append(columns);
+		builder.append(matcher.group(3));
+		Strings.join(builder, identityValues, Strings.PADDED_COMMA).append(Strings.PADDED_COMMA).append(parameters);
+		return builder.append(matcher.group(5)).toString();
+	}
+
 	protected String alterIdentityColumnFormat()
 	{
 		return "ALTER TABLE {0} ALTER COLUMN {1} RESTART WITH {2}";
@@ -573,6 +630,16 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 		return null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.Dialect#getChecksumSupport()
+	 */
+	@Override
+	public ChecksumSupport getChecksumSupport()
+	{
+		return null;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.TriggerSupport#getCreateTriggerSQL(java.lang.String, net.sf.hajdbc.TableProperties, net.sf.hajdbc.TriggerEvent, java.lang.String)
@@ -600,7 +667,7 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 
 	protected String dropTriggerFormat()
 	{
-		return "DROP TRIGGER {1} ON {2}";
+		return "DROP TRIGGER {0} ON {1}";
 	}
 	
 	/**
@@ -643,6 +710,31 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 		return "DROP SCHEMA {0}";
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.Dialect#getCreateTableAsSQL(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public String getCreateTableAsSQL(String table, String query)
+	{
+		return MessageFormat.format(this.createTableAsFormat(), table, query);
+	}
+
+	protected String createTableAsFormat()
+	{
+		return "CREATE TABLE {0} AS SELECT * FROM ({1}) source WHERE 1 = 0";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.Dialect#getCurrentTimestampSQL()
+	 */
+	@Override
+	public String getCurrentTimestampSQL()
+	{
+		return this.executeFunctionSQL("CURRENT_TIMESTAMP");
+	}
+
 	protected boolean meetsRequirement(int minMajor, int minMinor)
 	{
 		Driver driver = this.findDriver();
@@ -694,7 +786,12 @@ public class StandardDialect implements Dialect, SequenceSupport, IdentityColumn
 			
 			while (resultSet.next())
 			{
-				list.add(factory.createQualifiedName(resultSet.getString("TABLE_SCHEM"), resultSet.getString("TABLE_NAME")));
+				String schema = resultSet.getString("TABLE_SCHEM");
+				
+				// Skip tables maintained by HA-JDBC
+				if (SCHEMA.equalsIgnoreCase(schema)) continue;
+				
+				list.add(factory.createQualifiedName(schema, resultSet.getString("TABLE_NAME")));
 			}
 			
 			return list;
@@ -137,4 +137,13 @@ public class DerbyDialect extends StandardDialect
 	{
 		return "TIMESTAMP(''{0}'')";
 	}
+
+	/**
+	 * @see net.sf.hajdbc.dialect.StandardDialect#createTableAsFormat()
+	 */
+	@Override
+	protected String createTableAsFormat()
+	{
+		return "CREATE TABLE {0} AS {1} WITH NO DATA";
+	}
 }
@@ -21,6 +21,7 @@ import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.text.MessageFormat;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,6 +33,10 @@ import java.util.Set;
 import net.sf.hajdbc.SequenceProperties;
 import net.sf.hajdbc.SequencePropertiesFactory;
 import net.sf.hajdbc.SequenceSupport;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.TriggerEvent;
+import net.sf.hajdbc.TriggerSupport;
+import net.sf.hajdbc.TriggerTime;
 import net.sf.hajdbc.dialect.StandardDialect;
 
 /**
@@ -140,4 +145,62 @@ public class HSQLDBDialect extends StandardDialect
 	{
 		return failureCodes.contains(code);
 	}
+
+	/**
+	 * @see net.sf.hajdbc.dialect.StandardDialect#createTableAsFormat()
+	 */
+	@Override
+	protected String createTableAsFormat()
+	{
+		return "CREATE TABLE {0} AS ({1}) WITH NO DATA";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getTriggerSupport()
+	 */
+	@Override
+	public TriggerSupport getTriggerSupport()
+	{
+		return this;
+	}
+
+	/**
+	 * BEFORE triggers cannot modify the database, so all triggers fire after the event.
+	 * Each event may only reference the rows it affects.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getCreateTriggerSQL(java.lang.String, net.sf.hajdbc.TableProperties, net.sf.hajdbc.TriggerEvent, java.lang.String)
+	 */
+	@Override
+	public String getCreateTriggerSQL(String name, TableProperties table, TriggerEvent event, String action)
+	{
+		StringBuilder referencing = new StringBuilder();
+		if (event != TriggerEventEnum.DELETE)
+		{
+			referencing.append("NEW ROW AS ").append(this.getTriggerRowAlias(TriggerTimeEnum.AFTER)).append(' ');
+		}
+		if (event != TriggerEventEnum.INSERT)
+		{
+			referencing.append("OLD ROW AS ").append(this.getTriggerRowAlias(TriggerTimeEnum.BEFORE)).append(' ');
+		}
+		return MessageFormat.format("CREATE TRIGGER {0} AFTER {1} ON {2} REFERENCING {3}FOR EACH ROW BEGIN ATOMIC {4} END", name, event.toString(), table.getName().getDDLName(), referencing.toString(), action);
+	}
+
+	/**
+	 * @see net.sf.hajdbc.dialect.StandardDialect#dropTriggerFormat()
+	 */
+	@Override
+	protected String dropTriggerFormat()
+	{
+		return "DROP TRIGGER {0}";
+	}
+
+	/**
+	 * OLD and NEW are reserved words.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getTriggerRowAlias(net.sf.hajdbc.TriggerTime)
+	 */
+	@Override
+	public String getTriggerRowAlias(TriggerTime time)
+	{
+		return time.getAlias() + "ROW";
+	}
 }
@@ -21,13 +21,18 @@ import java.io.File;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import net.sf.hajdbc.ChecksumSupport;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DumpRestoreSupport;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.TriggerSupport;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.ConnectionProperties;
 import net.sf.hajdbc.dialect.StandardDialect;
@@ -39,7 +44,7 @@ import net.sf.hajdbc.util.Strings;
  * @author Paul Ferraro
  */
 @SuppressWarnings("nls")
-public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
+public class MySQLDialect extends StandardDialect implements StreamingDumpRestoreSupport, ChecksumSupport
 {
 	// Taken from: http://dev.mysql.com/doc/refman/5.7/en/reserved-words.html
 	protected static final String[] RESERVED_KEY_WORDS = new String[] {
@@ -208,6 +213,26 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 
 	@Override
 	public <Z, D extends Database<Z>> void dump(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createDumpProcess(database, decoder, file, dataOnly));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restore(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createRestoreProcess(database, decoder, dataOnly).redirectInput(file));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> ProcessBuilder createDumpProcess(D database, Decoder decoder, boolean dataOnly) throws Exception
+	{
+		return this.createDumpProcess(database, decoder, null, dataOnly);
+	}
+
+	/**
+	 * Creates a mysqldump process that writes to the specified file, or to standard output, if no file was specified.
+	 */
+	private <Z, D extends Database<Z>> ProcessBuilder createDumpProcess(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("mysqldump");
@@ -221,7 +246,10 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 			args.add("--port=" + properties.getPort());
 		}
 		args.add("--user=" + properties.getUser());
-		args.add("--result-file=" + file.getPath());
+		if (file != null)
+		{
+			args.add("--result-file=" + file.getPath());
+		}
 		args.add("--compress");
 		if (dataOnly)
 		{
@@ -229,14 +257,14 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 			args.add("--skip-triggers");
 		}
 		args.add(properties.getDatabase());
-		Processes.run(setPassword(builder, properties));
+		return setPassword(builder, properties);
 	}
 
 	@Override
-	public <Z, D extends Database<Z>> void restore(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	public <Z, D extends Database<Z>> ProcessBuilder createRestoreProcess(D database, Decoder decoder, boolean dataOnly) throws Exception
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
-		ProcessBuilder builder = new ProcessBuilder("mysql").redirectInput(file);
+		ProcessBuilder builder = new ProcessBuilder("mysql");
 		List<String> args = builder.command();
 		if (properties.getHost() != null)
 		{
@@ -248,9 +276,61 @@ public class MySQLDialect extends StandardDialect implements DumpRestoreSupport
 		}
 		args.add("--user=" + properties.getUser());
 		args.add(properties.getDatabase());
-		Processes.run(setPassword(builder, properties));
+		return setPassword(builder, properties);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getTriggerSupport()
+	 */
+	@Override
+	public TriggerSupport getTriggerSupport()
+	{
+		return this;
+	}
+
+	/**
+	 * @see net.sf.hajdbc.dialect.StandardDialect#dropTriggerFormat()
+	 */
+	@Override
+	protected String dropTriggerFormat()
+	{
+		return "DROP TRIGGER {0}";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumSupport()
+	 */
+	@Override
+	public ChecksumSupport getChecksumSupport()
+	{
+		return this;
+	}
+
+	/**
+	 * Sums the leading 64 bits of the MD5 hash of the concatenated columns of each row.
+	 * Since CONCAT_WS(...) skips null values, the null-ness of each column is also concatenated.
+	 * @see net.sf.hajdbc.ChecksumSupport#getChecksumSQL(net.sf.hajdbc.TableProperties, java.lang.String)
+	 */
+	@Override
+	public String getChecksumSQL(TableProperties table, String predicate) throws SQLException
+	{
+		Collection<String> columns = table.getColumns();
+		StringBuilder nulls = new StringBuilder();
+		for (String column: columns)
+		{
+			if (nulls.length() > 0)
+			{
+				nulls.append(Strings.PADDED_COMMA);
+			}
+			nulls.append("ISNULL(").append(column).append(')');
+		}
+		String checksum = String.format("CAST(CONV(SUBSTRING(MD5(CONCAT_WS('#', %s, CONCAT(%s))), 1, 16), 16, 10) AS UNSIGNED)", Strings.join(columns, Strings.PADDED_COMMA), nulls);
+		String sql = String.format("SELECT COUNT(*), SUM(%s) FROM %s", checksum, table.getName().getDMLName());
+		return (predicate != null) ? String.format("%s WHERE %s", sql, predicate) : sql;
+	}
+
 	private static ProcessBuilder setPassword(final ProcessBuilder builder, final ConnectionProperties properties)
 	{
 		String password = properties.getPassword();
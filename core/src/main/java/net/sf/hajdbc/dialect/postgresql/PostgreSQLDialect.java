@@ -30,11 +30,14 @@ import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
+import net.sf.hajdbc.ChecksumSupport;
 import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DumpRestoreSupport;
 import net.sf.hajdbc.IdentityColumnSupport;
 import net.sf.hajdbc.SequenceSupport;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
+import net.sf.hajdbc.TableProperties;
 import net.sf.hajdbc.TriggerSupport;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.ConnectionProperties;
@@ -48,7 +51,7 @@ import net.sf.hajdbc.util.Strings;
  * @since   1.1
  */
 @SuppressWarnings("nls")
-public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSupport
+public class PostgreSQLDialect extends StandardDialect implements StreamingDumpRestoreSupport, ChecksumSupport
 {
 	// Taken from: http://www.postgresql.org/docs/9.2/static/sql-keywords-appendix.html
 	public static final String[] RESERVED_KEY_WORDS = new String[] {
@@ -238,6 +241,32 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 
 	@Override
 	public <Z, D extends Database<Z>> void dump(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createDumpProcess(database, decoder, file, dataOnly));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restore(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	{
+		Processes.run(this.createRestoreProcess(database, decoder, file, dataOnly));
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> ProcessBuilder createDumpProcess(D database, Decoder decoder, boolean dataOnly) throws Exception
+	{
+		return this.createDumpProcess(database, decoder, null, dataOnly);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> ProcessBuilder createRestoreProcess(D database, Decoder decoder, boolean dataOnly) throws Exception
+	{
+		return this.createRestoreProcess(database, decoder, null, dataOnly);
+	}
+
+	/**
+	 * Creates a pg_dump process that writes to the specified file, or to standard output, if no file was specified.
+	 */
+	private <Z, D extends Database<Z>> ProcessBuilder createDumpProcess(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("pg_dump");
@@ -252,14 +281,19 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 		}
 		args.add("--username=" + properties.getUser());
 		args.add("--no-password");
-		args.add("--file=" + file.getPath());
+		if (file != null)
+		{
+			args.add("--file=" + file.getPath());
+		}
 		args.add("--format=tar");
 		args.add(properties.getDatabase());
-		Processes.run(setPassword(builder, properties));
+		return setPassword(builder, properties);
 	}
 
-	@Override
-	public <Z, D extends Database<Z>> void restore(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
+	/**
+	 * Creates a pg_restore process that reads from the specified file, or from standard input, if no file was specified.
+	 */
+	private <Z, D extends Database<Z>> ProcessBuilder createRestoreProcess(D database, Decoder decoder, File file, boolean dataOnly) throws Exception
 	{
 		ConnectionProperties properties = this.getConnectionProperties(database, decoder);
 		ProcessBuilder builder = new ProcessBuilder("pg_restore");
@@ -282,8 +316,11 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 			args.add("--disable-triggers"); // Used to prevent integrity constraints during restoration of data
 			args.add("--superuser=" + properties.getUser()); // Required by --disable-triggers
 		}
-		args.add(file.getPath());
-		Processes.run(setPassword(builder, properties));
+		if (file != null)
+		{
+			args.add(file.getPath());
+		}
+		return setPassword(builder, properties);
 	}
 	
 	private static ProcessBuilder setPassword(ProcessBuilder builder, ConnectionProperties properties)
@@ -308,12 +345,34 @@ public class PostgreSQLDialect extends StandardDialect implements DumpRestoreSup
 
 	/**
 	 * {@inheritDoc}
-	 * @see net.sf.hajdbc.dialect.StandardDialect#createForeignKeyConstraintFormat()
+	 * @see net.sf.hajdbc.dialect.StandardDialect#getChecksumSupport()
+	 */
+	@Override
+	public ChecksumSupport getChecksumSupport()
+	{
+		return this;
+	}
+
+	/**
+	 * Sums the leading 64 bits of the MD5 hash of the text representation of each row.
+	 * @see net.sf.hajdbc.ChecksumSupport#getChecksumSQL(net.sf.hajdbc.TableProperties, java.lang.String)
+	 */
+	@Override
+	public String getChecksumSQL(TableProperties table, String predicate) throws SQLException
+	{
+		String checksum = String.format("CAST(CAST('x' || SUBSTR(MD5(CAST(ROW(%s) AS TEXT)), 1, 16) AS BIT(64)) AS BIGINT)", Strings.join(table.getColumns(), Strings.PADDED_COMMA));
+		String sql = String.format("SELECT COUNT(*), SUM(%s) FROM %s", checksum, table.getName().getDMLName());
+		return (predicate != null) ? String.format("%s WHERE %s", sql, predicate) : sql;
+	}
+
+	/**
+	 * Row triggers execute a PL/pgSQL function, which must return the affected row, lest BEFORE triggers skip the operation.
+	 * @see net.sf.hajdbc.dialect.StandardDialect#createTriggerFormat()
 	 */
 	@Override
 	protected String createTriggerFormat()
 	{
-		return "CREATE FUNCTION {0}_action() BEGIN {4} END; CREATE TRIGGER {0} {1} {2} ON {3} FOR EACH ROW EXECUTE PROCEDURE {0}_action()";
+		return "CREATE FUNCTION {0}_action() RETURNS TRIGGER AS $$ BEGIN {4} IF TG_OP = ''DELETE'' THEN RETURN OLD; END IF; RETURN NEW; END $$ LANGUAGE plpgsql; CREATE TRIGGER {0} {1} {2} ON {3} FOR EACH ROW EXECUTE PROCEDURE {0}_action()";
 	}
 
 	/**
@@ -38,6 +38,15 @@ public interface CommandDispatcher<C> extends Lifecycle
 	 */
 	<R> Map<Member, R> executeAll(Command<R, C> command, Member... excludedMembers);
 
+	/**
+	 * Execute the specified command on all members, potentially excluding some, without waiting for any responses.
+	 * Commands sent by a given member are executed by each recipient in the order in which they were sent.
+	 * @param command the command to execute
+	 * @param excludedMembers list of members to optionally exclude
+	 * @throws IllegalStateException if the command could not be sent
+	 */
+	void executeAllAsync(Command<?, C> command, Member... excludedMembers);
+
 	/**
 	 * Execute the specified command on the specified member.
 	 * @param <R> the return value type
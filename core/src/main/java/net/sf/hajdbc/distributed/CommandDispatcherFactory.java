@@ -18,6 +18,7 @@
 package net.sf.hajdbc.distributed;
 
 import java.io.Serializable;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.hajdbc.Identifiable;
 
@@ -36,8 +37,9 @@ public interface CommandDispatcherFactory extends Identifiable, Serializable
 	 * @param context command execution context
 	 * @param stateful handler for state transfers
 	 * @param membershipListener handler for group membership changes
+	 * @param threadFactory factory for any threads created by the dispatcher
 	 * @return a new command dispatcher
 	 * @throws Exception if an error occurred creating the dispatcher
 	 */
-	<C> CommandDispatcher<C> createCommandDispatcher(String id, C context, Stateful stateful, MembershipListener membershipListener) throws Exception;
+	<C> CommandDispatcher<C> createCommandDispatcher(String id, C context, Stateful stateful, MembershipListener membershipListener, ThreadFactory threadFactory) throws Exception;
 }
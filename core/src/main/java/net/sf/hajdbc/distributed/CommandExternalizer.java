@@ -0,0 +1,55 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads a command to and from a compact binary form, in lieu of Java serialization.
+ * Externalizers are provided via {@link CommandExternalizerProvider} services.
+ * @author Paul Ferraro
+ * @param <C> the command type
+ */
+public interface CommandExternalizer<C>
+{
+	/**
+	 * Returns the exact class of the commands handled by this externalizer.
+	 * @return a command class
+	 */
+	Class<C> getTargetClass();
+
+	/**
+	 * Writes the specified command to the specified output.
+	 * @param output a data output
+	 * @param command the command to write
+	 * @param members writes group members in the dispatcher's compact form
+	 * @throws IOException if the command could not be written
+	 */
+	void writeCommand(DataOutput output, C command, Externalizer<Member> members) throws IOException;
+
+	/**
+	 * Reads a command from the specified input.
+	 * @param input a data input
+	 * @param members reads group members in the dispatcher's compact form
+	 * @return a command
+	 * @throws IOException if the command could not be read
+	 */
+	C readCommand(DataInput input, Externalizer<Member> members) throws IOException;
+}
@@ -0,0 +1,150 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Marshals commands to and from their wire format.
+ * Commands with a registered {@link CommandExternalizer} are written as a type identifier followed by their compact binary form.
+ * All other commands fall back to Java serialization.
+ * Type identifiers are assigned in order of command class name, so all group members must share the same set of externalizers.
+ * @author Paul Ferraro
+ */
+public class CommandMarshaller
+{
+	private static final byte SERIALIZED = 0;
+
+	private final Externalizer<Member> members;
+	private final List<CommandExternalizer<Command<?, ?>>> externalizers = new ArrayList<>();
+	private final Map<Class<?>, Byte> types = new IdentityHashMap<>();
+
+	/**
+	 * Creates a new command marshaller using the externalizers provided by the specified class loader.
+	 * @param members externalizer for the group members of a command dispatcher
+	 * @param loader a class loader
+	 */
+	@SuppressWarnings("unchecked")
+	public CommandMarshaller(Externalizer<Member> members, ClassLoader loader)
+	{
+		this.members = members;
+
+		for (CommandExternalizerProvider provider: ServiceLoader.load(CommandExternalizerProvider.class, loader))
+		{
+			for (CommandExternalizer<?> externalizer: provider.getExternalizers())
+			{
+				this.externalizers.add((CommandExternalizer<Command<?, ?>>) externalizer);
+			}
+		}
+
+		Collections.sort(this.externalizers, new Comparator<CommandExternalizer<?>>()
+		{
+			@Override
+			public int compare(CommandExternalizer<?> externalizer1, CommandExternalizer<?> externalizer2)
+			{
+				return externalizer1.getTargetClass().getName().compareTo(externalizer2.getTargetClass().getName());
+			}
+		});
+
+		if (this.externalizers.size() >= Byte.MAX_VALUE)
+		{
+			throw new IllegalStateException(String.valueOf(this.externalizers.size()));
+		}
+
+		for (int i = 0; i < this.externalizers.size(); ++i)
+		{
+			this.types.put(this.externalizers.get(i).getTargetClass(), Byte.valueOf((byte) (i + 1)));
+		}
+	}
+
+	/**
+	 * Marshals the specified command.
+	 * @param command a command
+	 * @return the marshalled command
+	 */
+	public byte[] marshal(Command<?, ?> command)
+	{
+		Byte type = this.types.get(command.getClass());
+
+		if (type == null)
+		{
+			byte[] serialized = Objects.serialize(command);
+			byte[] bytes = new byte[serialized.length + 1];
+			bytes[0] = SERIALIZED;
+			System.arraycopy(serialized, 0, bytes, 1, serialized.length);
+			return bytes;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		try (DataOutputStream output = new DataOutputStream(bytes))
+		{
+			output.writeByte(type.byteValue());
+			this.externalizers.get(type.byteValue() - 1).writeCommand(output, command, this.members);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Unmarshals a command from the specified buffer.
+	 * @param buffer a buffer containing a marshalled command
+	 * @param offset the offset of the command within the buffer
+	 * @param length the length of the command
+	 * @return a command
+	 */
+	public Command<?, ?> unmarshal(byte[] buffer, int offset, int length)
+	{
+		byte type = buffer[offset];
+
+		if (type == SERIALIZED)
+		{
+			return Objects.deserialize(Arrays.copyOfRange(buffer, offset + 1, offset + length), Command.class);
+		}
+
+		if ((type < 0) || (type > this.externalizers.size()))
+		{
+			throw new IllegalArgumentException(String.valueOf(type));
+		}
+
+		try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(buffer, offset + 1, length - 1)))
+		{
+			return this.externalizers.get(type - 1).readCommand(input, this.members);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads objects of a given type to and from a compact binary form.
+ * @author Paul Ferraro
+ * @param <T> the externalized type
+ */
+public interface Externalizer<T>
+{
+	/**
+	 * Writes the specified object to the specified output.
+	 * @param output a data output
+	 * @param object the object to write
+	 * @throws IOException if the object could not be written
+	 */
+	void writeObject(DataOutput output, T object) throws IOException;
+
+	/**
+	 * Reads an object from the specified input.
+	 * @param input a data input
+	 * @return the object read
+	 * @throws IOException if the object could not be read
+	 */
+	T readObject(DataInput input) throws IOException;
+}
@@ -0,0 +1,68 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.jgroups;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.sf.hajdbc.distributed.Externalizer;
+import net.sf.hajdbc.distributed.Member;
+
+import org.jgroups.util.Util;
+
+/**
+ * Externalizes a group member using the compact binary form of its JGroups address.
+ * @author Paul Ferraro
+ */
+public class AddressMemberExternalizer implements Externalizer<Member>
+{
+	@Override
+	public void writeObject(DataOutput output, Member member) throws IOException
+	{
+		try
+		{
+			Util.writeAddress(((AddressMember) member).getAddress(), output);
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IOException(e);
+		}
+	}
+
+	@Override
+	public Member readObject(DataInput input) throws IOException
+	{
+		try
+		{
+			return new AddressMember(Util.readAddress(input));
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IOException(e);
+		}
+	}
+}
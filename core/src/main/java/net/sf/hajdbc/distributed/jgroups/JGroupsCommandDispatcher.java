@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import net.sf.hajdbc.distributed.Command;
 import net.sf.hajdbc.distributed.CommandDispatcher;
+import net.sf.hajdbc.distributed.CommandMarshaller;
 import net.sf.hajdbc.distributed.Member;
 import net.sf.hajdbc.distributed.MembershipListener;
 import net.sf.hajdbc.distributed.Stateful;
@@ -35,7 +36,6 @@ import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.util.ObjectInputStream;
-import net.sf.hajdbc.util.Objects;
 
 import org.jgroups.Address;
 import org.jgroups.Channel;
@@ -66,6 +66,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	private final AtomicReference<View> viewReference = new AtomicReference<>();
 	private final MembershipListener membershipListener;
 	private final Stateful stateful;
+	private final CommandMarshaller marshaller = new CommandMarshaller(new AddressMemberExternalizer(), JGroupsCommandDispatcher.class.getClassLoader());
 	
 	/**
 	 * Constructs a new ChannelCommandDispatcher.
@@ -126,18 +127,8 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public <R> Map<Member, R> executeAll(Command<R, C> command, Member... excludedMembers)
 	{
-		Message message = new Message(null, this.getLocalAddress(), Objects.serialize(command));
-		RequestOptions options = new RequestOptions(ResponseMode.GET_ALL, this.timeout);
-
-		if ((excludedMembers != null) && (excludedMembers.length > 0))
-		{
-			Address[] exclusions = new Address[excludedMembers.length];
-			for (int i = 0; i < excludedMembers.length; ++i)
-			{
-				exclusions[i] = ((AddressMember) excludedMembers[i]).getAddress();
-			}
-			options.setExclusionList(exclusions);
-		}
+		Message message = new Message(null, this.getLocalAddress(), this.marshaller.marshal(command));
+		RequestOptions options = this.createRequestOptions(ResponseMode.GET_ALL, excludedMembers);
 
 		try
 		{
@@ -162,6 +153,44 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#executeAllAsync(net.sf.hajdbc.distributed.Command, net.sf.hajdbc.distributed.Member[])
+	 */
+	@Override
+	public void executeAllAsync(Command<?, C> command, Member... excludedMembers)
+	{
+		// Regular (i.e. non-OOB) messages are delivered in sender order
+		Message message = new Message(null, this.getLocalAddress(), this.marshaller.marshal(command));
+
+		try
+		{
+			this.dispatcher.castMessage(null, message, this.createRequestOptions(ResponseMode.GET_NONE, excludedMembers));
+		}
+		catch (Exception e)
+		{
+			// Callers cannot otherwise detect that the command was lost
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private RequestOptions createRequestOptions(ResponseMode mode, Member... excludedMembers)
+	{
+		RequestOptions options = new RequestOptions(mode, this.timeout);
+
+		if ((excludedMembers != null) && (excludedMembers.length > 0))
+		{
+			Address[] exclusions = new Address[excludedMembers.length];
+			for (int i = 0; i < excludedMembers.length; ++i)
+			{
+				exclusions[i] = ((AddressMember) excludedMembers[i]).getAddress();
+			}
+			options.setExclusionList(exclusions);
+		}
+
+		return options;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.distributed.CommandDispatcher#executeCoordinator(net.sf.hajdbc.distributed.Command)
@@ -169,7 +198,7 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public <R> R execute(Command<R, C> command, Member member)
 	{
-		Message message = new Message(((AddressMember) member).getAddress(), this.getLocalAddress(), Objects.serialize(command));
+		Message message = new Message(((AddressMember) member).getAddress(), this.getLocalAddress(), this.marshaller.marshal(command));
 		
 		try
 		{
@@ -219,7 +248,8 @@ public class JGroupsCommandDispatcher<C> implements RequestHandler, CommandDispa
 	@Override
 	public Object handle(Message message)
 	{
-		Command<Object, C> command = Objects.deserialize(message.getRawBuffer(), Command.class);
+		@SuppressWarnings("unchecked")
+		Command<Object, C> command = (Command<Object, C>) this.marshaller.unmarshal(message.getRawBuffer(), message.getOffset(), message.getLength());
 
 		this.logger.log(Level.DEBUG, "{0} received from {1}", command, message.getSrc());
 		
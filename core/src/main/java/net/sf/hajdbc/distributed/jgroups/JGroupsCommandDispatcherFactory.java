@@ -17,6 +17,8 @@
  */
 package net.sf.hajdbc.distributed.jgroups;
 
+import java.util.concurrent.ThreadFactory;
+
 import net.sf.hajdbc.distributed.CommandDispatcher;
 import net.sf.hajdbc.distributed.CommandDispatcherFactory;
 import net.sf.hajdbc.distributed.MembershipListener;
@@ -48,7 +50,7 @@ public class JGroupsCommandDispatcherFactory implements CommandDispatcherFactory
 	}
 
 	@Override
-	public <C> CommandDispatcher<C> createCommandDispatcher(String id, C context, Stateful stateful, MembershipListener membershipListener) throws Exception
+	public <C> CommandDispatcher<C> createCommandDispatcher(String id, C context, Stateful stateful, MembershipListener membershipListener, ThreadFactory threadFactory) throws Exception
 	{
 		Channel channel = new JChannel(this.stack);
 		if (this.name != null)
@@ -0,0 +1,476 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.CommandDispatcher;
+import net.sf.hajdbc.distributed.CommandMarshaller;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.distributed.MembershipListener;
+import net.sf.hajdbc.distributed.Stateful;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * A command dispatcher that simulates a group member within the current JVM.
+ * Commands are marshalled, and delivered to each recipient via a dedicated channel per sender, which preserves sender order, like a reliable multicast.
+ * Commands sent to other members are delayed by the configured latency, as are their responses.
+ * Lost messages are not discarded, but rather retransmitted, i.e. delayed by the retransmit interval, and delay any subsequent commands from the same sender.
+ * @author Paul Ferraro
+ * @param <C> the execution context type
+ */
+public class LoopbackCommandDispatcher<C> implements CommandDispatcher<C>
+{
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	private final LoopbackGroup group;
+	private final LoopbackMember member;
+	private final long timeout;
+	private final long latency;
+	private final double loss;
+	private final long retransmitInterval;
+	private final C context;
+	private final Stateful stateful;
+	private final MembershipListener membershipListener;
+	private final ThreadFactory threadFactory;
+	private final CommandMarshaller marshaller = new CommandMarshaller(LoopbackMember.EXTERNALIZER, LoopbackCommandDispatcher.class.getClassLoader());
+	// Ordered delivery channels, per sender
+	private final ConcurrentMap<Member, ExecutorService> channels = new ConcurrentHashMap<>();
+	private volatile boolean connected = false;
+
+	/**
+	 * Constructs a new LoopbackCommandDispatcher.
+	 * @param id the group identifier
+	 * @param member the local member
+	 * @param timeout the command timeout, in milliseconds
+	 * @param latency the one-way delivery latency between members, in milliseconds
+	 * @param loss the probability that a given delivery attempt is lost
+	 * @param retransmitInterval the number of milliseconds after which a lost message is retransmitted
+	 * @param context the execution context
+	 * @param stateful the state transfer handler
+	 * @param membershipListener notified of membership changes
+	 * @param threadFactory creates the delivery threads of this member
+	 */
+	public LoopbackCommandDispatcher(String id, LoopbackMember member, long timeout, long latency, double loss, long retransmitInterval, C context, Stateful stateful, MembershipListener membershipListener, ThreadFactory threadFactory)
+	{
+		this.group = LoopbackGroup.getGroup(id);
+		this.member = member;
+		this.timeout = timeout;
+		this.latency = latency;
+		this.loss = loss;
+		this.retransmitInterval = retransmitInterval;
+		this.context = context;
+		this.stateful = stateful;
+		this.membershipListener = membershipListener;
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@Override
+	public void start() throws Exception
+	{
+		this.connected = true;
+
+		try
+		{
+			// Join and fetch state
+			this.group.join(this);
+		}
+		catch (Exception e)
+		{
+			this.crash();
+			throw e;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		this.leave(false);
+	}
+
+	/**
+	 * Simulates the failure of this member.
+	 * Any commands from this member that were not yet delivered are discarded.
+	 */
+	public void crash()
+	{
+		this.leave(true);
+	}
+
+	private void leave(boolean crashed)
+	{
+		this.connected = false;
+
+		this.group.leave(this, crashed);
+
+		for (ExecutorService channel: this.channels.values())
+		{
+			if (crashed)
+			{
+				channel.shutdownNow();
+			}
+			else
+			{
+				channel.shutdown();
+			}
+		}
+		this.channels.clear();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#executeAll(net.sf.hajdbc.distributed.Command, net.sf.hajdbc.distributed.Member[])
+	 */
+	@Override
+	public <R> Map<Member, R> executeAll(Command<R, C> command, Member... excludedMembers)
+	{
+		if (!this.connected) return Collections.emptyMap();
+
+		byte[] bytes = this.marshaller.marshal(command);
+		Map<Member, Future<Object>> futures = new TreeMap<>();
+		boolean remote = false;
+
+		for (LoopbackCommandDispatcher<?> dispatcher: this.group.getView())
+		{
+			LoopbackMember member = dispatcher.getLocal();
+
+			if (!contains(excludedMembers, member))
+			{
+				futures.put(member, dispatcher.receive(this.member, bytes, this.delay(dispatcher)));
+				remote |= (dispatcher != this);
+			}
+		}
+
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+		Map<Member, R> results = new TreeMap<>();
+
+		for (Map.Entry<Member, Future<Object>> entry: futures.entrySet())
+		{
+			results.put(entry.getKey(), this.<R>get(entry.getValue(), deadline));
+		}
+
+		if (remote)
+		{
+			// Simulate the latency of the responses, which travel concurrently
+			this.sleep(this.latency);
+		}
+
+		return results;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#executeAllAsync(net.sf.hajdbc.distributed.Command, net.sf.hajdbc.distributed.Member[])
+	 */
+	@Override
+	public void executeAllAsync(Command<?, C> command, Member... excludedMembers)
+	{
+		if (!this.connected) return;
+
+		byte[] bytes = this.marshaller.marshal(command);
+
+		for (LoopbackCommandDispatcher<?> dispatcher: this.group.getView())
+		{
+			if (!contains(excludedMembers, dispatcher.getLocal()))
+			{
+				dispatcher.receive(this.member, bytes, this.delay(dispatcher));
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#execute(net.sf.hajdbc.distributed.Command, net.sf.hajdbc.distributed.Member)
+	 */
+	@Override
+	public <R> R execute(Command<R, C> command, Member member)
+	{
+		if (!this.connected) return null;
+
+		for (LoopbackCommandDispatcher<?> dispatcher: this.group.getView())
+		{
+			if (dispatcher.getLocal().equals(member))
+			{
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+				R result = this.<R>get(dispatcher.receive(this.member, this.marshaller.marshal(command), this.delay(dispatcher)), deadline);
+				if (dispatcher != this)
+				{
+					this.sleep(this.latency);
+				}
+				return result;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#getLocal()
+	 */
+	@Override
+	public LoopbackMember getLocal()
+	{
+		return this.member;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.distributed.CommandDispatcher#getCoordinator()
+	 */
+	@Override
+	public LoopbackMember getCoordinator()
+	{
+		Iterator<LoopbackCommandDispatcher<?>> dispatchers = this.group.getView().iterator();
+
+		return dispatchers.hasNext() ? dispatchers.next().getLocal() : this.member;
+	}
+
+	/**
+	 * Schedules the delivery of the specified marshalled command from the specified sender.
+	 * @param sender the sending member
+	 * @param bytes a marshalled command
+	 * @param delay the number of nanoseconds by which delivery is delayed
+	 * @return the future result of the command execution, or null, if this member is not connected
+	 */
+	Future<Object> receive(Member sender, final byte[] bytes, long delay)
+	{
+		ExecutorService channel = this.getChannel(sender);
+
+		if (channel == null) return null;
+
+		final long time = System.nanoTime() + delay;
+		final Member source = sender;
+
+		try
+		{
+			return channel.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws InterruptedException
+				{
+					LoopbackCommandDispatcher.this.await(time);
+
+					return LoopbackCommandDispatcher.this.handle(bytes, source);
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			// Channel was closed
+			return null;
+		}
+	}
+
+	private Object handle(byte[] bytes, Member sender)
+	{
+		@SuppressWarnings("unchecked")
+		Command<Object, C> command = (Command<Object, C>) this.marshaller.unmarshal(bytes, 0, bytes.length);
+
+		this.logger.log(Level.DEBUG, "{0} received from {1}", command, sender);
+
+		return command.execute(this.context);
+	}
+
+	void added(Member member)
+	{
+		if (this.membershipListener != null)
+		{
+			this.membershipListener.added(member);
+		}
+	}
+
+	void removed(Member member)
+	{
+		if (this.membershipListener != null)
+		{
+			this.membershipListener.removed(member);
+		}
+	}
+
+	/**
+	 * Closes the delivery channel for the specified sender.
+	 * @param sender a departed member
+	 * @param discard indicates whether undelivered commands should be discarded
+	 */
+	void disconnect(Member sender, boolean discard)
+	{
+		ExecutorService channel = this.channels.remove(sender);
+
+		if (channel != null)
+		{
+			if (discard)
+			{
+				channel.shutdownNow();
+			}
+			else
+			{
+				channel.shutdown();
+			}
+		}
+	}
+
+	byte[] getState() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutput output = new ObjectOutputStream(bytes);
+		this.stateful.writeState(output);
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	void setState(byte[] state) throws IOException, ClassNotFoundException
+	{
+		this.stateful.readState(new ObjectInputStream(new ByteArrayInputStream(state)));
+	}
+
+	private ExecutorService getChannel(Member sender)
+	{
+		if (!this.connected) return null;
+
+		ExecutorService channel = this.channels.get(sender);
+
+		if (channel == null)
+		{
+			channel = Executors.newSingleThreadExecutor(this.threadFactory);
+			ExecutorService existing = this.channels.putIfAbsent(sender, channel);
+			if (existing != null)
+			{
+				channel.shutdown();
+				channel = existing;
+			}
+		}
+
+		return channel;
+	}
+
+	private long delay(LoopbackCommandDispatcher<?> recipient)
+	{
+		// Commands sent to self do not traverse the network
+		if (recipient == this) return 0;
+
+		long delay = TimeUnit.MILLISECONDS.toNanos(this.latency);
+
+		if (this.loss > 0)
+		{
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+
+			while (random.nextDouble() < this.loss)
+			{
+				delay += TimeUnit.MILLISECONDS.toNanos(this.retransmitInterval);
+			}
+		}
+
+		return delay;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R> R get(Future<Object> future, long deadline)
+	{
+		if (future == null) return null;
+
+		try
+		{
+			return (R) future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			this.logger.log(Level.WARN, e.getCause());
+			return null;
+		}
+		catch (TimeoutException e)
+		{
+			this.logger.log(Level.WARN, e);
+			return null;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	private void await(long time) throws InterruptedException
+	{
+		long delay = time - System.nanoTime();
+
+		while (delay > 0)
+		{
+			TimeUnit.NANOSECONDS.sleep(delay);
+			delay = time - System.nanoTime();
+		}
+	}
+
+	private void sleep(long millis)
+	{
+		if (millis <= 0) return;
+
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean contains(Member[] members, Member member)
+	{
+		if (members != null)
+		{
+			for (Member excluded: members)
+			{
+				if (excluded.equals(member)) return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.distributed.CommandDispatcherFactory;
+import net.sf.hajdbc.distributed.MembershipListener;
+import net.sf.hajdbc.distributed.Stateful;
+
+/**
+ * Factory for creating command dispatchers that simulate group members within the current JVM.
+ * Intended for testing and benchmarking the distributed lock and state managers without a network stack.
+ * All dispatchers created by a given factory share the same member name.
+
+ * @author Paul Ferraro
+ */
+public class LoopbackCommandDispatcherFactory implements CommandDispatcherFactory
+{
+	private static final long serialVersionUID = -4303286733581406546L;
+	private static final AtomicInteger counter = new AtomicInteger();
+
+	public static final long DEFAULT_TIMEOUT = 60000;
+	public static final long DEFAULT_RETRANSMIT_INTERVAL = 50;
+
+	private String name;
+	private long timeout = DEFAULT_TIMEOUT;
+	private long latency = 0;
+	private double loss = 0;
+	private long retransmitInterval = DEFAULT_RETRANSMIT_INTERVAL;
+
+	@Override
+	public String getId()
+	{
+		return "loopback";
+	}
+
+	@Override
+	public <C> LoopbackCommandDispatcher<C> createCommandDispatcher(String id, C context, Stateful stateful, MembershipListener membershipListener, ThreadFactory threadFactory)
+	{
+		return new LoopbackCommandDispatcher<>(id, new LoopbackMember(this.getName()), this.timeout, this.latency, this.loss, this.retransmitInterval, context, stateful, membershipListener, threadFactory);
+	}
+
+	public synchronized String getName()
+	{
+		if (this.name == null)
+		{
+			this.name = "loopback-" + counter.incrementAndGet();
+		}
+		return this.name;
+	}
+
+	public synchronized void setName(String name)
+	{
+		this.name = name;
+	}
+
+	public long getTimeout()
+	{
+		return this.timeout;
+	}
+
+	public void setTimeout(long timeout)
+	{
+		this.timeout = timeout;
+	}
+
+	public long getLatency()
+	{
+		return this.latency;
+	}
+
+	public void setLatency(long latency)
+	{
+		this.latency = latency;
+	}
+
+	public double getLoss()
+	{
+		return this.loss;
+	}
+
+	public void setLoss(double loss)
+	{
+		this.loss = loss;
+	}
+
+	public long getRetransmitInterval()
+	{
+		return this.retransmitInterval;
+	}
+
+	public void setRetransmitInterval(long retransmitInterval)
+	{
+		this.retransmitInterval = retransmitInterval;
+	}
+}
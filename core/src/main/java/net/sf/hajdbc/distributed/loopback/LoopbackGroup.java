@@ -0,0 +1,128 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in-process group of command dispatchers.
+ * The view of the group is ordered by join time, such that the longest standing member is the coordinator.
+ * View changes are serialized.
+ * Groups are never discarded, so that an empty group can be rejoined.
+ * @author Paul Ferraro
+ */
+class LoopbackGroup
+{
+	private static final ConcurrentMap<String, LoopbackGroup> groups = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the group with the specified identifier, creating it if necessary.
+	 * @param id a group identifier
+	 * @return an in-process group
+	 */
+	static LoopbackGroup getGroup(String id)
+	{
+		LoopbackGroup group = groups.get(id);
+
+		if (group == null)
+		{
+			group = new LoopbackGroup(id);
+			LoopbackGroup existing = groups.putIfAbsent(id, group);
+			if (existing != null)
+			{
+				group = existing;
+			}
+		}
+
+		return group;
+	}
+
+	private final String id;
+	private final List<LoopbackCommandDispatcher<?>> view = new CopyOnWriteArrayList<>();
+
+	private LoopbackGroup(String id)
+	{
+		this.id = id;
+	}
+
+	/**
+	 * Returns the current view of this group.
+	 * @return a list of dispatchers, ordered by join time
+	 */
+	List<LoopbackCommandDispatcher<?>> getView()
+	{
+		return this.view;
+	}
+
+	/**
+	 * Adds the specified dispatcher to this group, and transfers the state of the coordinator to it.
+	 * @param dispatcher a joining dispatcher
+	 * @throws Exception if state transfer failed
+	 */
+	synchronized void join(LoopbackCommandDispatcher<?> dispatcher) throws Exception
+	{
+		LoopbackMember member = dispatcher.getLocal();
+
+		for (LoopbackCommandDispatcher<?> existing: this.view)
+		{
+			if (existing.getLocal().equals(member))
+			{
+				throw new IllegalStateException(String.format("%s is already a member of %s", member, this.id));
+			}
+		}
+
+		LoopbackCommandDispatcher<?> coordinator = this.view.isEmpty() ? null : this.view.get(0);
+
+		this.view.add(dispatcher);
+
+		for (LoopbackCommandDispatcher<?> existing: this.view)
+		{
+			if (existing != dispatcher)
+			{
+				existing.added(member);
+			}
+			dispatcher.added(existing.getLocal());
+		}
+
+		if (coordinator != null)
+		{
+			dispatcher.setState(coordinator.getState());
+		}
+	}
+
+	/**
+	 * Removes the specified dispatcher from this group.
+	 * @param dispatcher a leaving dispatcher
+	 * @param crashed indicates whether any undelivered commands from the leaving member should be discarded
+	 */
+	synchronized void leave(LoopbackCommandDispatcher<?> dispatcher, boolean crashed)
+	{
+		if (!this.view.remove(dispatcher)) return;
+
+		LoopbackMember member = dispatcher.getLocal();
+
+		for (LoopbackCommandDispatcher<?> remaining: this.view)
+		{
+			remaining.disconnect(member, crashed);
+			remaining.removed(member);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.sf.hajdbc.distributed.Externalizer;
+import net.sf.hajdbc.distributed.Member;
+
+/**
+ * Identifies a member of an in-process group by name.
+ * 
+ * @author Paul Ferraro
+ */
+public class LoopbackMember implements Member
+{
+	private static final long serialVersionUID = 2470547386357209542L;
+
+	static final Externalizer<Member> EXTERNALIZER = new Externalizer<Member>()
+	{
+		@Override
+		public void writeObject(DataOutput output, Member member) throws IOException
+		{
+			output.writeUTF(((LoopbackMember) member).name);
+		}
+
+		@Override
+		public Member readObject(DataInput input) throws IOException
+		{
+			return new LoopbackMember(input.readUTF());
+		}
+	};
+
+	private final String name;
+
+	/**
+	 * Constructs a new LoopbackMember
+	 * @param name the member's name, unique within its group
+	 */
+	public LoopbackMember(String name)
+	{
+		this.name = name;
+	}
+
+	public String getName()
+	{
+		return this.name;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object object)
+	{
+		if ((object == null) || !(object instanceof LoopbackMember)) return false;
+
+		LoopbackMember member = (LoopbackMember) object;
+
+		return this.name.equals(member.name);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return this.name.hashCode();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return this.name;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(Member member)
+	{
+		return this.name.compareTo(((LoopbackMember) member).name);
+	}
+}
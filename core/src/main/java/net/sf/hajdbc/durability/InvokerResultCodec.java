@@ -0,0 +1,241 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+
+import javax.transaction.xa.XAException;
+
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Compact binary encoding of invoker results.
+ * The common result types, i.e. update counts, generated keys flags, and simple SQL/XA exceptions, are encoded as a version byte, a type tag, and the raw value.
+ * All other results fall back to Java serialization.
+ * Results encoded via Java serialization prior to the introduction of this codec remain decodable, since their stream header cannot be mistaken for a version byte.
+ * @author Paul Ferraro
+ */
+public final class InvokerResultCodec
+{
+	static final byte VERSION = 1;
+
+	static final byte NULL = 0;
+	static final byte INT = 1;
+	static final byte LONG = 2;
+	static final byte INT_ARRAY = 3;
+	static final byte BOOLEAN = 4;
+	static final byte SQL_EXCEPTION = 5;
+	static final byte XA_EXCEPTION = 6;
+	static final byte SERIALIZED = 7;
+
+	// First byte of the Java serialization stream magic number, i.e. 0xACED
+	private static final byte SERIALIZATION_MAGIC = (byte) 0xAC;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	/**
+	 * Encodes the specified invoker result.
+	 * @param result an invoker result
+	 * @return the encoded result, or null, if the result was null
+	 */
+	public static byte[] encode(InvokerResult result)
+	{
+		if (result == null) return null;
+
+		Exception exception = result.getException();
+
+		if (exception != null)
+		{
+			// Only encode exceptions whose comparison semantics are fully described by their state, code, and message
+			if ((exception.getClass() == SQLException.class) && (((SQLException) exception).getNextException() == null) && (exception.getCause() == null))
+			{
+				SQLException e = (SQLException) exception;
+				byte[] state = bytes(e.getSQLState());
+				byte[] message = bytes(e.getMessage());
+				ByteBuffer buffer = allocate(SQL_EXCEPTION, size(state) + 4 + size(message));
+				put(buffer, state);
+				buffer.putInt(e.getErrorCode());
+				put(buffer, message);
+				return buffer.array();
+			}
+			if ((exception.getClass() == XAException.class) && (exception.getCause() == null))
+			{
+				XAException e = (XAException) exception;
+				byte[] message = bytes(e.getMessage());
+				ByteBuffer buffer = allocate(XA_EXCEPTION, 4 + size(message));
+				buffer.putInt(e.errorCode);
+				put(buffer, message);
+				return buffer.array();
+			}
+		}
+		else
+		{
+			Object value = result.getValue();
+
+			if (value == null)
+			{
+				return allocate(NULL, 0).array();
+			}
+			if (value instanceof Integer)
+			{
+				return allocate(INT, 4).putInt((Integer) value).array();
+			}
+			if (value instanceof Long)
+			{
+				return allocate(LONG, 8).putLong((Long) value).array();
+			}
+			if (value instanceof Boolean)
+			{
+				return allocate(BOOLEAN, 1).put(((Boolean) value).booleanValue() ? (byte) 1 : (byte) 0).array();
+			}
+			if (value instanceof int[])
+			{
+				int[] values = (int[]) value;
+				ByteBuffer buffer = allocate(INT_ARRAY, 4 + (4 * values.length));
+				buffer.putInt(values.length);
+				for (int i: values)
+				{
+					buffer.putInt(i);
+				}
+				return buffer.array();
+			}
+		}
+
+		byte[] serialized = Objects.serialize(result);
+		return allocate(SERIALIZED, serialized.length).put(serialized).array();
+	}
+
+	/**
+	 * Decodes the specified invoker result.
+	 * @param bytes an encoded invoker result, or a Java serialized invoker result
+	 * @return an invoker result, or null, if the specified bytes were null
+	 */
+	public static InvokerResult decode(byte[] bytes)
+	{
+		if (bytes == null) return null;
+
+		if ((bytes.length > 0) && (bytes[0] == SERIALIZATION_MAGIC))
+		{
+			return Objects.deserialize(bytes, InvokerResult.class);
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		byte version = buffer.get();
+		if (version != VERSION)
+		{
+			throw new IllegalArgumentException(String.valueOf(version));
+		}
+
+		byte type = buffer.get();
+		switch (type)
+		{
+			case NULL:
+			{
+				return new InvokerResultImpl((Object) null);
+			}
+			case INT:
+			{
+				return new InvokerResultImpl(buffer.getInt());
+			}
+			case LONG:
+			{
+				return new InvokerResultImpl(buffer.getLong());
+			}
+			case BOOLEAN:
+			{
+				return new InvokerResultImpl(buffer.get() != 0);
+			}
+			case INT_ARRAY:
+			{
+				int[] values = new int[buffer.getInt()];
+				for (int i = 0; i < values.length; ++i)
+				{
+					values[i] = buffer.getInt();
+				}
+				return new InvokerResultImpl(values);
+			}
+			case SQL_EXCEPTION:
+			{
+				String state = string(buffer);
+				int code = buffer.getInt();
+				String message = string(buffer);
+				return new InvokerResultImpl(new SQLException(message, state, code));
+			}
+			case XA_EXCEPTION:
+			{
+				int code = buffer.getInt();
+				String message = string(buffer);
+				XAException exception = new XAException(message);
+				exception.errorCode = code;
+				return new InvokerResultImpl(exception);
+			}
+			case SERIALIZED:
+			{
+				byte[] serialized = new byte[buffer.remaining()];
+				buffer.get(serialized);
+				return Objects.deserialize(serialized, InvokerResult.class);
+			}
+			default:
+			{
+				throw new IllegalArgumentException(String.valueOf(type));
+			}
+		}
+	}
+
+	private static ByteBuffer allocate(byte type, int size)
+	{
+		return ByteBuffer.allocate(2 + size).put(VERSION).put(type);
+	}
+
+	private static byte[] bytes(String value)
+	{
+		return (value != null) ? value.getBytes(CHARSET) : null;
+	}
+
+	private static int size(byte[] bytes)
+	{
+		return 4 + ((bytes != null) ? bytes.length : 0);
+	}
+
+	private static void put(ByteBuffer buffer, byte[] bytes)
+	{
+		if (bytes != null)
+		{
+			buffer.putInt(bytes.length).put(bytes);
+		}
+		else
+		{
+			buffer.putInt(-1);
+		}
+	}
+
+	private static String string(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0) return null;
+		String value = new String(buffer.array(), buffer.position(), length, CHARSET);
+		buffer.position(buffer.position() + length);
+		return value;
+	}
+
+	private InvokerResultCodec()
+	{
+		// Hide
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.async;
+
+import java.util.SortedMap;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.Lifecycle;
+import net.sf.hajdbc.durability.fine.FineDurability;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.sql.ProxyFactory;
+
+/**
+ * {@link net.sf.hajdbc.durability.Durability} implementation that tracks invocations as well as per-database invokers, like {@link FineDurability},
+ * but publishes durability events to a ring buffer, from which a single thread forwards them to the state manager.
+ * An invoker only waits for its events to be recorded when its phase requires it, i.e. when committing or preparing a transaction,
+ * both before invoking the database, and before returning its result.
+ * Otherwise, recovery after a crash could not distinguish a database that completed its commit from one that did not, and would deactivate it.
+ * Since events are recorded in order, these barriers also guarantee that the enclosing invocation was recorded.
+ * Concurrent commits share the consumer's batches, so their barriers are satisfied by the same group commit.
+ * Events passed to the state manager are reused, and are therefore only valid for the duration of the callback.
+ * @author Paul Ferraro
+ */
+public class AsyncDurability<Z, D extends Database<Z>> extends FineDurability<Z, D> implements Lifecycle
+{
+	private final int bufferSize;
+	private volatile EventRingBuffer buffer;
+
+	public AsyncDurability(DatabaseCluster<Z, D> cluster, int bufferSize)
+	{
+		super(cluster);
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@Override
+	public void start()
+	{
+		// State manager is not yet available during construction
+		this.buffer = new EventRingBuffer(this.cluster.getStateManager(), this.bufferSize, this.cluster.getThreadFactory());
+		this.buffer.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		EventRingBuffer buffer = this.buffer;
+		if (buffer != null)
+		{
+			buffer.stop();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.coarse.CoarseDurability#getInvocationStrategy(net.sf.hajdbc.invocation.InvocationStrategy, net.sf.hajdbc.durability.Durability.Phase, java.lang.Object)
+	 */
+	@Override
+	public InvocationStrategy getInvocationStrategy(final InvocationStrategy strategy, final Phase phase, final Object transactionId)
+	{
+		final EventRingBuffer buffer = this.buffer;
+
+		if (buffer == null) return super.getInvocationStrategy(strategy, phase, transactionId);
+
+		return new InvocationStrategy()
+		{
+			@Override
+			public <ZZ, DD extends Database<ZZ>, T, R, EE extends Exception> SortedMap<DD, R> invoke(ProxyFactory<ZZ, DD, T, EE> proxy, Invoker<ZZ, DD, T, R, EE> invoker) throws EE
+			{
+				ExceptionType type = proxy.getExceptionFactory().getType();
+
+				buffer.publish(EventRingBuffer.BEFORE_INVOCATION, transactionId, phase, type, null, null, null, false);
+
+				try
+				{
+					return strategy.invoke(proxy, invoker);
+				}
+				catch (Exception e)
+				{
+					throw proxy.getExceptionFactory().createException(e);
+				}
+				finally
+				{
+					buffer.publish(EventRingBuffer.AFTER_INVOCATION, transactionId, phase, type, null, null, null, false);
+				}
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.fine.FineDurability#getInvoker(net.sf.hajdbc.invocation.Invoker, net.sf.hajdbc.durability.Durability.Phase, java.lang.Object, net.sf.hajdbc.ExceptionFactory)
+	 */
+	@Override
+	public <T, R, E extends Exception> Invoker<Z, D, T, R, E> getInvoker(final Invoker<Z, D, T, R, E> invoker, final Phase phase, final Object transactionId, final ExceptionFactory<E> exceptionFactory)
+	{
+		final EventRingBuffer buffer = this.buffer;
+
+		if (buffer == null) return super.getInvoker(invoker, phase, transactionId, exceptionFactory);
+
+		final boolean barrier = (phase == Phase.COMMIT) || (phase == Phase.PREPARE);
+
+		return new Invoker<Z, D, T, R, E>()
+		{
+			@Override
+			public R invoke(D database, T object) throws E
+			{
+				String databaseId = database.getId();
+
+				long sequence = buffer.publish(EventRingBuffer.BEFORE_INVOKER, transactionId, phase, null, databaseId, null, null, false);
+
+				if (barrier)
+				{
+					buffer.await(sequence);
+				}
+
+				R result = null;
+				Exception exception = null;
+				try
+				{
+					result = invoker.invoke(database, object);
+
+					return result;
+				}
+				catch (Exception e)
+				{
+					exception = e;
+
+					throw exceptionFactory.createException(e);
+				}
+				finally
+				{
+					long completion = buffer.publish(EventRingBuffer.AFTER_INVOKER, transactionId, phase, null, databaseId, result, exception, true);
+
+					if (barrier)
+					{
+						buffer.await(completion);
+					}
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.async;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityEvent;
+import net.sf.hajdbc.durability.DurabilityListener;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Multi-producer, single-consumer ring buffer of preallocated durability event slots.
+ * Producers claim a sequence, fill the corresponding slot, and publish it.
+ * A single consumer thread forwards published events, in sequence order, to a durability listener,
+ * and advances the consumed sequence once per batch, i.e. once per run of contiguous published slots.
+ * The events passed to the listener are views of a slot, and are only valid for the duration of the callback.
+ * Once stopped, the claim counter is flagged, so that a sequence is either claimed before the stop, and forwarded by the consumer, or not at all, and forwarded directly by the producer.
+ * @author Paul Ferraro
+ */
+class EventRingBuffer implements Runnable
+{
+	static final byte BEFORE_INVOCATION = 0;
+	static final byte AFTER_INVOCATION = 1;
+	static final byte BEFORE_INVOKER = 2;
+	static final byte AFTER_INVOKER = 3;
+
+	// Flags the claim counter once this buffer is stopped
+	private static final long STOPPED = 1L << 62;
+
+	private static final Logger logger = LoggerFactory.getLogger(EventRingBuffer.class);
+
+	private final DurabilityListener listener;
+	private final Slot[] slots;
+	private final int mask;
+	private final Thread consumer;
+	// Number of claimed sequences, i.e. the next sequence to claim, possibly flagged as stopped
+	private final AtomicLong claims = new AtomicLong();
+	// Last sequence forwarded to the listener
+	private final AtomicLong consumed = new AtomicLong(-1);
+	private final AtomicInteger waiting = new AtomicInteger();
+	private final Object monitor = new Object();
+	private volatile boolean sleeping = false;
+
+	/**
+	 * @param listener the listener to which events are forwarded
+	 * @param size the minimum number of slots, rounded up to a power of 2
+	 * @param threadFactory the factory for the consumer thread
+	 */
+	EventRingBuffer(DurabilityListener listener, int size, ThreadFactory threadFactory)
+	{
+		this.listener = listener;
+		int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+		this.slots = new Slot[capacity];
+		for (int i = 0; i < capacity; ++i)
+		{
+			this.slots[i] = new Slot();
+		}
+		this.mask = capacity - 1;
+		this.consumer = threadFactory.newThread(this);
+	}
+
+	void start()
+	{
+		this.consumer.start();
+	}
+
+	/**
+	 * Stops the consumer thread, after it forwards all published events.
+	 */
+	void stop()
+	{
+		long claims = this.claims.get();
+		while (((claims & STOPPED) == 0) && !this.claims.compareAndSet(claims, claims | STOPPED))
+		{
+			claims = this.claims.get();
+		}
+		LockSupport.unpark(this.consumer);
+		try
+		{
+			this.consumer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Publishes the specified event.
+	 * @return the sequence of the published event, or -1, if the event was forwarded directly, since this buffer was stopped
+	 */
+	long publish(byte type, Object transactionId, Durability.Phase phase, ExceptionType exceptionType, String databaseId, Object value, Exception exception, boolean completed)
+	{
+		// Check for stop and claim a sequence atomically, otherwise a claimed sequence might never be consumed
+		long sequence = this.claims.get();
+		while (((sequence & STOPPED) == 0) && !this.claims.compareAndSet(sequence, sequence + 1))
+		{
+			sequence = this.claims.get();
+		}
+
+		if ((sequence & STOPPED) != 0)
+		{
+			Slot slot = new Slot();
+			slot.set(type, transactionId, phase, exceptionType, databaseId, value, exception, completed);
+			slot.forward(this.listener);
+			return -1;
+		}
+
+		// Wait for the previous occupant of this slot to be consumed
+		if (sequence - this.slots.length > this.consumed.get())
+		{
+			this.await(sequence - this.slots.length);
+		}
+
+		Slot slot = this.slots[(int) sequence & this.mask];
+		slot.set(type, transactionId, phase, exceptionType, databaseId, value, exception, completed);
+		slot.sequence = sequence;
+
+		if (this.sleeping)
+		{
+			LockSupport.unpark(this.consumer);
+		}
+
+		return sequence;
+	}
+
+	/**
+	 * Waits until the event with the specified sequence, and all prior events, were forwarded to the listener.
+	 * @param sequence an event sequence
+	 */
+	void await(long sequence)
+	{
+		if (this.consumed.get() >= sequence) return;
+
+		boolean interrupted = false;
+		this.waiting.incrementAndGet();
+		try
+		{
+			synchronized (this.monitor)
+			{
+				while (this.consumed.get() < sequence)
+				{
+					try
+					{
+						this.monitor.wait();
+					}
+					catch (InterruptedException e)
+					{
+						// Durability barrier must not be abandoned
+						interrupted = true;
+					}
+				}
+			}
+		}
+		finally
+		{
+			this.waiting.decrementAndGet();
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Forwards published events to the listener, until stopped.
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		long next = this.consumed.get() + 1;
+
+		while (true)
+		{
+			Slot slot = this.slots[(int) next & this.mask];
+
+			// Bound batch size, so that blocked producers are not starved
+			if ((slot.sequence == next) && (next - this.consumed.get() <= this.mask))
+			{
+				slot.forward(this.listener);
+				next += 1;
+				continue;
+			}
+
+			// End of batch
+			if (this.consumed.get() != next - 1)
+			{
+				this.consumed.set(next - 1);
+
+				if (this.waiting.get() > 0)
+				{
+					synchronized (this.monitor)
+					{
+						this.monitor.notifyAll();
+					}
+				}
+				continue;
+			}
+
+			// Once stopped, no further sequences can be claimed
+			long claims = this.claims.get();
+			if (((claims & STOPPED) != 0) && ((claims & ~STOPPED) == next)) return;
+
+			this.sleeping = true;
+			// Re-check to avoid a lost wake-up
+			if (slot.sequence != next)
+			{
+				LockSupport.park(this);
+			}
+			this.sleeping = false;
+		}
+	}
+
+	static class Slot
+	{
+		volatile long sequence = -1;
+
+		byte type;
+		Object transactionId;
+		Durability.Phase phase;
+		ExceptionType exceptionType;
+		String databaseId;
+		Object value;
+		Exception exception;
+		boolean completed;
+
+		private final InvocationEvent invocation = new InvocationView();
+		private final InvokerEvent invoker = new InvokerView();
+		private final InvokerResult result = new ResultView();
+
+		void set(byte type, Object transactionId, Durability.Phase phase, ExceptionType exceptionType, String databaseId, Object value, Exception exception, boolean completed)
+		{
+			this.type = type;
+			this.transactionId = transactionId;
+			this.phase = phase;
+			this.exceptionType = exceptionType;
+			this.databaseId = databaseId;
+			this.value = value;
+			this.exception = exception;
+			this.completed = completed;
+		}
+
+		void forward(DurabilityListener listener)
+		{
+			try
+			{
+				switch (this.type)
+				{
+					case BEFORE_INVOCATION:
+					{
+						listener.beforeInvocation(this.invocation);
+						break;
+					}
+					case AFTER_INVOCATION:
+					{
+						listener.afterInvocation(this.invocation);
+						break;
+					}
+					case BEFORE_INVOKER:
+					{
+						listener.beforeInvoker(this.invoker);
+						break;
+					}
+					case AFTER_INVOKER:
+					{
+						listener.afterInvoker(this.invoker);
+						break;
+					}
+				}
+			}
+			catch (RuntimeException e)
+			{
+				logger.log(Level.ERROR, e, e.getMessage());
+			}
+			finally
+			{
+				// Release references, since slot may not be reused for some time
+				this.set(this.type, null, null, null, null, null, null, false);
+			}
+		}
+
+		private abstract class EventView implements DurabilityEvent, Serializable
+		{
+			private static final long serialVersionUID = -4059651622612962437L;
+
+			@Override
+			public Object getTransactionId()
+			{
+				return Slot.this.transactionId;
+			}
+
+			@Override
+			public Durability.Phase getPhase()
+			{
+				return Slot.this.phase;
+			}
+
+			@Override
+			public boolean equals(Object object)
+			{
+				if (!(object instanceof DurabilityEvent)) return false;
+				DurabilityEvent event = (DurabilityEvent) object;
+				return (Slot.this.phase == event.getPhase()) && Slot.this.transactionId.equals(event.getTransactionId());
+			}
+
+			@Override
+			public int hashCode()
+			{
+				return Slot.this.transactionId.hashCode();
+			}
+
+			@Override
+			public String toString()
+			{
+				return String.valueOf(Slot.this.transactionId);
+			}
+		}
+
+		private class InvocationView extends EventView implements InvocationEvent
+		{
+			private static final long serialVersionUID = 7093442165473462329L;
+
+			@Override
+			public ExceptionType getExceptionType()
+			{
+				return Slot.this.exceptionType;
+			}
+
+			// Views are transient, so serialize a copy
+			Object writeReplace()
+			{
+				return new InvocationEventImpl(Slot.this.transactionId, Slot.this.phase, Slot.this.exceptionType);
+			}
+		}
+
+		private class InvokerView extends EventView implements InvokerEvent
+		{
+			private static final long serialVersionUID = -8281342340155573539L;
+
+			@Override
+			public String getDatabaseId()
+			{
+				return Slot.this.databaseId;
+			}
+
+			@Override
+			public InvokerResult getResult()
+			{
+				return Slot.this.completed ? Slot.this.result : null;
+			}
+
+			@Override
+			public void setResult(InvokerResult result)
+			{
+				Slot.this.completed = (result != null);
+				Slot.this.value = (result != null) ? result.getValue() : null;
+				Slot.this.exception = (result != null) ? result.getException() : null;
+			}
+
+			@Override
+			public boolean equals(Object object)
+			{
+				return (object instanceof InvokerEvent) && super.equals(object) && Slot.this.databaseId.equals(((InvokerEvent) object).getDatabaseId());
+			}
+
+			@Override
+			public int hashCode()
+			{
+				return super.hashCode();
+			}
+
+			// Views are transient, so serialize a copy
+			Object writeReplace()
+			{
+				InvokerEvent event = new InvokerEventImpl(Slot.this.transactionId, Slot.this.phase, Slot.this.databaseId);
+				if (Slot.this.completed)
+				{
+					event.setResult((Slot.this.exception != null) ? new InvokerResultImpl(Slot.this.exception) : new InvokerResultImpl(Slot.this.value));
+				}
+				return event;
+			}
+		}
+
+		private class ResultView implements InvokerResult
+		{
+			@Override
+			public Object getValue()
+			{
+				return Slot.this.value;
+			}
+
+			@Override
+			public Exception getException()
+			{
+				return Slot.this.exception;
+			}
+		}
+	}
+}
@@ -17,8 +17,14 @@
  */
 package net.sf.hajdbc.durability.coarse;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
@@ -106,9 +112,107 @@ public class CoarseDurability<Z, D extends Database<Z>> extends NoDurability<Z,
 			this.cluster.deactivate(database, stateManager);
 		}
 
-		for (InvocationEvent event: invokers.keySet())
+		this.complete(invokers.keySet());
+	}
+
+	/**
+	 * Discards the specified recovered invocations from the state manager.
+	 * Invocations are discarded concurrently, so that state managers that support group commit can batch them.
+	 * @param invocations a collection of recovered invocations
+	 */
+	protected void complete(Collection<InvocationEvent> invocations)
+	{
+		final StateManager stateManager = this.cluster.getStateManager();
+
+		this.execute(invocations, new RecoveryTask<InvocationEvent>()
+		{
+			@Override
+			public void execute(InvocationEvent invocation)
+			{
+				stateManager.afterInvocation(invocation);
+			}
+		});
+	}
+
+	/**
+	 * Executes the specified task for each of the specified elements, partitioned across the cluster's executor, and waits for completion.
+	 * @param elements a collection of elements
+	 * @param task a task
+	 */
+	protected <T> void execute(Collection<T> elements, final RecoveryTask<T> task)
+	{
+		int partitions = Math.min(elements.size(), this.getParallelism());
+
+		if (partitions <= 1)
+		{
+			for (T element: elements)
+			{
+				task.execute(element);
+			}
+			return;
+		}
+
+		final List<List<T>> partitionList = new ArrayList<>(partitions);
+		for (int i = 0; i < partitions; ++i)
+		{
+			partitionList.add(new ArrayList<T>(elements.size() / partitions + 1));
+		}
+		int index = 0;
+		for (T element: elements)
+		{
+			partitionList.get(index++ % partitions).add(element);
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<>(partitions);
+		for (final List<T> partition: partitionList)
+		{
+			tasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					for (T element: partition)
+					{
+						task.execute(element);
+					}
+					return null;
+				}
+			});
+		}
+
+		try
+		{
+			for (Future<Void> future: this.cluster.getExecutor().invokeAll(tasks))
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
 		{
-			stateManager.afterInvocation(event);
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
 		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			throw (cause instanceof RuntimeException) ? (RuntimeException) cause : new IllegalStateException(cause);
+		}
+	}
+
+	/**
+	 * Returns the maximum number of partitions into which recovery work is split.
+	 * @return the number of available processors
+	 */
+	protected int getParallelism()
+	{
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * A unit of recovery work, applied to a single element.
+	 */
+	protected interface RecoveryTask<T>
+	{
+		void execute(T element);
 	}
 }
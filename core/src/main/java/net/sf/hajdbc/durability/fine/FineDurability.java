@@ -17,7 +17,12 @@
  */
 package net.sf.hajdbc.durability.fine;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
@@ -101,26 +106,44 @@ public class FineDurability<Z, D extends Database<Z>> extends CoarseDurability<Z
 	{
 		StateManager stateManager = this.cluster.getStateManager();
 		Balancer<Z, D> balancer = this.cluster.getBalancer();
-		D primary = balancer.primary();
-
-		for (Map.Entry<InvocationEvent, Map<String, InvokerEvent>> entry: map.entrySet())
+		final D primary = balancer.primary();
+		final List<D> backups = new ArrayList<>();
+		for (D backup: balancer.backups())
 		{
-			InvocationEvent invocation = entry.getKey();
-			Map<String, InvokerEvent> invokers = entry.getValue();
+			backups.add(backup);
+		}
+		final Set<D> inconsistent = Collections.newSetFromMap(new ConcurrentHashMap<D, Boolean>());
 
-			if (!invokers.isEmpty())
+		// Evaluate transactions concurrently, skipping backups already known to be inconsistent
+		this.execute(map.entrySet(), new RecoveryTask<Map.Entry<InvocationEvent, Map<String, InvokerEvent>>>()
+		{
+			@Override
+			public void execute(Map.Entry<InvocationEvent, Map<String, InvokerEvent>> entry)
 			{
-				for (D backup: balancer.backups())
+				Map<String, InvokerEvent> invokers = entry.getValue();
+
+				if (invokers.isEmpty() || (inconsistent.size() == backups.size())) return;
+
+				for (D backup: backups)
 				{
-					if (this.deactivateSlave(primary, backup, invocation, invokers))
+					if (!inconsistent.contains(backup) && FineDurability.this.deactivateSlave(primary, backup, entry.getKey(), invokers))
 					{
-						this.cluster.deactivate(backup, stateManager);
+						inconsistent.add(backup);
 					}
 				}
 			}
-			
-			stateManager.afterInvocation(invocation);
+		});
+
+		// Deactivate each inconsistent backup once, before discarding the invocations that implicate it
+		for (D backup: backups)
+		{
+			if (inconsistent.contains(backup))
+			{
+				this.cluster.deactivate(backup, stateManager);
+			}
 		}
+
+		this.complete(map.keySet());
 	}
 	
 	private boolean deactivateSlave(D primary, D backup, InvocationEvent invocation, Map<String, InvokerEvent> invokers)
@@ -1,5 +1,6 @@
 package net.sf.hajdbc.invocation;
 
+import java.sql.SQLException;
 import java.util.SortedMap;
 
 import net.sf.hajdbc.Database;
@@ -7,6 +8,7 @@ import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.sql.TransactionalProxyFactory;
 
 public enum InvocationStrategies implements InvocationStrategy
 {
@@ -32,6 +34,20 @@ public enum InvocationStrategies implements InvocationStrategy
 	public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> map, Invoker<Z, D, T, R, E> invoker) throws E
 	{
 		logger.log(Level.TRACE, "Invoking {0} using {1} strategy.", invoker, this);
+		
+		if (map instanceof TransactionalProxyFactory)
+		{
+			// Invocations on backup databases must not overtake any pipelined invocations
+			try
+			{
+				((TransactionalProxyFactory<?, ?, ?, ?>) map).getTransactionContext().await();
+			}
+			catch (SQLException e)
+			{
+				throw map.getExceptionFactory().createException(e);
+			}
+		}
+		
 		return this.strategy.invoke(map, invoker);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.util.concurrent.SerialExecutor;
+
+/**
+ * A set of ordered lanes, one per database, through which the invocations of a single connection are applied to backup databases.
+ * @author Paul Ferraro
+ */
+public class Pipeline
+{
+	private final ConcurrentMap<Database<?>, SerialExecutor> lanes = new ConcurrentHashMap<>();
+	private final Executor executor;
+
+	public Pipeline(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * Returns the lane of the specified database, creating it if necessary.
+	 * @param database a database
+	 * @return an executor that executes tasks in submission order
+	 */
+	public Executor getLane(Database<?> database)
+	{
+		SerialExecutor lane = this.lanes.get(database);
+
+		if (lane == null)
+		{
+			lane = new SerialExecutor(this.executor);
+
+			SerialExecutor existing = this.lanes.putIfAbsent(database, lane);
+
+			if (existing != null)
+			{
+				lane = existing;
+			}
+		}
+
+		return lane;
+	}
+
+	/**
+	 * Waits for all invocations pipelined to the specified database to complete.
+	 * @param database a database
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await(Database<?> database) throws InterruptedException
+	{
+		SerialExecutor lane = this.lanes.get(database);
+
+		if (lane != null)
+		{
+			lane.await();
+		}
+	}
+
+	/**
+	 * Waits for all pipelined invocations to complete.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await() throws InterruptedException
+	{
+		for (SerialExecutor lane: this.lanes.values())
+		{
+			lane.await();
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.invocation;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.messages.Messages;
+import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Invocation strategy that invokes the primary database in the caller thread, and returns as soon as it completes.
+ * Backup databases are invoked asynchronously via their lane of the specified pipeline, such that they apply invocations in the same order as the primary database.
+ * Backup databases whose results are inconsistent with the primary database are deactivated.
+ * Only appropriate for invocations whose result is fully described by the result of the primary database.
+ * @author Paul Ferraro
+ */
+public class PipelinedInvocationStrategy implements InvocationStrategy
+{
+	private static final Messages messages = MessagesFactory.getMessages();
+	private static final Logger logger = LoggerFactory.getLogger(PipelinedInvocationStrategy.class);
+
+	private final Pipeline pipeline;
+	private final boolean existing;
+
+	/**
+	 * @param pipeline the pipeline of the current connection
+	 * @param existing indicates whether to invoke only those databases with existing objects, or all active databases
+	 */
+	public PipelinedInvocationStrategy(Pipeline pipeline, boolean existing)
+	{
+		this.pipeline = pipeline;
+		this.existing = existing;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, R> invoke(ProxyFactory<Z, D, T, E> factory, Invoker<Z, D, T, R, E> invoker) throws E
+	{
+		DatabaseCluster<Z, D> cluster = factory.getDatabaseCluster();
+		ExceptionFactory<E> exceptionFactory = factory.getExceptionFactory();
+		StateManager stateManager = cluster.getStateManager();
+
+		while (true)
+		{
+			SortedMap<D, T> objects = this.getObjects(factory);
+
+			if (objects.isEmpty())
+			{
+				throw exceptionFactory.createException(messages.noActiveDatabases(cluster));
+			}
+
+			D primary = objects.firstKey();
+			T object = objects.remove(primary);
+
+			try
+			{
+				// Primary database may have been a backup database, prior to a deactivation
+				this.pipeline.await(primary);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw exceptionFactory.createException(e);
+			}
+
+			try
+			{
+				R result = invoker.invoke(primary, object);
+
+				this.submit(cluster, exceptionFactory, invoker, objects, result, null);
+
+				SortedMap<D, R> resultMap = new TreeMap<>();
+				resultMap.put(primary, result);
+				return resultMap;
+			}
+			catch (Exception e)
+			{
+				E exception = exceptionFactory.createException(e);
+
+				// If the primary database failed, retry using the next database
+				if (!objects.isEmpty() && (!cluster.getBalancer().contains(primary) || exceptionFactory.indicatesFailure(exception, cluster.getDialect())))
+				{
+					if (cluster.deactivate(primary, stateManager))
+					{
+						logger.log(Level.ERROR, exception, messages.deactivated(cluster, primary));
+					}
+					continue;
+				}
+
+				// Backup databases are expected to throw the same exception
+				this.submit(cluster, exceptionFactory, invoker, objects, null, exception);
+
+				throw exception;
+			}
+		}
+	}
+
+	private <Z, D extends Database<Z>, T, R, E extends Exception> SortedMap<D, T> getObjects(ProxyFactory<Z, D, T, E> factory)
+	{
+		SortedMap<D, T> objects = new TreeMap<>();
+
+		if (this.existing)
+		{
+			for (Map.Entry<D, T> entry: factory.entries())
+			{
+				objects.put(entry.getKey(), entry.getValue());
+			}
+		}
+		else
+		{
+			for (D database: factory.getDatabaseCluster().getBalancer())
+			{
+				T object = factory.get(database);
+
+				// Null object indicates that database was deactivated
+				if (object != null)
+				{
+					objects.put(database, object);
+				}
+			}
+		}
+
+		return objects;
+	}
+
+	private <Z, D extends Database<Z>, T, R, E extends Exception> void submit(final DatabaseCluster<Z, D> cluster, final ExceptionFactory<E> exceptionFactory, final Invoker<Z, D, T, R, E> invoker, SortedMap<D, T> backups, final R primaryResult, final E primaryException)
+	{
+		for (Map.Entry<D, T> entry: backups.entrySet())
+		{
+			final D database = entry.getKey();
+			final T object = entry.getValue();
+
+			this.pipeline.getLane(database).execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					// Skip databases deactivated since this invocation was pipelined
+					if (!cluster.getBalancer().contains(database)) return;
+
+					StateManager stateManager = cluster.getStateManager();
+
+					try
+					{
+						R result = invoker.invoke(database, object);
+
+						if (primaryException != null)
+						{
+							if (cluster.deactivate(database, stateManager))
+							{
+								logger.log(Level.ERROR, messages.inconsistent(cluster, database, primaryException, result));
+							}
+						}
+						else if (!Objects.equals(primaryResult, result))
+						{
+							if (cluster.deactivate(database, stateManager))
+							{
+								logger.log(Level.ERROR, messages.inconsistent(cluster, database, primaryResult, result));
+							}
+						}
+					}
+					catch (Exception e)
+					{
+						E exception = exceptionFactory.createException(e);
+
+						if (primaryException == null)
+						{
+							if (cluster.deactivate(database, stateManager))
+							{
+								logger.log(Level.ERROR, exception, messages.deactivated(cluster, database));
+							}
+						}
+						else if (!exceptionFactory.equals(exception, primaryException))
+						{
+							if (cluster.deactivate(database, stateManager))
+							{
+								logger.log(Level.ERROR, exception, messages.inconsistent(cluster, database, primaryException, exception));
+							}
+						}
+					}
+				}
+			});
+		}
+	}
+}
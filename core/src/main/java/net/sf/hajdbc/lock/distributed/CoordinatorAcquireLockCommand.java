@@ -37,6 +37,11 @@ public class CoordinatorAcquireLockCommand extends CoordinatorLockCommand<Boolea
 		this.timeout = timeout;
 	}
 
+	long getTimeout()
+	{
+		return this.timeout;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.lock.distributed.CoordinatorLockCommand#execute(java.util.concurrent.locks.Lock)
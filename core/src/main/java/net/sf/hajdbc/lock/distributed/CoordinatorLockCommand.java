@@ -46,6 +46,11 @@ public abstract class CoordinatorLockCommand<R> implements Command<R, LockComman
 		return this.execute(context.getDistibutedLock(this.descriptor));
 	}
 	
+	RemoteLockDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	protected abstract R execute(Lock lock);
 
 	/**
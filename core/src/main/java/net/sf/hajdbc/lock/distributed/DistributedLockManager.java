@@ -23,6 +23,8 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -56,7 +58,7 @@ public class DistributedLockManager implements LockManager, LockCommandContext,
 	{
 		this.lockManager = cluster.getLockManager();
 		LockCommandContext context = this;
-		this.dispatcher = dispatcherFactory.createCommandDispatcher(cluster.getId() + ".lock", context, this, this);
+		this.dispatcher = dispatcherFactory.createCommandDispatcher(cluster.getId() + ".lock", context, this, this, cluster.getThreadFactory());
 	}
 	
 	/**
@@ -149,24 +151,32 @@ public class DistributedLockManager implements LockManager, LockCommandContext,
 
 	/**
 	 * {@inheritDoc}
+	 * Writes all locks held on behalf of each member, i.e. the transferred state is always complete.
 	 * @see net.sf.hajdbc.distributed.Stateful#writeState(java.io.ObjectOutput)
 	 */
 	@Override
 	public void writeState(ObjectOutput output) throws IOException
 	{
-		output.writeInt(this.remoteLockDescriptorMap.size());
-		
-		for (Map.Entry<Member, Map<LockDescriptor, Lock>> entry: this.remoteLockDescriptorMap.entrySet())
+		Map<Member, Set<LockDescriptor>> snapshot = this.snapshot();
+
+		output.writeInt(snapshot.size());
+
+		for (Map.Entry<Member, Set<LockDescriptor>> entry: snapshot.entrySet())
 		{
 			output.writeObject(entry.getKey());
-			
-			Set<LockDescriptor> descriptors = entry.getValue().keySet();
-			
+
+			Set<LockDescriptor> descriptors = entry.getValue();
+
 			output.writeInt(descriptors.size());
-			
+
 			for (LockDescriptor descriptor: descriptors)
 			{
-				output.writeUTF(descriptor.getId());
+				String id = descriptor.getId();
+				output.writeBoolean(id != null);
+				if (id != null)
+				{
+					output.writeUTF(id);
+				}
 				output.writeByte(descriptor.getType().ordinal());
 			}
 		}
@@ -174,42 +184,121 @@ public class DistributedLockManager implements LockManager, LockCommandContext,
 
 	/**
 	 * {@inheritDoc}
+	 * The complete state is read before any locks are acquired, and is then applied in bulk, per member.
+	 * Locks already held on behalf of a member are retained, and only the difference is released or acquired.
+	 * Locks held on behalf of members unknown to the state provider are released.
 	 * @see net.sf.hajdbc.distributed.Stateful#readState(java.io.ObjectInput)
 	 */
 	@Override
 	public void readState(ObjectInput input) throws IOException
 	{
-		// Is this valid?  or should we unlock/clear?
-		//assert this.remoteLockDescriptorMap.isEmpty();
-		
-		int size = input.readInt();
-		
 		LockType[] types = LockType.values();
-		
+
+		int size = input.readInt();
+
+		Map<Member, Map<String, LockType>> state = new HashMap<>();
+
 		for (int i = 0; i < size; ++i)
 		{
 			Member member = Objects.readObject(input, Member.class);
-			
-			Map<LockDescriptor, Lock> map = new HashMap<>();
-			
+
+
 			int locks = input.readInt();
-			
+
+			Map<String, LockType> section = new HashMap<>();
+
 			for (int j = 0; j < locks; ++j)
 			{
-				String id = input.readUTF();
-				LockType type = types[input.readByte()];
-				
-				LockDescriptor descriptor = new RemoteLockDescriptorImpl(id, type, member);
-				
-				Lock lock = this.getLock(descriptor);
-				
-				lock.lock();
-				
-				map.put(descriptor, lock);
+				String id = input.readBoolean() ? input.readUTF() : null;
+				section.put(id, types[input.readByte()]);
 			}
-			
-			this.remoteLockDescriptorMap.put(member, map);
+
+			state.put(member, section);
+		}
+
+		Map<Member, Set<LockDescriptor>> snapshot = this.snapshot();
+
+		for (Map.Entry<Member, Map<String, LockType>> entry: state.entrySet())
+		{
+			this.apply(entry.getKey(), entry.getValue());
 		}
+
+		// Release locks held on behalf of members unknown to the state provider
+		for (Member member: snapshot.keySet())
+		{
+			if (!state.containsKey(member))
+			{
+				this.removed(member);
+			}
+		}
+	}
+
+	private void apply(Member member, Map<String, LockType> section)
+	{
+		this.added(member);
+
+		Map<LockDescriptor, Lock> locks = this.remoteLockDescriptorMap.get(member);
+
+		if (locks == null) return;
+
+		Map<String, LockType> acquire = new HashMap<>(section);
+
+		synchronized (locks)
+		{
+			Iterator<Map.Entry<LockDescriptor, Lock>> entries = locks.entrySet().iterator();
+
+			while (entries.hasNext())
+			{
+				Map.Entry<LockDescriptor, Lock> entry = entries.next();
+				LockDescriptor descriptor = entry.getKey();
+
+				if (acquire.get(descriptor.getId()) == descriptor.getType())
+				{
+					acquire.remove(descriptor.getId());
+				}
+				else
+				{
+					entry.getValue().unlock();
+					entries.remove();
+				}
+			}
+		}
+
+		Map<LockDescriptor, Lock> acquired = new HashMap<>();
+
+		// Acquire outside of synchronized block, since lock commands synchronize on the same map
+		for (Map.Entry<String, LockType> entry: acquire.entrySet())
+		{
+			LockDescriptor descriptor = new RemoteLockDescriptorImpl(entry.getKey(), entry.getValue(), member);
+
+			Lock lock = this.getLock(descriptor);
+
+			lock.lock();
+
+			acquired.put(descriptor, lock);
+		}
+
+		synchronized (locks)
+		{
+			locks.putAll(acquired);
+		}
+	}
+
+	private Map<Member, Set<LockDescriptor>> snapshot()
+	{
+		Map<Member, Set<LockDescriptor>> snapshot = new HashMap<>();
+
+		for (Map.Entry<Member, Map<LockDescriptor, Lock>> entry: this.remoteLockDescriptorMap.entrySet())
+		{
+			Map<LockDescriptor, Lock> locks = entry.getValue();
+
+			synchronized (locks)
+			{
+				snapshot.put(entry.getKey(), new HashSet<>(locks.keySet()));
+			}
+		}
+
+		return snapshot;
 	}
 
 	/**
@@ -457,7 +546,7 @@ public class DistributedLockManager implements LockManager, LockCommandContext,
 		}
 	}
 	
-	private static class RemoteLockDescriptorImpl implements RemoteLockDescriptor
+	static class RemoteLockDescriptorImpl implements RemoteLockDescriptor
 	{
 		private static final long serialVersionUID = 1950781245453120790L;
 		
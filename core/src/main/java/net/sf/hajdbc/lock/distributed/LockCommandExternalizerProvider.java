@@ -0,0 +1,152 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.lock.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.CommandExternalizerProvider;
+import net.sf.hajdbc.distributed.Externalizer;
+import net.sf.hajdbc.distributed.Member;
+
+/**
+ * Provides compact externalizers for the commands of the distributed lock manager.
+ * @author Paul Ferraro
+ */
+public class LockCommandExternalizerProvider implements CommandExternalizerProvider
+{
+	@Override
+	public Iterable<? extends CommandExternalizer<?>> getExternalizers()
+	{
+		return Arrays.<CommandExternalizer<?>>asList(
+			new CoordinatorAcquireLockCommandExternalizer(),
+			new CoordinatorReleaseLockCommandExternalizer(),
+			new MemberAcquireLockCommandExternalizer(),
+			new MemberReleaseLockCommandExternalizer()
+		);
+	}
+
+	static void writeDescriptor(DataOutput output, RemoteLockDescriptor descriptor, Externalizer<Member> members) throws IOException
+	{
+		// Global lock has no id
+		String id = descriptor.getId();
+		output.writeBoolean(id != null);
+		if (id != null)
+		{
+			output.writeUTF(id);
+		}
+		output.writeByte(descriptor.getType().ordinal());
+		members.writeObject(output, descriptor.getMember());
+	}
+
+	static RemoteLockDescriptor readDescriptor(DataInput input, Externalizer<Member> members) throws IOException
+	{
+		String id = input.readBoolean() ? input.readUTF() : null;
+		LockType type = LockType.values()[input.readByte()];
+		return new DistributedLockManager.RemoteLockDescriptorImpl(id, type, members.readObject(input));
+	}
+
+	static class CoordinatorAcquireLockCommandExternalizer implements CommandExternalizer<CoordinatorAcquireLockCommand>
+	{
+		@Override
+		public Class<CoordinatorAcquireLockCommand> getTargetClass()
+		{
+			return CoordinatorAcquireLockCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, CoordinatorAcquireLockCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor(), members);
+			output.writeLong(command.getTimeout());
+		}
+
+		@Override
+		public CoordinatorAcquireLockCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			RemoteLockDescriptor descriptor = readDescriptor(input, members);
+			return new CoordinatorAcquireLockCommand(descriptor, input.readLong());
+		}
+	}
+
+	static class CoordinatorReleaseLockCommandExternalizer implements CommandExternalizer<CoordinatorReleaseLockCommand>
+	{
+		@Override
+		public Class<CoordinatorReleaseLockCommand> getTargetClass()
+		{
+			return CoordinatorReleaseLockCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, CoordinatorReleaseLockCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public CoordinatorReleaseLockCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new CoordinatorReleaseLockCommand(readDescriptor(input, members));
+		}
+	}
+
+	static class MemberAcquireLockCommandExternalizer implements CommandExternalizer<MemberAcquireLockCommand>
+	{
+		@Override
+		public Class<MemberAcquireLockCommand> getTargetClass()
+		{
+			return MemberAcquireLockCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, MemberAcquireLockCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public MemberAcquireLockCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new MemberAcquireLockCommand(readDescriptor(input, members));
+		}
+	}
+
+	static class MemberReleaseLockCommandExternalizer implements CommandExternalizer<MemberReleaseLockCommand>
+	{
+		@Override
+		public Class<MemberReleaseLockCommand> getTargetClass()
+		{
+			return MemberReleaseLockCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, MemberReleaseLockCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeDescriptor(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public MemberReleaseLockCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new MemberReleaseLockCommand(readDescriptor(input, members));
+		}
+	}
+}
@@ -61,6 +61,11 @@ public class MemberAcquireLockCommand implements Command<Boolean, LockCommandCon
 		return locked;
 	}
 
+	RemoteLockDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see java.lang.Object#toString()
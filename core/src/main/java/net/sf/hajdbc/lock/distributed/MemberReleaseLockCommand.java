@@ -64,6 +64,11 @@ public class MemberReleaseLockCommand implements Command<Void, LockCommandContex
 		return null;
 	}
 
+	RemoteLockDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see java.lang.Object#toString()
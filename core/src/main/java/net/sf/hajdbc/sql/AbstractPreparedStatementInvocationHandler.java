@@ -79,12 +79,12 @@ public abstract class AbstractPreparedStatementInvocationHandler<Z, D extends Da
 		
 		if (this.setMethods.contains(method) || method.equals(clearParametersMethod) || method.equals(addBatchMethod))
 		{
-			return InvocationStrategies.INVOKE_ON_EXISTING;
+			return this.getProxyFactory().getTransactionContext().pipeline(InvocationStrategies.INVOKE_ON_EXISTING);
 		}
 		
 		if (method.equals(executeMethod) || method.equals(executeUpdateMethod))
 		{
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, this.getProxyFactory().getLocks()), this.getProxyFactory().getParentProxy());
+			return this.getProxyFactory().getTransactionContext().start(this.getProxyFactory().getLocks(), this.getProxyFactory().getParentProxy());
 		}
 		
 		if (method.equals(executeQueryMethod))
@@ -21,6 +21,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,7 @@ import java.util.concurrent.locks.Lock;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
 import net.sf.hajdbc.DatabaseProperties;
+import net.sf.hajdbc.IdentityColumnAllocator;
 import net.sf.hajdbc.IdentityColumnSupport;
 import net.sf.hajdbc.SequenceSupport;
 import net.sf.hajdbc.TableProperties;
@@ -87,7 +89,18 @@ public abstract class AbstractSQLProxyFactory<Z, D extends Database<Z>, P, T> ex
 		return this.extractLocks(Collections.singleton(sql));
 	}
 	
+	@Override
+	public List<Lock> extractLocks(String sql, boolean identityColumns) throws SQLException
+	{
+		return this.extractLocks(Collections.singleton(sql), identityColumns);
+	}
+	
 	protected List<Lock> extractLocks(Collection<String> statements) throws SQLException
+	{
+		return this.extractLocks(statements, true);
+	}
+	
+	private List<Lock> extractLocks(Collection<String> statements, boolean identityColumns) throws SQLException
 	{
 		Set<String> identifierSet = new TreeSet<>();
 		DatabaseCluster<Z, D> cluster = this.getDatabaseCluster();
@@ -109,7 +122,7 @@ public abstract class AbstractSQLProxyFactory<Z, D extends Database<Z>, P, T> ex
 				}
 			}
 			
-			if (cluster.isIdentityColumnDetectionEnabled())
+			if (identityColumns && cluster.isIdentityColumnDetectionEnabled())
 			{
 				IdentityColumnSupport support = cluster.getDialect().getIdentityColumnSupport();
 				
@@ -150,6 +163,53 @@ public abstract class AbstractSQLProxyFactory<Z, D extends Database<Z>, P, T> ex
 		return lockList;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * Returns null if identity column allocation is disabled, the specified SQL does not insert into a table with identity columns, or the statement cannot be rewritten.
+	 */
+	@Override
+	public String allocateIdentityColumns(String sql) throws SQLException
+	{
+		DatabaseCluster<Z, D> cluster = this.getDatabaseCluster();
+		IdentityColumnAllocator allocator = cluster.getIdentityColumnAllocator();
+		
+		if (allocator == null) return null;
+		
+		IdentityColumnSupport support = cluster.getDialect().getIdentityColumnSupport();
+		
+		if (support == null) return null;
+		
+		String table = support.parseInsertTable(sql);
+		
+		if (table == null) return null;
+		
+		TableProperties tableProperties = this.getDatabaseProperties().findTable(table);
+		
+		if (tableProperties == null)
+		{
+			throw new SQLException(this.messages.schemaLookupFailed(cluster, table));
+		}
+		
+		Collection<String> columns = tableProperties.getIdentityColumns();
+		
+		if (columns.isEmpty()) return null;
+		
+		// Verify that the statement can be rewritten before allocating any values
+		Map<String, Long> placeholders = new HashMap<>();
+		for (String column: columns)
+		{
+			placeholders.put(column, 0L);
+		}
+		
+		if (support.getInsertIdentityColumnSQL(sql, placeholders) == null) return null;
+		
+		Map<String, Long> values = allocator.allocate(tableProperties);
+		
+		if (values == null) return null;
+		
+		return support.getInsertIdentityColumnSQL(sql, values);
+	}
+
 	private DatabaseProperties getDatabaseProperties() throws SQLException
 	{
 		DatabaseCluster<Z, D> cluster = this.getDatabaseCluster();
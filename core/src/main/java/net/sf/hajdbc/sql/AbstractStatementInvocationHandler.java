@@ -87,9 +87,19 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 		
 		if (executeMethodSet.contains(method))
 		{
-			List<Lock> locks = this.getProxyFactory().extractLocks((String) parameters[0]);
+			String sql = (String) parameters[0];
+			// Callers requesting generated keys, via any overload with a second argument, rely on natively generated values
+			String identitySQL = (parameters.length == 1) ? this.getProxyFactory().allocateIdentityColumns(sql) : null;
+			
+			if (identitySQL != null)
+			{
+				parameters[0] = identitySQL;
+			}
+			
+			// Inserts supplying allocated identity column values do not need to lock their table
+			List<Lock> locks = this.getProxyFactory().extractLocks((String) parameters[0], identitySQL == null);
 			
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, locks), this.getProxyFactory().getParentProxy());
+			return this.getProxyFactory().getTransactionContext().start(locks, this.getProxyFactory().getParentProxy());
 		}
 		
 		if (method.equals(executeQueryMethod))
@@ -118,7 +128,7 @@ public abstract class AbstractStatementInvocationHandler<Z, D extends Database<Z
 		
 		if (method.equals(executeBatchMethod))
 		{
-			return this.getProxyFactory().getTransactionContext().start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, this.getProxyFactory().getBatchLocks()), this.getProxyFactory().getParentProxy());
+			return this.getProxyFactory().getTransactionContext().start(this.getProxyFactory().getBatchLocks(), this.getProxyFactory().getParentProxy());
 		}
 		
 		if (method.equals(getMoreResultsMethod))
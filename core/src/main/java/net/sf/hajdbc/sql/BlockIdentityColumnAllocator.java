@@ -0,0 +1,351 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2014  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.DatabaseClusterListener;
+import net.sf.hajdbc.IdentityColumnAllocator;
+import net.sf.hajdbc.IdentityColumnSupport;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.sync.SynchronizationSupportImpl;
+
+/**
+ * {@link IdentityColumnAllocator} that allocates identity column values from blocks claimed per table.
+ * A block is claimed while holding the table's write lock: it starts after the maximum identity column values of all active databases,
+ * and the identity columns of all active databases are restarted after the end of the block, so that natively generated values never collide with allocated values.
+ * Blocks are claimed in the background, before the current block is exhausted, so that the restart DDL never executes within, or waits on, the transaction of an inserting caller.
+ * If no block is available, or the dialect cannot restart identity columns, no values are allocated, and the caller reverts to locking its table.
+ * Since claimed blocks are not visible to other nodes, this allocator is only suitable for non-distributed clusters.
+ * @author Paul Ferraro
+ */
+public class BlockIdentityColumnAllocator<Z, D extends Database<Z>> implements IdentityColumnAllocator, DatabaseClusterListener
+{
+	public static final int DEFAULT_BLOCK_SIZE = 100;
+	
+	// Bounds how long a claim may block inserts into its table, e.g. while its DDL waits for an open transaction
+	static final int CLAIM_TIMEOUT = 10;
+	
+	static final Logger logger = LoggerFactory.getLogger(BlockIdentityColumnAllocator.class);
+	
+	final DatabaseCluster<Z, D> cluster;
+	final int blockSize;
+	private final ConcurrentMap<String, Block> blocks = new ConcurrentHashMap<>();
+	
+	public BlockIdentityColumnAllocator(DatabaseCluster<Z, D> cluster)
+	{
+		this(cluster, DEFAULT_BLOCK_SIZE);
+	}
+	
+	public BlockIdentityColumnAllocator(DatabaseCluster<Z, D> cluster, int blockSize)
+	{
+		this.cluster = cluster;
+		this.blockSize = Math.max(blockSize, 1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.IdentityColumnAllocator#allocate(net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public Map<String, Long> allocate(TableProperties table) throws SQLException
+	{
+		String name = table.getName().getDMLName();
+		Block block = this.blocks.get(name);
+		
+		if (block == null)
+		{
+			block = new Block(table, this.isRestartable(table));
+			Block existing = this.blocks.putIfAbsent(name, block);
+			if (existing != null)
+			{
+				block = existing;
+			}
+		}
+		
+		return block.next();
+	}
+
+	/**
+	 * Indicates whether the dialect can restart every identity column of the specified table.
+	 * Otherwise, natively generated values might collide with allocated values.
+	 */
+	private boolean isRestartable(TableProperties table) throws SQLException
+	{
+		IdentityColumnSupport support = this.cluster.getDialect().getIdentityColumnSupport();
+		
+		if (support == null) return false;
+		
+		for (String column: table.getIdentityColumns())
+		{
+			if (support.getAlterIdentityColumnSQL(table, table.getColumnProperties(column), 1) == null) return false;
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Restarts the identity columns of an activated database after the end of each claimed block.
+	 * Synchronization only restarts identity columns after their current maximum value, which may lie within a claimed block.
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void activated(DatabaseEvent event)
+	{
+		IdentityColumnSupport support = this.cluster.getDialect().getIdentityColumnSupport();
+		
+		if ((support != null) && !this.blocks.isEmpty())
+		{
+			D database = this.cluster.getDatabase(event.getSource());
+			
+			try (Connection connection = database.connect(this.cluster.getDecoder()))
+			{
+				try (Statement statement = connection.createStatement())
+				{
+					boolean batched = false;
+					
+					for (Block block: this.blocks.values())
+					{
+						batched |= SynchronizationSupportImpl.addAlterIdentityColumnBatch(statement, support, block.getTable(), block.getEnd());
+					}
+					
+					if (batched)
+					{
+						statement.executeBatch();
+					}
+				}
+			}
+			catch (SQLException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		// Do nothing
+	}
+	
+	private class Block implements Runnable
+	{
+		private final TableProperties table;
+		private final boolean restartable;
+		private Map<String, Long> start = Collections.emptyMap();
+		private int remaining = 0;
+		// Start of the block claimed in advance of the current block
+		private Map<String, Long> nextStart = null;
+		private boolean claiming = false;
+		// End of the most recently claimed block, read without synchronization by activated(...)
+		private volatile Map<String, Long> end = Collections.emptyMap();
+		
+		Block(TableProperties table, boolean restartable)
+		{
+			this.table = table;
+			this.restartable = restartable;
+		}
+		
+		TableProperties getTable()
+		{
+			return this.table;
+		}
+		
+		Map<String, Long> getEnd()
+		{
+			return this.end;
+		}
+		
+		synchronized Map<String, Long> next()
+		{
+			if (!this.restartable) return null;
+			
+			int blockSize = BlockIdentityColumnAllocator.this.blockSize;
+			
+			if (this.remaining == 0)
+			{
+				if (this.nextStart == null)
+				{
+					// Never wait for a claim, since its DDL may wait for the transaction of the caller
+					this.schedule();
+					return null;
+				}
+				
+				this.start = this.nextStart;
+				this.nextStart = null;
+				this.remaining = blockSize;
+			}
+			
+			long offset = blockSize - this.remaining;
+			
+			this.remaining -= 1;
+			
+			// Claim the next block once half of the current block is used
+			if ((this.nextStart == null) && (this.remaining <= blockSize / 2))
+			{
+				this.schedule();
+			}
+			
+			Map<String, Long> values = new HashMap<>();
+			
+			for (Map.Entry<String, Long> entry: this.start.entrySet())
+			{
+				values.put(entry.getKey(), entry.getValue() + offset);
+			}
+			
+			return values;
+		}
+		
+		private void schedule()
+		{
+			if (!this.claiming)
+			{
+				try
+				{
+					BlockIdentityColumnAllocator.this.cluster.getExecutor().execute(this);
+					this.claiming = true;
+				}
+				catch (RejectedExecutionException e)
+				{
+					// Cluster is stopping
+				}
+			}
+		}
+		
+		@Override
+		public void run()
+		{
+			Map<String, Long> start = null;
+			try
+			{
+				start = this.claim();
+			}
+			catch (SQLException e)
+			{
+				logger.log(Level.WARN, e, e.getMessage());
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					this.nextStart = start;
+					this.claiming = false;
+				}
+			}
+		}
+		
+		/**
+		 * Claims the block following the most recently claimed block.
+		 * @return the start of the claimed block, or null, if the table lock could not be acquired in time
+		 */
+		private Map<String, Long> claim() throws SQLException, InterruptedException
+		{
+			DatabaseCluster<Z, D> cluster = BlockIdentityColumnAllocator.this.cluster;
+			IdentityColumnSupport support = cluster.getDialect().getIdentityColumnSupport();
+			Lock lock = cluster.getLockManager().writeLock(this.table.getName().getDMLName());
+			
+			if (!lock.tryLock(CLAIM_TIMEOUT, TimeUnit.SECONDS)) return null;
+			
+			try
+			{
+				Map<String, Long> start = new HashMap<>(this.end);
+				
+				for (D database: cluster.getBalancer())
+				{
+					try (Connection connection = database.connect(cluster.getDecoder()))
+					{
+						try (Statement statement = connection.createStatement())
+						{
+							statement.setQueryTimeout(CLAIM_TIMEOUT);
+							
+							for (Map.Entry<String, Long> entry: SynchronizationSupportImpl.selectMaxIdentityColumnValues(statement, this.table).entrySet())
+							{
+								String column = entry.getKey();
+								long next = entry.getValue() + 1;
+								Long value = start.get(column);
+								
+								if ((value == null) || (value.longValue() < next))
+								{
+									start.put(column, next);
+								}
+							}
+						}
+					}
+				}
+				
+				Map<String, Long> end = new HashMap<>();
+				
+				for (Map.Entry<String, Long> entry: start.entrySet())
+				{
+					end.put(entry.getKey(), entry.getValue() + BlockIdentityColumnAllocator.this.blockSize);
+				}
+				
+				for (D database: cluster.getBalancer())
+				{
+					try (Connection connection = database.connect(cluster.getDecoder()))
+					{
+						try (Statement statement = connection.createStatement())
+						{
+							// DDL may wait for transactions that inserted into this table, which in turn may wait for our lock
+							statement.setQueryTimeout(CLAIM_TIMEOUT);
+							
+							if (SynchronizationSupportImpl.addAlterIdentityColumnBatch(statement, support, this.table, end))
+							{
+								statement.executeBatch();
+							}
+						}
+					}
+				}
+				
+				logger.log(Level.DEBUG, "Claimed identity column values {0} through {1} of {2}", start, end, this.table.getName());
+				
+				this.end = end;
+				
+				return start;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+}
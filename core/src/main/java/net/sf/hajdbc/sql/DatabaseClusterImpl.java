@@ -34,12 +34,15 @@ import net.sf.hajdbc.DatabaseCluster;
 import net.sf.hajdbc.DatabaseClusterConfiguration;
 import net.sf.hajdbc.DatabaseClusterConfigurationListener;
 import net.sf.hajdbc.DatabaseClusterListener;
+import net.sf.hajdbc.IdentityColumnAllocator;
+import net.sf.hajdbc.Lifecycle;
 import net.sf.hajdbc.Locality;
 import net.sf.hajdbc.SynchronizationListener;
 import net.sf.hajdbc.SynchronizationStrategy;
 import net.sf.hajdbc.TransactionMode;
 import net.sf.hajdbc.Version;
 import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.balancer.ProbeListener;
 import net.sf.hajdbc.cache.DatabaseMetaDataCache;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.Dialect;
@@ -95,6 +98,7 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 	private StateManager stateManager;
 	private InputSinkStrategy<? extends Object> sinkSourceFactory;
 	private TransactionIdentifierFactory<? extends Object> txIdentifierFactory;
+	private BlockIdentityColumnAllocator<Z, D> identityColumnAllocator;
 	private MBeanRegistrar<Z, D> registrar;
 	
 	private boolean active = false;
@@ -649,6 +653,16 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		return this.configuration.isIdentityColumnDetectionEnabled();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseCluster#getIdentityColumnAllocator()
+	 */
+	@Override
+	public IdentityColumnAllocator getIdentityColumnAllocator()
+	{
+		return this.identityColumnAllocator;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.DatabaseCluster#isRandEvaluationEnabled()
@@ -679,11 +693,16 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		if (this.active) return;
 		
 		this.decoder = this.configuration.getDecoderFactory().createDecoder(this.id);
-		this.lockManager = this.configuration.getLockManagerFactory().createLockManager();
-		this.stateManager = this.configuration.getStateManagerFactory().createStateManager(this);
 		
 		CommandDispatcherFactory dispatcherFactory = this.configuration.getDispatcherFactory();
 		
+		// State managers capture the durability and transaction identifier factory during construction
+		this.durability = this.configuration.getDurabilityFactory().createDurability(this);
+		this.txIdentifierFactory = (dispatcherFactory != null) ? new UUIDTransactionIdentifierFactory() : new SimpleTransactionIdentifierFactory();
+		
+		this.lockManager = this.configuration.getLockManagerFactory().createLockManager();
+		this.stateManager = this.configuration.getStateManagerFactory().createStateManager(this);
+		
 		if (dispatcherFactory != null)
 		{
 			this.lockManager = new DistributedLockManager(this, dispatcherFactory);
@@ -692,10 +711,15 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		
 		this.balancer = this.configuration.getBalancerFactory().createBalancer(new TreeSet<D>());
 		this.dialect = this.configuration.getDialectFactory().createDialect();
-		this.durability = this.configuration.getDurabilityFactory().createDurability(this);
 		this.executor = this.configuration.getExecutorProvider().getExecutor(this.configuration.getThreadFactory());
 		this.sinkSourceFactory = this.configuration.getInputSinkProvider().createInputSinkStrategy();
-		this.txIdentifierFactory = (dispatcherFactory != null) ? new UUIDTransactionIdentifierFactory() : new SimpleTransactionIdentifierFactory();
+		
+		// Allocated blocks are local to this node, so allocation is only viable for non-distributed clusters
+		if (this.configuration.isIdentityColumnDetectionEnabled() && this.configuration.isIdentityColumnAllocationEnabled() && (dispatcherFactory == null))
+		{
+			this.identityColumnAllocator = new BlockIdentityColumnAllocator<>(this, this.configuration.getIdentityColumnBlockSize());
+			this.clusterListeners.add(this.identityColumnAllocator);
+		}
 
 		this.lockManager.start();
 		this.stateManager.start();
@@ -733,6 +757,11 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 			this.durability.recover(invokers);
 		}
 		
+		if (this.durability instanceof Lifecycle)
+		{
+			((Lifecycle) this.durability).start();
+		}
+		
 		this.databaseMetaDataCache = this.configuration.getDatabaseMetaDataCacheFactory().createCache(this);
 		
 		try
@@ -744,6 +773,11 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 			// Ignore - cache will initialize lazily.
 		}
 		
+		for (SynchronizationStrategy strategy: this.configuration.getSynchronizationStrategyMap().values())
+		{
+			strategy.init(this);
+		}
+		
 		CronExpression failureDetectionExpression = this.configuration.getFailureDetectionExpression();
 		CronExpression autoActivationExpression = this.configuration.getAutoActivationExpression();
 		int threads = requiredThreads(failureDetectionExpression) + requiredThreads(autoActivationExpression);
@@ -820,6 +854,23 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 			this.cronExecutor.shutdownNow();
 		}
 		
+		for (SynchronizationStrategy strategy: this.configuration.getSynchronizationStrategyMap().values())
+		{
+			strategy.destroy(this);
+		}
+		
+		if (this.identityColumnAllocator != null)
+		{
+			this.clusterListeners.remove(this.identityColumnAllocator);
+			this.identityColumnAllocator = null;
+		}
+		
+		// Flush any pending durability events before stopping the state manager
+		if (this.durability instanceof Lifecycle)
+		{
+			((Lifecycle) this.durability).stop();
+		}
+		
 		if (this.stateManager != null)
 		{
 			this.stateManager.stop();
@@ -905,17 +956,27 @@ public class DatabaseClusterImpl<Z, D extends Database<Z>> implements DatabaseCl
 		{
 			if (!DatabaseClusterImpl.this.getStateManager().isEnabled()) return;
 			
-			Set<D> databases = DatabaseClusterImpl.this.getBalancer();
+			Balancer<Z, D> databases = DatabaseClusterImpl.this.getBalancer();
 			
 			int size = databases.size();
 			
+			@SuppressWarnings("unchecked")
+			ProbeListener<D> listener = (databases instanceof ProbeListener) ? (ProbeListener<D>) databases : null;
+			
 			if ((size > 1) || DatabaseClusterImpl.this.configuration.isEmptyClusterAllowed())
 			{
 				List<D> deadList = new ArrayList<>(size);
 				
 				for (D database: databases)
 				{
-					if (!DatabaseClusterImpl.this.isAlive(database, Level.WARN))
+					boolean alive = DatabaseClusterImpl.this.isAlive(database, Level.WARN);
+					
+					if (listener != null)
+					{
+						listener.probed(database, alive);
+					}
+					
+					if (!alive)
 					{
 						deadList.add(database);
 					}
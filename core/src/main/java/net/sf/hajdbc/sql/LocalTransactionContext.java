@@ -19,6 +19,7 @@ package net.sf.hajdbc.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.SortedMap;
 import java.util.concurrent.locks.Lock;
 
@@ -26,11 +27,18 @@ import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
 import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.invocation.InvocationStrategies;
 import net.sf.hajdbc.invocation.InvocationStrategy;
 import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.invocation.LockingInvocationStrategy;
+import net.sf.hajdbc.invocation.Pipeline;
+import net.sf.hajdbc.invocation.PipelinedInvocationStrategy;
 import net.sf.hajdbc.tx.TransactionIdentifierFactory;
 
 /**
+ * Transaction context for local transactions.
+ * Transactions of read-only connections acquire no locks and record no durability events.
+ * Consequently, the driver of each database must enforce {@link Connection#isReadOnly()}, i.e. reject writes on a read-only connection.
  * @author Paul Ferraro
  * @param <Z>
  * @param <D>
@@ -40,6 +48,7 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 	final Durability<Z, D> durability;
 	private final Lock lock;
 	private final TransactionIdentifierFactory<? extends Object> transactionIdFactory;
+	private final Pipeline pipeline;
 	volatile Object transactionId;
 	
 	/**
@@ -50,6 +59,7 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 		this.lock = cluster.getLockManager().readLock(null);
 		this.durability = cluster.getDurability();
 		this.transactionIdFactory = cluster.getTransactionIdentifierFactory();
+		this.pipeline = cluster.getTransactionMode().isPipelined() ? new Pipeline(cluster.getExecutor()) : null;
 	}
 	
 	/**
@@ -61,6 +71,10 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 	{
 		if (this.transactionId != null) return strategy;
 		
+		// Read-only connections cannot write, so their transactions need neither locking nor durability
+		// This relies on the driver to reject writes on a read-only connection, which Connection.setReadOnly(...) only specifies as a hint
+		if (connection.isReadOnly()) return strategy;
+		
 		if (connection.getAutoCommit())
 		{
 			return new InvocationStrategy()
@@ -107,6 +121,60 @@ public class LocalTransactionContext<Z, D extends Database<Z>> implements Transa
 		};
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#start(java.util.List, java.sql.Connection)
+	 */
+	@Override
+	public InvocationStrategy start(List<Lock> locks, Connection connection) throws SQLException
+	{
+		if ((this.transactionId == null) && connection.isReadOnly())
+		{
+			return this.start(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, connection);
+		}
+		
+		// Statements requiring locks must complete on all databases before their locks are released
+		// Auto-commit statements must complete on all databases before they are considered durable
+		if ((this.pipeline != null) && locks.isEmpty() && ((this.transactionId != null) || !connection.getAutoCommit()))
+		{
+			return this.start(new PipelinedInvocationStrategy(this.pipeline, false), connection);
+		}
+		
+		return this.start(new LockingInvocationStrategy(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, locks), connection);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#pipeline(net.sf.hajdbc.invocation.InvocationStrategy)
+	 */
+	@Override
+	public InvocationStrategy pipeline(InvocationStrategy strategy)
+	{
+		// Only pipeline within a transaction, whose end will wait for all lanes
+		return ((this.pipeline != null) && (this.transactionId != null)) ? new PipelinedInvocationStrategy(this.pipeline, true) : strategy;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sql.TransactionContext#await()
+	 */
+	@Override
+	public void await() throws SQLException
+	{
+		if (this.pipeline != null)
+		{
+			try
+			{
+				this.pipeline.await();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new SQLException(e);
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.sql.TransactionContext#start(net.sf.hajdbc.invocation.Invoker, java.sql.Connection)
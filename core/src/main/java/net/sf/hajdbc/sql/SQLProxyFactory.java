@@ -34,6 +34,10 @@ public interface SQLProxyFactory<Z, D extends Database<Z>, P, T> extends Transac
 	
 	List<Lock> extractLocks(String sql) throws SQLException;
 	
+	List<Lock> extractLocks(String sql, boolean identityColumns) throws SQLException;
+	
+	String allocateIdentityColumns(String sql) throws SQLException;
+	
 	boolean isSelectForUpdate(String sql) throws SQLException;
 	
 	Connection getConnection(D database) throws SQLException;
@@ -19,6 +19,8 @@ package net.sf.hajdbc.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.durability.Durability;
@@ -35,6 +37,7 @@ public interface TransactionContext<Z, D extends Database<Z>> extends AutoClosea
 {
 	/**
 	 * Decorates the specified invocation strategy with start transaction logic.
+	 * A transaction is only started by the first write invocation, and never on a read-only connection.
 	 * @param strategy
 	 * @param connection
 	 * @return the decorated invocation strategy
@@ -42,6 +45,30 @@ public interface TransactionContext<Z, D extends Database<Z>> extends AutoClosea
 	 */
 	InvocationStrategy start(InvocationStrategy strategy, Connection connection) throws SQLException;
 
+	/**
+	 * Returns the invocation strategy for a write statement whose result is fully described by the result of the primary database, decorated with start transaction logic.
+	 * If the transaction mode is pipelined, backup databases may execute the statement asynchronously, in order.
+	 * @param locks the locks required by the statement
+	 * @param connection
+	 * @return the decorated invocation strategy
+	 * @throws SQLException
+	 */
+	InvocationStrategy start(List<Lock> locks, Connection connection) throws SQLException;
+
+	/**
+	 * Decorates the specified invocation strategy, used to invoke a void method on existing objects,
+	 * such that backup databases may be invoked asynchronously, in order, if a pipelined transaction is in progress.
+	 * @param strategy
+	 * @return the decorated invocation strategy
+	 */
+	InvocationStrategy pipeline(InvocationStrategy strategy);
+
+	/**
+	 * Waits for any invocations pipelined to backup databases to complete.
+	 * @throws SQLException if interrupted while waiting
+	 */
+	void await() throws SQLException;
+
 	/**
 	 * Decorates the specified invoker with start transaction logic.
 	 * @param <T>
@@ -55,6 +82,7 @@ public interface TransactionContext<Z, D extends Database<Z>> extends AutoClosea
 
 	/**
 	 * Decorates the specified invocation strategy with end transaction logic.
+	 * If no transaction was started, i.e. the transaction was read-only, the specified strategy is returned as is.
 	 * @param strategy
 	 * @param phase
 	 * @return the decorated invocation strategy
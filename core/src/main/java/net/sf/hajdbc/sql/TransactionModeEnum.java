@@ -28,14 +28,17 @@ import net.sf.hajdbc.util.concurrent.SynchronousExecutor;
  */
 public enum TransactionModeEnum implements TransactionMode
 {
-	PARALLEL(false),
-	SERIAL(true),
+	PARALLEL(false, false),
+	SERIAL(true, false),
+	PIPELINED(true, true),
 	;
 	private final boolean synchronous;
+	private final boolean pipelined;
 	
-	private TransactionModeEnum(boolean synchronous)
+	private TransactionModeEnum(boolean synchronous, boolean pipelined)
 	{
 		this.synchronous = synchronous;
+		this.pipelined = pipelined;
 	}
 	
 	@Override
@@ -44,6 +47,12 @@ public enum TransactionModeEnum implements TransactionMode
 		return this.synchronous ? new SynchronousExecutor(executor, end) : executor;
 	}
 
+	@Override
+	public boolean isPipelined()
+	{
+		return this.pipelined;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -35,4 +35,9 @@ public class DatabaseEvent extends Event<String>
 	{
 		super(database.getId());
 	}
+
+	public DatabaseEvent(String databaseId)
+	{
+		super(databaseId);
+	}
 }
@@ -0,0 +1,356 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.hajdbc.durability.DurabilityEvent;
+import net.sf.hajdbc.durability.DurabilityEventImpl;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * State manager decorator that defers persistence of durability events for a fixed window.
+ * Invocations that complete within the window are never persisted, since their completion cancels their buffered events.
+ * Events of invocations that outlive the window are persisted, in order, by a background thread, after which subsequent events of that invocation are persisted directly.
+ * Consequently, the window is the upper bound on how long an in-flight invocation may be unknown to the underlying state manager,
+ * i.e. an invocation in progress at the time of a crash is not recovered if it started less than one window earlier.
+ * @author Paul Ferraro
+ */
+public class DeferredStateManager implements StateManager
+{
+	private static final Logger logger = LoggerFactory.getLogger(DeferredStateManager.class);
+
+	private final StateManager stateManager;
+	private final long window;
+	private final ThreadFactory threadFactory;
+	private final ConcurrentMap<DurabilityEvent, Invocation> invocations = new ConcurrentHashMap<>();
+	private final Queue<Invocation> queue = new ConcurrentLinkedQueue<>();
+	private volatile ScheduledExecutorService executor;
+
+	/**
+	 * @param stateManager the state manager to which durability events are eventually delegated
+	 * @param window the number of milliseconds for which durability events are held in memory
+	 * @param threadFactory the factory for the thread that persists expired events
+	 */
+	public DeferredStateManager(StateManager stateManager, long window, ThreadFactory threadFactory)
+	{
+		this.stateManager = stateManager;
+		this.window = window;
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@Override
+	public void start() throws Exception
+	{
+		this.stateManager.start();
+
+		this.executor = Executors.newSingleThreadScheduledExecutor(this.threadFactory);
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				DeferredStateManager.this.flush(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(DeferredStateManager.this.window));
+			}
+		};
+		// Check twice per window, so that no event is held much longer than the window
+		long period = Math.max(this.window / 2, 1);
+		this.executor.scheduleWithFixedDelay(task, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		ScheduledExecutorService executor = this.executor;
+		if (executor != null)
+		{
+			executor.shutdownNow();
+			try
+			{
+				executor.awaitTermination(this.window, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			this.executor = null;
+		}
+
+		// Persist the events of any invocations still in progress
+		// N.B. Long.MAX_VALUE would overflow when compared against a negative System.nanoTime()
+		this.flush(System.nanoTime());
+
+		this.stateManager.stop();
+	}
+
+	/**
+	 * Persists the buffered events of all invocations that started before the specified time.
+	 * @param time a time as reported by {@link System#nanoTime()}
+	 */
+	void flush(long time)
+	{
+		Invocation invocation = this.queue.peek();
+
+		while ((invocation != null) && (time - invocation.time >= 0))
+		{
+			this.queue.poll();
+
+			try
+			{
+				invocation.flush(this.stateManager);
+			}
+			catch (RuntimeException e)
+			{
+				logger.log(Level.ERROR, e, e.getMessage());
+			}
+
+			invocation = this.queue.peek();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void beforeInvocation(InvocationEvent event)
+	{
+		// Events may be reused by their durability, so buffer a copy
+		InvocationEvent copy = new InvocationEventImpl(event.getTransactionId(), event.getPhase(), event.getExceptionType());
+		Invocation invocation = new Invocation(copy);
+		this.invocations.put(copy, invocation);
+		this.queue.add(invocation);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void afterInvocation(InvocationEvent event)
+	{
+		Invocation invocation = this.invocations.remove(event);
+
+		// Invocation may be unknown, e.g. if recovered
+		if ((invocation == null) || !invocation.cancel())
+		{
+			this.stateManager.afterInvocation(event);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void beforeInvoker(InvokerEvent event)
+	{
+		// Invoker events are not equal to their invocation event
+		Invocation invocation = this.invocations.get(new DurabilityEventImpl(event.getTransactionId(), event.getPhase()));
+
+		if ((invocation == null) || !invocation.defer(event, true))
+		{
+			this.stateManager.beforeInvoker(event);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void afterInvoker(InvokerEvent event)
+	{
+		// Invoker events are not equal to their invocation event
+		Invocation invocation = this.invocations.get(new DurabilityEventImpl(event.getTransactionId(), event.getPhase()));
+
+		if ((invocation == null) || !invocation.defer(event, false))
+		{
+			this.stateManager.afterInvoker(event);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#recover()
+	 */
+	@Override
+	public Map<InvocationEvent, Map<String, InvokerEvent>> recover()
+	{
+		return this.stateManager.recover();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#getActiveDatabases()
+	 */
+	@Override
+	public Set<String> getActiveDatabases()
+	{
+		return this.stateManager.getActiveDatabases();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#setActiveDatabases(java.util.Set)
+	 */
+	@Override
+	public void setActiveDatabases(Set<String> databases)
+	{
+		this.stateManager.setActiveDatabases(databases);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void activated(DatabaseEvent event)
+	{
+		this.stateManager.activated(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		this.stateManager.deactivated(event);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled()
+	{
+		return this.stateManager.isEnabled();
+	}
+
+	/**
+	 * The buffered events of an in-flight invocation.
+	 */
+	private static class Invocation
+	{
+		final long time = System.nanoTime();
+		private final InvocationEvent event;
+		// Deferred invoker events, and whether each is a before or after event
+		private final List<InvokerEvent> invokerEvents = new ArrayList<>();
+		private final List<Boolean> before = new ArrayList<>();
+		private boolean flushed = false;
+		private boolean cancelled = false;
+
+		Invocation(InvocationEvent event)
+		{
+			this.event = event;
+		}
+
+		/**
+		 * Buffers the specified invoker event, unless this invocation was already persisted.
+		 * @return true, if the event was buffered, false if it should be persisted directly
+		 */
+		synchronized boolean defer(InvokerEvent event, boolean before)
+		{
+			if (this.flushed) return false;
+
+			// Events may be reused by their durability, so buffer a copy
+			InvokerEvent copy = new InvokerEventImpl(event.getTransactionId(), event.getPhase(), event.getDatabaseId());
+			InvokerResult result = event.getResult();
+			if (result != null)
+			{
+				copy.setResult((result.getException() != null) ? new InvokerResultImpl(result.getException()) : new InvokerResultImpl(result.getValue()));
+			}
+			this.invokerEvents.add(copy);
+			this.before.add(before);
+			return true;
+		}
+
+		/**
+		 * Discards the buffered events of this invocation, unless it was already persisted.
+		 * @return true, if this invocation was never persisted, false otherwise
+		 */
+		synchronized boolean cancel()
+		{
+			if (this.flushed) return false;
+
+			this.cancelled = true;
+			this.invokerEvents.clear();
+			this.before.clear();
+			return true;
+		}
+
+		/**
+		 * Persists the buffered events of this invocation, in order, unless it has already completed.
+		 */
+		synchronized void flush(StateManager stateManager)
+		{
+			if (this.cancelled || this.flushed) return;
+
+			this.flushed = true;
+
+			stateManager.beforeInvocation(this.event);
+
+			for (int i = 0; i < this.invokerEvents.size(); ++i)
+			{
+				InvokerEvent event = this.invokerEvents.get(i);
+
+				if (this.before.get(i).booleanValue())
+				{
+					stateManager.beforeInvoker(event);
+				}
+				else
+				{
+					stateManager.afterInvoker(event);
+				}
+			}
+
+			this.invokerEvents.clear();
+			this.before.clear();
+		}
+	}
+}
@@ -17,9 +17,6 @@
  */
 package net.sf.hajdbc.state;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
 import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.durability.DurabilityEvent;
@@ -27,17 +24,16 @@ import net.sf.hajdbc.durability.DurabilityEventFactory;
 import net.sf.hajdbc.durability.DurabilityListener;
 import net.sf.hajdbc.durability.InvocationEvent;
 import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerResultCodec;
 import net.sf.hajdbc.tx.TransactionIdentifierFactory;
-import net.sf.hajdbc.util.Objects;
 
 /**
+ * Adapts durability events to a listener of serialized durability events.
+ * Transaction identifiers are expected to cache their serialized form, so serialization need not be memoized here.
  * @author Paul Ferraro
  */
 public class DurabilityListenerAdapter implements DurabilityListener, SerializedDurabilityEventFactory
 {
-	// TODO prevent memory leak
-	// Cache serialized transaction identifiers
-	private final ConcurrentMap<Object, byte[]> transactionIdentifiers = new ConcurrentHashMap<>();
 	private final SerializedDurabilityListener listener;
 	private final TransactionIdentifierFactory<Object> txIdFactory;
 	private final DurabilityEventFactory eventFactory;
@@ -57,11 +53,7 @@ public class DurabilityListenerAdapter implements DurabilityListener, Serialized
 	@Override
 	public void beforeInvocation(InvocationEvent event)
 	{
-		Object transactionId = event.getTransactionId();
-		byte[] txId = this.txIdFactory.serialize(transactionId);
-		
-		this.transactionIdentifiers.put(transactionId, txId);
-		this.listener.beforeInvocation(txId, (byte) event.getPhase().ordinal(), (byte) event.getExceptionType().ordinal());
+		this.listener.beforeInvocation(this.txIdFactory.serialize(event.getTransactionId()), (byte) event.getPhase().ordinal(), (byte) event.getExceptionType().ordinal());
 	}
 
 	/**
@@ -71,7 +63,7 @@ public class DurabilityListenerAdapter implements DurabilityListener, Serialized
 	@Override
 	public void afterInvocation(InvocationEvent event)
 	{
-		this.listener.afterInvocation(this.transactionIdentifiers.remove(event.getTransactionId()), (byte) event.getPhase().ordinal());
+		this.listener.afterInvocation(this.txIdFactory.serialize(event.getTransactionId()), (byte) event.getPhase().ordinal());
 	}
 
 	/**
@@ -81,7 +73,7 @@ public class DurabilityListenerAdapter implements DurabilityListener, Serialized
 	@Override
 	public void beforeInvoker(InvokerEvent event)
 	{
-		this.listener.beforeInvoker(this.transactionIdentifiers.get(event.getTransactionId()), (byte) event.getPhase().ordinal(), event.getDatabaseId());
+		this.listener.beforeInvoker(this.txIdFactory.serialize(event.getTransactionId()), (byte) event.getPhase().ordinal(), event.getDatabaseId());
 	}
 
 	/**
@@ -91,7 +83,7 @@ public class DurabilityListenerAdapter implements DurabilityListener, Serialized
 	@Override
 	public void afterInvoker(InvokerEvent event)
 	{
-		this.listener.afterInvoker(this.transactionIdentifiers.get(event.getTransactionId()), (byte) event.getPhase().ordinal(), event.getDatabaseId(), Objects.serialize(event.getResult()));
+		this.listener.afterInvoker(this.txIdFactory.serialize(event.getTransactionId()), (byte) event.getPhase().ordinal(), event.getDatabaseId(), InvokerResultCodec.encode(event.getResult()));
 	}
 
 	@Override
@@ -31,7 +31,7 @@ import net.sf.hajdbc.durability.DurabilityEvent;
 import net.sf.hajdbc.durability.DurabilityEventFactory;
 import net.sf.hajdbc.durability.InvocationEvent;
 import net.sf.hajdbc.durability.InvokerEvent;
-import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultCodec;
 import net.sf.hajdbc.pool.CloseablePoolProvider;
 import net.sf.hajdbc.pool.Pool;
 import net.sf.hajdbc.pool.PoolFactory;
@@ -308,7 +308,7 @@ public class BerkeleyDBStateManager extends CloseablePoolProvider<Environment, D
 						byte[] value = entry.getValue();
 						if (value.length > 0)
 						{
-							invokerEvent.setResult(Objects.deserialize(value, InvokerResult.class));
+							invokerEvent.setResult(InvokerResultCodec.decode(value));
 						}
 						invokers.put(databaseId, invokerEvent);
 					}
@@ -21,23 +21,35 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.distributed.Command;
 import net.sf.hajdbc.distributed.CommandDispatcher;
 import net.sf.hajdbc.distributed.CommandDispatcherFactory;
 import net.sf.hajdbc.distributed.Member;
 import net.sf.hajdbc.distributed.MembershipListener;
 import net.sf.hajdbc.distributed.Remote;
 import net.sf.hajdbc.distributed.Stateful;
+import net.sf.hajdbc.durability.Durability;
 import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
 import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
@@ -47,24 +59,36 @@ import net.sf.hajdbc.state.DatabaseEvent;
 import net.sf.hajdbc.state.StateManager;
 
 /**
+ * Distributed state manager that replicates database activations/deactivations, as well as durability events, to all group members.
+ * Durability events are coalesced into batches, which are multicast to the group.
+ * Correctness relies on the ordered delivery of the commands sent by a given member.
+ * Those events that recovery relies upon, i.e. the invoker events that precede a commit or prepare, as well as all events that complete an invoker or invocation,
+ * are multicast synchronously, together with any pending events.
+ * All other events are held until then, so that an invocation is only known to the group once it either modifies a database or completes.
+ * Concurrent synchronous events share the same batch.
  * @author Paul Ferraro
  */
 public class DistributedStateManager<Z, D extends Database<Z>> implements StateManager, StateCommandContext<Z, D>, MembershipListener, Stateful
 {
+	static final int MAX_BATCH_SIZE = 1000;
+
 	private final Messages messages = MessagesFactory.getMessages();
 	private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
 	private final DatabaseCluster<Z, D> cluster;
 	private final StateManager stateManager;
-	private final CommandDispatcher<StateCommandContext<Z, D>> dispatcher;
+	final CommandDispatcher<StateCommandContext<Z, D>> dispatcher;
 	private final ConcurrentMap<Member, Map<InvocationEvent, Map<String, InvokerEvent>>> remoteInvokerMap = new ConcurrentHashMap<>();
+	private final Queue<Command<Void, StateCommandContext<Z, D>>> pending = new ConcurrentLinkedQueue<>();
+	// Ensures that batches are multicast in the order in which their commands were queued
+	private final Lock flushLock = new ReentrantLock();
 	
 	public DistributedStateManager(DatabaseCluster<Z, D> cluster, CommandDispatcherFactory dispatcherFactory) throws Exception
 	{
 		this.cluster = cluster;
 		this.stateManager = cluster.getStateManager();
 		StateCommandContext<Z, D> context = this;
-		this.dispatcher = dispatcherFactory.createCommandDispatcher(cluster.getId() + ".state", context, this, this);
+		this.dispatcher = dispatcherFactory.createCommandDispatcher(cluster.getId() + ".state", context, this, this, cluster.getThreadFactory());
 	}
 
 	/**
@@ -116,7 +140,8 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 	@Override
 	public void afterInvocation(InvocationEvent event)
 	{
-		this.dispatcher.executeAll(new PostInvocationCommand<Z, D>(this.getRemoteDescriptor(event)));
+		this.pending.add(new PostInvocationCommand<Z, D>(this.getRemoteDescriptor(copy(event))));
+		this.flush();
 	}
 
 	/**
@@ -126,7 +151,9 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 	@Override
 	public void afterInvoker(InvokerEvent event)
 	{
-		this.dispatcher.executeAll(new InvokerCommand<Z, D>(this.getRemoteDescriptor(event)));
+		// Otherwise, recovery would not know that this invoker completed
+		this.pending.add(new InvokerCommand<Z, D>(this.getRemoteDescriptor(copy(event))));
+		this.flush();
 	}
 
 	/**
@@ -136,7 +163,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 	@Override
 	public void beforeInvocation(InvocationEvent event)
 	{
-		this.dispatcher.executeAll(new PreInvocationCommand<Z, D>(this.getRemoteDescriptor(event)));
+		this.pending.add(new PreInvocationCommand<Z, D>(this.getRemoteDescriptor(copy(event))));
 	}
 
 	/**
@@ -146,7 +173,66 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 	@Override
 	public void beforeInvoker(InvokerEvent event)
 	{
-		this.dispatcher.executeAll(new InvokerCommand<Z, D>(this.getRemoteDescriptor(event)));
+		Durability.Phase phase = event.getPhase();
+
+		this.pending.add(new InvokerCommand<Z, D>(this.getRemoteDescriptor(copy(event))));
+
+		// Recovery requires all members to know about a commit/prepare before any database is modified
+		if ((phase == Durability.Phase.COMMIT) || (phase == Durability.Phase.PREPARE))
+		{
+			this.flush();
+		}
+	}
+
+	/**
+	 * Multicasts all pending durability events, in batches, and waits for the group to execute them.
+	 * If another thread is already multicasting pending events, this waits for it to finish, and then multicasts whatever it did not.
+	 */
+	void flush()
+	{
+		this.flushLock.lock();
+		try
+		{
+			Command<Void, StateCommandContext<Z, D>> command = this.pending.poll();
+
+			while (command != null)
+			{
+				List<Command<Void, StateCommandContext<Z, D>>> commands = new ArrayList<>();
+
+				while ((command != null) && (commands.size() < MAX_BATCH_SIZE))
+				{
+					commands.add(command);
+					command = this.pending.poll();
+				}
+
+				if (this.dispatcher.executeAll(new BatchCommand<>(commands)) == null)
+				{
+					this.logger.log(Level.ERROR, "Failed to multicast {0} durability events of cluster {1}", commands.size(), this.cluster);
+				}
+			}
+		}
+		finally
+		{
+			this.flushLock.unlock();
+		}
+	}
+
+	// Pending events must not be modified by the durability that created them
+	private static InvocationEvent copy(InvocationEvent event)
+	{
+		return new InvocationEventImpl(event.getTransactionId(), event.getPhase(), event.getExceptionType());
+	}
+
+	private static InvokerEvent copy(InvokerEvent event)
+	{
+		InvokerEvent copy = new InvokerEventImpl(event.getTransactionId(), event.getPhase(), event.getDatabaseId());
+		InvokerResult result = event.getResult();
+		if (result != null)
+		{
+			Exception exception = result.getException();
+			copy.setResult((exception != null) ? new InvokerResultImpl(exception) : new InvokerResultImpl(result.getValue()));
+		}
+		return copy;
 	}
 
 	private RemoteInvocationDescriptor getRemoteDescriptor(InvocationEvent event)
@@ -177,6 +263,9 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 	@Override
 	public void stop()
 	{
+		// Multicast any remaining events before leaving the group
+		this.flush();
+
 		this.dispatcher.stop();
 		this.stateManager.stop();
 	}
@@ -295,7 +384,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 		return this.stateManager.recover();
 	}
 
-	private static class RemoteDescriptor implements Remote, Serializable
+	static class RemoteDescriptor implements Remote, Serializable
 	{
 		private static final long serialVersionUID = 3717630867671175936L;
 		
@@ -313,7 +402,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 		}
 	}
 	
-	private static class RemoteInvocationDescriptorImpl extends RemoteDescriptor implements RemoteInvocationDescriptor
+	static class RemoteInvocationDescriptorImpl extends RemoteDescriptor implements RemoteInvocationDescriptor
 	{
 		private static final long serialVersionUID = 7782082258670023082L;
 		
@@ -343,7 +432,7 @@ public class DistributedStateManager<Z, D extends Database<Z>> implements StateM
 		}
 	}
 	
-	private static class RemoteInvokerDescriptorImpl extends RemoteDescriptor implements RemoteInvokerDescriptor
+	static class RemoteInvokerDescriptorImpl extends RemoteDescriptor implements RemoteInvokerDescriptor
 	{
 		private static final long serialVersionUID = 6991831573393882786L;
 		
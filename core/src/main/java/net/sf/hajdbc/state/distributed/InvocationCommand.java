@@ -56,6 +56,11 @@ public abstract class InvocationCommand<Z, D extends Database<Z>> implements Com
 		return null;
 	}
 
+	RemoteInvocationDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	protected abstract void execute(Map<InvocationEvent, Map<String, InvokerEvent>> invokers, InvocationEvent event);
 
 	/**
@@ -22,6 +22,7 @@ import java.util.Map;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.distributed.Command;
 import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
 import net.sf.hajdbc.durability.InvokerEvent;
 
 public class InvokerCommand<Z, D extends Database<Z>> implements Command<Void, StateCommandContext<Z, D>>
@@ -49,7 +50,8 @@ public class InvokerCommand<Z, D extends Database<Z>> implements Command<Void, S
 		
 		synchronized (invokers)
 		{
-			Map<String, InvokerEvent> map = invokers.get(event);
+			// An invoker event is never equal to its invocation event
+			Map<String, InvokerEvent> map = invokers.get(new InvocationEventImpl(event.getTransactionId(), event.getPhase(), null));
 			
 			if (map != null)
 			{
@@ -60,6 +62,11 @@ public class InvokerCommand<Z, D extends Database<Z>> implements Command<Void, S
 		return null;
 	}
 
+	RemoteInvokerDescriptor getDescriptor()
+	{
+		return this.descriptor;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see java.lang.Object#toString()
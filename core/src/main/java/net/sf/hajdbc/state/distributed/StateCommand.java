@@ -50,6 +50,11 @@ public abstract class StateCommand<Z, D extends Database<Z>> implements Command<
 		return this.execute(cluster, context.getLocalStateManager(), cluster.getDatabase(this.event.getSource()));
 	}
 
+	DatabaseEvent getEvent()
+	{
+		return this.event;
+	}
+
 	protected abstract boolean execute(DatabaseCluster<Z, D> cluster, StateManager stateManager, D database);
 
 	/**
@@ -0,0 +1,350 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.CommandExternalizer;
+import net.sf.hajdbc.distributed.CommandExternalizerProvider;
+import net.sf.hajdbc.distributed.Externalizer;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.distributed.Remote;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultCodec;
+import net.sf.hajdbc.state.DatabaseEvent;
+
+/**
+ * Provides compact externalizers for the commands of the distributed state manager.
+ * @author Paul Ferraro
+ */
+@SuppressWarnings("rawtypes")
+public class StateCommandExternalizerProvider implements CommandExternalizerProvider
+{
+	static final Externalizer<Object> TRANSACTION_ID_EXTERNALIZER = new TransactionIdentifierExternalizer();
+
+	@Override
+	public Iterable<? extends CommandExternalizer<?>> getExternalizers()
+	{
+		return Arrays.<CommandExternalizer<?>>asList(
+			new ActivationCommandExternalizer(),
+			new DeactivationCommandExternalizer(),
+			new PreInvocationCommandExternalizer(),
+			new PostInvocationCommandExternalizer(),
+			new InvokerCommandExternalizer(),
+			new StopCommandExternalizer(),
+			new BatchCommandExternalizer()
+		);
+	}
+
+	static void writeInvocation(DataOutput output, RemoteInvocationDescriptor descriptor, Externalizer<Member> members) throws IOException
+	{
+		writeInvocationEvent(output, descriptor.getEvent());
+		members.writeObject(output, descriptor.getMember());
+	}
+
+	static RemoteInvocationDescriptor readInvocation(DataInput input, Externalizer<Member> members) throws IOException
+	{
+		InvocationEvent event = readInvocationEvent(input);
+		return new DistributedStateManager.RemoteInvocationDescriptorImpl(event, members.readObject(input));
+	}
+
+	static void writeInvoker(DataOutput output, RemoteInvokerDescriptor descriptor, Externalizer<Member> members) throws IOException
+	{
+		writeInvokerEvent(output, descriptor.getEvent());
+		members.writeObject(output, descriptor.getMember());
+	}
+
+	static RemoteInvokerDescriptor readInvoker(DataInput input, Externalizer<Member> members) throws IOException
+	{
+		InvokerEvent event = readInvokerEvent(input);
+		return new DistributedStateManager.RemoteInvokerDescriptorImpl(event, members.readObject(input));
+	}
+
+	private static void writeInvocationEvent(DataOutput output, InvocationEvent event) throws IOException
+	{
+		TRANSACTION_ID_EXTERNALIZER.writeObject(output, event.getTransactionId());
+		output.writeByte(event.getPhase().ordinal());
+		output.writeByte(event.getExceptionType().ordinal());
+	}
+
+	private static InvocationEvent readInvocationEvent(DataInput input) throws IOException
+	{
+		Object transactionId = TRANSACTION_ID_EXTERNALIZER.readObject(input);
+		Durability.Phase phase = Durability.Phase.values()[input.readByte()];
+		ExceptionType exceptionType = ExceptionType.values()[input.readByte()];
+		return new InvocationEventImpl(transactionId, phase, exceptionType);
+	}
+
+	private static void writeInvokerEvent(DataOutput output, InvokerEvent event) throws IOException
+	{
+		TRANSACTION_ID_EXTERNALIZER.writeObject(output, event.getTransactionId());
+		output.writeByte(event.getPhase().ordinal());
+		output.writeUTF(event.getDatabaseId());
+		byte[] result = InvokerResultCodec.encode(event.getResult());
+		if (result != null)
+		{
+			output.writeInt(result.length);
+			output.write(result);
+		}
+		else
+		{
+			output.writeInt(-1);
+		}
+	}
+
+	private static InvokerEvent readInvokerEvent(DataInput input) throws IOException
+	{
+		Object transactionId = TRANSACTION_ID_EXTERNALIZER.readObject(input);
+		Durability.Phase phase = Durability.Phase.values()[input.readByte()];
+		InvokerEvent event = new InvokerEventImpl(transactionId, phase, input.readUTF());
+		int length = input.readInt();
+		if (length >= 0)
+		{
+			byte[] result = new byte[length];
+			input.readFully(result);
+			event.setResult(InvokerResultCodec.decode(result));
+		}
+		return event;
+	}
+
+	static class ActivationCommandExternalizer implements CommandExternalizer<ActivationCommand>
+	{
+		@Override
+		public Class<ActivationCommand> getTargetClass()
+		{
+			return ActivationCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, ActivationCommand command, Externalizer<Member> members) throws IOException
+		{
+			output.writeUTF(command.getEvent().getSource());
+		}
+
+		@Override
+		public ActivationCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new ActivationCommand(new DatabaseEvent(input.readUTF()));
+		}
+	}
+
+	static class DeactivationCommandExternalizer implements CommandExternalizer<DeactivationCommand>
+	{
+		@Override
+		public Class<DeactivationCommand> getTargetClass()
+		{
+			return DeactivationCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, DeactivationCommand command, Externalizer<Member> members) throws IOException
+		{
+			output.writeUTF(command.getEvent().getSource());
+		}
+
+		@Override
+		public DeactivationCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new DeactivationCommand(new DatabaseEvent(input.readUTF()));
+		}
+	}
+
+	static class PreInvocationCommandExternalizer implements CommandExternalizer<PreInvocationCommand>
+	{
+		@Override
+		public Class<PreInvocationCommand> getTargetClass()
+		{
+			return PreInvocationCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, PreInvocationCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeInvocation(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public PreInvocationCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new PreInvocationCommand(readInvocation(input, members));
+		}
+	}
+
+	static class PostInvocationCommandExternalizer implements CommandExternalizer<PostInvocationCommand>
+	{
+		@Override
+		public Class<PostInvocationCommand> getTargetClass()
+		{
+			return PostInvocationCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, PostInvocationCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeInvocation(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public PostInvocationCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new PostInvocationCommand(readInvocation(input, members));
+		}
+	}
+
+	static class InvokerCommandExternalizer implements CommandExternalizer<InvokerCommand>
+	{
+		@Override
+		public Class<InvokerCommand> getTargetClass()
+		{
+			return InvokerCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, InvokerCommand command, Externalizer<Member> members) throws IOException
+		{
+			writeInvoker(output, command.getDescriptor(), members);
+		}
+
+		@Override
+		public InvokerCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			return new InvokerCommand(readInvoker(input, members));
+		}
+	}
+
+	static class StopCommandExternalizer implements CommandExternalizer<StopCommand>
+	{
+		@Override
+		public Class<StopCommand> getTargetClass()
+		{
+			return StopCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, StopCommand command, Externalizer<Member> members)
+		{
+			// Nothing to write
+		}
+
+		@Override
+		public StopCommand readCommand(DataInput input, Externalizer<Member> members)
+		{
+			return new StopCommand();
+		}
+	}
+
+	/**
+	 * Since all commands of a batch originate from the same member, the member is only written once.
+	 */
+	static class BatchCommandExternalizer implements CommandExternalizer<BatchCommand>
+	{
+		private static final byte PRE_INVOCATION = 0;
+		private static final byte POST_INVOCATION = 1;
+		private static final byte INVOKER = 2;
+
+		@Override
+		public Class<BatchCommand> getTargetClass()
+		{
+			return BatchCommand.class;
+		}
+
+		@Override
+		public void writeCommand(DataOutput output, BatchCommand command, Externalizer<Member> members) throws IOException
+		{
+			List<?> commands = command.getCommands();
+			output.writeInt(commands.size());
+			if (commands.isEmpty()) return;
+
+			Member member = null;
+			for (Object element: commands)
+			{
+				if (element instanceof InvokerCommand)
+				{
+					RemoteInvokerDescriptor descriptor = ((InvokerCommand) element).getDescriptor();
+					member = write(output, member, descriptor, members);
+					output.writeByte(INVOKER);
+					writeInvokerEvent(output, descriptor.getEvent());
+				}
+				else
+				{
+					RemoteInvocationDescriptor descriptor = ((InvocationCommand) element).getDescriptor();
+					member = write(output, member, descriptor, members);
+					output.writeByte((element instanceof PreInvocationCommand) ? PRE_INVOCATION : POST_INVOCATION);
+					writeInvocationEvent(output, descriptor.getEvent());
+				}
+			}
+		}
+
+		private static Member write(DataOutput output, Member member, Remote remote, Externalizer<Member> members) throws IOException
+		{
+			if (member == null)
+			{
+				member = remote.getMember();
+				members.writeObject(output, member);
+			}
+			return member;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public BatchCommand readCommand(DataInput input, Externalizer<Member> members) throws IOException
+		{
+			int size = input.readInt();
+			List<Command> commands = new ArrayList<>(size);
+			Member member = (size > 0) ? members.readObject(input) : null;
+			for (int i = 0; i < size; ++i)
+			{
+				byte type = input.readByte();
+				switch (type)
+				{
+					case PRE_INVOCATION:
+					{
+						commands.add(new PreInvocationCommand(new DistributedStateManager.RemoteInvocationDescriptorImpl(readInvocationEvent(input), member)));
+						break;
+					}
+					case POST_INVOCATION:
+					{
+						commands.add(new PostInvocationCommand(new DistributedStateManager.RemoteInvocationDescriptorImpl(readInvocationEvent(input), member)));
+						break;
+					}
+					case INVOKER:
+					{
+						commands.add(new InvokerCommand(new DistributedStateManager.RemoteInvokerDescriptorImpl(readInvokerEvent(input), member)));
+						break;
+					}
+					default:
+					{
+						throw new IOException(String.valueOf(type));
+					}
+				}
+			}
+			return new BatchCommand(commands);
+		}
+	}
+}
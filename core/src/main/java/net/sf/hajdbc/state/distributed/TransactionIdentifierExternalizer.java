@@ -0,0 +1,89 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import net.sf.hajdbc.distributed.Externalizer;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+import net.sf.hajdbc.tx.UUIDTransactionIdentifier;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Externalizes a transaction identifier using the binary form of the common identifier types, falling back to Java serialization.
+ * @author Paul Ferraro
+ */
+class TransactionIdentifierExternalizer implements Externalizer<Object>
+{
+	private static final byte SERIALIZED = 0;
+	private static final byte LONG = 1;
+	private static final byte UUID = 2;
+
+	@Override
+	public void writeObject(DataOutput output, Object transactionId) throws IOException
+	{
+		if (transactionId instanceof UUIDTransactionIdentifier)
+		{
+			UUIDTransactionIdentifier id = (UUIDTransactionIdentifier) transactionId;
+			output.writeByte(UUID);
+			output.writeLong(id.getMostSignificantBits());
+			output.writeLong(id.getLeastSignificantBits());
+		}
+		else if (transactionId instanceof LongTransactionIdentifier)
+		{
+			output.writeByte(LONG);
+			output.writeLong(((LongTransactionIdentifier) transactionId).longValue());
+		}
+		else
+		{
+			byte[] bytes = Objects.serialize(transactionId);
+			output.writeByte(SERIALIZED);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	@Override
+	public Object readObject(DataInput input) throws IOException
+	{
+		byte type = input.readByte();
+		switch (type)
+		{
+			case UUID:
+			{
+				return new UUIDTransactionIdentifier(new java.util.UUID(input.readLong(), input.readLong()));
+			}
+			case LONG:
+			{
+				return new LongTransactionIdentifier(input.readLong());
+			}
+			case SERIALIZED:
+			{
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				return Objects.deserialize(bytes, Object.class);
+			}
+			default:
+			{
+				throw new IOException(String.valueOf(type));
+			}
+		}
+	}
+}
@@ -0,0 +1,700 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityEvent;
+import net.sf.hajdbc.durability.DurabilityEventFactory;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerResultCodec;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+/**
+ * State manager that appends durability events, as binary records, to preallocated, memory-mapped segment files.
+ * Each record has a fixed field order, but variable length, since transaction identifiers, database identifiers, and invoker results vary in size.
+ * Each record is prefixed by its length and a CRC32 checksum of its content, so that a torn write can be detected during recovery.
+ * Once all of the invocations referenced by the oldest segments have completed, those segments are deleted.
+ * The set of active databases is stored separately, and replaced atomically on change.
+ * @author Paul Ferraro
+ */
+public class JournalStateManager implements StateManager
+{
+	static final Charset CHARSET = Charset.forName("UTF-8");
+	static final String STATE_FILE = "state";
+	static final String SEGMENT_PREFIX = "journal-";
+	static final String SEGMENT_SUFFIX = ".log";
+
+	static final byte BEFORE_INVOCATION = 1;
+	static final byte AFTER_INVOCATION = 2;
+	static final byte BEFORE_INVOKER = 3;
+	static final byte AFTER_INVOKER = 4;
+
+	// Record length + checksum
+	private static final int HEADER_SIZE = 8;
+
+	private static final Logger logger = LoggerFactory.getLogger(JournalStateManager.class);
+
+	public enum SyncPolicy
+	{
+		/** Forces each record to disk before returning */
+		ALWAYS,
+		/** Forces records to disk periodically; records survive a process crash, but not an operating system crash, until then */
+		PERIODIC,
+		/** Leaves flushing to the operating system */
+		NEVER;
+	}
+
+	private final File directory;
+	private final int segmentSize;
+	private final SyncPolicy syncPolicy;
+	private final long syncInterval;
+	private volatile DurabilityEventFactory eventFactory;
+	private volatile TransactionIdentifierFactory<Object> txIdFactory;
+	private final DatabaseCluster<?, ?> cluster;
+	private final Set<String> activeDatabases = new CopyOnWriteArraySet<>();
+
+	// The following are guarded by this
+	private final Deque<Segment> segments = new ArrayDeque<>();
+	// Segment containing the start record of each incomplete invocation
+	private final Map<DurabilityEvent, Segment> invocations = new HashMap<>();
+	private final CRC32 checksum = new CRC32();
+	private ByteBuffer record = ByteBuffer.allocate(256);
+	private Segment current;
+	private boolean dirty = false;
+
+	private volatile Map<InvocationEvent, Map<String, InvokerEvent>> recovered = Collections.emptyMap();
+	private ScheduledExecutorService syncExecutor;
+
+	public JournalStateManager(DatabaseCluster<?, ?> cluster, File directory, int segmentSize, SyncPolicy syncPolicy, long syncInterval)
+	{
+		this.cluster = cluster;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.syncPolicy = syncPolicy;
+		this.syncInterval = syncInterval;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public synchronized void start() throws Exception
+	{
+		// Durability and transaction identifier factory are not available until the cluster starts
+		this.eventFactory = this.cluster.getDurability();
+		this.txIdFactory = (TransactionIdentifierFactory<Object>) this.cluster.getTransactionIdentifierFactory();
+
+		this.directory.mkdirs();
+
+		// Discard any state from a previous start
+		this.activeDatabases.clear();
+		this.segments.clear();
+		this.invocations.clear();
+		this.dirty = false;
+
+		File stateFile = new File(this.directory, STATE_FILE);
+		if (Boolean.getBoolean(StateManager.CLEAR_LOCAL_STATE))
+		{
+			stateFile.delete();
+		}
+		if (stateFile.exists())
+		{
+			for (String database: new String(Files.readAllBytes(stateFile.toPath()), CHARSET).split("\n"))
+			{
+				if (!database.isEmpty())
+				{
+					this.activeDatabases.add(database);
+				}
+			}
+		}
+
+		this.recovered = this.scan();
+
+		this.current = this.createSegment((this.segments.isEmpty() ? 0 : this.segments.peekLast().id + 1), this.segmentSize);
+
+		if (this.syncPolicy == SyncPolicy.PERIODIC)
+		{
+			this.syncExecutor = Executors.newSingleThreadScheduledExecutor(this.cluster.getThreadFactory());
+			Runnable task = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					JournalStateManager.this.sync();
+				}
+			};
+			this.syncExecutor.scheduleWithFixedDelay(task, this.syncInterval, this.syncInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		if (this.syncExecutor != null)
+		{
+			this.syncExecutor.shutdownNow();
+			this.syncExecutor = null;
+		}
+
+		synchronized (this)
+		{
+			if (this.current != null)
+			{
+				this.current.buffer.force();
+				this.current.close();
+				this.current = null;
+			}
+		}
+	}
+
+	/**
+	 * Rebuilds the incomplete invocations from a linear scan of the existing segments, in order.
+	 * Each segment is read until its first empty or corrupt record.
+	 */
+	private Map<InvocationEvent, Map<String, InvokerEvent>> scan() throws IOException
+	{
+		Map<Long, File> files = new TreeMap<>();
+		File[] list = this.directory.listFiles();
+		if (list != null)
+		{
+			for (File file: list)
+			{
+				String name = file.getName();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+				{
+					try
+					{
+						files.put(Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+					}
+					catch (NumberFormatException e)
+					{
+						// Not a segment
+					}
+				}
+			}
+		}
+
+		Map<InvocationEvent, Map<String, InvokerEvent>> result = new HashMap<>();
+
+		for (Map.Entry<Long, File> entry: files.entrySet())
+		{
+			Segment segment = new Segment(entry.getKey().longValue(), entry.getValue());
+			this.segments.addLast(segment);
+
+			try (FileChannel channel = new RandomAccessFile(segment.file, "r").getChannel())
+			{
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+				while (this.read(buffer, segment, result))
+				{
+					// Continue
+				}
+			}
+		}
+
+		// Discard segments that are no longer referenced by any incomplete invocation
+		this.purge();
+
+		return result;
+	}
+
+	private boolean read(ByteBuffer buffer, Segment segment, Map<InvocationEvent, Map<String, InvokerEvent>> result)
+	{
+		if (buffer.remaining() < HEADER_SIZE) return false;
+
+		int position = buffer.position();
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+
+		if ((length <= 0) || (length > buffer.remaining()))
+		{
+			return false;
+		}
+
+		byte[] content = new byte[length];
+		buffer.get(content);
+
+		this.checksum.reset();
+		this.checksum.update(content, 0, length);
+		if ((int) this.checksum.getValue() != checksum)
+		{
+			logger.log(Level.WARN, "Discarding corrupt journal record at {0}:{1}", segment.file, position);
+			return false;
+		}
+
+		try
+		{
+			ByteBuffer record = ByteBuffer.wrap(content);
+			byte type = record.get();
+			byte[] txId = new byte[record.getShort()];
+			record.get(txId);
+			Durability.Phase phase = Durability.Phase.values()[record.get()];
+			Object transactionId = this.txIdFactory.deserialize(txId);
+
+			switch (type)
+			{
+				case BEFORE_INVOCATION:
+				{
+					ExceptionType exceptionType = ExceptionType.values()[record.get()];
+					InvocationEvent event = this.eventFactory.createInvocationEvent(transactionId, phase, exceptionType);
+					result.put(event, new HashMap<String, InvokerEvent>());
+					this.reference(event, segment);
+					break;
+				}
+				case AFTER_INVOCATION:
+				{
+					DurabilityEvent event = this.eventFactory.createEvent(transactionId, phase);
+					result.remove(event);
+					this.dereference(event);
+					break;
+				}
+				case BEFORE_INVOKER:
+				case AFTER_INVOKER:
+				{
+					String databaseId = readString(record);
+					Map<String, InvokerEvent> invokers = result.get(this.eventFactory.createEvent(transactionId, phase));
+					InvokerEvent event = this.eventFactory.createInvokerEvent(transactionId, phase, databaseId);
+					// Invoker events may not be supported by the current durability level
+					if ((invokers != null) && (event != null))
+					{
+						if (type == AFTER_INVOKER)
+						{
+							byte[] bytes = readBytes(record);
+							if (bytes != null)
+							{
+								event.setResult(InvokerResultCodec.decode(bytes));
+							}
+						}
+						invokers.put(databaseId, event);
+					}
+					break;
+				}
+				default:
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e)
+		{
+			logger.log(Level.WARN, e, "Discarding malformed journal record at {0}:{1}", segment.file, position);
+			return false;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#recover()
+	 */
+	@Override
+	public Map<InvocationEvent, Map<String, InvokerEvent>> recover()
+	{
+		return this.recovered;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void beforeInvocation(InvocationEvent event)
+	{
+		byte[] txId = this.txIdFactory.serialize(event.getTransactionId());
+
+		synchronized (this)
+		{
+			ByteBuffer record = this.prepare(BEFORE_INVOCATION, txId, event.getPhase(), 1);
+			record.put((byte) event.getExceptionType().ordinal());
+			Segment segment = this.append(record);
+			if (segment != null)
+			{
+				// Event may be reused by its durability, so retain a copy
+				this.reference(this.eventFactory.createEvent(event.getTransactionId(), event.getPhase()), segment);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void afterInvocation(InvocationEvent event)
+	{
+		byte[] txId = this.txIdFactory.serialize(event.getTransactionId());
+
+		synchronized (this)
+		{
+			this.append(this.prepare(AFTER_INVOCATION, txId, event.getPhase(), 0));
+			this.dereference(event);
+			this.purge();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void beforeInvoker(InvokerEvent event)
+	{
+		byte[] txId = this.txIdFactory.serialize(event.getTransactionId());
+		byte[] databaseId = event.getDatabaseId().getBytes(CHARSET);
+
+		synchronized (this)
+		{
+			ByteBuffer record = this.prepare(BEFORE_INVOKER, txId, event.getPhase(), 2 + databaseId.length);
+			record.putShort((short) databaseId.length).put(databaseId);
+			this.append(record);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void afterInvoker(InvokerEvent event)
+	{
+		byte[] txId = this.txIdFactory.serialize(event.getTransactionId());
+		byte[] databaseId = event.getDatabaseId().getBytes(CHARSET);
+		byte[] result = InvokerResultCodec.encode(event.getResult());
+		int resultLength = (result != null) ? result.length : 0;
+
+		synchronized (this)
+		{
+			ByteBuffer record = this.prepare(AFTER_INVOKER, txId, event.getPhase(), 2 + databaseId.length + 4 + resultLength);
+			record.putShort((short) databaseId.length).put(databaseId);
+			if (result != null)
+			{
+				record.putInt(result.length).put(result);
+			}
+			else
+			{
+				record.putInt(-1);
+			}
+			this.append(record);
+		}
+	}
+
+	/**
+	 * Prepares the content of a new record, whose type specific fields will follow the common fields.
+	 */
+	private ByteBuffer prepare(byte type, byte[] txId, Durability.Phase phase, int size)
+	{
+		int length = 1 + 2 + txId.length + 1 + size;
+		if (this.record.capacity() < length)
+		{
+			this.record = ByteBuffer.allocate(Math.max(length, this.record.capacity() * 2));
+		}
+		this.record.clear();
+		return this.record.put(type).putShort((short) txId.length).put(txId).put((byte) phase.ordinal());
+	}
+
+	/**
+	 * Appends the specified record content to the current segment, rolling to a new segment if necessary.
+	 * Like the other state managers, a failure to record an event is logged, rather than propagated to the invocation.
+	 * @return the segment to which the record was written, or null, if the record could not be written
+	 */
+	private Segment append(ByteBuffer record)
+	{
+		record.flip();
+		int length = record.remaining();
+
+		this.checksum.reset();
+		this.checksum.update(record.array(), 0, length);
+
+		if (this.current.buffer.remaining() < HEADER_SIZE + length)
+		{
+			try
+			{
+				this.roll(HEADER_SIZE + length);
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.ERROR, e, e.getMessage());
+				return null;
+			}
+		}
+
+		MappedByteBuffer buffer = this.current.buffer;
+		buffer.putInt(length).putInt((int) this.checksum.getValue()).put(record);
+
+		if (this.syncPolicy == SyncPolicy.ALWAYS)
+		{
+			buffer.force();
+		}
+		else
+		{
+			this.dirty = true;
+		}
+		return this.current;
+	}
+
+	private void roll(int required) throws IOException
+	{
+		Segment segment = this.current;
+
+		// Create the next segment first, so that the current segment remains usable if this fails
+		this.current = this.createSegment(segment.id + 1, Math.max(this.segmentSize, required + HEADER_SIZE));
+		this.dirty = false;
+
+		segment.buffer.force();
+		segment.close();
+
+		this.purge();
+	}
+
+	private Segment createSegment(long id, int size) throws IOException
+	{
+		Segment segment = new Segment(id, new File(this.directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+		segment.open(size);
+		this.segments.addLast(segment);
+		return segment;
+	}
+
+	synchronized void sync()
+	{
+		if (this.dirty && (this.current != null))
+		{
+			this.current.buffer.force();
+			this.dirty = false;
+		}
+	}
+
+	/**
+	 * Retains the segment containing the start record of the specified invocation until it completes.
+	 * Since segments are only deleted in order, this also retains all subsequent records of the invocation.
+	 */
+	private void reference(DurabilityEvent event, Segment segment)
+	{
+		this.invocations.put(event, segment);
+		segment.references += 1;
+	}
+
+	private void dereference(DurabilityEvent event)
+	{
+		Segment segment = this.invocations.remove(event);
+		if (segment != null)
+		{
+			segment.references -= 1;
+		}
+	}
+
+	/**
+	 * Deletes the oldest segments that are no longer referenced by any incomplete invocation.
+	 * Segments are only deleted in order, so that the completion record of an invocation is never lost while its start record remains.
+	 */
+	private void purge()
+	{
+		Iterator<Segment> segments = this.segments.iterator();
+		while (segments.hasNext())
+		{
+			Segment segment = segments.next();
+
+			if ((segment == this.current) || (segment.references > 0)) return;
+
+			segments.remove();
+			if (!segment.file.delete())
+			{
+				logger.log(Level.WARN, "Failed to delete journal segment {0}", segment.file);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#getActiveDatabases()
+	 */
+	@Override
+	public Set<String> getActiveDatabases()
+	{
+		return new TreeSet<>(this.activeDatabases);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#setActiveDatabases(java.util.Set)
+	 */
+	@Override
+	public void setActiveDatabases(Set<String> databases)
+	{
+		this.activeDatabases.retainAll(databases);
+		this.activeDatabases.addAll(databases);
+		this.store();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void activated(DatabaseEvent event)
+	{
+		if (this.activeDatabases.add(event.getSource()))
+		{
+			this.store();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		if (this.activeDatabases.remove(event.getSource()))
+		{
+			this.store();
+		}
+	}
+
+	/**
+	 * Atomically replaces the persisted set of active databases.
+	 */
+	private synchronized void store()
+	{
+		StringBuilder builder = new StringBuilder();
+		for (String database: this.activeDatabases)
+		{
+			builder.append(database).append('\n');
+		}
+
+		File file = new File(this.directory, STATE_FILE);
+		File temp = new File(this.directory, STATE_FILE + ".tmp");
+		try
+		{
+			try (RandomAccessFile output = new RandomAccessFile(temp, "rw"))
+			{
+				output.setLength(0);
+				output.write(builder.toString().getBytes(CHARSET));
+				output.getFD().sync();
+			}
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.ERROR, e, e.getMessage());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled()
+	{
+		return true;
+	}
+
+	private static String readString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort()];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	private static byte[] readBytes(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0) return null;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return bytes;
+	}
+
+	static class Segment
+	{
+		final long id;
+		final File file;
+		int references = 0;
+		MappedByteBuffer buffer;
+
+		Segment(long id, File file)
+		{
+			this.id = id;
+			this.file = file;
+		}
+
+		void open(int size) throws IOException
+		{
+			try (RandomAccessFile file = new RandomAccessFile(this.file, "rw"))
+			{
+				// Preallocate, so that the file need not grow as records are appended
+				file.setLength(size);
+				// Mapping remains valid after its channel is closed
+				this.buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+		}
+
+		void close()
+		{
+			// Mapping is released once garbage collected
+			this.buffer = null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return Arrays.asList(this.id, this.file).toString();
+		}
+	}
+}
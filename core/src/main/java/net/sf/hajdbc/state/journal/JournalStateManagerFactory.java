@@ -0,0 +1,110 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.journal;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.Locale;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.messages.Messages;
+import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.StateManagerFactory;
+import net.sf.hajdbc.util.Strings;
+
+/**
+ * Factory for creating a state manager backed by a memory-mapped journal.
+ * @author Paul Ferraro
+ */
+public class JournalStateManagerFactory implements StateManagerFactory
+{
+	private static final long serialVersionUID = -3129872634410386622L;
+
+	private static final Messages messages = MessagesFactory.getMessages();
+	private static final Logger logger = LoggerFactory.getLogger(JournalStateManagerFactory.class);
+
+	private String locationPattern = "{1}/{0}/journal";
+	private int segmentSize = 16 * 1024 * 1024;
+	private String syncPolicy = JournalStateManager.SyncPolicy.ALWAYS.name().toLowerCase(Locale.ENGLISH);
+	private long syncInterval = 100;
+
+	@Override
+	public String getId()
+	{
+		return "journal";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManagerFactory#createStateManager(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> StateManager createStateManager(DatabaseCluster<Z, D> cluster)
+	{
+		String location = MessageFormat.format(this.locationPattern, cluster.getId(), Strings.HA_JDBC_HOME);
+
+		logger.log(Level.INFO, messages.clusterStatePersistence(cluster, location));
+
+		return new JournalStateManager(cluster, new File(location), this.segmentSize, JournalStateManager.SyncPolicy.valueOf(this.syncPolicy.toUpperCase(Locale.ENGLISH)), this.syncInterval);
+	}
+
+	public String getLocationPattern()
+	{
+		return this.locationPattern;
+	}
+
+	public void setLocationPattern(String pattern)
+	{
+		this.locationPattern = pattern;
+	}
+
+	public int getSegmentSize()
+	{
+		return this.segmentSize;
+	}
+
+	public void setSegmentSize(int size)
+	{
+		this.segmentSize = size;
+	}
+
+	public String getSyncPolicy()
+	{
+		return this.syncPolicy;
+	}
+
+	public void setSyncPolicy(String policy)
+	{
+		this.syncPolicy = policy;
+	}
+
+	public long getSyncInterval()
+	{
+		return this.syncInterval;
+	}
+
+	public void setSyncInterval(long interval)
+	{
+		this.syncInterval = interval;
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.leveldb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityEvent;
+import net.sf.hajdbc.durability.DurabilityEventFactory;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerResultCodec;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBFactory;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.WriteOptions;
+
+/**
+ * State manager backed by an embedded LevelDB database.
+ * All records share a single key space, partitioned by a 1 byte prefix:
+ * <dl>
+ * <dt>state</dt><dd>(database identifier)</dd>
+ * <dt>invocation</dt><dd>(transaction identifier, phase) &rarr; exception type</dd>
+ * <dt>invoker</dt><dd>(transaction identifier, phase, database identifier) &rarr; result</dd>
+ * </dl>
+ * Since the invoker keys of an invocation share the key of that invocation as their prefix, the invokers of an invocation are found via a range scan.
+ * @author Paul Ferraro
+ */
+public class LevelDBStateManager implements StateManager
+{
+	static final Charset CHARSET = Charset.forName("UTF-8");
+	static final byte STATE = 'S';
+	static final byte INVOCATION = 'I';
+	static final byte INVOKER = 'V';
+	static final byte[] NULL = new byte[0];
+
+	private static final Logger logger = LoggerFactory.getLogger(LevelDBStateManager.class);
+
+	private final DatabaseCluster<?, ?> cluster;
+	private final File file;
+	private final DBFactory factory;
+	private final Options options;
+	private final WriteOptions writeOptions;
+	private volatile DurabilityEventFactory eventFactory;
+	private volatile TransactionIdentifierFactory<Object> txIdFactory;
+	private volatile DB db;
+
+	public LevelDBStateManager(DatabaseCluster<?, ?> cluster, File file, DBFactory factory, Options options, WriteOptions writeOptions)
+	{
+		this.cluster = cluster;
+		this.file = file;
+		this.factory = factory;
+		this.options = options;
+		this.writeOptions = writeOptions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#start()
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public void start() throws Exception
+	{
+		// Durability and transaction identifier factory are not available until the cluster starts
+		this.eventFactory = this.cluster.getDurability();
+		this.txIdFactory = (TransactionIdentifierFactory<Object>) this.cluster.getTransactionIdentifierFactory();
+
+		this.file.mkdirs();
+		this.db = this.factory.open(this.file, this.options);
+
+		if (Boolean.getBoolean(StateManager.CLEAR_LOCAL_STATE))
+		{
+			try (WriteBatch batch = this.db.createWriteBatch())
+			{
+				for (byte[] key: this.keys(new byte[] { STATE }))
+				{
+					batch.delete(key);
+				}
+				this.db.write(batch, this.writeOptions);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.Lifecycle#stop()
+	 */
+	@Override
+	public void stop()
+	{
+		DB db = this.db;
+		if (db != null)
+		{
+			this.db = null;
+			try
+			{
+				db.close();
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#getActiveDatabases()
+	 */
+	@Override
+	public Set<String> getActiveDatabases()
+	{
+		Set<String> databases = new TreeSet<>();
+		for (byte[] key: this.keys(new byte[] { STATE }))
+		{
+			databases.add(new String(key, 1, key.length - 1, CHARSET));
+		}
+		return databases;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#setActiveDatabases(java.util.Set)
+	 */
+	@Override
+	public void setActiveDatabases(Set<String> databases)
+	{
+		try (WriteBatch batch = this.db.createWriteBatch())
+		{
+			for (byte[] key: this.keys(new byte[] { STATE }))
+			{
+				batch.delete(key);
+			}
+			for (String database: databases)
+			{
+				batch.put(stateKey(database), NULL);
+			}
+			this.db.write(batch, this.writeOptions);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void activated(DatabaseEvent event)
+	{
+		this.db.put(stateKey(event.getSource()), NULL, this.writeOptions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		this.db.delete(stateKey(event.getSource()), this.writeOptions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void beforeInvocation(InvocationEvent event)
+	{
+		this.db.put(this.invocationKey(INVOCATION, event, 0).array(), new byte[] { (byte) event.getExceptionType().ordinal() }, this.writeOptions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvocation(net.sf.hajdbc.durability.InvocationEvent)
+	 */
+	@Override
+	public void afterInvocation(InvocationEvent event)
+	{
+		try (WriteBatch batch = this.db.createWriteBatch())
+		{
+			batch.delete(this.invocationKey(INVOCATION, event, 0).array());
+			for (byte[] key: this.keys(this.invocationKey(INVOKER, event, 0).array()))
+			{
+				batch.delete(key);
+			}
+			this.db.write(batch, this.writeOptions);
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#beforeInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void beforeInvoker(InvokerEvent event)
+	{
+		this.db.put(this.invokerKey(event), NULL, this.writeOptions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.durability.DurabilityListener#afterInvoker(net.sf.hajdbc.durability.InvokerEvent)
+	 */
+	@Override
+	public void afterInvoker(InvokerEvent event)
+	{
+		byte[] result = InvokerResultCodec.encode(event.getResult());
+		this.db.put(this.invokerKey(event), (result != null) ? result : NULL, this.writeOptions);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#recover()
+	 */
+	@Override
+	public Map<InvocationEvent, Map<String, InvokerEvent>> recover()
+	{
+		Map<InvocationEvent, Map<String, InvokerEvent>> result = new HashMap<>();
+
+		try (DBIterator entries = this.db.iterator())
+		{
+			byte[] prefix = new byte[] { INVOCATION };
+			for (entries.seek(prefix); entries.hasNext(); )
+			{
+				Map.Entry<byte[], byte[]> entry = entries.next();
+				ByteBuffer key = ByteBuffer.wrap(entry.getKey());
+				if (key.get() != INVOCATION) break;
+
+				Object txId = this.readTransactionId(key);
+				Durability.Phase phase = Durability.Phase.values()[key.get()];
+				ExceptionType exceptionType = ExceptionType.values()[entry.getValue()[0]];
+
+				result.put(this.eventFactory.createInvocationEvent(txId, phase, exceptionType), new HashMap<String, InvokerEvent>());
+			}
+
+			prefix = new byte[] { INVOKER };
+			for (entries.seek(prefix); entries.hasNext(); )
+			{
+				Map.Entry<byte[], byte[]> entry = entries.next();
+				ByteBuffer key = ByteBuffer.wrap(entry.getKey());
+				if (key.get() != INVOKER) break;
+
+				Object txId = this.readTransactionId(key);
+				Durability.Phase phase = Durability.Phase.values()[key.get()];
+				String databaseId = new String(key.array(), key.position(), key.remaining(), CHARSET);
+
+				Map<String, InvokerEvent> invokers = result.get(this.eventFactory.createEvent(txId, phase));
+				InvokerEvent event = this.eventFactory.createInvokerEvent(txId, phase, databaseId);
+				if ((invokers != null) && (event != null))
+				{
+					byte[] value = entry.getValue();
+					if (value.length > 0)
+					{
+						event.setResult(InvokerResultCodec.decode(value));
+					}
+					invokers.put(databaseId, event);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManager#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled()
+	{
+		return true;
+	}
+
+	/**
+	 * Returns the keys that begin with the specified prefix.
+	 */
+	private List<byte[]> keys(byte[] prefix)
+	{
+		List<byte[]> keys = new ArrayList<>();
+		try (DBIterator entries = this.db.iterator())
+		{
+			for (entries.seek(prefix); entries.hasNext(); )
+			{
+				byte[] key = entries.next().getKey();
+				if ((key.length < prefix.length) || !Arrays.equals(prefix, Arrays.copyOf(key, prefix.length))) break;
+				keys.add(key);
+			}
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		return keys;
+	}
+
+	private static byte[] stateKey(String databaseId)
+	{
+		byte[] id = databaseId.getBytes(CHARSET);
+		return ByteBuffer.allocate(1 + id.length).put(STATE).put(id).array();
+	}
+
+	/**
+	 * Creates a key of the form (prefix, transaction identifier, phase), leaving the specified number of trailing bytes for the caller.
+	 */
+	private ByteBuffer invocationKey(byte prefix, DurabilityEvent event, int remaining)
+	{
+		byte[] txId = this.txIdFactory.serialize(event.getTransactionId());
+		return ByteBuffer.allocate(1 + 2 + txId.length + 1 + remaining).put(prefix).putShort((short) txId.length).put(txId).put((byte) event.getPhase().ordinal());
+	}
+
+	private byte[] invokerKey(InvokerEvent event)
+	{
+		byte[] databaseId = event.getDatabaseId().getBytes(CHARSET);
+		return this.invocationKey(INVOKER, event, databaseId.length).put(databaseId).array();
+	}
+
+	private Object readTransactionId(ByteBuffer key)
+	{
+		byte[] txId = new byte[key.getShort()];
+		key.get(txId);
+		return this.txIdFactory.deserialize(txId);
+	}
+}
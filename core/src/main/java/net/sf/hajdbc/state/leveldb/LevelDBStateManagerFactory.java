@@ -0,0 +1,144 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.leveldb;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.messages.Messages;
+import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.StateManagerFactory;
+import net.sf.hajdbc.util.Strings;
+
+import org.iq80.leveldb.DBFactory;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteOptions;
+
+/**
+ * Factory for creating a state manager backed by an embedded LevelDB database.
+ * Uses the native LevelDB implementation, if available, otherwise the pure Java implementation.
+ * @author Paul Ferraro
+ */
+public class LevelDBStateManagerFactory implements StateManagerFactory
+{
+	private static final long serialVersionUID = 2541436208154297834L;
+
+	private static final Messages messages = MessagesFactory.getMessages();
+	private static final Logger logger = LoggerFactory.getLogger(LevelDBStateManagerFactory.class);
+
+	// In order of preference
+	private static final String[] FACTORY_CLASSES = new String[] { "org.fusesource.leveldbjni.JniDBFactory", "org.iq80.leveldb.impl.Iq80DBFactory" };
+
+	private String locationPattern = "{1}/{0}/leveldb";
+	private String factoryClass = null;
+	private boolean sync = true;
+
+	@Override
+	public String getId()
+	{
+		return "leveldb";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.state.StateManagerFactory#createStateManager(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> StateManager createStateManager(DatabaseCluster<Z, D> cluster) throws SQLException
+	{
+		String location = MessageFormat.format(this.locationPattern, cluster.getId(), Strings.HA_JDBC_HOME);
+
+		logger.log(Level.INFO, messages.clusterStatePersistence(cluster, location));
+
+		try
+		{
+			return new LevelDBStateManager(cluster, new File(location), this.createDBFactory(), new Options().createIfMissing(true), new WriteOptions().sync(this.sync));
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new SQLException(e);
+		}
+	}
+
+	private DBFactory createDBFactory() throws ReflectiveOperationException
+	{
+		if (this.factoryClass != null)
+		{
+			return this.getClass().getClassLoader().loadClass(this.factoryClass).asSubclass(DBFactory.class).newInstance();
+		}
+
+		ClassNotFoundException exception = null;
+		for (String factoryClass: FACTORY_CLASSES)
+		{
+			try
+			{
+				return this.getClass().getClassLoader().loadClass(factoryClass).asSubclass(DBFactory.class).newInstance();
+			}
+			catch (ClassNotFoundException e)
+			{
+				exception = e;
+			}
+		}
+		throw exception;
+	}
+
+	public String getLocationPattern()
+	{
+		return this.locationPattern;
+	}
+
+	public void setLocationPattern(String pattern)
+	{
+		this.locationPattern = pattern;
+	}
+
+	/**
+	 * Returns the name of the LevelDB implementation's {@link DBFactory}.
+	 * @return a class name, or null, to auto-detect
+	 */
+	public String getFactoryClass()
+	{
+		return this.factoryClass;
+	}
+
+	public void setFactoryClass(String factoryClass)
+	{
+		this.factoryClass = factoryClass;
+	}
+
+	/**
+	 * Indicates whether each write is synced to disk before returning.
+	 * @return true, if writes are synchronous, false otherwise
+	 */
+	public boolean isSync()
+	{
+		return this.sync;
+	}
+
+	public void setSync(boolean sync)
+	{
+		this.sync = sync;
+	}
+}
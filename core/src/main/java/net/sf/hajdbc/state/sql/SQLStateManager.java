@@ -24,11 +24,19 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseBuilder;
@@ -40,11 +48,10 @@ import net.sf.hajdbc.cache.simple.SimpleDatabaseMetaDataProvider;
 import net.sf.hajdbc.dialect.Dialect;
 import net.sf.hajdbc.dialect.DialectFactory;
 import net.sf.hajdbc.dialect.StandardDialectFactory;
-import net.sf.hajdbc.durability.DurabilityEvent;
 import net.sf.hajdbc.durability.DurabilityEventFactory;
 import net.sf.hajdbc.durability.InvocationEvent;
 import net.sf.hajdbc.durability.InvokerEvent;
-import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultCodec;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
@@ -57,7 +64,6 @@ import net.sf.hajdbc.state.DatabaseEvent;
 import net.sf.hajdbc.state.DurabilityListenerAdapter;
 import net.sf.hajdbc.state.SerializedDurabilityListener;
 import net.sf.hajdbc.state.StateManager;
-import net.sf.hajdbc.util.Objects;
 import net.sf.hajdbc.util.ServiceLoaders;
 
 /**
@@ -80,19 +86,22 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	static final String DELETE_STATE_SQL = MessageFormat.format("DELETE FROM {0} WHERE {1} = ?", STATE_TABLE, DATABASE_COLUMN);
 	static final String TRUNCATE_STATE_SQL = MessageFormat.format("DELETE FROM {0}", STATE_TABLE);
 
-	static final String SELECT_INVOCATION_SQL = MessageFormat.format("SELECT {1}, {2}, {3} FROM {0}", INVOCATION_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, EXCEPTION_COLUMN);
 	static final String INSERT_INVOCATION_SQL = MessageFormat.format("INSERT INTO {0} ({1}, {2}, {3}) VALUES (?, ?, ?)", INVOCATION_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, EXCEPTION_COLUMN);
 	static final String DELETE_INVOCATION_SQL = MessageFormat.format("DELETE FROM {0} WHERE {1} = ? AND {2} = ?", INVOCATION_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN);
 	
-	static final String SELECT_INVOKER_SQL = MessageFormat.format("SELECT {1}, {2}, {3}, {4} FROM {0}", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, DATABASE_COLUMN, RESULT_COLUMN);
 	static final String INSERT_INVOKER_SQL = MessageFormat.format("INSERT INTO {0} ({1}, {2}, {3}) VALUES (?, ?, ?)", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, DATABASE_COLUMN);
 	static final String UPDATE_INVOKER_SQL = MessageFormat.format("UPDATE {0} SET {4} = ? WHERE {1} = ? AND {2} = ? AND {3} = ?", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, DATABASE_COLUMN, RESULT_COLUMN);
 	static final String DELETE_INVOKER_SQL = MessageFormat.format("DELETE FROM {0} WHERE {1} = ? AND {2} = ?", INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN);
 
+	// Invocations, joined with their invokers, grouped by transaction
+	static final String SELECT_RECOVERY_SQL = MessageFormat.format("SELECT i.{2}, i.{3}, i.{4}, v.{5}, v.{6} FROM {0} i LEFT JOIN {1} v ON i.{2} = v.{2} AND i.{3} = v.{3} ORDER BY i.{2}, i.{3}", INVOCATION_TABLE, INVOKER_TABLE, TRANSACTION_COLUMN, PHASE_COLUMN, EXCEPTION_COLUMN, DATABASE_COLUMN, RESULT_COLUMN);
+
 	private static final String CREATE_INVOCATION_SQL = MessageFormat.format("CREATE TABLE {0} ({1} {2} NOT NULL, {3} {4} NOT NULL, {5} {6} NOT NULL, PRIMARY KEY ({1}, {3}))", INVOCATION_TABLE, TRANSACTION_COLUMN, "{0}", PHASE_COLUMN, "{1}", EXCEPTION_COLUMN, "{2}");
 	private static final String CREATE_INVOKER_SQL = MessageFormat.format("CREATE TABLE {0} ({1} {2} NOT NULL, {3} {4} NOT NULL, {5} {6} NOT NULL, {7} {8}, PRIMARY KEY ({1}, {3}, {5}))", INVOKER_TABLE, TRANSACTION_COLUMN, "{0}", PHASE_COLUMN, "{1}", DATABASE_COLUMN, "{2}", RESULT_COLUMN, "{3}");
 	private static final String CREATE_STATE_SQL = MessageFormat.format("CREATE TABLE {0} ({1} {2} NOT NULL, PRIMARY KEY ({1}))", STATE_TABLE, DATABASE_COLUMN, "{0}");
 	
+	public static final int DEFAULT_BATCH_SIZE = 100;
+	
 	private static Logger logger = LoggerFactory.getLogger(SQLStateManager.class);
 	
 	final DurabilityEventFactory eventFactory;
@@ -100,14 +109,32 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	private final DatabaseCluster<Z, D> cluster;
 	private final PoolFactory poolFactory;
 	private final DriverDatabase database;
+	private final int batchSize;
+	private final long batchDelay;
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
 	
 	private Pool<Connection, SQLException> pool;
+	private volatile Thread writer;
 	
 	public SQLStateManager(DatabaseCluster<Z, D> cluster, DriverDatabase database, PoolFactory poolFactory)
+	{
+		this(cluster, database, poolFactory, DEFAULT_BATCH_SIZE, 0);
+	}
+	
+	/**
+	 * @param cluster a database cluster
+	 * @param database the state database
+	 * @param poolFactory a connection pool factory
+	 * @param batchSize the maximum number of durability events to commit together, where 1 disables group commit
+	 * @param batchDelay the maximum number of milliseconds to wait for additional events before committing a batch
+	 */
+	public SQLStateManager(DatabaseCluster<Z, D> cluster, DriverDatabase database, PoolFactory poolFactory, int batchSize, long batchDelay)
 	{
 		this.cluster = cluster;
 		this.database = database;
 		this.poolFactory = poolFactory;
+		this.batchSize = batchSize;
+		this.batchDelay = batchDelay;
 		this.eventFactory = cluster.getDurability();
 		this.listener = new DurabilityListenerAdapter(this, cluster.getTransactionIdentifierFactory(), this.eventFactory);
 	}
@@ -266,30 +293,16 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	@Override
 	public void beforeInvocation(final byte[] transactionId, final byte phase, final byte exceptionType)
 	{
-		Transaction transaction = new Transaction()
+		this.write(new Operation(INSERT_INVOCATION_SQL)
 		{
 			@Override
-			public void execute(Connection connection) throws SQLException
+			void setParameters(PreparedStatement statement) throws SQLException
 			{
-				try (PreparedStatement statement = connection.prepareStatement(INSERT_INVOCATION_SQL))
-				{
-					statement.setBytes(1, transactionId);
-					statement.setByte(2, phase);
-					statement.setByte(3, exceptionType);
-					
-					statement.executeUpdate();
-				}
+				statement.setBytes(1, transactionId);
+				statement.setByte(2, phase);
+				statement.setByte(3, exceptionType);
 			}
-		};
-		
-		try
-		{
-			this.execute(transaction);
-		}
-		catch (SQLException e)
-		{
-			logger.log(Level.ERROR, e, e.getMessage());
-		}
+		});
 	}
 
 	/**
@@ -299,24 +312,7 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	@Override
 	public void afterInvocation(final byte[] transactionId, final byte phase)
 	{
-		Transaction transaction = new Transaction()
-		{
-			@Override
-			public void execute(Connection connection) throws SQLException
-			{
-				SQLStateManager.this.execute(connection, DELETE_INVOKER_SQL, transactionId, phase);
-				SQLStateManager.this.execute(connection, DELETE_INVOCATION_SQL, transactionId, phase);
-			}
-		};
-		
-		try
-		{
-			this.execute(transaction);
-		}
-		catch (SQLException e)
-		{
-			logger.log(Level.ERROR, e, e.getMessage());
-		}
+		this.write(new TransactionOperation(DELETE_INVOKER_SQL, transactionId, phase), new TransactionOperation(DELETE_INVOCATION_SQL, transactionId, phase));
 	}
 
 	/**
@@ -326,30 +322,16 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	@Override
 	public void beforeInvoker(final byte[] transactionId, final byte phase, final String databaseId)
 	{
-		Transaction transaction = new Transaction()
+		this.write(new Operation(INSERT_INVOKER_SQL)
 		{
 			@Override
-			public void execute(Connection connection) throws SQLException
+			void setParameters(PreparedStatement statement) throws SQLException
 			{
-				try (PreparedStatement statement = connection.prepareStatement(INSERT_INVOKER_SQL))
-				{
-					statement.setBytes(1, transactionId);
-					statement.setByte(2, phase);
-					statement.setString(3, databaseId);
-					
-					statement.executeUpdate();
-				}
+				statement.setBytes(1, transactionId);
+				statement.setByte(2, phase);
+				statement.setString(3, databaseId);
 			}
-		};
-		
-		try
-		{
-			this.execute(transaction);
-		}
-		catch (SQLException e)
-		{
-			logger.log(Level.ERROR, e, e.getMessage());
-		}
+		});
 	}
 
 	/**
@@ -359,26 +341,58 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	@Override
 	public void afterInvoker(final byte[] transactionId, final byte phase, final String databaseId, final byte[] result)
 	{
-		Transaction transaction = new Transaction()
+		this.write(new Operation(UPDATE_INVOKER_SQL)
 		{
 			@Override
-			public void execute(Connection connection) throws SQLException
+			void setParameters(PreparedStatement statement) throws SQLException
 			{
-				try (PreparedStatement statement = connection.prepareStatement(UPDATE_INVOKER_SQL))
+				statement.setBytes(1, result);
+				statement.setBytes(2, transactionId);
+				statement.setByte(3, phase);
+				statement.setString(4, databaseId);
+			}
+		});
+	}
+
+	/**
+	 * Writes the specified operations to the state database, and waits until they are committed.
+	 * If group commit is enabled, operations from concurrent callers are committed together.
+	 * @param operations a set of durability event operations
+	 */
+	private void write(Operation... operations)
+	{
+		Thread writer = this.writer;
+		
+		if (writer != null)
+		{
+			Request request = new Request(operations);
+			
+			try
+			{
+				this.queue.put(request);
+				
+				while (!request.await(this.batchDelay + 1000))
 				{
-					statement.setBytes(1, result);
-					statement.setBytes(2, transactionId);
-					statement.setByte(3, phase);
-					statement.setString(4, databaseId);
-					
-					statement.executeUpdate();
+					// If the writer stopped before consuming this request, execute it here
+					if ((this.writer == null) && this.queue.remove(request))
+					{
+						break;
+					}
 				}
+				
+				if (request.isComplete()) return;
 			}
-		};
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				logger.log(Level.WARN, e);
+				return;
+			}
+		}
 		
 		try
 		{
-			this.execute(transaction);
+			this.execute(new Request(operations));
 		}
 		catch (SQLException e)
 		{
@@ -406,17 +420,6 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 		this.listener.afterInvocation(event);
 	}
 	
-	void execute(Connection connection, String sql, byte[] transactionId, byte phase) throws SQLException 
-	{
-		try (PreparedStatement statement = connection.prepareStatement(sql))
-		{
-			statement.setBytes(1, transactionId);
-			statement.setByte(2, phase);
-			
-			statement.executeUpdate();
-		}
-	}
-
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.state.StateManager#recover()
@@ -433,42 +436,49 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 			{
 				Map<InvocationEvent, Map<String, InvokerEvent>> map = new HashMap<>();
 				
-				try (PreparedStatement statement = connection.prepareStatement(SELECT_INVOCATION_SQL))
-				{
-					try (ResultSet resultSet = statement.executeQuery())
-					{
-						while (resultSet.next())
-						{
-							map.put(SQLStateManager.this.listener.createInvocationEvent(resultSet.getBytes(1), resultSet.getByte(2), resultSet.getByte(3)), new HashMap<String, InvokerEvent>());
-						}
-					}
-				}
-				
-				try (PreparedStatement statement = connection.prepareStatement(SELECT_INVOKER_SQL))
+				// Rows are grouped by transaction, so each invocation is decoded only once
+				try (PreparedStatement statement = connection.prepareStatement(SELECT_RECOVERY_SQL))
 				{
 					try (ResultSet resultSet = statement.executeQuery())
 					{
+						byte[] currentTxId = null;
+						byte currentPhase = 0;
+						InvocationEvent invocation = null;
+						Map<String, InvokerEvent> invokers = null;
+						
 						while (resultSet.next())
 						{
 							byte[] txId = resultSet.getBytes(1);
 							byte phase = resultSet.getByte(2);
 							
-							DurabilityEvent event = SQLStateManager.this.listener.createEvent(txId, phase);
-							Map<String, InvokerEvent> invokers = map.get(event);
+							if ((phase != currentPhase) || !Arrays.equals(txId, currentTxId))
+							{
+								currentTxId = txId;
+								currentPhase = phase;
+								invocation = SQLStateManager.this.listener.createInvocationEvent(txId, phase, resultSet.getByte(3));
+								invokers = new HashMap<>();
+								map.put(invocation, invokers);
+							}
+							
+							String databaseId = resultSet.getString(4);
 							
-							if (invokers != null)
+							// Null if invocation has no invokers, or if invocations are not tracked
+							if ((databaseId != null) && (invocation != null))
 							{
-								String databaseId = resultSet.getString(3);
-								byte[] bytes = resultSet.getBytes(4);
+								byte[] bytes = resultSet.getBytes(5);
 								
-								InvokerEvent invokerEvent = factory.createInvokerEvent(event.getTransactionId(), event.getPhase(), databaseId);
+								InvokerEvent invokerEvent = factory.createInvokerEvent(invocation.getTransactionId(), invocation.getPhase(), databaseId);
 								
-								if (!resultSet.wasNull())
+								// Invoker events are not supported by all durability levels
+								if (invokerEvent != null)
 								{
-									invokerEvent.setResult(Objects.deserialize(bytes, InvokerResult.class));
+									if (bytes != null)
+									{
+										invokerEvent.setResult(InvokerResultCodec.decode(bytes));
+									}
+									
+									invokers.put(databaseId, invokerEvent);
 								}
-								
-								invokers.put(databaseId, invokerEvent);
 							}
 						}
 					}
@@ -561,6 +571,13 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 		{
 			this.pool.release(connection);
 		}
+		
+		if (this.batchSize > 1)
+		{
+			Thread writer = this.cluster.getThreadFactory().newThread(new Writer());
+			writer.start();
+			this.writer = writer;
+		}
 	}
 
 	private static void createTableIfNotExists(Statement statement, DatabaseProperties properties, String table, String pattern, String... types) throws SQLException
@@ -580,6 +597,25 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	@Override
 	public void stop()
 	{
+		Thread writer = this.writer;
+		
+		if (writer != null)
+		{
+			this.writer = null;
+			
+			// Commit any pending events before closing the pool
+			this.queue.add(Request.STOP);
+			
+			try
+			{
+				writer.join();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		
 		if (this.pool != null)
 		{
 			this.pool.close();
@@ -651,4 +687,252 @@ public class SQLStateManager<Z, D extends Database<Z>> implements StateManager,
 	{
 		void execute(Connection connection) throws SQLException;
 	}
+
+	/**
+	 * Executes the operations of the specified request within a single transaction.
+	 */
+	void execute(final Request request) throws SQLException
+	{
+		Transaction transaction = new Transaction()
+		{
+			@Override
+			public void execute(Connection connection) throws SQLException
+			{
+				for (Operation operation: request.operations)
+				{
+					try (PreparedStatement statement = connection.prepareStatement(operation.sql))
+					{
+						operation.setParameters(statement);
+						
+						statement.executeUpdate();
+					}
+				}
+			}
+		};
+		
+		this.execute(transaction);
+	}
+
+	/**
+	 * Executes the operations of the specified requests as JDBC batches within a single transaction.
+	 * Requests from the same caller never appear in the same group, since callers wait for their requests to commit,
+	 * so the operations of a group are independent of each other, and can be batched by statement.
+	 * If the group fails, each request is retried in its own transaction, so that a single bad event cannot lose the others.
+	 */
+	void execute(final List<Request> requests)
+	{
+		Transaction transaction = new Transaction()
+		{
+			@Override
+			public void execute(Connection connection) throws SQLException
+			{
+				Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+				
+				try
+				{
+					for (Request request: requests)
+					{
+						for (Operation operation: request.operations)
+						{
+							PreparedStatement statement = statements.get(operation.sql);
+							
+							if (statement == null)
+							{
+								statement = connection.prepareStatement(operation.sql);
+								statements.put(operation.sql, statement);
+							}
+							
+							operation.setParameters(statement);
+							
+							statement.addBatch();
+						}
+					}
+					
+					for (PreparedStatement statement: statements.values())
+					{
+						statement.executeBatch();
+					}
+				}
+				finally
+				{
+					for (PreparedStatement statement: statements.values())
+					{
+						statement.close();
+					}
+				}
+			}
+		};
+		
+		try
+		{
+			this.execute(transaction);
+		}
+		catch (SQLException e)
+		{
+			logger.log(Level.WARN, e, e.getMessage());
+			
+			for (Request request: requests)
+			{
+				try
+				{
+					this.execute(request);
+				}
+				catch (SQLException ex)
+				{
+					logger.log(Level.ERROR, ex, ex.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects requests from all threads, and commits them in groups bounded by batch size and batch delay.
+	 */
+	private class Writer implements Runnable
+	{
+		Writer()
+		{
+		}
+
+		@Override
+		public void run()
+		{
+			int batchSize = SQLStateManager.this.batchSize;
+			long batchDelay = SQLStateManager.this.batchDelay;
+			BlockingQueue<Request> queue = SQLStateManager.this.queue;
+			List<Request> requests = new ArrayList<>(batchSize);
+			boolean stopped = false;
+			
+			while (!stopped)
+			{
+				try
+				{
+					requests.add(queue.take());
+					
+					// Collect whatever accumulated while the previous group was committing
+					queue.drainTo(requests, batchSize - requests.size());
+					
+					if (batchDelay > 0)
+					{
+						long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay);
+						
+						while ((requests.size() < batchSize) && !requests.contains(Request.STOP))
+						{
+							long remaining = end - System.nanoTime();
+							
+							if (remaining <= 0) break;
+							
+							Request request = queue.poll(remaining, TimeUnit.NANOSECONDS);
+							
+							if (request == null) break;
+							
+							requests.add(request);
+						}
+					}
+					
+					stopped = requests.remove(Request.STOP);
+					
+					if (!requests.isEmpty())
+					{
+						SQLStateManager.this.execute(requests);
+					}
+				}
+				catch (InterruptedException e)
+				{
+					stopped = true;
+				}
+				finally
+				{
+					for (Request request: requests)
+					{
+						request.complete();
+					}
+					requests.clear();
+				}
+			}
+			
+			// Execute any requests queued after the stop request individually
+			for (Request request = queue.poll(); request != null; request = queue.poll())
+			{
+				if (request != Request.STOP)
+				{
+					try
+					{
+						SQLStateManager.this.execute(request);
+					}
+					catch (SQLException e)
+					{
+						logger.log(Level.ERROR, e, e.getMessage());
+					}
+					request.complete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * A set of durability event operations written by a single caller.
+	 */
+	static class Request
+	{
+		static final Request STOP = new Request();
+		
+		final Operation[] operations;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		
+		Request(Operation... operations)
+		{
+			this.operations = operations;
+		}
+		
+		void complete()
+		{
+			this.latch.countDown();
+		}
+		
+		boolean await(long timeout) throws InterruptedException
+		{
+			return this.latch.await(timeout, TimeUnit.MILLISECONDS);
+		}
+		
+		boolean isComplete()
+		{
+			return this.latch.getCount() == 0;
+		}
+	}
+
+	/**
+	 * A single durability event write.
+	 */
+	abstract static class Operation
+	{
+		final String sql;
+		
+		Operation(String sql)
+		{
+			this.sql = sql;
+		}
+		
+		abstract void setParameters(PreparedStatement statement) throws SQLException;
+	}
+
+	static class TransactionOperation extends Operation
+	{
+		private final byte[] transactionId;
+		private final byte phase;
+		
+		TransactionOperation(String sql, byte[] transactionId, byte phase)
+		{
+			super(sql);
+			this.transactionId = transactionId;
+			this.phase = phase;
+		}
+
+		@Override
+		void setParameters(PreparedStatement statement) throws SQLException
+		{
+			statement.setBytes(1, this.transactionId);
+			statement.setByte(2, this.phase);
+		}
+	}
 }
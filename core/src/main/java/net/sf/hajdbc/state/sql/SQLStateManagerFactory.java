@@ -34,6 +34,7 @@ import net.sf.hajdbc.pool.generic.GenericObjectPoolConfiguration;
 import net.sf.hajdbc.pool.generic.GenericObjectPoolFactory;
 import net.sf.hajdbc.sql.DriverDatabase;
 import net.sf.hajdbc.sql.DriverDatabaseBuilder;
+import net.sf.hajdbc.state.DeferredStateManager;
 import net.sf.hajdbc.state.StateManager;
 import net.sf.hajdbc.state.StateManagerFactory;
 import net.sf.hajdbc.util.Strings;
@@ -70,6 +71,9 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 	private String urlPattern;
 	private String user;
 	private String password;
+	private int batchSize = SQLStateManager.DEFAULT_BATCH_SIZE;
+	private long batchDelay = 0;
+	private long durabilityWindow = 0;
 
 	public SQLStateManagerFactory()
 	{
@@ -126,7 +130,9 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 		
 		logger.log(Level.INFO, messages.clusterStatePersistence(cluster, url));
 		
-		return new SQLStateManager<>(cluster, database, new GenericObjectPoolFactory(this));
+		StateManager stateManager = new SQLStateManager<>(cluster, database, new GenericObjectPoolFactory(this), this.batchSize, this.batchDelay);
+		
+		return (this.durabilityWindow > 0) ? new DeferredStateManager(stateManager, this.durabilityWindow, cluster.getThreadFactory()) : stateManager;
 	}
 	
 	public String getUrlPattern()
@@ -158,4 +164,47 @@ public class SQLStateManagerFactory extends GenericObjectPoolConfiguration imple
 	{
 		this.password = password;
 	}
+
+	/**
+	 * Returns the maximum number of durability events committed to the state database together.
+	 * @return a batch size, where 1 disables group commit
+	 */
+	public int getBatchSize()
+	{
+		return this.batchSize;
+	}
+	
+	public void setBatchSize(int batchSize)
+	{
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Returns the maximum number of milliseconds to wait for additional durability events before committing a batch.
+	 * @return a delay in milliseconds
+	 */
+	public long getBatchDelay()
+	{
+		return this.batchDelay;
+	}
+	
+	public void setBatchDelay(long batchDelay)
+	{
+		this.batchDelay = batchDelay;
+	}
+
+	/**
+	 * Returns the number of milliseconds for which durability events are held in memory before being persisted.
+	 * Invocations that complete within this window are never persisted, but neither are they recoverable following a crash.
+	 * @return a window in milliseconds, where 0 persists all durability events
+	 */
+	public long getDurabilityWindow()
+	{
+		return this.durabilityWindow;
+	}
+	
+	public void setDurabilityWindow(long durabilityWindow)
+	{
+		this.durabilityWindow = durabilityWindow;
+	}
 }
@@ -35,7 +35,7 @@ import net.sf.hajdbc.durability.DurabilityEvent;
 import net.sf.hajdbc.durability.DurabilityEventFactory;
 import net.sf.hajdbc.durability.InvocationEvent;
 import net.sf.hajdbc.durability.InvokerEvent;
-import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultCodec;
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
 import net.sf.hajdbc.logging.LoggerFactory;
@@ -45,7 +45,6 @@ import net.sf.hajdbc.state.DatabaseEvent;
 import net.sf.hajdbc.state.DurabilityListenerAdapter;
 import net.sf.hajdbc.state.SerializedDurabilityListener;
 import net.sf.hajdbc.state.StateManager;
-import net.sf.hajdbc.util.Objects;
 
 import org.tmatesoft.sqljet.core.SqlJetException;
 import org.tmatesoft.sqljet.core.SqlJetTransactionMode;
@@ -396,7 +395,7 @@ public class SQLiteStateManager<Z, D extends Database<Z>> implements StateManage
 								if (!cursor.isNull(RESULT_COLUMN))
 								{
 									byte[] result = cursor.getBlobAsArray(RESULT_COLUMN);
-									invokerEvent.setResult(Objects.deserialize(result, InvokerResult.class));
+									invokerEvent.setResult(InvokerResultCodec.decode(result));
 								}
 								
 								invokers.put(databaseId, invokerEvent);
@@ -0,0 +1,407 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.ChecksumSupport;
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.SynchronizationStrategy;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.util.Objects;
+
+/**
+ * Synchronization strategy that compares checksums of ranges of primary key values, computed by each database, to locate differences between two databases.
+ * Only the rows of ranges whose checksums differ are compared, using the {@link DifferentialSynchronizationStrategy}.
+ * Consequently, the number of rows transferred from each database is proportional to the number of differences, rather than the size of each table.
+ * The following algorithm is used for each table:
+ * <ol>
+ *  <li>Compare the row count and checksum of the table on each database.  If equal, the table is already synchronized.</li>
+ *  <li>If the number of rows is at most {@link #getMaxLeafSize()}, synchronize the rows of the range differentially.</li>
+ *  <li>Otherwise, split the range into {@link #getFanout()} sub-ranges, and repeat for each sub-range.</li>
+ * </ol>
+ * This strategy requires a dialect with {@link ChecksumSupport}, and tables whose leading primary key column is an integer type.
+ * Other tables are synchronized differentially in their entirety.
+ * @author Paul Ferraro
+ */
+public class ChecksumSynchronizationStrategy implements SynchronizationStrategy, TableRangeSynchronizationStrategy
+{
+	private static final long serialVersionUID = 5207418652380651291L;
+
+	static Logger logger = LoggerFactory.getLogger(ChecksumSynchronizationStrategy.class);
+
+	private final PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final DifferentialSynchronizationStrategy diff = new DifferentialSynchronizationStrategy();
+	private int fanout = 16;
+	private int maxLeafSize = 1000;
+
+	@Override
+	public String getId()
+	{
+		return "checksum";
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.strategy.synchronize(context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationStrategy#init(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void init(DatabaseCluster<Z, D> cluster)
+	{
+		this.strategy.init(cluster);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.SynchronizationStrategy#destroy(net.sf.hajdbc.DatabaseCluster)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void destroy(DatabaseCluster<Z, D> cluster)
+	{
+		this.strategy.destroy(cluster);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.diff.dropConstraints(context);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.diff.restoreConstraints(context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.TableSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		this.synchronize(context, table, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.TableRangeSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties, net.sf.hajdbc.sync.KeyRange)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+	{
+		ChecksumSupport support = context.getDialect().getChecksumSupport();
+		String column = (support != null) ? PerTableSynchronizationStrategy.getKeyColumn(context, table) : null;
+		
+		if (column == null)
+		{
+			this.diff.synchronize(context, table, range);
+			return;
+		}
+		
+		KeyRange root = (range != null) ? range : new KeyRange(column, null, null);
+		// Effective bounds of unbounded ranges, determined lazily
+		BigInteger[] bounds = null;
+		
+		Deque<KeyRange> ranges = new ArrayDeque<>();
+		ranges.push(root);
+		
+		while (!ranges.isEmpty())
+		{
+			KeyRange node = ranges.pop();
+			
+			long[] counts = this.compare(context, support, table, node);
+			
+			// Checksums match
+			if (counts == null) continue;
+			
+			if (Math.max(counts[0], counts[1]) > this.maxLeafSize)
+			{
+				if (bounds == null)
+				{
+					bounds = bounds(context, table, root);
+				}
+				
+				BigInteger lower = (node.getLower() != null) ? BigInteger.valueOf(node.getLower()) : bounds[0];
+				BigInteger upper = (node.getUpper() != null) ? BigInteger.valueOf(node.getUpper()) : bounds[1];
+				BigInteger span = upper.subtract(lower);
+				
+				if (span.compareTo(BigInteger.ONE) > 0)
+				{
+					BigInteger count = span.min(BigInteger.valueOf(Math.max(this.fanout, 2)));
+					// Width of each range, rounded up
+					BigInteger width = span.add(count).subtract(BigInteger.ONE).divide(count);
+					
+					Long childLower = node.getLower();
+					BigInteger bound = lower.add(width);
+					
+					// Push in reverse order, so that ranges are visited in key order
+					Deque<KeyRange> children = new ArrayDeque<>();
+					
+					while (bound.compareTo(upper) < 0)
+					{
+						Long childUpper = bound.longValue();
+						children.push(new KeyRange(column, childLower, childUpper));
+						childLower = childUpper;
+						bound = bound.add(width);
+					}
+					children.push(new KeyRange(column, childLower, node.getUpper()));
+					
+					for (KeyRange child: children)
+					{
+						ranges.push(child);
+					}
+					continue;
+				}
+			}
+			
+			logger.log(Level.DEBUG, "Synchronizing range {1} of {0}", table.getName(), node);
+			
+			this.diff.synchronize(context, table, node);
+		}
+	}
+
+	/**
+	 * Compares the checksums of the specified range of the specified table on the source and target databases.
+	 * @return the row counts of the range on the source and target databases, or null, if the checksums are equal.
+	 */
+	private <Z, D extends Database<Z>> long[] compare(SynchronizationContext<Z, D> context, ChecksumSupport support, TableProperties table, KeyRange range) throws SQLException
+	{
+		final String sql = support.getChecksumSQL(table, range.getPredicate());
+		
+		logger.log(Level.DEBUG, sql);
+		
+		Connection targetConnection = context.getConnection(context.getTargetDatabase());
+		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
+		
+		try (final Statement targetStatement = targetConnection.createStatement())
+		{
+			Callable<Object[]> callable = new Callable<Object[]>()
+			{
+				@Override
+				public Object[] call() throws SQLException
+				{
+					return checksum(targetStatement, sql);
+				}
+			};
+			
+			Future<Object[]> future = context.getExecutor().submit(callable);
+			
+			try (Statement sourceStatement = sourceConnection.createStatement())
+			{
+				Object[] source = checksum(sourceStatement, sql);
+				Object[] target = future.get();
+				
+				long sourceCount = (Long) source[0];
+				long targetCount = (Long) target[0];
+				
+				if ((sourceCount == targetCount) && Objects.equals(source[1], target[1])) return null;
+				
+				return new long[] { sourceCount, targetCount };
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		catch (ExecutionException e)
+		{
+			throw ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+		}
+	}
+
+	static Object[] checksum(Statement statement, String sql) throws SQLException
+	{
+		try (ResultSet resultSet = statement.executeQuery(sql))
+		{
+			resultSet.next();
+			return new Object[] { resultSet.getLong(1), resultSet.getObject(2) };
+		}
+	}
+
+	/**
+	 * Determines the minimum (inclusive) and maximum (exclusive) key values of the specified range across the source and target databases.
+	 */
+	private static <Z, D extends Database<Z>> BigInteger[] bounds(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+	{
+		String column = range.getColumn();
+		String sql = String.format("SELECT MIN(%s), MAX(%s) FROM %s WHERE %s", column, column, table.getName().getDMLName(), range.getPredicate());
+		
+		logger.log(Level.DEBUG, sql);
+		
+		BigInteger min = null;
+		BigInteger max = null;
+		
+		for (Connection connection: new Connection[] { context.getConnection(context.getSourceDatabase()), context.getConnection(context.getTargetDatabase()) })
+		{
+			try (Statement statement = connection.createStatement())
+			{
+				try (ResultSet resultSet = statement.executeQuery(sql))
+				{
+					if (resultSet.next())
+					{
+						long lower = resultSet.getLong(1);
+						
+						if (!resultSet.wasNull())
+						{
+							BigInteger value = BigInteger.valueOf(lower);
+							min = (min != null) ? min.min(value) : value;
+							value = BigInteger.valueOf(resultSet.getLong(2)).add(BigInteger.ONE);
+							max = (max != null) ? max.max(value) : value;
+						}
+					}
+				}
+			}
+		}
+		
+		return new BigInteger[] { (min != null) ? min : BigInteger.ZERO, (max != null) ? max : BigInteger.ZERO };
+	}
+
+	/**
+	 * @return the maximum number of sub-ranges into which to split a range whose checksums differ.
+	 */
+	public int getFanout()
+	{
+		return this.fanout;
+	}
+
+	/**
+	 * @param fanout the maximum number of sub-ranges into which to split a range whose checksums differ.
+	 */
+	public void setFanout(int fanout)
+	{
+		this.fanout = fanout;
+	}
+
+	/**
+	 * @return the maximum number of rows of a range whose checksums differ, below which its rows are compared directly.
+	 */
+	public int getMaxLeafSize()
+	{
+		return this.maxLeafSize;
+	}
+
+	/**
+	 * @param maxLeafSize the maximum number of rows of a range whose checksums differ, below which its rows are compared directly.
+	 */
+	public void setMaxLeafSize(int maxLeafSize)
+	{
+		this.maxLeafSize = maxLeafSize;
+	}
+
+	/**
+	 * @return the fetchSize.
+	 */
+	public int getFetchSize()
+	{
+		return this.diff.getFetchSize();
+	}
+
+	/**
+	 * @param fetchSize the fetchSize to set.
+	 */
+	public void setFetchSize(int fetchSize)
+	{
+		this.diff.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * @return the maxBatchSize.
+	 */
+	public int getMaxBatchSize()
+	{
+		return this.diff.getMaxBatchSize();
+	}
+
+	/**
+	 * @param maxBatchSize the maxBatchSize to set.
+	 */
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		this.diff.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the pattern of the names of version columns, used to compare the rows of ranges whose checksums differ.
+	 */
+	public String getVersionPattern()
+	{
+		return this.diff.getVersionPattern();
+	}
+
+	/**
+	 * @param versionPattern the pattern of the names of version columns, used to compare the rows of ranges whose checksums differ.
+	 */
+	public void setVersionPattern(String versionPattern)
+	{
+		this.diff.setVersionPattern(versionPattern);
+	}
+
+	/**
+	 * @return the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public int getMaxConcurrency()
+	{
+		return this.strategy.getMaxConcurrency();
+	}
+
+	/**
+	 * @param maxConcurrency the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
+	{
+		this.strategy.setMaxConcurrency(maxConcurrency);
+	}
+
+	/**
+	 * @return the maximum number of primary key ranges into which to partition each table.
+	 */
+	public int getPartitions()
+	{
+		return this.strategy.getPartitions();
+	}
+
+	/**
+	 * @param partitions the maximum number of primary key ranges into which to partition each table.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.strategy.setPartitions(partitions);
+	}
+}
@@ -71,14 +71,14 @@ import net.sf.hajdbc.util.Strings;
  * </ol>
  * @author  Paul Ferraro
  */
-public class DifferentialSynchronizationStrategy implements SynchronizationStrategy, TableSynchronizationStrategy
+public class DifferentialSynchronizationStrategy implements SynchronizationStrategy, TableRangeSynchronizationStrategy
 {
 	private static final long serialVersionUID = -2785092229503649831L;
 
 	static Messages messages = MessagesFactory.getMessages();
 	static Logger logger = LoggerFactory.getLogger(DifferentialSynchronizationStrategy.class);
 
-	private final SynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
 	private int fetchSize = 0;
 	private int maxBatchSize = 100;
 	private Pattern versionPattern = null;
@@ -133,10 +133,20 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 
 	/**
 	 * {@inheritDoc}
-	 * @see net.sf.hajdbc.SynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext)
+	 * @see net.sf.hajdbc.sync.TableSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties)
 	 */
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		this.synchronize(context, table, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.TableRangeSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties, net.sf.hajdbc.sync.KeyRange)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
 	{
 		String tableName = table.getName().getDMLName();
 		
@@ -182,7 +192,7 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 		}
 		
 		// Retrieve table rows in primary key order
-		final String selectSQL = String.format("SELECT %s FROM %s ORDER BY %s", Strings.join(selectColumns, Strings.PADDED_COMMA), tableName, Strings.join(primaryKeyColumns, Strings.PADDED_COMMA)); //$NON-NLS-1$
+		final String selectSQL = String.format("SELECT %s FROM %s%s ORDER BY %s", Strings.join(selectColumns, Strings.PADDED_COMMA), tableName, (range != null) ? " WHERE " + range.getPredicate() : "", Strings.join(primaryKeyColumns, Strings.PADDED_COMMA)); //$NON-NLS-1$
 		String primaryKeyWhereClause = Strings.join(new StringBuilder(), primaryKeyColumns, " = ? AND ").append(" = ?").toString(); //$NON-NLS-1$
 		String selectAllSQL = !versionColumns.isEmpty() ? String.format("SELECT %s FROM %s WHERE %s", Strings.join(nonPrimaryKeyColumns, Strings.PADDED_COMMA), tableName, primaryKeyWhereClause) : null;
 		String deleteSQL = String.format("DELETE FROM %s WHERE %s", tableName, primaryKeyWhereClause);
@@ -553,4 +563,36 @@ public class DifferentialSynchronizationStrategy implements SynchronizationStrat
 	{
 		this.versionPattern = (versionPattern != null) ? Pattern.compile(versionPattern, Pattern.CASE_INSENSITIVE) : null;
 	}
+
+	/**
+	 * @return the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public int getMaxConcurrency()
+	{
+		return this.strategy.getMaxConcurrency();
+	}
+
+	/**
+	 * @param maxConcurrency the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
+	{
+		this.strategy.setMaxConcurrency(maxConcurrency);
+	}
+
+	/**
+	 * @return the maximum number of primary key ranges into which to partition each table.
+	 */
+	public int getPartitions()
+	{
+		return this.strategy.getPartitions();
+	}
+
+	/**
+	 * @param partitions the maximum number of primary key ranges into which to partition each table.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.strategy.setPartitions(partitions);
+	}
 }
@@ -26,23 +26,33 @@ import net.sf.hajdbc.DumpRestoreSupport;
 import net.sf.hajdbc.ExceptionType;
 import net.sf.hajdbc.messages.Messages;
 import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.StreamingDumpRestoreSupport;
 import net.sf.hajdbc.SynchronizationStrategy;
 import net.sf.hajdbc.codec.Decoder;
 import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
 import net.sf.hajdbc.util.Files;
+import net.sf.hajdbc.util.Processes;
 
 /**
  * A synchronization strategy that uses dump/restore procedures.
+ * By default, the dump is written to a temporary file before it is restored.
+ * If streaming is enabled and supported by the dialect, the dump is piped directly into the restore procedure instead.
+ * Since the restore procedure executes statements as it reads them, a failed streaming synchronization may leave the target database partially restored.
  * @author Paul Ferraro
  */
 public class DumpRestoreSynchronizationStrategy implements SynchronizationStrategy
 {
 	private static final Messages messages = MessagesFactory.getMessages();
+	private static final Logger logger = LoggerFactory.getLogger(DumpRestoreSynchronizationStrategy.class);
 
 	private static final long serialVersionUID = 5743532034969216540L;
 	private static final String DUMP_FILE_SUFFIX = ".dump";
 
 	private boolean dataOnly = false;
+	private boolean streaming = false;
 
 	@Override
 	public String getId()
@@ -60,6 +70,16 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 		this.dataOnly = dataOnly;
 	}
 
+	public boolean isStreaming()
+	{
+		return this.streaming;
+	}
+
+	public void setStreaming(boolean streaming)
+	{
+		this.streaming = streaming;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.SynchronizationStrategy#init(net.sf.hajdbc.DatabaseCluster)
@@ -96,6 +116,26 @@ public class DumpRestoreSynchronizationStrategy implements SynchronizationStrate
 		
 		try
 		{
+			if (this.streaming && (support instanceof StreamingDumpRestoreSupport))
+			{
+				StreamingDumpRestoreSupport streamingSupport = (StreamingDumpRestoreSupport) support;
+				ProcessBuilder dump = streamingSupport.createDumpProcess(context.getSourceDatabase(), decoder, this.dataOnly);
+				ProcessBuilder restore = streamingSupport.createRestoreProcess(context.getTargetDatabase(), decoder, this.dataOnly);
+				
+				try
+				{
+					long bytes = Processes.pipe(dump, restore, context.getThreadFactory());
+					
+					logger.log(Level.INFO, "Streamed {0} bytes from {1} to {2}", bytes, context.getSourceDatabase(), context.getTargetDatabase());
+					return;
+				}
+				catch (Exception e)
+				{
+					logger.log(Level.WARN, "Streaming synchronization of {0} failed, leaving it partially restored", context.getTargetDatabase());
+					throw e;
+				}
+			}
+			
 			File file = Files.createTempFile(DUMP_FILE_SUFFIX);
 			
 			try
@@ -17,17 +17,98 @@
  */
 package net.sf.hajdbc.sync;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.DatabaseClusterListener;
+import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.SynchronizationStrategy;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.TriggerSupport;
+import net.sf.hajdbc.TriggerSupport.TriggerEventEnum;
+import net.sf.hajdbc.TriggerSupport.TriggerTimeEnum;
+import net.sf.hajdbc.UniqueConstraint;
+import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+import net.sf.hajdbc.messages.Messages;
+import net.sf.hajdbc.messages.MessagesFactory;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.util.Strings;
 
 /**
- * Work in progress...
+ * Synchronization strategy that only synchronizes the rows that changed since the target database was deactivated.
+ * Changes are tracked by triggers that record the primary key of each inserted, updated, or deleted row, along with a timestamp, in a change table keyed by that primary key.
+ * Change tracking is installed once this strategy is first used, and timestamps are always those of the database server recording the change.
+ * Each tracking database also records the installation time of its change tables and the deactivation time of each inactive database, so that these survive a restart.
+ * The following algorithm is used:
+ * <ol>
+ *  <li>Drop the foreign keys and unique constraints on the inactive database (to avoid integrity constraint violations)</li>
+ *  <li>For each database table:
+ *   <ol>
+ *    <li>Query the primary keys recorded in the change tables of both the active and inactive database since the inactive database was deactivated</li>
+ *    <li>For each primary key, delete the corresponding row from the inactive database, and insert the row from the active database, if it exists</li>
+ *   </ol>
+ *  </li>
+ *  <li>Re-create the foreign keys and unique constraints on the inactive database</li>
+ *  <li>Synchronize sequences</li>
+ *  <li>Install triggers and change tables on the inactive database, and on any active database lacking them</li>
+ * </ol>
+ * Changes that are no longer needed by any inactive database are purged periodically.
+ * When the cluster stops, change tracking is removed from each active database, unless an inactive database still needs it.
+ * A table is instead synchronized via {@link DifferentialSynchronizationStrategy} if its changes cannot be determined, i.e. if:
+ * <ul>
+ *  <li>the dialect does not support triggers</li>
+ *  <li>the table has no primary key</li>
+ *  <li>the deactivation time of the inactive database is unknown, e.g. if change tracking was not yet installed when it was deactivated</li>
+ *  <li>either database was not yet tracking changes to the table when the inactive database was deactivated</li>
+ * </ul>
  * @author Paul Ferraro
  */
-public class FastDifferentialSynchronizationStrategy implements SynchronizationStrategy
+public class FastDifferentialSynchronizationStrategy implements SynchronizationStrategy, TableSynchronizationStrategy, DatabaseClusterListener
 {
 	private static final long serialVersionUID = 2556031934309008750L;
+	private static final String TRIGGER_PREFIX = "hajdbc_";
+	private static final String TIMESTAMP_COLUMN = "hajdbc_changed";
+	private static final String TRACKING_TABLE = Dialect.SCHEMA + ".hajdbc_tracking";
+	private static final String CHANGE_TABLE_COLUMN = "change_table";
+	private static final String INSTALLED_COLUMN = "installed";
+	private static final String DEACTIVATION_TABLE = Dialect.SCHEMA + ".hajdbc_deactivation";
+	private static final String DATABASE_COLUMN = "database_id";
+	private static final String DEACTIVATED_COLUMN = "deactivated";
+
+	static Messages messages = MessagesFactory.getMessages();
+	static Logger logger = LoggerFactory.getLogger(FastDifferentialSynchronizationStrategy.class);
+
+	private final PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private final DifferentialSynchronizationStrategy diff = new DifferentialSynchronizationStrategy();
+	// Changes to synchronize, indexed by target database, for the duration of its synchronization
+	private final ConcurrentMap<String, Changes> changes = new ConcurrentHashMap<>();
+	private long maxTransactionDuration = 60000L;
+	private long purgeInterval = 60000L;
+	private transient volatile DatabaseCluster<?, ?> cluster;
+	private transient volatile ScheduledExecutorService purgeExecutor;
 
 	@Override
 	public String getId()
@@ -37,30 +118,996 @@ public class FastDifferentialSynchronizationStrategy implements SynchronizationS
 
 	/**
 	 * {@inheritDoc}
+	 * Change tracking is not installed until this strategy is first used.
 	 * @see net.sf.hajdbc.SynchronizationStrategy#init(net.sf.hajdbc.DatabaseCluster)
 	 */
 	@Override
-	public <Z, D extends Database<Z>> void init(DatabaseCluster<Z, D> cluster)
+	public <Z, D extends Database<Z>> void init(final DatabaseCluster<Z, D> cluster)
 	{
-//		"UPDATE changes.table SET new_flag = $1 WHERE id = NEW.id;";
-//		"INSERT INTO changes.table (id, new_flag) SELECT NEW.id, $1 WHERE NOT EXISTS (SELECT 1 FROM changes.table WHERE id = NEW.id);";
+		this.strategy.init(cluster);
+		this.cluster = cluster;
+		
+		cluster.addListener(this);
+		
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				FastDifferentialSynchronizationStrategy.this.purge(cluster);
+			}
+		};
+		this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(cluster.getThreadFactory());
+		this.purgeExecutor.scheduleWithFixedDelay(task, this.purgeInterval, this.purgeInterval, TimeUnit.MILLISECONDS);
 	}
 
 	/**
 	 * {@inheritDoc}
-	 * @see net.sf.hajdbc.SynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext)
+	 * Change tracking is removed, unless an inactive database still needs it.
+	 * @see net.sf.hajdbc.SynchronizationStrategy#destroy(net.sf.hajdbc.DatabaseCluster)
 	 */
 	@Override
-	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context)
+	public <Z, D extends Database<Z>> void destroy(DatabaseCluster<Z, D> cluster)
 	{
+		ScheduledExecutorService executor = this.purgeExecutor;
+		if (executor != null)
+		{
+			executor.shutdown();
+			try
+			{
+				// Let any running purge complete before removing change tracking
+				executor.awaitTermination(this.purgeInterval, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			this.purgeExecutor = null;
+		}
+		
+		cluster.removeListener(this);
+		
+		this.uninstall(cluster);
+		
+		this.cluster = null;
+		this.strategy.destroy(cluster);
 	}
 
 	/**
 	 * {@inheritDoc}
-	 * @see net.sf.hajdbc.SynchronizationStrategy#destroy(net.sf.hajdbc.DatabaseCluster)
+	 * @see net.sf.hajdbc.DatabaseClusterListener#activated(net.sf.hajdbc.state.DatabaseEvent)
 	 */
 	@Override
-	public <Z, D extends Database<Z>> void destroy(DatabaseCluster<Z, D> cluster)
+	public void activated(DatabaseEvent event)
+	{
+		DatabaseCluster<?, ?> cluster = this.cluster;
+		
+		if (cluster != null)
+		{
+			this.activated(cluster, event.getSource());
+		}
+	}
+
+	/**
+	 * Discards the deactivation time of the specified database, and installs change tracking on it, if this strategy is in use.
+	 */
+	private <Z, D extends Database<Z>> void activated(DatabaseCluster<Z, D> cluster, String databaseId)
+	{
+		if (cluster.getDialect().getTriggerSupport() == null) return;
+		
+		String sql = String.format("DELETE FROM %s WHERE %s = ?", DEACTIVATION_TABLE, DATABASE_COLUMN);
+		boolean tracking = false;
+		
+		for (D database: cluster.getBalancer())
+		{
+			try (Connection connection = database.connect(cluster.getDecoder()))
+			{
+				connection.setAutoCommit(true);
+				
+				if (!exists(connection, DEACTIVATION_TABLE)) continue;
+				
+				tracking |= !database.getId().equals(databaseId);
+				
+				logger.log(Level.DEBUG, sql);
+				
+				try (PreparedStatement statement = connection.prepareStatement(sql))
+				{
+					statement.setString(1, databaseId);
+					statement.executeUpdate();
+				}
+			}
+			catch (SQLException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+		
+		// Database may have been activated via another strategy, after this strategy was first used
+		if (tracking)
+		{
+			this.track(cluster, cluster.getDatabase(databaseId));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.DatabaseClusterListener#deactivated(net.sf.hajdbc.state.DatabaseEvent)
+	 */
+	@Override
+	public void deactivated(DatabaseEvent event)
+	{
+		DatabaseCluster<?, ?> cluster = this.cluster;
+		
+		if (cluster != null)
+		{
+			this.deactivated(cluster, event.getSource());
+		}
+	}
+
+	/**
+	 * Records the deactivation time of the specified database on each tracking database, according to its server.
+	 */
+	private <Z, D extends Database<Z>> void deactivated(DatabaseCluster<Z, D> cluster, String databaseId)
+	{
+		if (cluster.getDialect().getTriggerSupport() == null) return;
+		
+		String sql = String.format("INSERT INTO %s (%s, %s) VALUES (?, CURRENT_TIMESTAMP)", DEACTIVATION_TABLE, DATABASE_COLUMN, DEACTIVATED_COLUMN);
+		
+		// Prevent concurrent purge from observing a later time before this deactivation is recorded
+		synchronized (this)
+		{
+			for (D database: cluster.getBalancer())
+			{
+				try (Connection connection = database.connect(cluster.getDecoder()))
+				{
+					connection.setAutoCommit(true);
+					
+					if (!exists(connection, DEACTIVATION_TABLE)) continue;
+					
+					logger.log(Level.DEBUG, sql);
+					
+					try (PreparedStatement statement = connection.prepareStatement(sql))
+					{
+						statement.setString(1, databaseId);
+						statement.executeUpdate();
+					}
+				}
+				catch (SQLException e)
+				{
+					logger.log(Level.WARN, e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		Dialect dialect = context.getDialect();
+		
+		if (dialect.getTriggerSupport() == null)
+		{
+			this.strategy.synchronize(context);
+			return;
+		}
+		
+		String targetId = context.getTargetDatabase().getId();
+		
+		this.changes.put(targetId, this.getChanges(context));
+		
+		try
+		{
+			this.strategy.synchronize(context);
+		}
+		finally
+		{
+			this.changes.remove(targetId);
+		}
+		
+		Collection<TableProperties> tables = context.getSourceDatabaseProperties().getTables();
+		
+		// Install change tracking, unless present, now that this strategy is in use
+		Set<D> databases = new HashSet<>(context.getActiveDatabaseSet());
+		databases.add(context.getTargetDatabase());
+		
+		for (D database: databases)
+		{
+			Connection connection = context.getConnection(database);
+			boolean autoCommit = connection.getAutoCommit();
+			
+			connection.setAutoCommit(true);
+			
+			try
+			{
+				track(dialect, connection, tables);
+			}
+			finally
+			{
+				connection.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * Determines the change tables from which to synchronize the target database, i.e. those complete on both the source and target database since the target database was deactivated.
+	 */
+	private <Z, D extends Database<Z>> Changes getChanges(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		Dialect dialect = context.getDialect();
+		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
+		Connection targetConnection = context.getConnection(context.getTargetDatabase());
+		boolean sourceAutoCommit = sourceConnection.getAutoCommit();
+		boolean targetAutoCommit = targetConnection.getAutoCommit();
+		
+		// A query of a missing table must not abort a transaction
+		sourceConnection.setAutoCommit(true);
+		targetConnection.setAutoCommit(true);
+		
+		try
+		{
+			Timestamp deactivated = getDeactivation(sourceConnection, context.getTargetDatabase().getId());
+			
+			if (deactivated == null)
+			{
+				logger.log(Level.DEBUG, "Deactivation time of {0} is unknown", context.getTargetDatabase());
+				
+				return new Changes(null, null, Collections.<String>emptySet());
+			}
+			
+			// Include changes of transactions that were still in progress when the target was deactivated
+			Timestamp sourceSince = new Timestamp(deactivated.getTime() - this.maxTransactionDuration);
+			// Translate into the time of the target database server
+			long offset = currentTimestamp(dialect, targetConnection).getTime() - currentTimestamp(dialect, sourceConnection).getTime();
+			Timestamp targetSince = new Timestamp(sourceSince.getTime() + offset);
+			
+			Map<String, Timestamp> targetTracking = getTracking(targetConnection);
+			Set<String> changeTables = new HashSet<>();
+			
+			for (Map.Entry<String, Timestamp> entry: getTracking(sourceConnection).entrySet())
+			{
+				Timestamp installed = targetTracking.get(entry.getKey());
+				
+				if (!entry.getValue().after(sourceSince) && (installed != null) && !installed.after(targetSince))
+				{
+					changeTables.add(entry.getKey());
+				}
+			}
+			
+			return new Changes(sourceSince, targetSince, changeTables);
+		}
+		finally
+		{
+			sourceConnection.setAutoCommit(sourceAutoCommit);
+			targetConnection.setAutoCommit(targetAutoCommit);
+		}
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.diff.dropConstraints(context);
+	}
+
+	@Override
+	public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		this.diff.restoreConstraints(context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.TableSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		UniqueConstraint primaryKey = table.getPrimaryKey();
+		String changeTable = getChangeTable(table);
+		Changes changes = this.changes.get(context.getTargetDatabase().getId());
+		
+		if ((primaryKey == null) || (changes == null) || !changes.getChangeTables().contains(changeTable))
+		{
+			logger.log(Level.DEBUG, "Changes to {0} since deactivation of {1} are unknown", table.getName(), context.getTargetDatabase());
+			
+			this.diff.synchronize(context, table);
+			return;
+		}
+		
+		String tableName = table.getName().getDMLName();
+		List<String> keyColumns = primaryKey.getColumnList();
+		List<String> columns = new ArrayList<>(table.getColumns());
+		
+		int[] keyTypes = new int[keyColumns.size()];
+		for (int i = 0; i < keyTypes.length; ++i)
+		{
+			keyTypes[i] = context.getDialect().getColumnType(table.getColumnProperties(keyColumns.get(i)));
+		}
+		int[] types = new int[columns.size()];
+		for (int i = 0; i < types.length; ++i)
+		{
+			types[i] = context.getDialect().getColumnType(table.getColumnProperties(columns.get(i)));
+		}
+		
+		String keyWhereClause = Strings.join(new StringBuilder(), keyColumns, " = ? AND ").append(" = ?").toString(); //$NON-NLS-1$
+		String changesSQL = String.format("SELECT %s FROM %s WHERE %s >= ?", Strings.join(keyColumns, Strings.PADDED_COMMA), changeTable, TIMESTAMP_COLUMN);
+		String selectSQL = String.format("SELECT %s FROM %s WHERE %s", Strings.join(columns, Strings.PADDED_COMMA), tableName, keyWhereClause);
+		String deleteSQL = String.format("DELETE FROM %s WHERE %s", tableName, keyWhereClause);
+		String insertSQL = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, Strings.join(columns, Strings.PADDED_COMMA), Strings.join(Collections.nCopies(columns.size(), Strings.QUESTION), Strings.PADDED_COMMA));
+		
+		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
+		Connection targetConnection = context.getConnection(context.getTargetDatabase());
+		
+		SynchronizationSupport support = context.getSynchronizationSupport();
+		int maxBatchSize = this.diff.getMaxBatchSize();
+		int[] counts = new int[2];
+		
+		logger.log(Level.DEBUG, changesSQL);
+		logger.log(Level.DEBUG, selectSQL);
+		logger.log(Level.DEBUG, deleteSQL);
+		logger.log(Level.DEBUG, insertSQL);
+		
+		try (PreparedStatement sourceChangesStatement = sourceConnection.prepareStatement(changesSQL); PreparedStatement targetChangesStatement = targetConnection.prepareStatement(changesSQL); PreparedStatement selectStatement = sourceConnection.prepareStatement(selectSQL); PreparedStatement deleteStatement = targetConnection.prepareStatement(deleteSQL); PreparedStatement insertStatement = targetConnection.prepareStatement(insertSQL))
+		{
+			// Rows changed on the target itself, e.g. by writes that reached only the target before it was deactivated, must also be replaced.
+			// These are read up front, since synchronizing the target records further changes to its change table.
+			targetChangesStatement.setTimestamp(1, changes.getTargetSince());
+			
+			Set<List<Object>> targetKeys = new LinkedHashSet<>();
+			
+			try (ResultSet resultSet = targetChangesStatement.executeQuery())
+			{
+				while (resultSet.next())
+				{
+					targetKeys.add(getKey(resultSet, keyTypes.length));
+				}
+			}
+			
+			sourceChangesStatement.setFetchSize(this.diff.getFetchSize());
+			sourceChangesStatement.setTimestamp(1, changes.getSourceSince());
+			
+			List<List<Object>> keys = new ArrayList<>(maxBatchSize);
+			
+			try (ResultSet resultSet = sourceChangesStatement.executeQuery())
+			{
+				while (resultSet.next())
+				{
+					List<Object> key = getKey(resultSet, keyTypes.length);
+					
+					targetKeys.remove(key);
+					keys.add(key);
+					
+					if (keys.size() >= maxBatchSize)
+					{
+						synchronize(support, keys, keyTypes, types, selectStatement, deleteStatement, insertStatement, counts);
+						keys.clear();
+					}
+				}
+			}
+			
+			for (List<Object> key: targetKeys)
+			{
+				keys.add(key);
+				
+				if (keys.size() >= maxBatchSize)
+				{
+					synchronize(support, keys, keyTypes, types, selectStatement, deleteStatement, insertStatement, counts);
+					keys.clear();
+				}
+			}
+			
+			if (!keys.isEmpty())
+			{
+				synchronize(support, keys, keyTypes, types, selectStatement, deleteStatement, insertStatement, counts);
+			}
+		}
+		
+		logger.log(Level.INFO, messages.deleteCount(table, counts[0]));
+		logger.log(Level.INFO, messages.insertCount(table, counts[1]));
+	}
+
+	private static List<Object> getKey(ResultSet resultSet, int size) throws SQLException
+	{
+		List<Object> key = new ArrayList<>(size);
+		for (int i = 1; i <= size; ++i)
+		{
+			key.add(resultSet.getObject(i));
+		}
+		return key;
+	}
+
+	/**
+	 * Replaces the rows of the target database with the specified keys with the corresponding rows, if any, of the source database.
+	 */
+	private static void synchronize(SynchronizationSupport support, List<List<Object>> keys, int[] keyTypes, int[] types, PreparedStatement selectStatement, PreparedStatement deleteStatement, PreparedStatement insertStatement, int[] counts) throws SQLException
+	{
+		for (List<Object> key: keys)
+		{
+			deleteStatement.clearParameters();
+			for (int i = 0; i < keyTypes.length; ++i)
+			{
+				deleteStatement.setObject(i + 1, key.get(i), keyTypes[i]);
+			}
+			deleteStatement.addBatch();
+		}
+		
+		for (int count: deleteStatement.executeBatch())
+		{
+			if (count > 0)
+			{
+				counts[0] += count;
+			}
+		}
+		deleteStatement.clearBatch();
+		
+		int inserts = 0;
+		
+		for (List<Object> key: keys)
+		{
+			selectStatement.clearParameters();
+			for (int i = 0; i < keyTypes.length; ++i)
+			{
+				selectStatement.setObject(i + 1, key.get(i), keyTypes[i]);
+			}
+			
+			try (ResultSet resultSet = selectStatement.executeQuery())
+			{
+				// Row was deleted
+				if (!resultSet.next()) continue;
+				
+				insertStatement.clearParameters();
+				for (int i = 1; i <= types.length; ++i)
+				{
+					int type = types[i - 1];
+					Object object = support.getObject(resultSet, i, type);
+					
+					if (resultSet.wasNull())
+					{
+						insertStatement.setNull(i, type);
+					}
+					else
+					{
+						insertStatement.setObject(i, object, type);
+					}
+				}
+				insertStatement.addBatch();
+				inserts += 1;
+			}
+		}
+		
+		if (inserts > 0)
+		{
+			insertStatement.executeBatch();
+			insertStatement.clearBatch();
+			counts[1] += inserts;
+		}
+	}
+
+	private <Z, D extends Database<Z>> void track(DatabaseCluster<Z, D> cluster, D database)
+	{
+		Dialect dialect = cluster.getDialect();
+		
+		try (Connection connection = database.connect(cluster.getDecoder()))
+		{
+			Collection<TableProperties> tables = cluster.getDatabaseMetaDataCache().getDatabaseProperties(database, connection).getTables();
+			
+			connection.setAutoCommit(true);
+			
+			track(dialect, connection, tables);
+		}
+		catch (SQLException e)
+		{
+			logger.log(Level.WARN, e);
+		}
+	}
+
+	/**
+	 * Installs a change table and triggers for each of the specified tables on the database of the specified connection, unless present.
+	 * The installation time of each change table is recorded, since its changes are complete from that point forward.
+	 */
+	private static void track(Dialect dialect, Connection connection, Collection<TableProperties> tables) throws SQLException
+	{
+		TriggerSupport support = dialect.getTriggerSupport();
+		
+		try (Statement statement = connection.createStatement())
+		{
+			if (!exists(connection, TRACKING_TABLE))
+			{
+				try
+				{
+					execute(statement, dialect.getCreateSchemaSQL(Dialect.SCHEMA));
+				}
+				catch (SQLException e)
+				{
+					// Schema already exists
+				}
+				if (!exists(connection, DEACTIVATION_TABLE))
+				{
+					execute(statement, String.format("CREATE TABLE %s (%s VARCHAR(255) NOT NULL, %s TIMESTAMP NOT NULL)", DEACTIVATION_TABLE, DATABASE_COLUMN, DEACTIVATED_COLUMN));
+				}
+				execute(statement, String.format("CREATE TABLE %s (%s VARCHAR(255) NOT NULL, %s TIMESTAMP NOT NULL, PRIMARY KEY (%s))", TRACKING_TABLE, CHANGE_TABLE_COLUMN, INSTALLED_COLUMN, CHANGE_TABLE_COLUMN));
+			}
+			
+			Set<String> tracked = getTracking(connection).keySet();
+			String sql = String.format("INSERT INTO %s (%s, %s) VALUES (?, CURRENT_TIMESTAMP)", TRACKING_TABLE, CHANGE_TABLE_COLUMN, INSTALLED_COLUMN);
+			
+			for (TableProperties table: tables)
+			{
+				UniqueConstraint primaryKey = table.getPrimaryKey();
+				
+				if (primaryKey == null) continue;
+				
+				String changeTable = getChangeTable(table);
+				
+				if (tracked.contains(changeTable)) continue;
+				
+				// Remove any remnant of an interrupted installation
+				if (exists(connection, changeTable))
+				{
+					untrack(statement, support, changeTable, table);
+				}
+				
+				List<String> keyColumns = primaryKey.getColumnList();
+				String keys = Strings.join(keyColumns, Strings.PADDED_COMMA);
+				
+				execute(statement, dialect.getCreateTableAsSQL(changeTable, String.format("SELECT %s, CURRENT_TIMESTAMP AS %s FROM %s", keys, TIMESTAMP_COLUMN, table.getName().getDMLName())));
+				
+				try
+				{
+					// Each key is recorded at most once, and is located by the triggers via its index
+					execute(statement, String.format("ALTER TABLE %s ADD PRIMARY KEY (%s)", changeTable, keys));
+					
+					for (TriggerEventEnum event: TriggerEventEnum.values())
+					{
+						execute(statement, support.getCreateTriggerSQL(getTriggerName(table, event), table, event, getTriggerAction(support, changeTable, keyColumns, event)));
+					}
+					
+					logger.log(Level.DEBUG, sql);
+					
+					// Triggers are in place as of now
+					try (PreparedStatement insertStatement = connection.prepareStatement(sql))
+					{
+						insertStatement.setString(1, changeTable);
+						insertStatement.executeUpdate();
+					}
+				}
+				catch (SQLException e)
+				{
+					// The existence of a change table must imply the existence of its triggers
+					untrack(statement, support, changeTable, table);
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the specified change table, along with the triggers of its table, if any.
+	 */
+	private static void untrack(Statement statement, TriggerSupport support, String changeTable, TableProperties table) throws SQLException
+	{
+		if (table != null)
+		{
+			for (TriggerEventEnum event: TriggerEventEnum.values())
+			{
+				try
+				{
+					execute(statement, support.getDropTriggerSQL(getTriggerName(table, event), table));
+				}
+				catch (SQLException e)
+				{
+					// Trigger does not exist
+				}
+			}
+		}
+		execute(statement, String.format("DROP TABLE %s", changeTable));
+	}
+
+	/**
+	 * Removes change tracking from each active database, unless an inactive database still needs it.
+	 */
+	private <Z, D extends Database<Z>> void uninstall(DatabaseCluster<Z, D> cluster)
+	{
+		TriggerSupport support = cluster.getDialect().getTriggerSupport();
+		
+		if (support == null) return;
+		
+		Set<String> active = new HashSet<>();
+		for (D database: cluster.getBalancer())
+		{
+			active.add(database.getId());
+		}
+		
+		List<D> databases = new ArrayList<>(active.size());
+		
+		for (D database: cluster.getBalancer())
+		{
+			try (Connection connection = database.connect(cluster.getDecoder()))
+			{
+				connection.setAutoCommit(true);
+				
+				if (!exists(connection, TRACKING_TABLE)) continue;
+				
+				for (String databaseId: getDeactivations(connection).keySet())
+				{
+					if (!active.contains(databaseId))
+					{
+						logger.log(Level.DEBUG, "Change tracking retained for inactive database {0}", databaseId);
+						return;
+					}
+				}
+				
+				databases.add(database);
+			}
+			catch (SQLException e)
+			{
+				// Cannot determine whether change tracking is still needed
+				logger.log(Level.WARN, e);
+				return;
+			}
+		}
+		
+		for (D database: databases)
+		{
+			try (Connection connection = database.connect(cluster.getDecoder()))
+			{
+				Collection<TableProperties> tables = cluster.getDatabaseMetaDataCache().getDatabaseProperties(database, connection).getTables();
+				
+				connection.setAutoCommit(true);
+				
+				Set<String> tracked = new HashSet<>(getTracking(connection).keySet());
+				
+				try (Statement statement = connection.createStatement())
+				{
+					for (TableProperties table: tables)
+					{
+						String changeTable = getChangeTable(table);
+						
+						if (tracked.remove(changeTable))
+						{
+							untrack(statement, support, changeTable, table);
+						}
+					}
+					// Change tables of tables dropped since
+					for (String changeTable: tracked)
+					{
+						untrack(statement, support, changeTable, null);
+					}
+					
+					execute(statement, String.format("DROP TABLE %s", TRACKING_TABLE));
+					execute(statement, String.format("DROP TABLE %s", DEACTIVATION_TABLE));
+					
+					try
+					{
+						execute(statement, cluster.getDialect().getDropSchemaSQL(Dialect.SCHEMA));
+					}
+					catch (SQLException e)
+					{
+						// Schema contains other objects
+					}
+				}
+			}
+			catch (SQLException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the changes no longer needed by any inactive database from the change tables of each active database.
+	 */
+	<Z, D extends Database<Z>> void purge(DatabaseCluster<Z, D> cluster)
+	{
+		Dialect dialect = cluster.getDialect();
+		
+		if (dialect.getTriggerSupport() == null) return;
+		
+		Set<String> active = new HashSet<>();
+		for (D database: cluster.getBalancer())
+		{
+			active.add(database.getId());
+		}
+		
+		for (D database: cluster.getBalancer())
+		{
+			try (Connection connection = database.connect(cluster.getDecoder()))
+			{
+				connection.setAutoCommit(true);
+				
+				if (!exists(connection, TRACKING_TABLE)) continue;
+				
+				Timestamp horizon;
+				
+				synchronized (this)
+				{
+					// Changes older than the deactivation of every inactive database are no longer needed
+					horizon = currentTimestamp(dialect, connection);
+					
+					for (Map.Entry<String, Timestamp> entry: getDeactivations(connection).entrySet())
+					{
+						String databaseId = entry.getKey();
+						Timestamp deactivated = entry.getValue();
+						
+						if (active.contains(databaseId))
+						{
+							// Database was since activated
+							String sql = String.format("DELETE FROM %s WHERE %s = ?", DEACTIVATION_TABLE, DATABASE_COLUMN);
+							
+							logger.log(Level.DEBUG, sql);
+							
+							try (PreparedStatement statement = connection.prepareStatement(sql))
+							{
+								statement.setString(1, databaseId);
+								statement.executeUpdate();
+							}
+						}
+						else if (deactivated.before(horizon))
+						{
+							horizon = deactivated;
+						}
+					}
+				}
+				
+				purge(connection, getTracking(connection).keySet(), new Timestamp(horizon.getTime() - this.maxTransactionDuration));
+			}
+			catch (SQLException e)
+			{
+				logger.log(Level.WARN, e);
+			}
+		}
+	}
+
+	/**
+	 * Deletes changes older than the specified timestamp from the specified change tables.
+	 */
+	private static void purge(Connection connection, Collection<String> changeTables, Timestamp timestamp) throws SQLException
+	{
+		for (String changeTable: changeTables)
+		{
+			String sql = String.format("DELETE FROM %s WHERE %s < ?", changeTable, TIMESTAMP_COLUMN);
+			
+			logger.log(Level.DEBUG, sql);
+			
+			try (PreparedStatement statement = connection.prepareStatement(sql))
+			{
+				statement.setTimestamp(1, timestamp);
+				statement.executeUpdate();
+			}
+		}
+	}
+
+	/**
+	 * Records the primary key of the affected row(s) in the change table, replacing any previous record.
+	 * Updates record both the old and new primary key, in case the primary key itself was updated.
+	 */
+	private static String getTriggerAction(TriggerSupport support, String changeTable, List<String> keyColumns, TriggerEventEnum event)
+	{
+		StringBuilder builder = new StringBuilder();
+		
+		if (event != TriggerEventEnum.INSERT)
+		{
+			appendTriggerAction(builder, changeTable, keyColumns, support.getTriggerRowAlias(TriggerTimeEnum.BEFORE));
+		}
+		if (event != TriggerEventEnum.DELETE)
+		{
+			appendTriggerAction(builder, changeTable, keyColumns, support.getTriggerRowAlias(TriggerTimeEnum.AFTER));
+		}
+		
+		return builder.toString();
+	}
+
+	private static void appendTriggerAction(StringBuilder builder, String changeTable, List<String> keyColumns, String alias)
+	{
+		List<String> values = new ArrayList<>(keyColumns.size());
+		List<String> conditions = new ArrayList<>(keyColumns.size());
+		
+		for (String column: keyColumns)
+		{
+			String value = alias + Strings.DOT + column;
+			values.add(value);
+			conditions.add(String.format("%s = %s", column, value));
+		}
+		
+		builder.append(String.format("DELETE FROM %s WHERE %s; ", changeTable, Strings.join(conditions, " AND ")));
+		builder.append(String.format("INSERT INTO %s (%s, %s) VALUES (%s, CURRENT_TIMESTAMP); ", changeTable, Strings.join(keyColumns, Strings.PADDED_COMMA), TIMESTAMP_COLUMN, Strings.join(values, Strings.PADDED_COMMA)));
+	}
+
+	private static String getChangeTable(TableProperties table)
+	{
+		return Dialect.SCHEMA + Strings.DOT + getBaseName(table);
+	}
+
+	private static String getTriggerName(TableProperties table, TriggerEventEnum event)
+	{
+		return TRIGGER_PREFIX + getBaseName(table) + Strings.UNDERSCORE + event.name().toLowerCase();
+	}
+
+	private static String getBaseName(TableProperties table)
+	{
+		QualifiedName name = table.getName();
+		String schema = name.getSchema();
+		String baseName = (schema != null) ? schema + Strings.UNDERSCORE + name.getName() : name.getName();
+		// Strip any quoting
+		return baseName.replaceAll("\\W", Strings.UNDERSCORE);
+	}
+
+	/**
+	 * Returns the installation time of each change table recorded on the database of the specified connection, if any.
+	 */
+	private static Map<String, Timestamp> getTracking(Connection connection) throws SQLException
+	{
+		return exists(connection, TRACKING_TABLE) ? query(connection, String.format("SELECT %s, %s FROM %s", CHANGE_TABLE_COLUMN, INSTALLED_COLUMN, TRACKING_TABLE)) : Collections.<String, Timestamp>emptyMap();
+	}
+
+	/**
+	 * Returns the earliest recorded deactivation time of each inactive database, according to the database of the specified connection.
+	 */
+	private static Map<String, Timestamp> getDeactivations(Connection connection) throws SQLException
+	{
+		return exists(connection, DEACTIVATION_TABLE) ? query(connection, String.format("SELECT %s, MIN(%s) FROM %s GROUP BY %s", DATABASE_COLUMN, DEACTIVATED_COLUMN, DEACTIVATION_TABLE, DATABASE_COLUMN)) : Collections.<String, Timestamp>emptyMap();
+	}
+
+	private static Timestamp getDeactivation(Connection connection, String databaseId) throws SQLException
+	{
+		return getDeactivations(connection).get(databaseId);
+	}
+
+	private static Map<String, Timestamp> query(Connection connection, String sql) throws SQLException
+	{
+		logger.log(Level.DEBUG, sql);
+		
+		Map<String, Timestamp> result = new HashMap<>();
+		
+		try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(sql))
+		{
+			while (resultSet.next())
+			{
+				result.put(resultSet.getString(1), resultSet.getTimestamp(2));
+			}
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Indicates whether the specified table exists, via a connection in auto-commit mode.
+	 */
+	private static boolean exists(Connection connection, String table)
+	{
+		try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(String.format("SELECT 1 FROM %s WHERE 1 = 0", table)))
+		{
+			return true;
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	private static void execute(Statement statement, String sql) throws SQLException
+	{
+		logger.log(Level.DEBUG, sql);
+		statement.execute(sql);
+	}
+
+	private static Timestamp currentTimestamp(Dialect dialect, Connection connection) throws SQLException
+	{
+		try (Statement statement = connection.createStatement(); ResultSet resultSet = statement.executeQuery(dialect.getCurrentTimestampSQL()))
+		{
+			resultSet.next();
+			return resultSet.getTimestamp(1);
+		}
+	}
+
+	/**
+	 * The change tables from which to synchronize a target database, and the server time of each database since which their changes are needed.
+	 */
+	private static class Changes
+	{
+		private final Timestamp sourceSince;
+		private final Timestamp targetSince;
+		private final Set<String> changeTables;
+		
+		Changes(Timestamp sourceSince, Timestamp targetSince, Set<String> changeTables)
+		{
+			this.sourceSince = sourceSince;
+			this.targetSince = targetSince;
+			this.changeTables = changeTables;
+		}
+		
+		Timestamp getSourceSince()
+		{
+			return this.sourceSince;
+		}
+		
+		Timestamp getTargetSince()
+		{
+			return this.targetSince;
+		}
+		
+		Set<String> getChangeTables()
+		{
+			return this.changeTables;
+		}
+	}
+
+	/**
+	 * @return the maximum duration, in milliseconds, of a transaction.
+	 */
+	public long getMaxTransactionDuration()
+	{
+		return this.maxTransactionDuration;
+	}
+
+	/**
+	 * @param maxTransactionDuration the maximum duration, in milliseconds, of a transaction.
+	 */
+	public void setMaxTransactionDuration(long maxTransactionDuration)
+	{
+		this.maxTransactionDuration = maxTransactionDuration;
+	}
+
+	/**
+	 * @return the interval, in milliseconds, at which unneeded changes are purged.
+	 */
+	public long getPurgeInterval()
+	{
+		return this.purgeInterval;
+	}
+
+	/**
+	 * @param purgeInterval the interval, in milliseconds, at which unneeded changes are purged.
+	 */
+	public void setPurgeInterval(long purgeInterval)
+	{
+		this.purgeInterval = purgeInterval;
+	}
+
+	/**
+	 * @return the fetchSize.
+	 */
+	public int getFetchSize()
+	{
+		return this.diff.getFetchSize();
+	}
+
+	/**
+	 * @param fetchSize the fetchSize to set.
+	 */
+	public void setFetchSize(int fetchSize)
+	{
+		this.diff.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * @return the maxBatchSize.
+	 */
+	public int getMaxBatchSize()
+	{
+		return this.diff.getMaxBatchSize();
+	}
+
+	/**
+	 * @param maxBatchSize the maxBatchSize to set.
+	 */
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		this.diff.setMaxBatchSize(maxBatchSize);
+	}
+
+	/**
+	 * @return the maximum number of tables to synchronize concurrently.
+	 */
+	public int getMaxConcurrency()
+	{
+		return this.strategy.getMaxConcurrency();
+	}
+
+	/**
+	 * @param maxConcurrency the maximum number of tables to synchronize concurrently.
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
 	{
+		this.strategy.setMaxConcurrency(maxConcurrency);
 	}
 }
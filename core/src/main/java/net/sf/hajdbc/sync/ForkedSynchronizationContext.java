@@ -0,0 +1,182 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.DatabaseProperties;
+import net.sf.hajdbc.codec.Decoder;
+import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Synchronization context that shares the state of a parent context, but uses its own connections to the source and target databases.
+ * This allows separate threads to synchronize separate parts of a database concurrently, since a connection must not be shared between threads.
+ * Connections are created with auto-commit disabled.
+ * Likewise, asynchronous tasks are executed by a dedicated thread, so that concurrent contexts do not contend for the executor of the parent context.
+ * @author Paul Ferraro
+ */
+class ForkedSynchronizationContext<Z, D extends Database<Z>> implements SynchronizationContext<Z, D>
+{
+	private static final Logger logger = LoggerFactory.getLogger(ForkedSynchronizationContext.class);
+	
+	private final SynchronizationContext<Z, D> context;
+	private final ThreadFactory threadFactory;
+	private Connection sourceConnection;
+	private Connection targetConnection;
+	private ExecutorService executor;
+	
+	ForkedSynchronizationContext(SynchronizationContext<Z, D> context, ThreadFactory threadFactory)
+	{
+		this.context = context;
+		this.threadFactory = threadFactory;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.SynchronizationContext#getConnection(net.sf.hajdbc.Database)
+	 */
+	@Override
+	public Connection getConnection(D database) throws SQLException
+	{
+		if (database.equals(this.context.getSourceDatabase()))
+		{
+			if (this.sourceConnection == null)
+			{
+				this.sourceConnection = this.connect(database);
+			}
+			return this.sourceConnection;
+		}
+		if (database.equals(this.context.getTargetDatabase()))
+		{
+			if (this.targetConnection == null)
+			{
+				this.targetConnection = this.connect(database);
+			}
+			return this.targetConnection;
+		}
+		throw new IllegalArgumentException(database.getId());
+	}
+	
+	private Connection connect(D database) throws SQLException
+	{
+		Connection connection = database.connect(this.context.getDecoder());
+		connection.setAutoCommit(false);
+		return connection;
+	}
+
+	@Override
+	public D getSourceDatabase()
+	{
+		return this.context.getSourceDatabase();
+	}
+
+	@Override
+	public D getTargetDatabase()
+	{
+		return this.context.getTargetDatabase();
+	}
+
+	@Override
+	public Set<D> getActiveDatabaseSet()
+	{
+		return this.context.getActiveDatabaseSet();
+	}
+
+	@Override
+	public DatabaseProperties getSourceDatabaseProperties()
+	{
+		return this.context.getSourceDatabaseProperties();
+	}
+
+	@Override
+	public DatabaseProperties getTargetDatabaseProperties()
+	{
+		return this.context.getTargetDatabaseProperties();
+	}
+
+	@Override
+	public Dialect getDialect()
+	{
+		return this.context.getDialect();
+	}
+
+	@Override
+	public ExecutorService getExecutor()
+	{
+		if (this.executor == null)
+		{
+			this.executor = Executors.newSingleThreadExecutor(this.threadFactory);
+		}
+		return this.executor;
+	}
+
+	@Override
+	public ThreadFactory getThreadFactory()
+	{
+		return this.threadFactory;
+	}
+
+	@Override
+	public SynchronizationSupport getSynchronizationSupport()
+	{
+		return new SynchronizationSupportImpl<>(this);
+	}
+
+	@Override
+	public Decoder getDecoder()
+	{
+		return this.context.getDecoder();
+	}
+
+	/**
+	 * Closes the connections, and shuts down the executor, of this context only.
+	 * @see net.sf.hajdbc.sync.SynchronizationContext#close()
+	 */
+	@Override
+	public void close()
+	{
+		for (Connection connection: new Connection[] { this.sourceConnection, this.targetConnection })
+		{
+			if (connection != null)
+			{
+				try
+				{
+					connection.close();
+				}
+				catch (SQLException e)
+				{
+					logger.log(Level.WARN, e);
+				}
+			}
+		}
+		
+		if (this.executor != null)
+		{
+			this.executor.shutdown();
+		}
+	}
+}
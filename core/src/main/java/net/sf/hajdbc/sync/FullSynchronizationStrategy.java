@@ -62,14 +62,14 @@ import net.sf.hajdbc.util.Strings;
  * </ol>
  * @author  Paul Ferraro
  */
-public class FullSynchronizationStrategy implements SynchronizationStrategy, TableSynchronizationStrategy
+public class FullSynchronizationStrategy implements SynchronizationStrategy, TableRangeSynchronizationStrategy
 {
 	private static final long serialVersionUID = 9190347092842178162L;
 
 	static Messages messages = MessagesFactory.getMessages();
 	static Logger logger = LoggerFactory.getLogger(FullSynchronizationStrategy.class);
 
-	private SynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
+	private PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(this);
 	private int maxBatchSize = 100;
 	private int fetchSize = 0;
 
@@ -99,14 +99,25 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		this.synchronize(context, table, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * Rows within the range are deleted, rather than truncating the table.
+	 * @see net.sf.hajdbc.sync.TableRangeSynchronizationStrategy#synchronize(net.sf.hajdbc.sync.SynchronizationContext, net.sf.hajdbc.TableProperties, net.sf.hajdbc.sync.KeyRange)
+	 */
+	@Override
+	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
 	{
 		final String tableName = table.getName().getDMLName();
 		final Collection<String> columns = table.getColumns();
 		
 		final String commaDelimitedColumns = Strings.join(columns, Strings.PADDED_COMMA);
 		
-		final String selectSQL = String.format("SELECT %s FROM %s", commaDelimitedColumns, tableName);
-		final String deleteSQL = context.getDialect().getTruncateTableSQL(table);
+		final String selectSQL = (range != null) ? String.format("SELECT %s FROM %s WHERE %s", commaDelimitedColumns, tableName, range.getPredicate()) : String.format("SELECT %s FROM %s", commaDelimitedColumns, tableName);
+		final String deleteSQL = (range != null) ? String.format("DELETE FROM %s WHERE %s", tableName, range.getPredicate()) : context.getDialect().getTruncateTableSQL(table);
 		final String insertSQL = String.format("INSERT INTO %s (%s) VALUES (%s)", tableName, commaDelimitedColumns, Strings.join(Collections.nCopies(columns.size(), Strings.QUESTION), Strings.PADDED_COMMA));
 		
 		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
@@ -241,4 +252,36 @@ public class FullSynchronizationStrategy implements SynchronizationStrategy, Tab
 	{
 		this.maxBatchSize = maxBatchSize;
 	}
+
+	/**
+	 * @return the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public int getMaxConcurrency()
+	{
+		return this.strategy.getMaxConcurrency();
+	}
+
+	/**
+	 * @param maxConcurrency the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
+	{
+		this.strategy.setMaxConcurrency(maxConcurrency);
+	}
+
+	/**
+	 * @return the maximum number of primary key ranges into which to partition each table.
+	 */
+	public int getPartitions()
+	{
+		return this.strategy.getPartitions();
+	}
+
+	/**
+	 * @param partitions the maximum number of primary key ranges into which to partition each table.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.strategy.setPartitions(partitions);
+	}
 }
@@ -0,0 +1,71 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+/**
+ * A range of values of an integer key column, from a lower bound (inclusive) to an upper bound (exclusive).
+ * A null bound indicates that the range is unbounded in that direction.
+ * @author Paul Ferraro
+ */
+public class KeyRange
+{
+	private final String column;
+	private final Long lower;
+	private final Long upper;
+	
+	public KeyRange(String column, Long lower, Long upper)
+	{
+		this.column = column;
+		this.lower = lower;
+		this.upper = upper;
+	}
+	
+	public String getColumn()
+	{
+		return this.column;
+	}
+	
+	public Long getLower()
+	{
+		return this.lower;
+	}
+	
+	public Long getUpper()
+	{
+		return this.upper;
+	}
+	
+	/**
+	 * Returns a SQL predicate matching the key values within this range.
+	 * @return a SQL boolean expression
+	 */
+	public String getPredicate()
+	{
+		if (this.lower == null)
+		{
+			return (this.upper == null) ? String.format("%s IS NOT NULL", this.column) : String.format("%s < %d", this.column, this.upper);
+		}
+		return (this.upper == null) ? String.format("%s >= %d", this.column, this.lower) : String.format("%s >= %d AND %s < %d", this.column, this.lower, this.column, this.upper);
+	}
+	
+	@Override
+	public String toString()
+	{
+		return String.format("[%s, %s)", (this.lower != null) ? this.lower : "", (this.upper != null) ? this.upper : "");
+	}
+}
@@ -17,19 +17,59 @@
  */
 package net.sf.hajdbc.sync;
 
+import java.math.BigInteger;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.SynchronizationStrategy;
 import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.UniqueConstraint;
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
 
+/**
+ * Synchronization strategy that synchronizes each table using a {@link TableSynchronizationStrategy}, committing after each table.
+ * Constraints are dropped before, and restored after, all tables are synchronized.
+ * If {@link #getPartitions()} is greater than 1, and the table synchronization strategy supports it, tables are split into primary key ranges,
+ * each of which is synchronized and committed independently.
+ * If {@link #getMaxConcurrency()} is greater than 1, tables, or their ranges, are synchronized concurrently, each thread using its own source and target connections.
+ * In this case, tables are synchronized in order of decreasing size, as estimated via {@link DatabaseMetaData#getIndexInfo(String, String, String, boolean, boolean)},
+ * so that the total duration is bounded by the largest table.
+ */
 public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 {
 	private static final long serialVersionUID = 7952995443041830678L;
 	
+	static Logger logger = LoggerFactory.getLogger(PerTableSynchronizationStrategy.class);
+	
 	private final TableSynchronizationStrategy strategy;
+	private int maxConcurrency = 1;
+	private int partitions = 1;
+	private transient volatile ThreadFactory threadFactory;
 	
 	@Override
 	public String getId()
@@ -45,7 +85,7 @@ public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 	@Override
 	public <Z, D extends Database<Z>> void init(DatabaseCluster<Z, D> cluster)
 	{
-		// Do nothing
+		this.threadFactory = cluster.getThreadFactory();
 	}
 
 	@Override
@@ -56,22 +96,60 @@ public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 
 	@Override
 	public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context) throws SQLException
+	{
+		SynchronizationSupport support = context.getSynchronizationSupport();
+		
+		this.strategy.dropConstraints(context);
+		
+		Collection<TableProperties> tables = context.getSourceDatabaseProperties().getTables();
+		
+		if (this.maxConcurrency > 1)
+		{
+			// Lazily loaded meta data can only be loaded by this thread, so load it up front
+			for (TableProperties table: tables)
+			{
+				table.getColumns();
+				table.getPrimaryKey();
+				table.getUniqueConstraints();
+				table.getIdentityColumns();
+			}
+			
+			tables = sort(context, tables);
+		}
+		
+		List<Partition> partitions = this.partition(context, tables);
+		int concurrency = Math.min(this.maxConcurrency, partitions.size());
+		
+		if (concurrency > 1)
+		{
+			this.synchronize(context, partitions, concurrency);
+		}
+		else
+		{
+			this.synchronize(context, partitions);
+		}
+		
+		this.strategy.restoreConstraints(context);
+		
+		support.synchronizeIdentityColumns();
+		support.synchronizeSequences();
+	}
+
+	private <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, List<Partition> partitions) throws SQLException
 	{
 		Connection sourceConnection = context.getConnection(context.getSourceDatabase());
 		Connection targetConnection = context.getConnection(context.getTargetDatabase());
 		
 		SynchronizationSupport support = context.getSynchronizationSupport();
 		
-		this.strategy.dropConstraints(context);
-		
 		sourceConnection.setAutoCommit(false);
 		targetConnection.setAutoCommit(false);
 		
-		for (TableProperties table: context.getSourceDatabaseProperties().getTables())
+		for (Partition partition: partitions)
 		{
 			try
 			{
-				this.strategy.synchronize(context, table);
+				this.synchronize(context, partition);
 				
 				targetConnection.commit();
 			}
@@ -81,10 +159,304 @@ public class PerTableSynchronizationStrategy implements SynchronizationStrategy
 				throw e;
 			}
 		}
+	}
+
+	private <Z, D extends Database<Z>> void synchronize(final SynchronizationContext<Z, D> context, List<Partition> partitions, int concurrency) throws SQLException
+	{
+		final Queue<Partition> queue = new ConcurrentLinkedQueue<>(partitions);
 		
-		this.strategy.restoreConstraints(context);
+		final ThreadFactory threadFactory = (this.threadFactory != null) ? this.threadFactory : Executors.defaultThreadFactory();
+		ExecutorService executor = Executors.newFixedThreadPool(concurrency, threadFactory);
 		
-		support.synchronizeIdentityColumns();
-		support.synchronizeSequences();
+		try
+		{
+			List<Future<Void>> futures = new ArrayList<>(concurrency);
+			
+			for (int i = 0; i < concurrency; ++i)
+			{
+				Callable<Void> task = new Callable<Void>()
+				{
+					@Override
+					public Void call() throws SQLException
+					{
+						try (SynchronizationContext<Z, D> forkedContext = new ForkedSynchronizationContext<>(context, threadFactory))
+						{
+							Connection targetConnection = forkedContext.getConnection(forkedContext.getTargetDatabase());
+							
+							Partition partition = queue.poll();
+							
+							while (partition != null)
+							{
+								try
+								{
+									PerTableSynchronizationStrategy.this.synchronize(forkedContext, partition);
+									
+									targetConnection.commit();
+								}
+								catch (SQLException e)
+								{
+									// Prevent other threads from starting additional partitions
+									queue.clear();
+									forkedContext.getSynchronizationSupport().rollback(targetConnection);
+									throw e;
+								}
+								
+								partition = queue.poll();
+							}
+						}
+						return null;
+					}
+				};
+				
+				futures.add(executor.submit(task));
+			}
+			
+			SQLException exception = null;
+			
+			for (Future<Void> future: futures)
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException e)
+				{
+					SQLException cause = ExceptionType.SQL.<SQLException>getExceptionFactory().createException(e.getCause());
+					
+					if (exception == null)
+					{
+						exception = cause;
+					}
+					else
+					{
+						exception.setNextException(cause);
+					}
+				}
+			}
+			
+			if (exception != null)
+			{
+				throw exception;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	<Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, Partition partition) throws SQLException
+	{
+		if (partition.range != null)
+		{
+			((TableRangeSynchronizationStrategy) this.strategy).synchronize(context, partition.table, partition.range);
+		}
+		else
+		{
+			this.strategy.synchronize(context, partition.table);
+		}
+	}
+
+	/**
+	 * Splits each of the specified tables into at most {@link #getPartitions()} primary key ranges, if supported by the table synchronization strategy.
+	 * Only tables whose leading primary key column is an integer type are split, into ranges of equal width between the minimum and maximum key values of the source table.
+	 * The first and last ranges are unbounded, so that rows of the target table outside of these values are also synchronized.
+	 */
+	private <Z, D extends Database<Z>> List<Partition> partition(SynchronizationContext<Z, D> context, Collection<TableProperties> tables) throws SQLException
+	{
+		List<Partition> partitions = new ArrayList<>(tables.size());
+		boolean supported = (this.partitions > 1) && (this.strategy instanceof TableRangeSynchronizationStrategy);
+		
+		for (TableProperties table: tables)
+		{
+			List<KeyRange> ranges = supported ? this.split(context, table) : Collections.<KeyRange>emptyList();
+			
+			if (ranges.isEmpty())
+			{
+				partitions.add(new Partition(table, null));
+			}
+			else
+			{
+				for (KeyRange range: ranges)
+				{
+					partitions.add(new Partition(table, range));
+				}
+			}
+		}
+		
+		return partitions;
+	}
+
+	private <Z, D extends Database<Z>> List<KeyRange> split(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		String column = getKeyColumn(context, table);
+		
+		if (column == null) return Collections.emptyList();
+		
+		String sql = String.format("SELECT MIN(%s), MAX(%s) FROM %s", column, column, table.getName().getDMLName());
+		
+		logger.log(Level.DEBUG, sql);
+		
+		try (Statement statement = context.getConnection(context.getSourceDatabase()).createStatement())
+		{
+			try (ResultSet resultSet = statement.executeQuery(sql))
+			{
+				if (!resultSet.next()) return Collections.emptyList();
+				
+				long min = resultSet.getLong(1);
+				
+				if (resultSet.wasNull()) return Collections.emptyList();
+				
+				long max = resultSet.getLong(2);
+				
+				BigInteger count = BigInteger.valueOf(this.partitions);
+				BigInteger lowest = BigInteger.valueOf(min);
+				BigInteger highest = BigInteger.valueOf(max);
+				// Width of each range, rounded up
+				BigInteger width = highest.subtract(lowest).add(count).divide(count);
+				
+				List<KeyRange> ranges = new ArrayList<>(this.partitions);
+				Long lower = null;
+				
+				for (int i = 1; i < this.partitions; ++i)
+				{
+					BigInteger bound = lowest.add(width.multiply(BigInteger.valueOf(i)));
+					
+					if (bound.compareTo(highest) > 0) break;
+					
+					Long upper = bound.longValue();
+					ranges.add(new KeyRange(column, lower, upper));
+					lower = upper;
+				}
+				
+				if (ranges.isEmpty()) return Collections.emptyList();
+				
+				ranges.add(new KeyRange(column, lower, null));
+				
+				return ranges;
+			}
+		}
+	}
+
+	/**
+	 * Returns the leading primary key column of the specified table, if it is an integer type.
+	 * @return a column name, or null, if the table has no primary key, or if its leading column is not an integer type.
+	 */
+	static <Z, D extends Database<Z>> String getKeyColumn(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+	{
+		UniqueConstraint primaryKey = table.getPrimaryKey();
+		
+		if (primaryKey == null) return null;
+		
+		String column = primaryKey.getColumnList().get(0);
+		
+		switch (context.getDialect().getColumnType(table.getColumnProperties(column)))
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			{
+				return column;
+			}
+			default:
+			{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Orders the specified tables by decreasing estimated size.
+	 * The estimated size of a table is the largest cardinality reported by its index statistics, if any.
+	 */
+	private static <Z, D extends Database<Z>> List<TableProperties> sort(SynchronizationContext<Z, D> context, Collection<TableProperties> tables) throws SQLException
+	{
+		DatabaseMetaData metaData = context.getConnection(context.getSourceDatabase()).getMetaData();
+		
+		final Map<TableProperties, Long> sizes = new HashMap<>();
+		
+		for (TableProperties table: tables)
+		{
+			QualifiedName name = table.getName();
+			long size = 0;
+			
+			try (ResultSet resultSet = metaData.getIndexInfo(null, name.getSchema(), name.getName(), false, true))
+			{
+				while (resultSet.next())
+				{
+					size = Math.max(size, resultSet.getLong("CARDINALITY"));
+				}
+			}
+			catch (SQLException e)
+			{
+				// Size estimates are only an optimization
+				logger.log(Level.DEBUG, e);
+			}
+			
+			sizes.put(table, size);
+		}
+		
+		List<TableProperties> result = new ArrayList<>(tables);
+		
+		Collections.sort(result, new Comparator<TableProperties>()
+		{
+			@Override
+			public int compare(TableProperties table1, TableProperties table2)
+			{
+				return Long.compare(sizes.get(table2), sizes.get(table1));
+			}
+		});
+		
+		return result;
+	}
+
+	/**
+	 * @return the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public int getMaxConcurrency()
+	{
+		return this.maxConcurrency;
+	}
+
+	/**
+	 * @param maxConcurrency the maximum number of tables, or table partitions, to synchronize concurrently.
+	 */
+	public void setMaxConcurrency(int maxConcurrency)
+	{
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * @return the maximum number of primary key ranges into which to partition each table.
+	 */
+	public int getPartitions()
+	{
+		return this.partitions;
+	}
+
+	/**
+	 * @param partitions the maximum number of primary key ranges into which to partition each table.
+	 */
+	public void setPartitions(int partitions)
+	{
+		this.partitions = partitions;
+	}
+
+	static class Partition
+	{
+		final TableProperties table;
+		final KeyRange range;
+		
+		Partition(TableProperties table, KeyRange range)
+		{
+			this.table = table;
+			this.range = range;
+		}
 	}
 }
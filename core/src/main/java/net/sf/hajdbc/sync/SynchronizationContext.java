@@ -21,6 +21,7 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseProperties;
@@ -85,6 +86,12 @@ public interface SynchronizationContext<Z, D extends Database<Z>> extends AutoCl
 	 */
 	ExecutorService getExecutor();
 	
+	/**
+	 * A factory for threads that must run concurrently with the synchronization, e.g. to consume process output.
+	 * @return a thread factory
+	 */
+	ThreadFactory getThreadFactory();
+	
 	SynchronizationSupport getSynchronizationSupport();
 	
 	Decoder getDecoder();
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseCluster;
@@ -169,6 +170,16 @@ public class SynchronizationContextImpl<Z, D extends Database<Z>> implements Syn
 		return this.executor;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.sync.SynchronizationContext#getThreadFactory()
+	 */
+	@Override
+	public ThreadFactory getThreadFactory()
+	{
+		return this.cluster.getThreadFactory();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.sync.SynchronizationContext#getSynchronizationSupport()
@@ -258,43 +258,17 @@ public class SynchronizationSupportImpl<Z, D extends Database<Z>> implements Syn
 				{
 					for (TableProperties table: this.context.getSourceDatabaseProperties().getTables())
 					{
-						Collection<String> columns = table.getIdentityColumns();
+						Map<String, Long> map = selectMaxIdentityColumnValues(sourceStatement, table);
 						
-						if (!columns.isEmpty())
+						if (!map.isEmpty())
 						{
-							String selectSQL = MessageFormat.format("SELECT max({0}) FROM {1}", Strings.join(columns, "), max("), table.getName()); //$NON-NLS-1$ //$NON-NLS-2$
-							
-							logger.log(Level.DEBUG, selectSQL);
-							
-							Map<String, Long> map = new HashMap<>();
-							
-							try (ResultSet resultSet = sourceStatement.executeQuery(selectSQL))
+							for (Map.Entry<String, Long> mapEntry: map.entrySet())
 							{
-								if (resultSet.next())
-								{
-									int i = 0;
-									
-									for (String column: columns)
-									{
-										map.put(column, resultSet.getLong(++i));
-									}
-								}
+								mapEntry.setValue(mapEntry.getValue() + 1);
 							}
 							
-							if (!map.isEmpty())
+							if (addAlterIdentityColumnBatch(targetStatement, support, table, map))
 							{
-								for (Map.Entry<String, Long> mapEntry: map.entrySet())
-								{
-									String alterSQL = support.getAlterIdentityColumnSQL(table, table.getColumnProperties(mapEntry.getKey()), mapEntry.getValue() + 1);
-									
-									if (alterSQL != null)
-									{
-										logger.log(Level.DEBUG, alterSQL);
-										
-										targetStatement.addBatch(alterSQL);
-									}
-								}
-								
 								targetStatement.executeBatch();
 							}
 						}
@@ -304,6 +278,71 @@ public class SynchronizationSupportImpl<Z, D extends Database<Z>> implements Syn
 		}
 	}
 
+	/**
+	 * Queries the maximum value of each identity column of the specified table.
+	 * @param statement a statement against the database to query
+	 * @param table a table
+	 * @return a map of maximum values, indexed by identity column name, or an empty map if the table has no identity columns
+	 * @throws SQLException if the query fails
+	 */
+	public static Map<String, Long> selectMaxIdentityColumnValues(Statement statement, TableProperties table) throws SQLException
+	{
+		Collection<String> columns = table.getIdentityColumns();
+		
+		Map<String, Long> map = new HashMap<>();
+		
+		if (!columns.isEmpty())
+		{
+			String selectSQL = MessageFormat.format("SELECT max({0}) FROM {1}", Strings.join(columns, "), max("), table.getName()); //$NON-NLS-1$ //$NON-NLS-2$
+			
+			logger.log(Level.DEBUG, selectSQL);
+			
+			try (ResultSet resultSet = statement.executeQuery(selectSQL))
+			{
+				if (resultSet.next())
+				{
+					int i = 0;
+					
+					for (String column: columns)
+					{
+						map.put(column, resultSet.getLong(++i));
+					}
+				}
+			}
+		}
+		
+		return map;
+	}
+
+	/**
+	 * Adds statements to the batch of the specified statement that restart the specified identity columns with the specified values.
+	 * @param statement a statement against the database to alter
+	 * @param support identity column support of the dialect
+	 * @param table a table
+	 * @param values the next identity column values, indexed by column name
+	 * @return true, if any statements were added to the batch, false otherwise
+	 * @throws SQLException if the batch could not be created
+	 */
+	public static boolean addAlterIdentityColumnBatch(Statement statement, IdentityColumnSupport support, TableProperties table, Map<String, Long> values) throws SQLException
+	{
+		boolean batched = false;
+		
+		for (Map.Entry<String, Long> entry: values.entrySet())
+		{
+			String alterSQL = support.getAlterIdentityColumnSQL(table, table.getColumnProperties(entry.getKey()), entry.getValue());
+			
+			if (alterSQL != null)
+			{
+				logger.log(Level.DEBUG, alterSQL);
+				
+				statement.addBatch(alterSQL);
+				batched = true;
+			}
+		}
+		
+		return batched;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.sync.SynchronizationSupport#dropUniqueConstraints()
@@ -0,0 +1,39 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.SQLException;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.TableProperties;
+
+/**
+ * A {@link TableSynchronizationStrategy} that can also synchronize a range of the primary key of a table, independently of other ranges.
+ * @author Paul Ferraro
+ */
+public interface TableRangeSynchronizationStrategy extends TableSynchronizationStrategy
+{
+	/**
+	 * Synchronizes the rows of the specified table whose leading primary key column falls within the specified range.
+	 * @param context a synchronization context
+	 * @param table a table
+	 * @param range a range of the leading primary key column of the table
+	 * @throws SQLException if synchronization failed
+	 */
+	<Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException;
+}
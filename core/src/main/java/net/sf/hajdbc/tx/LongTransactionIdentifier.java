@@ -0,0 +1,83 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.tx;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * An 8 byte transaction identifier, whose binary form is computed once, on creation.
+ * @author Paul Ferraro
+ */
+public final class LongTransactionIdentifier implements Serializable
+{
+	private static final long serialVersionUID = 2908234811528432016L;
+
+	static final int SIZE = Long.SIZE / Byte.SIZE;
+
+	private final long value;
+	private final byte[] bytes;
+
+	public LongTransactionIdentifier(long value)
+	{
+		this.value = value;
+		this.bytes = ByteBuffer.allocate(SIZE).putLong(value).array();
+	}
+
+	/**
+	 * Creates a transaction identifier from its binary form.
+	 * @param bytes the binary form of a transaction identifier, which is retained and must not be modified subsequently
+	 */
+	public LongTransactionIdentifier(byte[] bytes)
+	{
+		this.value = ByteBuffer.wrap(bytes).getLong();
+		this.bytes = bytes;
+	}
+
+	public long longValue()
+	{
+		return this.value;
+	}
+
+	/**
+	 * Returns the binary form of this transaction identifier.
+	 * @return a shared byte array, which must not be modified
+	 */
+	public byte[] getBytes()
+	{
+		return this.bytes;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		return (object instanceof LongTransactionIdentifier) && (this.value == ((LongTransactionIdentifier) object).value);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (int) (this.value ^ (this.value >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.valueOf(this.value);
+	}
+}
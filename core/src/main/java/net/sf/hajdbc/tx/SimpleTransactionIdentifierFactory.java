@@ -17,7 +17,6 @@
  */
 package net.sf.hajdbc.tx;
 
-import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -25,7 +24,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * This implementation is *not* safe for <distributable/> clusters, since the identifiers are only unique within a single DatabaseCluster instance.
  * @author Paul Ferraro
  */
-public class SimpleTransactionIdentifierFactory implements TransactionIdentifierFactory<Long>
+public class SimpleTransactionIdentifierFactory implements TransactionIdentifierFactory<LongTransactionIdentifier>
 {
 	private final AtomicLong counter = new AtomicLong(0);
 	
@@ -34,9 +33,9 @@ public class SimpleTransactionIdentifierFactory implements TransactionIdentifier
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#createTransactionIdentifier()
 	 */
 	@Override
-	public Long createTransactionIdentifier()
+	public LongTransactionIdentifier createTransactionIdentifier()
 	{
-		return this.counter.incrementAndGet();
+		return new LongTransactionIdentifier(this.counter.incrementAndGet());
 	}
 
 	/**
@@ -44,9 +43,9 @@ public class SimpleTransactionIdentifierFactory implements TransactionIdentifier
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#serialize(java.lang.Object)
 	 */
 	@Override
-	public byte[] serialize(Long transactionId)
+	public byte[] serialize(LongTransactionIdentifier transactionId)
 	{
-		return ByteBuffer.allocate(this.size()).putLong(transactionId).array();
+		return transactionId.getBytes();
 	}
 
 	/**
@@ -54,9 +53,9 @@ public class SimpleTransactionIdentifierFactory implements TransactionIdentifier
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#deserialize(byte[])
 	 */
 	@Override
-	public Long deserialize(byte[] bytes)
+	public LongTransactionIdentifier deserialize(byte[] bytes)
 	{
-		return ByteBuffer.wrap(bytes).getLong();
+		return new LongTransactionIdentifier(bytes);
 	}
 
 	/**
@@ -66,6 +65,6 @@ public class SimpleTransactionIdentifierFactory implements TransactionIdentifier
 	@Override
 	public int size()
 	{
-		return Long.SIZE;
+		return LongTransactionIdentifier.SIZE;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.tx;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * A 16 byte transaction identifier, whose binary form is computed once, on creation.
+ * @author Paul Ferraro
+ */
+public final class UUIDTransactionIdentifier implements Serializable
+{
+	private static final long serialVersionUID = -6364838396391862158L;
+
+	static final int SIZE = 2 * Long.SIZE / Byte.SIZE;
+
+	private final long mostSignificantBits;
+	private final long leastSignificantBits;
+	private final byte[] bytes;
+
+	public UUIDTransactionIdentifier(UUID uuid)
+	{
+		this.mostSignificantBits = uuid.getMostSignificantBits();
+		this.leastSignificantBits = uuid.getLeastSignificantBits();
+		this.bytes = ByteBuffer.allocate(SIZE).putLong(this.mostSignificantBits).putLong(this.leastSignificantBits).array();
+	}
+
+	/**
+	 * Creates a transaction identifier from its binary form.
+	 * @param bytes the binary form of a transaction identifier, which is retained and must not be modified subsequently
+	 */
+	public UUIDTransactionIdentifier(byte[] bytes)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		this.mostSignificantBits = buffer.getLong();
+		this.leastSignificantBits = buffer.getLong();
+		this.bytes = bytes;
+	}
+
+	public long getMostSignificantBits()
+	{
+		return this.mostSignificantBits;
+	}
+
+	public long getLeastSignificantBits()
+	{
+		return this.leastSignificantBits;
+	}
+
+	public UUID toUUID()
+	{
+		return new UUID(this.mostSignificantBits, this.leastSignificantBits);
+	}
+
+	/**
+	 * Returns the binary form of this transaction identifier.
+	 * @return a shared byte array, which must not be modified
+	 */
+	public byte[] getBytes()
+	{
+		return this.bytes;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (!(object instanceof UUIDTransactionIdentifier)) return false;
+		UUIDTransactionIdentifier id = (UUIDTransactionIdentifier) object;
+		return (this.mostSignificantBits == id.mostSignificantBits) && (this.leastSignificantBits == id.leastSignificantBits);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		long hash = this.mostSignificantBits ^ this.leastSignificantBits;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public String toString()
+	{
+		return this.toUUID().toString();
+	}
+}
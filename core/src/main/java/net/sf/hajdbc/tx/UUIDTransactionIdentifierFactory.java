@@ -17,7 +17,6 @@
  */
 package net.sf.hajdbc.tx;
 
-import java.nio.ByteBuffer;
 import java.util.UUID;
 
 /**
@@ -25,16 +24,16 @@ import java.util.UUID;
  * This implementation is safe for <distributable/> clusters.
  * @author Paul Ferraro
  */
-public class UUIDTransactionIdentifierFactory implements TransactionIdentifierFactory<UUID>
+public class UUIDTransactionIdentifierFactory implements TransactionIdentifierFactory<UUIDTransactionIdentifier>
 {
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#createTransactionIdentifier()
 	 */
 	@Override
-	public UUID createTransactionIdentifier()
+	public UUIDTransactionIdentifier createTransactionIdentifier()
 	{
-		return UUID.randomUUID();
+		return new UUIDTransactionIdentifier(UUID.randomUUID());
 	}
 
 	/**
@@ -42,9 +41,9 @@ public class UUIDTransactionIdentifierFactory implements TransactionIdentifierFa
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#serialize(java.lang.Object)
 	 */
 	@Override
-	public byte[] serialize(UUID transactionId)
+	public byte[] serialize(UUIDTransactionIdentifier transactionId)
 	{
-		return ByteBuffer.allocate(this.size()).putLong(transactionId.getMostSignificantBits()).putLong(transactionId.getLeastSignificantBits()).array();
+		return transactionId.getBytes();
 	}
 
 	/**
@@ -52,10 +51,9 @@ public class UUIDTransactionIdentifierFactory implements TransactionIdentifierFa
 	 * @see net.sf.hajdbc.tx.TransactionIdentifierFactory#deserialize(byte[])
 	 */
 	@Override
-	public UUID deserialize(byte[] bytes)
+	public UUIDTransactionIdentifier deserialize(byte[] bytes)
 	{
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		return new UUID(buffer.getLong(), buffer.getLong());
+		return new UUIDTransactionIdentifier(bytes);
 	}
 
 	/**
@@ -65,6 +63,6 @@ public class UUIDTransactionIdentifierFactory implements TransactionIdentifierFa
 	@Override
 	public int size()
 	{
-		return Long.SIZE * 2;
+		return UUIDTransactionIdentifier.SIZE;
 	}
 }
@@ -120,6 +120,6 @@ public class XidTransactionIdentifierFactory implements TransactionIdentifierFac
 	@Override
 	public int size()
 	{
-		return Integer.SIZE + Xid.MAXGTRIDSIZE + Xid.MAXBQUALSIZE;
+		return (Integer.SIZE / Byte.SIZE) + Xid.MAXGTRIDSIZE + Xid.MAXBQUALSIZE;
 	}
 }
@@ -1,11 +1,18 @@
 package net.sf.hajdbc.util;
 
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedExceptionAction;
 import java.util.Map;
+import java.util.concurrent.ThreadFactory;
 
 import net.sf.hajdbc.logging.Level;
 import net.sf.hajdbc.logging.Logger;
@@ -17,6 +24,8 @@ public class Processes
 {
 	private static final Messages messages = MessagesFactory.getMessages();
 	private static final Logger logger = LoggerFactory.getLogger(Processes.class);
+	private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+	private static final long PIPE_PROGRESS_INTERVAL = 64L * 1024 * 1024;
 
 	public static Map<String, String> environment(final ProcessBuilder builder)
 	{
@@ -35,42 +44,201 @@ public class Processes
 	{
 		processBuilder.redirectErrorStream(true);
 		
-		logger.log(Level.DEBUG, Strings.join(processBuilder.command(), " "));
+		Process process = start(processBuilder);
 		
-		PrivilegedExceptionAction<Process> action = new PrivilegedExceptionAction<Process>()
+		try
 		{
-			@Override
-			public Process run() throws Exception
+			int status = process.waitFor();
+			
+			log(process.getInputStream());
+			
+			if (status != 0)
 			{
-				return processBuilder.start();
+				throw new Exception(messages.status(processBuilder, status));
 			}
-		};
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			
+			throw new Exception(processBuilder.toString(), e);
+		}
+	}
+
+	/**
+	 * Runs the specified processes concurrently, piping the standard output of the source process to the standard input of the target process.
+	 * Data is transferred via a fixed size buffer, so that neither process can get ahead of the other by more than the capacity of the buffer and the OS pipes.
+	 * If the source process fails, the target process is destroyed before its standard input is closed, so that it never sees a clean end of input.
+	 * However, since restore tools typically execute statements as they read them, the target process may already have applied part of the input.
+	 * @param sourceBuilder builds a process that writes to its standard output
+	 * @param targetBuilder builds a process that reads from its standard input
+	 * @param threadFactory creates threads that consume the remaining output of each process
+	 * @return the number of bytes transferred
+	 * @throws Exception if either process failed
+	 */
+	public static long pipe(final ProcessBuilder sourceBuilder, final ProcessBuilder targetBuilder, ThreadFactory threadFactory) throws Exception
+	{
+		targetBuilder.redirectErrorStream(true);
 		
-		Process process = AccessController.doPrivileged(action);
+		Process target = start(targetBuilder);
 		
 		try
 		{
-			int status = process.waitFor();
+			Process source = start(sourceBuilder);
 			
-			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-			String line = reader.readLine();
-			while (line != null)
+			try
 			{
-				logger.log(Level.DEBUG, line);
-				line = reader.readLine();
+				// Drain output not destined for the pipe, lest either process block
+				Thread sourceErrorLogger = log(source.getErrorStream(), threadFactory);
+				Thread targetOutputLogger = log(target.getInputStream(), threadFactory);
+				
+				WritableByteChannel output = Channels.newChannel(target.getOutputStream());
+				long count = 0;
+				int sourceStatus = 0;
+				
+				try
+				{
+					boolean broken = false;
+					
+					try (ReadableByteChannel input = Channels.newChannel(source.getInputStream()))
+					{
+						count = transfer(input, output, sourceBuilder, targetBuilder);
+					}
+					catch (IOException e)
+					{
+						// Target process likely terminated prematurely, so report its status instead
+						broken = true;
+						source.destroy();
+						logger.log(Level.DEBUG, e);
+					}
+					
+					sourceStatus = source.waitFor();
+					
+					if (!broken && (sourceStatus != 0))
+					{
+						target.destroy();
+						throw new Exception(messages.status(sourceBuilder, sourceStatus));
+					}
+				}
+				finally
+				{
+					close(output);
+				}
+				
+				int targetStatus = target.waitFor();
+				
+				sourceErrorLogger.join();
+				targetOutputLogger.join();
+				
+				if (targetStatus != 0)
+				{
+					throw new Exception(messages.status(targetBuilder, targetStatus));
+				}
+				if (sourceStatus != 0)
+				{
+					throw new Exception(messages.status(sourceBuilder, sourceStatus));
+				}
+				
+				return count;
 			}
-			
-			if (status != 0)
+			finally
 			{
-				throw new Exception(messages.status(processBuilder, status));
+				source.destroy();
 			}
 		}
 		catch (InterruptedException e)
 		{
 			Thread.currentThread().interrupt();
 			
-			throw new Exception(processBuilder.toString(), e);
+			throw new Exception(sourceBuilder.toString(), e);
+		}
+		finally
+		{
+			target.destroy();
+		}
+	}
+
+	private static long transfer(ReadableByteChannel input, WritableByteChannel output, ProcessBuilder sourceBuilder, ProcessBuilder targetBuilder) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(PIPE_BUFFER_SIZE);
+		long count = 0;
+		long progress = PIPE_PROGRESS_INTERVAL;
+		
+		while ((input.read(buffer) >= 0) || (buffer.position() > 0))
+		{
+			buffer.flip();
+			count += output.write(buffer);
+			buffer.compact();
+			
+			if (count >= progress)
+			{
+				logger.log(Level.DEBUG, "Piped {0} bytes from {1} to {2}", count, sourceBuilder.command().get(0), targetBuilder.command().get(0));
+				progress += PIPE_PROGRESS_INTERVAL;
+			}
 		}
+		
+		return count;
+	}
+
+	private static void close(WritableByteChannel channel)
+	{
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.DEBUG, e);
+		}
+	}
+
+	private static Process start(final ProcessBuilder processBuilder) throws Exception
+	{
+		logger.log(Level.DEBUG, Strings.join(processBuilder.command(), " "));
+		
+		PrivilegedExceptionAction<Process> action = new PrivilegedExceptionAction<Process>()
+		{
+			@Override
+			public Process run() throws Exception
+			{
+				return processBuilder.start();
+			}
+		};
+		
+		return AccessController.doPrivileged(action);
+	}
+
+	static void log(InputStream input) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+		String line = reader.readLine();
+		while (line != null)
+		{
+			logger.log(Level.DEBUG, line);
+			line = reader.readLine();
+		}
+	}
+
+	private static Thread log(final InputStream input, ThreadFactory threadFactory)
+	{
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					log(input);
+				}
+				catch (IOException e)
+				{
+					logger.log(Level.DEBUG, e);
+				}
+			}
+		};
+		Thread thread = threadFactory.newThread(task);
+		thread.start();
+		return thread;
 	}
 
 	private Processes()
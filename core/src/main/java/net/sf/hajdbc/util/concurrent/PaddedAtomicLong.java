@@ -0,0 +1,81 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A long value that may be updated atomically, like an {@link java.util.concurrent.atomic.AtomicLong}, padded on both sides to occupy its own cache line,
+ * so that frequently updated counters allocated near one another do not suffer from false sharing.
+ * The JVM may reorder the fields of a class, but lays out the fields of a superclass before those of its subclasses.
+ * Consequently, the value is declared by an intermediate class, between a superclass and a subclass that each declare only padding.
+ * @author Paul Ferraro
+ */
+public class PaddedAtomicLong extends PaddedAtomicLongValue
+{
+	private static final AtomicLongFieldUpdater<PaddedAtomicLongValue> updater = AtomicLongFieldUpdater.newUpdater(PaddedAtomicLongValue.class, "value");
+
+	// Padding fields are never read, but must not be removed
+	long p9, p10, p11, p12, p13, p14, p15;
+
+	public PaddedAtomicLong()
+	{
+		this(0L);
+	}
+
+	public PaddedAtomicLong(long value)
+	{
+		this.value = value;
+	}
+
+	public long get()
+	{
+		return this.value;
+	}
+
+	public void set(long value)
+	{
+		this.value = value;
+	}
+
+	public boolean compareAndSet(long expected, long value)
+	{
+		return updater.compareAndSet(this, expected, value);
+	}
+
+	public long incrementAndGet()
+	{
+		return updater.incrementAndGet(this);
+	}
+
+	public long decrementAndGet()
+	{
+		return updater.decrementAndGet(this);
+	}
+
+	public long addAndGet(long delta)
+	{
+		return updater.addAndGet(this, delta);
+	}
+
+	@Override
+	public String toString()
+	{
+		return Long.toString(this.value);
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.logging.Level;
+import net.sf.hajdbc.logging.Logger;
+import net.sf.hajdbc.logging.LoggerFactory;
+
+/**
+ * Executor that executes its tasks one at a time, in submission order, using the threads of another executor.
+ * At most one thread consumes the queued tasks at any given time.
+ *
+ * @author Paul Ferraro
+ */
+public class SerialExecutor implements Executor, Runnable
+{
+	private static final Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+	private final Executor executor;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+
+	public SerialExecutor(Executor executor)
+	{
+		this.executor = executor;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task)
+	{
+		this.tasks.add(task);
+
+		// Only the submitter that finds the queue idle schedules a consumer
+		if (this.pending.getAndIncrement() == 0)
+		{
+			this.schedule();
+		}
+	}
+
+	/**
+	 * Executes queued tasks until the queue is empty.
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		boolean remaining = true;
+		try
+		{
+			while (remaining)
+			{
+				Runnable task = this.tasks.poll();
+
+				try
+				{
+					task.run();
+				}
+				catch (RuntimeException e)
+				{
+					// Failure of a single task must not stall the remaining tasks
+					logger.log(Level.WARN, e, e.getMessage());
+				}
+				finally
+				{
+					remaining = (this.pending.decrementAndGet() > 0);
+				}
+			}
+		}
+		finally
+		{
+			// If a task threw an error, hand the remaining tasks to a new consumer
+			if (remaining)
+			{
+				this.schedule();
+			}
+		}
+	}
+
+	private void schedule()
+	{
+		try
+		{
+			this.executor.execute(this);
+		}
+		catch (RejectedExecutionException e)
+		{
+			// Executor was shutdown, drain the queue in the caller thread
+			this.run();
+		}
+	}
+
+	/**
+	 * Indicates whether this executor has no queued or executing tasks.
+	 * @return true, if this executor is idle, false otherwise
+	 */
+	public boolean isIdle()
+	{
+		return this.pending.get() == 0;
+	}
+
+	/**
+	 * Waits for all previously submitted tasks to complete.
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void await() throws InterruptedException
+	{
+		if (this.isIdle()) return;
+
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		this.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				latch.countDown();
+			}
+		});
+
+		latch.await();
+	}
+}
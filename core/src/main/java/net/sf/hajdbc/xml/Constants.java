@@ -26,6 +26,7 @@ public interface Constants
 {
 	final String ROOT = "ha-jdbc";
 
+	final String ALLOCATE_IDENTITY_COLUMNS = "allocate-identity-columns";
 	final String ALLOW_EMPTY_CLUSTER = "allow-empty-cluster";
 	final String AUTO_ACTIVATE_SCHEDULE = "auto-activate-schedule";
 	final String BALANCER = "balancer";
@@ -43,6 +44,7 @@ public interface Constants
 	final String EVAL_RAND = "eval-rand";
 	final String FAILURE_DETECT_SCHEDULE = "failure-detect-schedule";
 	final String ID = "id";
+	final String IDENTITY_COLUMN_BLOCK_SIZE = "identity-column-block-size";
 	final String INPUT_SINK = "input-sink";
 	@Deprecated final String LOCAL = "local";
 	final String LOCALITY = "locality";
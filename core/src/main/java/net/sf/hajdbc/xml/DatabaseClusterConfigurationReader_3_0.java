@@ -192,12 +192,17 @@ public class DatabaseClusterConfigurationReader_3_0<Z, D extends Database<Z>, B
 				}
 				default:
 				{
-					throw new XMLStreamException(messages.unexpectedAttribute(reader, i));
+					this.readClusterAttribute(reader, builder, i);
 				}
 			}
 		}
 	}
 	
+	void readClusterAttribute(XMLStreamReader reader, DatabaseClusterConfigurationBuilder<Z, D, B> builder, int index) throws XMLStreamException
+	{
+		throw new XMLStreamException(messages.unexpectedAttribute(reader, index));
+	}
+	
 	void readClusterElements(XMLStreamReader reader, DatabaseClusterConfigurationBuilder<Z, D, B> builder) throws XMLStreamException
 	{
 		while (reader.nextTag() != END_ELEMENT)
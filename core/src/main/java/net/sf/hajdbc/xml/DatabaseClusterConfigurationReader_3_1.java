@@ -24,6 +24,7 @@ import javax.xml.stream.XMLStreamReader;
 
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.DatabaseBuilder;
+import net.sf.hajdbc.DatabaseClusterConfigurationBuilder;
 import net.sf.hajdbc.Locality;
 import net.sf.hajdbc.messages.Messages;
 import net.sf.hajdbc.messages.MessagesFactory;
@@ -44,6 +45,28 @@ public class DatabaseClusterConfigurationReader_3_1<Z, D extends Database<Z>, B
 		}
 	};
 
+	@Override
+	void readClusterAttribute(XMLStreamReader reader, DatabaseClusterConfigurationBuilder<Z, D, B> builder, int index) throws XMLStreamException
+	{
+		switch (reader.getAttributeLocalName(index))
+		{
+			case ALLOCATE_IDENTITY_COLUMNS:
+			{
+				builder.allocateIdentityColumns(Boolean.parseBoolean(reader.getAttributeValue(index)));
+				break;
+			}
+			case IDENTITY_COLUMN_BLOCK_SIZE:
+			{
+				builder.identityColumnBlockSize(Integer.parseInt(reader.getAttributeValue(index)));
+				break;
+			}
+			default:
+			{
+				super.readClusterAttribute(reader, builder, index);
+			}
+		}
+	}
+
 	@Override
 	void readDatabaseAttributes(XMLStreamReader reader, B builder) throws XMLStreamException
 	{
@@ -215,6 +215,7 @@ public class XMLDatabaseClusterConfigurationFactory<Z, D extends Database<Z>> im
 			write(writer, LOCK, config.getLockManagerFactory());
 			writer.writeStartElement(CLUSTER);
 			{
+				writeAttribute(writer, ALLOCATE_IDENTITY_COLUMNS, config.isIdentityColumnAllocationEnabled());
 				writeAttribute(writer, ALLOW_EMPTY_CLUSTER, config.isEmptyClusterAllowed());
 				writeAttribute(writer, AUTO_ACTIVATE_SCHEDULE, config.getAutoActivationExpression());
 				writeAttribute(writer, BALANCER, config.getBalancerFactory());
@@ -228,6 +229,7 @@ public class XMLDatabaseClusterConfigurationFactory<Z, D extends Database<Z>> im
 				writeAttribute(writer, EVAL_CURRENT_TIMESTAMP, config.isCurrentTimestampEvaluationEnabled());
 				writeAttribute(writer, EVAL_RAND, config.isRandEvaluationEnabled());
 				writeAttribute(writer, FAILURE_DETECT_SCHEDULE, config.getFailureDetectionExpression());
+				writeAttribute(writer, IDENTITY_COLUMN_BLOCK_SIZE, config.getIdentityColumnBlockSize());
 				writeAttribute(writer, INPUT_SINK, config.getInputSinkProvider());
 				writeAttribute(writer, META_DATA_CACHE, config.getDatabaseMetaDataCacheFactory());
 				writeAttribute(writer, TRANSACTION_MODE, config.getTransactionMode());
@@ -42,7 +42,12 @@ public class MockDatabase extends AbstractDatabase<Void>
 	
 	public MockDatabase(String id, int weight)
 	{
-		super(id, null, null, weight, Locality.REMOTE);
+		this(id, weight, Locality.REMOTE);
+	}
+	
+	public MockDatabase(String id, int weight, Locality locality)
+	{
+		super(id, null, null, weight, locality);
 	}
 
 	@Override
@@ -0,0 +1,125 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientConnectionException;
+
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.health.HealthBalancerFactory;
+import net.sf.hajdbc.invocation.Invoker;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author Paul Ferraro
+ */
+public class HealthBalancerTest extends AbstractBalancerTest
+{
+	public HealthBalancerTest()
+	{
+		super(new HealthBalancerFactory());
+	}
+	
+	@Override
+	public void next(Balancer<Void, MockDatabase> balancer)
+	{
+		int count = 1000;
+		
+		// Healthy: behaves like the random balancer
+		int[] results = this.next(balancer, count);
+		
+		assertEquals(0, results[0]);
+		assertTrue(Integer.toString(results[1]), results[1] < (count / 2));
+		assertTrue(Integer.toString(results[2]), results[2] > (count / 2));
+		
+		// Request errors do not affect health
+		this.error(balancer, this.databases[2], new SQLSyntaxErrorException());
+		this.error(balancer, this.databases[2], new SQLSyntaxErrorException());
+		
+		results = this.next(balancer, count);
+		
+		assertTrue(Integer.toString(results[2]), results[2] > (count / 2));
+		
+		// Connection errors shift requests away from a database
+		this.error(balancer, this.databases[2], new SQLTransientConnectionException());
+		this.error(balancer, this.databases[2], new SQLTransientConnectionException());
+		
+		results = this.next(balancer, count);
+		
+		assertEquals(0, results[0]);
+		assertTrue(Integer.toString(results[1]), results[1] > (count / 2));
+		assertTrue(Integer.toString(results[2]), results[2] > 0);
+		
+		// Successful probes restore health
+		@SuppressWarnings("unchecked")
+		ProbeListener<MockDatabase> listener = (ProbeListener<MockDatabase>) balancer;
+		
+		listener.probed(this.databases[2], true);
+		listener.probed(this.databases[2], true);
+		listener.probed(this.databases[2], true);
+		
+		results = this.next(balancer, count);
+		
+		assertTrue(Integer.toString(results[2]), results[2] > (count / 2));
+		
+		// Failed probes shift requests away from a database
+		listener.probed(this.databases[2], false);
+		
+		results = this.next(balancer, count);
+		
+		assertTrue(Integer.toString(results[1]), results[1] > (count / 2));
+	}
+	
+	private void error(Balancer<Void, MockDatabase> balancer, MockDatabase database, final SQLException exception)
+	{
+		Invoker<Void, MockDatabase, Void, Void, SQLException> invoker = new Invoker<Void, MockDatabase, Void, Void, SQLException>()
+		{
+			@Override
+			public Void invoke(MockDatabase database, Void object) throws SQLException
+			{
+				throw exception;
+			}
+		};
+		
+		try
+		{
+			balancer.invoke(invoker, database, null);
+			
+			fail();
+		}
+		catch (SQLException e)
+		{
+			assertSame(exception, e);
+		}
+	}
+	
+	private int[] next(Balancer<Void, MockDatabase> balancer, int count)
+	{
+		int[] results = new int[] { 0, 0, 0 };
+		
+		for (int i = 0; i < count; ++i)
+		{
+			results[balancer.next().getWeight()] += 1;
+		}
+		
+		return results;
+	}
+}
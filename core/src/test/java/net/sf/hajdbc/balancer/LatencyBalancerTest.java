@@ -0,0 +1,83 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.latency.LatencyBalancerFactory;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author Paul Ferraro
+ */
+public class LatencyBalancerTest extends AbstractBalancerTest
+{
+	public LatencyBalancerTest()
+	{
+		super(new LatencyBalancerFactory());
+	}
+	
+	@Override
+	public void next(Balancer<Void, MockDatabase> balancer)
+	{
+		assertSame(this.databases[2], balancer.next());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		CountDownLatch latch = new CountDownLatch(2);
+		WaitingInvoker invoker = new WaitingInvoker(latch);
+		
+		Future<Void> future1 = executor.submit(new InvocationTask(balancer, invoker, this.databases[2]));
+		Future<Void> future2 = executor.submit(new InvocationTask(balancer, invoker, this.databases[2]));
+		
+		try
+		{
+			latch.await();
+			
+			// Outstanding requests count against a database
+			assertSame(this.databases[1], balancer.next());
+			
+			Thread.sleep(10);
+			
+			synchronized (invoker)
+			{
+				invoker.notifyAll();
+			}
+			
+			this.complete(Arrays.asList(future1, future2));
+			
+			// Slow responses count against a database, even after they complete
+			assertSame(this.databases[1], balancer.next());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.Locality;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.locality.LocalityBalancer;
+import net.sf.hajdbc.balancer.locality.LocalityBalancerFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author Paul Ferraro
+ */
+public class LocalityBalancerTest extends AbstractBalancerTest
+{
+	public LocalityBalancerTest()
+	{
+		super(new LocalityBalancerFactory());
+	}
+	
+	@Override
+	public void next(Balancer<Void, MockDatabase> balancer)
+	{
+		// Without local databases, behaves like the load balancer
+		assertSame(this.databases[2], balancer.next());
+	}
+	
+	@Test
+	public void locality()
+	{
+		MockDatabase embedded = new MockDatabase("3", 1, Locality.EMBEDDED);
+		MockDatabase local = new MockDatabase("4", 1, Locality.LOCAL);
+		
+		Balancer<Void, MockDatabase> balancer = this.factory.createBalancer(new HashSet<>(Arrays.asList(this.databases[1], this.databases[2], embedded, local)));
+		
+		// Prefer the most local database, regardless of weight
+		assertSame(embedded, balancer.next());
+		
+		ExecutorService executor = Executors.newCachedThreadPool();
+		
+		try
+		{
+			// Saturate the embedded database
+			CountDownLatch embeddedLatch = new CountDownLatch(LocalityBalancer.SATURATION);
+			WaitingInvoker embeddedInvoker = new WaitingInvoker(embeddedLatch);
+			List<Future<Void>> embeddedFutures = this.invoke(executor, balancer, embeddedInvoker, embedded, LocalityBalancer.SATURATION);
+			embeddedLatch.await();
+			
+			assertSame(local, balancer.next());
+			
+			// Saturate the local database
+			CountDownLatch localLatch = new CountDownLatch(LocalityBalancer.SATURATION);
+			WaitingInvoker localInvoker = new WaitingInvoker(localLatch);
+			List<Future<Void>> localFutures = this.invoke(executor, balancer, localInvoker, local, LocalityBalancer.SATURATION);
+			localLatch.await();
+			
+			// Fall back to the least loaded remote database
+			assertSame(this.databases[2], balancer.next());
+			
+			synchronized (embeddedInvoker)
+			{
+				embeddedInvoker.notifyAll();
+			}
+			
+			this.complete(embeddedFutures);
+			
+			assertSame(embedded, balancer.next());
+			
+			synchronized (localInvoker)
+			{
+				localInvoker.notifyAll();
+			}
+			
+			this.complete(localFutures);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	private List<Future<Void>> invoke(ExecutorService executor, Balancer<Void, MockDatabase> balancer, WaitingInvoker invoker, MockDatabase database, int count)
+	{
+		List<Future<Void>> futures = new ArrayList<>(count);
+		
+		for (int i = 0; i < count; ++i)
+		{
+			futures.add(executor.submit(new InvocationTask(balancer, invoker, database)));
+		}
+		
+		return futures;
+	}
+}
@@ -36,7 +36,7 @@ public class RoundRobinBalancerTest extends AbstractBalancerTest
 	@Override
 	public void next(Balancer<Void, MockDatabase> balancer)
 	{
-		int[] expected = new int[] { 1, 2, 2 };
+		int[] expected = new int[] { 2, 1, 2 };
 		
 		for (int i = 0; i < 100; ++i)
 		{
@@ -0,0 +1,105 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.balancer;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.twochoice.TwoChoiceBalancerFactory;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author Paul Ferraro
+ */
+public class TwoChoiceBalancerTest extends AbstractBalancerTest
+{
+	public TwoChoiceBalancerTest()
+	{
+		super(new TwoChoiceBalancerFactory());
+	}
+	
+	@Override
+	public void next(Balancer<Void, MockDatabase> balancer)
+	{
+		int count = 1000;
+		
+		// Idle: 2 of 3 candidate pairs contain the heavier database
+		int[] results = this.next(balancer, count);
+		
+		assertEquals(0, results[0]);
+		assertTrue(Integer.toString(results[1]), results[1] < (count / 2));
+		assertTrue(Integer.toString(results[2]), results[2] > (count / 2));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		
+		CountDownLatch latch = new CountDownLatch(2);
+		WaitingInvoker invoker = new WaitingInvoker(latch);
+		
+		Future<Void> future1 = executor.submit(new InvocationTask(balancer, invoker, this.databases[2]));
+		Future<Void> future2 = executor.submit(new InvocationTask(balancer, invoker, this.databases[2]));
+		
+		try
+		{
+			latch.await();
+			
+			// Loaded: the lighter database now wins whenever it is a candidate
+			results = this.next(balancer, count);
+			
+			assertEquals(0, results[0]);
+			assertTrue(Integer.toString(results[1]), results[1] > (count / 2));
+			assertTrue(Integer.toString(results[2]), results[2] < (count / 2));
+			
+			synchronized (invoker)
+			{
+				invoker.notifyAll();
+			}
+			
+			this.complete(Arrays.asList(future1, future2));
+			
+			results = this.next(balancer, count);
+			
+			assertTrue(Integer.toString(results[2]), results[2] > (count / 2));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	private int[] next(Balancer<Void, MockDatabase> balancer, int count)
+	{
+		int[] results = new int[] { 0, 0, 0 };
+		
+		for (int i = 0; i < count; ++i)
+		{
+			results[balancer.next().getWeight()] += 1;
+		}
+		
+		return results;
+	}
+}
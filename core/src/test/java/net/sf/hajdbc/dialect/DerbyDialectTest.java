@@ -167,4 +167,16 @@ public class DerbyDialectTest extends StandardDialectTest
 		assertEquals("SELECT LOCALTIME FROM test", this.dialect.evaluateCurrentTimestamp("SELECT LOCALTIME FROM test", timestamp));
 		assertEquals("SELECT 1 FROM test", this.dialect.evaluateCurrentTimestamp("SELECT 1 FROM test", timestamp));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getCreateTableAsSQL()
+	 */
+	@Override
+	public void getCreateTableAsSQL()
+	{
+		String result = this.dialect.getCreateTableAsSQL("table", "SELECT column FROM source");
+		
+		assertEquals("CREATE TABLE table AS SELECT column FROM source WITH NO DATA", result);
+	}
 }
@@ -39,6 +39,8 @@ import net.sf.hajdbc.ForeignKeyConstraint;
 import net.sf.hajdbc.QualifiedName;
 import net.sf.hajdbc.SequenceProperties;
 import net.sf.hajdbc.SequencePropertiesFactory;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.TriggerSupport.TriggerEventEnum;
 import net.sf.hajdbc.dialect.hsqldb.HSQLDBDialectFactory;
 
 import org.hsqldb.error.ErrorCode;
@@ -241,4 +243,58 @@ public class HSQLDBDialectTest extends StandardDialectTest
 		assertTrue(this.dialect.indicatesFailure(new SQLException("", "", ErrorCode.SERVER_DATABASE_DISCONNECTED)));
 		assertTrue(this.dialect.indicatesFailure(new SQLException("", "", ErrorCode.SERVER_NO_DATABASE)));
 	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getCreateTableAsSQL()
+	 */
+	@Override
+	public void getCreateTableAsSQL()
+	{
+		String result = this.dialect.getCreateTableAsSQL("table", "SELECT column FROM source");
+		
+		assertEquals("CREATE TABLE table AS (SELECT column FROM source) WITH NO DATA", result);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getTriggerSupport()
+	 */
+	@Override
+	public void getTriggerSupport()
+	{
+		assertSame(this.dialect, this.dialect.getTriggerSupport());
+	}
+
+	@Test
+	public void getCreateTriggerSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDDLName()).thenReturn("table");
+		
+		assertEquals("CREATE TRIGGER trigger AFTER INSERT ON table REFERENCING NEW ROW AS NEWROW FOR EACH ROW BEGIN ATOMIC action; END", this.dialect.getTriggerSupport().getCreateTriggerSQL("trigger", table, TriggerEventEnum.INSERT, "action;"));
+		assertEquals("CREATE TRIGGER trigger AFTER UPDATE ON table REFERENCING NEW ROW AS NEWROW OLD ROW AS OLDROW FOR EACH ROW BEGIN ATOMIC action; END", this.dialect.getTriggerSupport().getCreateTriggerSQL("trigger", table, TriggerEventEnum.UPDATE, "action;"));
+		assertEquals("CREATE TRIGGER trigger AFTER DELETE ON table REFERENCING OLD ROW AS OLDROW FOR EACH ROW BEGIN ATOMIC action; END", this.dialect.getTriggerSupport().getCreateTriggerSQL("trigger", table, TriggerEventEnum.DELETE, "action;"));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getDropTriggerSQL()
+	 */
+	@Override
+	public void getDropTriggerSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDDLName()).thenReturn("table");
+		
+		String result = this.dialect.getTriggerSupport().getDropTriggerSQL("trigger", table);
+		
+		assertEquals("DROP TRIGGER trigger", result);
+	}
 }
@@ -18,6 +18,7 @@
 package net.sf.hajdbc.dialect;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,6 +33,7 @@ import java.util.List;
 
 import net.sf.hajdbc.ForeignKeyConstraint;
 import net.sf.hajdbc.QualifiedName;
+import net.sf.hajdbc.TableProperties;
 import net.sf.hajdbc.UniqueConstraint;
 import net.sf.hajdbc.dialect.mysql.MySQLDialectFactory;
 
@@ -47,6 +49,63 @@ public class MySQLDialectTest extends StandardDialectTest
 		super(new MySQLDialectFactory());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getTriggerSupport()
+	 */
+	@Override
+	public void getTriggerSupport()
+	{
+		assertSame(this.dialect, this.dialect.getTriggerSupport());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getDropTriggerSQL()
+	 */
+	@Override
+	public void getDropTriggerSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDDLName()).thenReturn("table");
+		
+		String result = this.dialect.getTriggerSupport().getDropTriggerSQL("trigger", table);
+		
+		assertEquals("DROP TRIGGER trigger", result);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumSupport()
+	 */
+	@Override
+	public void getChecksumSupport()
+	{
+		assertSame(this.dialect, this.dialect.getChecksumSupport());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumSQL()
+	 */
+	@Override
+	public void getChecksumSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDMLName()).thenReturn("table");
+		when(table.getColumns()).thenReturn(Arrays.asList("id", "name"));
+		
+		String result = this.dialect.getChecksumSupport().getChecksumSQL(table, "id >= 1 AND id < 10");
+		
+		assertEquals("SELECT COUNT(*), SUM(CAST(CONV(SUBSTRING(MD5(CONCAT_WS('#', id, name, CONCAT(ISNULL(id), ISNULL(name)))), 1, 16), 16, 10) AS UNSIGNED)) FROM table WHERE id >= 1 AND id < 10", result);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getCreateForeignKeyConstraintSQL()
@@ -23,6 +23,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -67,6 +68,67 @@ public class PostgreSQLDialectTest extends StandardDialectTest
 		assertSame(this.dialect, this.dialect.getIdentityColumnSupport());
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getTriggerSupport()
+	 */
+	@Override
+	public void getTriggerSupport()
+	{
+		assertSame(this.dialect, this.dialect.getTriggerSupport());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getDropTriggerSQL()
+	 */
+	@Override
+	public void getDropTriggerSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDDLName()).thenReturn("table");
+		
+		String result = this.dialect.getTriggerSupport().getDropTriggerSQL("trigger", table);
+		
+		assertEquals("DROP TRIGGER trigger ON table; DROP FUNCTION trigger_action()", result);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumSupport()
+	 */
+	@Override
+	public void getChecksumSupport()
+	{
+		assertSame(this.dialect, this.dialect.getChecksumSupport());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getChecksumSQL()
+	 */
+	@Override
+	public void getChecksumSQL() throws SQLException
+	{
+		TableProperties table = mock(TableProperties.class);
+		QualifiedName name = mock(QualifiedName.class);
+		
+		when(table.getName()).thenReturn(name);
+		when(name.getDMLName()).thenReturn("table");
+		when(table.getColumns()).thenReturn(Arrays.asList("id", "name"));
+		
+		String result = this.dialect.getChecksumSupport().getChecksumSQL(table, "id >= 1 AND id < 10");
+		
+		assertEquals("SELECT COUNT(*), SUM(CAST(CAST('x' || SUBSTR(MD5(CAST(ROW(id, name) AS TEXT)), 1, 16) AS BIT(64)) AS BIGINT)) FROM table WHERE id >= 1 AND id < 10", result);
+		
+		result = this.dialect.getChecksumSupport().getChecksumSQL(table, null);
+		
+		assertEquals("SELECT COUNT(*), SUM(CAST(CAST('x' || SUBSTR(MD5(CAST(ROW(id, name) AS TEXT)), 1, 16) AS BIT(64)) AS BIGINT)) FROM table", result);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see net.sf.hajdbc.dialect.StandardDialectTest#getColumnType()
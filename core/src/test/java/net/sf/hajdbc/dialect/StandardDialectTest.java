@@ -19,6 +19,8 @@ package net.sf.hajdbc.dialect;
 
 import static org.junit.Assert.*;
 import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -47,8 +49,10 @@ import java.sql.SQLWarning;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.sql.rowset.RowSetWarning;
@@ -57,16 +61,19 @@ import javax.sql.rowset.spi.SyncFactoryException;
 import javax.sql.rowset.spi.SyncProviderException;
 import javax.transaction.xa.XAException;
 
+import net.sf.hajdbc.ChecksumSupport;
 import net.sf.hajdbc.ColumnProperties;
 import net.sf.hajdbc.Credentials;
 import net.sf.hajdbc.Database;
 import net.sf.hajdbc.ForeignKeyConstraint;
 import net.sf.hajdbc.IdentityColumnSupport;
 import net.sf.hajdbc.QualifiedName;
+import net.sf.hajdbc.QualifiedNameFactory;
 import net.sf.hajdbc.SequenceProperties;
 import net.sf.hajdbc.SequencePropertiesFactory;
 import net.sf.hajdbc.SequenceSupport;
 import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.TriggerSupport;
 import net.sf.hajdbc.UniqueConstraint;
 import net.sf.hajdbc.codec.Decoder;
 
@@ -104,6 +111,40 @@ public class StandardDialectTest
 		assertNull(this.dialect.getIdentityColumnSupport());
 	}
 	
+	@Test
+	public void getTriggerSupport()
+	{
+		assertNull(this.dialect.getTriggerSupport());
+	}
+	
+	@Test
+	public void getDropTriggerSQL() throws SQLException
+	{
+		TriggerSupport support = this.dialect.getTriggerSupport();
+		
+		if (support != null)
+		{
+			fail(support.getClass().getName());
+		}
+	}
+	
+	@Test
+	public void getChecksumSupport()
+	{
+		assertNull(this.dialect.getChecksumSupport());
+	}
+	
+	@Test
+	public void getChecksumSQL() throws SQLException
+	{
+		ChecksumSupport support = this.dialect.getChecksumSupport();
+		
+		if (support != null)
+		{
+			fail(support.getClass().getName());
+		}
+	}
+	
 	@Test
 	public void getAlterSequenceSQL() throws SQLException
 	{
@@ -282,6 +323,38 @@ public class StandardDialectTest
 		assertEquals("DELETE FROM table", result);
 	}
 
+	@Test
+	public void getCreateTableAsSQL()
+	{
+		String result = this.dialect.getCreateTableAsSQL("table", "SELECT column FROM source");
+		
+		assertEquals("CREATE TABLE table AS SELECT * FROM (SELECT column FROM source) source WHERE 1 = 0", result);
+	}
+
+	@Test
+	public void getTables() throws SQLException
+	{
+		DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+		Connection connection = mock(Connection.class);
+		ResultSet resultSet = mock(ResultSet.class);
+		QualifiedNameFactory factory = mock(QualifiedNameFactory.class);
+		QualifiedName table = mock(QualifiedName.class);
+		
+		when(metaData.getConnection()).thenReturn(connection);
+		when(metaData.getTables(anyString(), anyString(), eq("%"), any(String[].class))).thenReturn(resultSet);
+		when(resultSet.next()).thenReturn(true).thenReturn(true).thenReturn(false);
+		when(resultSet.getString("TABLE_SCHEM")).thenReturn("HAJDBC").thenReturn("schema");
+		when(resultSet.getString("TABLE_NAME")).thenReturn("table");
+		when(factory.createQualifiedName("schema", "table")).thenReturn(table);
+		
+		Collection<QualifiedName> results = this.dialect.getTables(metaData, factory);
+		
+		verify(resultSet).close();
+		
+		// Tables maintained by HA-JDBC are excluded
+		assertEquals(Collections.singletonList(table), results);
+	}
+
 	@Test
 	public void isSelectForUpdate() throws SQLException
 	{
@@ -417,6 +490,24 @@ public class StandardDialectTest
 			assertEquals("ALTER TABLE table ALTER COLUMN column RESTART WITH 1000", result);
 		}
 	}
+
+	@Test
+	public void getInsertIdentityColumnSQL() throws SQLException
+	{
+		IdentityColumnSupport support = this.dialect.getIdentityColumnSupport();
+		
+		if (support != null)
+		{
+			Map<String, Long> values = Collections.singletonMap("id", 1000L);
+			
+			assertEquals("INSERT INTO table (id, column1, column2) VALUES (1000, 1, 2)", support.getInsertIdentityColumnSQL("INSERT INTO table (column1, column2) VALUES (1, 2)", values));
+			assertEquals("INSERT table (id, column1) VALUES (1000, ?)", support.getInsertIdentityColumnSQL("INSERT table (column1) VALUES (?)", values));
+			assertNull(support.getInsertIdentityColumnSQL("INSERT INTO table VALUES (1, 2)", values));
+			assertNull(support.getInsertIdentityColumnSQL("INSERT INTO table (column1, column2) SELECT column1, column2 FROM dummy", values));
+			assertNull(support.getInsertIdentityColumnSQL("INSERT INTO table (column1, column2) VALUES (1, 2), (3, 4)", values));
+			assertNull(support.getInsertIdentityColumnSQL("INSERT INTO table (ID, column1) VALUES (1, 2)", values));
+		}
+	}
 	
 	@Test
 	public void indicatesFailureSQLException()
@@ -0,0 +1,173 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.state.distributed.BatchCommand;
+import net.sf.hajdbc.state.distributed.PostInvocationCommand;
+import net.sf.hajdbc.state.distributed.PreInvocationCommand;
+import net.sf.hajdbc.state.distributed.RemoteInvocationDescriptor;
+import net.sf.hajdbc.state.distributed.StateCommandContext;
+import net.sf.hajdbc.state.distributed.StopCommand;
+import net.sf.hajdbc.tx.UUIDTransactionIdentifier;
+import net.sf.hajdbc.util.Objects;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class CommandMarshallerTest
+{
+	private final CommandMarshaller marshaller = new CommandMarshaller(new NamedMemberExternalizer(), CommandMarshallerTest.class.getClassLoader());
+
+	@Test
+	public void externalized()
+	{
+		InvocationEvent event = new InvocationEventImpl(new UUIDTransactionIdentifier(UUID.randomUUID()), Durability.Phase.COMMIT, ExceptionType.SQL);
+		Command<?, ?> command = new PreInvocationCommand<>(new Descriptor(event, new NamedMember("node1")));
+
+		byte[] bytes = this.marshaller.marshal(command);
+
+		Assert.assertTrue(bytes.length < Objects.serialize(command).length);
+
+		Command<?, ?> result = this.marshaller.unmarshal(bytes, 0, bytes.length);
+
+		Assert.assertSame(PreInvocationCommand.class, result.getClass());
+		Assert.assertEquals(command.toString(), result.toString());
+	}
+
+	@Test
+	public void batch()
+	{
+		Member member = new NamedMember("node1");
+		InvocationEvent event = new InvocationEventImpl(new UUIDTransactionIdentifier(UUID.randomUUID()), Durability.Phase.ROLLBACK, ExceptionType.SQL);
+		List<Command<Void, StateCommandContext<Void, MockDatabase>>> commands = new ArrayList<>();
+		commands.add(new PreInvocationCommand<Void, MockDatabase>(new Descriptor(event, member)));
+		commands.add(new PostInvocationCommand<Void, MockDatabase>(new Descriptor(event, member)));
+		Command<?, ?> command = new BatchCommand<>(commands);
+
+		byte[] bytes = this.marshaller.marshal(command);
+
+		Command<?, ?> result = this.marshaller.unmarshal(bytes, 0, bytes.length);
+
+		Assert.assertSame(BatchCommand.class, result.getClass());
+		Assert.assertEquals(command.toString(), result.toString());
+	}
+
+	@Test
+	public void serialized()
+	{
+		Command<?, ?> command = new UnregisteredCommand();
+
+		byte[] bytes = this.marshaller.marshal(command);
+
+		Assert.assertSame(UnregisteredCommand.class, this.marshaller.unmarshal(bytes, 0, bytes.length).getClass());
+
+		// Commands without state need only a type identifier
+		Assert.assertEquals(1, this.marshaller.marshal(new StopCommand<>()).length);
+	}
+
+	static class UnregisteredCommand implements Command<Void, Object>
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Void execute(Object context)
+		{
+			return null;
+		}
+	}
+
+	static class Descriptor implements RemoteInvocationDescriptor
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final InvocationEvent event;
+		private final Member member;
+
+		Descriptor(InvocationEvent event, Member member)
+		{
+			this.event = event;
+			this.member = member;
+		}
+
+		@Override
+		public InvocationEvent getEvent()
+		{
+			return this.event;
+		}
+
+		@Override
+		public Member getMember()
+		{
+			return this.member;
+		}
+
+		@Override
+		public String toString()
+		{
+			return this.event.toString();
+		}
+	}
+
+	static class NamedMember implements Member
+	{
+		private static final long serialVersionUID = 1L;
+
+		final String name;
+
+		NamedMember(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public int compareTo(Member member)
+		{
+			return this.name.compareTo(((NamedMember) member).name);
+		}
+	}
+
+	static class NamedMemberExternalizer implements Externalizer<Member>
+	{
+		@Override
+		public void writeObject(DataOutput output, Member member) throws IOException
+		{
+			output.writeUTF(((NamedMember) member).name);
+		}
+
+		@Override
+		public Member readObject(DataInput input) throws IOException
+		{
+			return new NamedMember(input.readUTF());
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.sql.DataSource;
+import net.sf.hajdbc.sql.DataSourceDatabaseClusterConfigurationBuilder;
+import net.sf.hajdbc.state.simple.SimpleStateManagerFactory;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * Benchmarks the distributed lock and state managers, by driving concurrent transactions through several nodes of a distributed cluster,
+ * simulated within this JVM via loopback command dispatchers.
+ * All nodes share the same pair of in-memory databases.
+ * <p>
+ * Usage: <code>LoopbackBenchmark [nodes=3] [threads per node=4] [transactions per thread=1000] [latency (ms)=0] [loss=0] [durability=fine]</code>
+ * @author Paul Ferraro
+ */
+public class LoopbackBenchmark
+{
+	private static final String INSERT = "INSERT INTO benchmark (id, name) VALUES (?, ?)";
+
+	public static void main(String... args) throws Exception
+	{
+		int nodes = (args.length > 0) ? Integer.parseInt(args[0]) : 3;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+		final int transactions = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+		long latency = (args.length > 3) ? Long.parseLong(args[3]) : 0;
+		double loss = (args.length > 4) ? Double.parseDouble(args[4]) : 0;
+		String durability = (args.length > 5) ? args[5] : "fine";
+
+		JdbcDataSource ds1 = createDataSource("jdbc:h2:mem:benchmark1;DB_CLOSE_DELAY=-1");
+		JdbcDataSource ds2 = createDataSource("jdbc:h2:mem:benchmark2;DB_CLOSE_DELAY=-1");
+
+		execute(ds1, "CREATE TABLE benchmark (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))");
+		execute(ds2, "CREATE TABLE benchmark (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))");
+
+		List<DataSource> sources = new ArrayList<>(nodes);
+		try
+		{
+			for (int i = 0; i < nodes; ++i)
+			{
+				LoopbackCommandDispatcherFactory factory = new LoopbackCommandDispatcherFactory();
+				factory.setName("node" + i);
+				factory.setLatency(latency);
+				factory.setLoss(loss);
+
+				DataSource ds = new DataSource();
+				ds.setCluster("benchmark");
+				DataSourceDatabaseClusterConfigurationBuilder builder = ds.getConfigurationBuilder();
+				builder.addDatabase("db1").dataSource(ds1).credentials("sa", "");
+				builder.addDatabase("db2").dataSource(ds2).credentials("sa", "");
+				builder.addSynchronizationStrategy("passive");
+				builder.defaultSynchronizationStrategy("passive");
+				builder.dialect("h2");
+				builder.metaDataCache("none");
+				builder.state(new SimpleStateManagerFactory());
+				builder.durability(durability);
+				builder.distributable(factory);
+				sources.add(ds);
+
+				// Start the node, i.e. join the group
+				ds.getConnection().close();
+			}
+
+			final AtomicInteger keys = new AtomicInteger();
+			final AtomicInteger index = new AtomicInteger();
+			final long[] latencies = new long[nodes * threads * transactions];
+			final CountDownLatch latch = new CountDownLatch(1);
+			ExecutorService executor = Executors.newFixedThreadPool(nodes * threads);
+			List<Future<Void>> futures = new ArrayList<>(nodes * threads);
+
+			for (final DataSource ds: sources)
+			{
+				for (int i = 0; i < threads; ++i)
+				{
+					Callable<Void> task = new Callable<Void>()
+					{
+						@Override
+						public Void call() throws Exception
+						{
+							latch.await();
+
+							try (Connection connection = ds.getConnection())
+							{
+								connection.setAutoCommit(false);
+
+								try (PreparedStatement statement = connection.prepareStatement(INSERT))
+								{
+									for (int j = 0; j < transactions; ++j)
+									{
+										long start = System.nanoTime();
+										int key = keys.incrementAndGet();
+										statement.setInt(1, key);
+										statement.setString(2, Integer.toString(key));
+										statement.executeUpdate();
+										connection.commit();
+										latencies[index.getAndIncrement()] = System.nanoTime() - start;
+									}
+								}
+							}
+							return null;
+						}
+					};
+					futures.add(executor.submit(task));
+				}
+			}
+
+			long start = System.nanoTime();
+			latch.countDown();
+			for (Future<Void> future: futures)
+			{
+				future.get();
+			}
+			long elapsed = System.nanoTime() - start;
+			executor.shutdown();
+
+			Arrays.sort(latencies);
+
+			System.out.println(String.format("%d nodes, %d threads/node, latency %d ms, loss %s, durability %s", nodes, threads, latency, loss, durability));
+			System.out.println(String.format("%d transactions in %d ms: %.1f tx/s", latencies.length, TimeUnit.NANOSECONDS.toMillis(elapsed), latencies.length * 1e9 / elapsed));
+			System.out.println(String.format("Latency (us): p50=%d p90=%d p99=%d max=%d", micros(latencies, 0.5), micros(latencies, 0.9), micros(latencies, 0.99), micros(latencies, 1)));
+		}
+		finally
+		{
+			for (DataSource ds: sources)
+			{
+				ds.close();
+			}
+
+			execute(ds1, "DROP TABLE benchmark");
+			execute(ds2, "DROP TABLE benchmark");
+		}
+	}
+
+	private static JdbcDataSource createDataSource(String url)
+	{
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setUrl(url);
+		ds.setUser("sa");
+		ds.setPassword("");
+		return ds;
+	}
+
+	private static void execute(javax.sql.DataSource ds, String sql) throws SQLException
+	{
+		try (Connection connection = ds.getConnection())
+		{
+			try (Statement statement = connection.createStatement())
+			{
+				statement.execute(sql);
+			}
+		}
+	}
+
+	private static long micros(long[] sorted, double percentile)
+	{
+		int index = Math.min((int) Math.ceil(percentile * sorted.length) - 1, sorted.length - 1);
+		return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(index, 0)]);
+	}
+}
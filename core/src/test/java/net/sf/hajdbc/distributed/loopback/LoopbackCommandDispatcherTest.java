@@ -0,0 +1,234 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.distributed.loopback;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.distributed.Command;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.distributed.MembershipListener;
+import net.sf.hajdbc.distributed.Stateful;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class LoopbackCommandDispatcherTest
+{
+	@Test
+	public void membership() throws Exception
+	{
+		Node node1 = new Node("membership", "node1");
+		Node node2 = new Node("membership", "node2");
+		Node node3 = new Node("membership", "node3");
+
+		node1.dispatcher.start();
+		node2.dispatcher.start();
+		node3.dispatcher.start();
+		try
+		{
+			Assert.assertEquals(node1.member, node3.dispatcher.getCoordinator());
+			Assert.assertEquals(Arrays.asList(node1.member, node2.member, node3.member), node1.added);
+			Assert.assertEquals(Arrays.asList(node1.member, node2.member, node3.member), node3.added);
+
+			// Coordinator failover
+			node1.dispatcher.crash();
+
+			Assert.assertEquals(node2.member, node2.dispatcher.getCoordinator());
+			Assert.assertEquals(Arrays.asList(node1.member), node2.removed);
+			Assert.assertEquals(Arrays.asList(node1.member), node3.removed);
+			Assert.assertNull(node1.dispatcher.execute(new NameCommand(), node2.member));
+		}
+		finally
+		{
+			node3.dispatcher.stop();
+			node2.dispatcher.stop();
+		}
+	}
+
+	@Test
+	public void execute() throws Exception
+	{
+		Node node1 = new Node("execute", "node1");
+		Node node2 = new Node("execute", "node2");
+
+		node1.dispatcher.start();
+		node2.dispatcher.start();
+		try
+		{
+			Map<Member, String> results = node1.dispatcher.executeAll(new NameCommand());
+			Assert.assertEquals(2, results.size());
+			Assert.assertEquals("node1", results.get(node1.member));
+			Assert.assertEquals("node2", results.get(node2.member));
+
+			results = node1.dispatcher.executeAll(new NameCommand(), node1.member);
+			Assert.assertEquals(Collections.singleton(node2.member), results.keySet());
+
+			Assert.assertEquals("node2", node1.dispatcher.execute(new NameCommand(), node2.member));
+		}
+		finally
+		{
+			node2.dispatcher.stop();
+			node1.dispatcher.stop();
+		}
+	}
+
+	@Test
+	public void order() throws Exception
+	{
+		Node node1 = new Node("order", "node1");
+		Node node2 = new Node("order", "node2");
+		node1.factory.setLatency(1);
+		node1.factory.setLoss(0.2);
+		node1.factory.setRetransmitInterval(2);
+		node1.dispatcher = node1.factory.createCommandDispatcher("order", node1, node1, node1, Executors.defaultThreadFactory());
+
+		node1.dispatcher.start();
+		node2.dispatcher.start();
+		try
+		{
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < 50; ++i)
+			{
+				node1.dispatcher.executeAllAsync(new AppendCommand(i), node1.member);
+				expected.add(i);
+			}
+
+			// Completes only after all prior commands from the same sender
+			node1.dispatcher.executeAll(new NameCommand());
+
+			Assert.assertEquals(expected, node2.values);
+			Assert.assertTrue(node1.values.isEmpty());
+		}
+		finally
+		{
+			node2.dispatcher.stop();
+			node1.dispatcher.stop();
+		}
+	}
+
+	@Test
+	public void state() throws Exception
+	{
+		Node node1 = new Node("state", "node1");
+		Node node2 = new Node("state", "node2");
+		node1.values.add(1);
+		node1.values.add(2);
+
+		node1.dispatcher.start();
+		node2.dispatcher.start();
+		try
+		{
+			Assert.assertEquals(node1.values, node2.values);
+		}
+		finally
+		{
+			node2.dispatcher.stop();
+			node1.dispatcher.stop();
+		}
+	}
+
+	static class Node implements Stateful, MembershipListener
+	{
+		final LoopbackCommandDispatcherFactory factory = new LoopbackCommandDispatcherFactory();
+		final LoopbackMember member;
+		final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Member> added = Collections.synchronizedList(new ArrayList<Member>());
+		final List<Member> removed = Collections.synchronizedList(new ArrayList<Member>());
+		LoopbackCommandDispatcher<Node> dispatcher;
+
+		Node(String group, String name)
+		{
+			this.factory.setName(name);
+			this.member = new LoopbackMember(name);
+			this.dispatcher = this.factory.createCommandDispatcher(group, this, this, this, Executors.defaultThreadFactory());
+		}
+
+		@Override
+		public void added(Member member)
+		{
+			this.added.add(member);
+		}
+
+		@Override
+		public void removed(Member member)
+		{
+			this.removed.add(member);
+		}
+
+		@Override
+		public void readState(ObjectInput input) throws IOException
+		{
+			int size = input.readInt();
+			for (int i = 0; i < size; ++i)
+			{
+				this.values.add(input.readInt());
+			}
+		}
+
+		@Override
+		public void writeState(ObjectOutput output) throws IOException
+		{
+			output.writeInt(this.values.size());
+			for (Integer value: this.values)
+			{
+				output.writeInt(value);
+			}
+		}
+	}
+
+	static class NameCommand implements Command<String, Node>
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public String execute(Node node)
+		{
+			return node.member.getName();
+		}
+	}
+
+	static class AppendCommand implements Command<Void, Node>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int value;
+
+		AppendCommand(int value)
+		{
+			this.value = value;
+		}
+
+		@Override
+		public Void execute(Node node)
+		{
+			node.values.add(this.value);
+			return null;
+		}
+	}
+}
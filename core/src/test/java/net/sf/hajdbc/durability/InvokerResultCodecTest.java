@@ -0,0 +1,101 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+
+import javax.transaction.xa.XAException;
+
+import net.sf.hajdbc.util.Objects;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class InvokerResultCodecTest
+{
+	@Test
+	public void nullResult()
+	{
+		assertNull(InvokerResultCodec.encode(null));
+		assertNull(InvokerResultCodec.decode(null));
+	}
+
+	@Test
+	public void values()
+	{
+		this.assertValue(null);
+		this.assertValue(Integer.valueOf(100));
+		this.assertValue(Long.valueOf(Long.MAX_VALUE));
+		this.assertValue(Boolean.TRUE);
+		this.assertValue(Boolean.FALSE);
+		this.assertValue("fallback");
+
+		int[] counts = new int[] { 1, 2, 3 };
+		InvokerResult result = InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(counts)));
+		assertArrayEquals(counts, (int[]) result.getValue());
+	}
+
+	@Test
+	public void compact()
+	{
+		assertEquals(6, InvokerResultCodec.encode(new InvokerResultImpl(100)).length);
+	}
+
+	@Test
+	public void exceptions()
+	{
+		SQLException exception = new SQLException("message", "42000", 1);
+		SQLException result = (SQLException) InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(exception))).getException();
+		assertEquals(exception.getMessage(), result.getMessage());
+		assertEquals(exception.getSQLState(), result.getSQLState());
+		assertEquals(exception.getErrorCode(), result.getErrorCode());
+
+		result = (SQLException) InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(new SQLException()))).getException();
+		assertNull(result.getMessage());
+		assertNull(result.getSQLState());
+
+		XAException xaException = new XAException(XAException.XA_RBROLLBACK);
+		XAException xaResult = (XAException) InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(xaException))).getException();
+		assertEquals(xaException.errorCode, xaResult.errorCode);
+
+		// Subclasses fall back to serialization
+		assertTrue(InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(new SQLWarning("warning")))).getException() instanceof SQLWarning);
+	}
+
+	@Test
+	public void legacy()
+	{
+		InvokerResult result = InvokerResultCodec.decode(Objects.serialize(new InvokerResultImpl(100)));
+		assertEquals(100, result.getValue());
+	}
+
+	private void assertValue(Object value)
+	{
+		InvokerResult result = InvokerResultCodec.decode(InvokerResultCodec.encode(new InvokerResultImpl(value)));
+		assertEquals(value, result.getValue());
+		assertNull(result.getException());
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.async;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionFactory;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityListener;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.sql.ProxyFactory;
+import net.sf.hajdbc.state.StateManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Verifies that the events recorded at the time of a crash allow recovery to identify the databases that completed a commit.
+ * @author Paul Ferraro
+ */
+public class AsyncDurabilityTest
+{
+	private final MockDatabase primary = new MockDatabase("primary");
+	private final MockDatabase backup = new MockDatabase("backup");
+	private final Recorder recorder = new Recorder();
+	@SuppressWarnings("unchecked")
+	private final DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+	private final StateManager stateManager = mock(StateManager.class, this.recorder);
+	private AsyncDurability<Void, MockDatabase> durability;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init()
+	{
+		Balancer<Void, MockDatabase> balancer = mock(Balancer.class);
+		when(balancer.primary()).thenReturn(this.primary);
+		when(balancer.backups()).thenReturn(Collections.singleton(this.backup));
+		when(this.cluster.getBalancer()).thenReturn(balancer);
+		when(this.cluster.getStateManager()).thenReturn(this.stateManager);
+		when(this.cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+
+		this.durability = new AsyncDurability<>(this.cluster, 16);
+		this.durability.start();
+	}
+
+	@After
+	public void destroy()
+	{
+		this.durability.stop();
+	}
+
+	@Test
+	public void committed() throws SQLException
+	{
+		Map<InvocationEvent, Map<String, InvokerEvent>> log = this.crash(this.primary, this.backup);
+
+		this.durability.recover(log);
+
+		verify(this.cluster, never()).deactivate(any(MockDatabase.class), any(StateManager.class));
+	}
+
+	@Test
+	public void interrupted() throws SQLException
+	{
+		Map<InvocationEvent, Map<String, InvokerEvent>> log = this.crash(this.primary);
+
+		this.durability.recover(log);
+
+		verify(this.cluster).deactivate(this.backup, this.stateManager);
+	}
+
+	/**
+	 * Commits a transaction on the specified databases, and returns the events recorded when the process crashes immediately afterwards.
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<InvocationEvent, Map<String, InvokerEvent>> crash(final MockDatabase... databases) throws SQLException
+	{
+		final Map<InvocationEvent, Map<String, InvokerEvent>> log = new HashMap<>();
+		ProxyFactory<Void, MockDatabase, Object, SQLException> proxy = mock(ProxyFactory.class);
+		ExceptionFactory<SQLException> exceptionFactory = ExceptionType.SQL.getExceptionFactory();
+		when(proxy.getExceptionFactory()).thenReturn(exceptionFactory);
+
+		Invoker<Void, MockDatabase, Object, Void, SQLException> commit = mock(Invoker.class);
+		InvocationStrategy strategy = mock(InvocationStrategy.class);
+		when(strategy.invoke(same(proxy), any(Invoker.class))).thenAnswer(new Answer<SortedMap<MockDatabase, Void>>()
+		{
+			@Override
+			public SortedMap<MockDatabase, Void> answer(InvocationOnMock invocation) throws SQLException
+			{
+				Invoker<Void, MockDatabase, Object, Void, SQLException> invoker = (Invoker<Void, MockDatabase, Object, Void, SQLException>) invocation.getArguments()[1];
+				SortedMap<MockDatabase, Void> results = new TreeMap<>();
+				for (MockDatabase database: databases)
+				{
+					results.put(database, invoker.invoke(database, null));
+				}
+				// Crash before the invocation completes
+				log.putAll(AsyncDurabilityTest.this.recorder.snapshot());
+				return results;
+			}
+		});
+
+		Object transactionId = 1;
+		this.durability.getInvocationStrategy(strategy, Durability.Phase.COMMIT, transactionId).invoke(proxy, this.durability.getInvoker(commit, Durability.Phase.COMMIT, transactionId, exceptionFactory));
+
+		return log;
+	}
+
+	/**
+	 * Records durability events, like a state manager, but slowly, so that unrecorded events are likely to be lost by a crash.
+	 */
+	static class Recorder implements Answer<Object>, DurabilityListener
+	{
+		private final Map<InvocationEvent, Map<String, InvokerEvent>> log = new HashMap<>();
+
+		@Override
+		public Object answer(InvocationOnMock invocation) throws Exception
+		{
+			Method method = invocation.getMethod();
+			return method.getDeclaringClass().equals(DurabilityListener.class) ? method.invoke(this, invocation.getArguments()) : null;
+		}
+
+		synchronized Map<InvocationEvent, Map<String, InvokerEvent>> snapshot()
+		{
+			Map<InvocationEvent, Map<String, InvokerEvent>> snapshot = new HashMap<>();
+			for (Map.Entry<InvocationEvent, Map<String, InvokerEvent>> entry: this.log.entrySet())
+			{
+				snapshot.put(entry.getKey(), new HashMap<>(entry.getValue()));
+			}
+			return snapshot;
+		}
+
+		@Override
+		public synchronized void beforeInvocation(InvocationEvent event)
+		{
+			this.log.put(new InvocationEventImpl(event.getTransactionId(), event.getPhase(), event.getExceptionType()), new HashMap<String, InvokerEvent>());
+		}
+
+		@Override
+		public synchronized void afterInvocation(InvocationEvent event)
+		{
+			this.log.remove(event);
+		}
+
+		@Override
+		public void beforeInvoker(InvokerEvent event)
+		{
+			this.record(event);
+		}
+
+		@Override
+		public void afterInvoker(InvokerEvent event)
+		{
+			try
+			{
+				Thread.sleep(100);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			this.record(event);
+		}
+
+		private synchronized void record(InvokerEvent event)
+		{
+			InvokerEvent copy = new InvokerEventImpl(event.getTransactionId(), event.getPhase(), event.getDatabaseId());
+			InvokerResult result = event.getResult();
+			if (result != null)
+			{
+				copy.setResult((result.getException() != null) ? new InvokerResultImpl(result.getException()) : new InvokerResultImpl(result.getValue()));
+			}
+			Map<String, InvokerEvent> invokers = this.log.get(new InvocationEventImpl(event.getTransactionId(), event.getPhase(), null));
+			if (invokers != null)
+			{
+				invokers.put(copy.getDatabaseId(), copy);
+			}
+		}
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.DurabilityListener;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResult;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class EventRingBufferTest
+{
+	@Test
+	public void order() throws InterruptedException
+	{
+		final RecordingListener listener = new RecordingListener();
+		// Small buffer, to exercise producers waiting for free slots
+		final EventRingBuffer buffer = new EventRingBuffer(listener, 8, Executors.defaultThreadFactory());
+		buffer.start();
+
+		Thread[] producers = new Thread[4];
+		for (int i = 0; i < producers.length; ++i)
+		{
+			final String databaseId = String.valueOf(i);
+			producers[i] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (long j = 0; j < 1000; ++j)
+					{
+						buffer.publish(EventRingBuffer.BEFORE_INVOKER, j, Durability.Phase.COMMIT, null, databaseId, null, null, false);
+					}
+				}
+			};
+			producers[i].start();
+		}
+		for (Thread producer: producers)
+		{
+			producer.join();
+		}
+
+		buffer.stop();
+
+		List<InvokerEvent> events = listener.getInvokerEvents();
+		Assert.assertEquals(4000, events.size());
+
+		long[] expected = new long[producers.length];
+		for (InvokerEvent event: events)
+		{
+			int producer = Integer.parseInt(event.getDatabaseId());
+			Assert.assertEquals(expected[producer]++, event.getTransactionId());
+		}
+	}
+
+	@Test
+	public void barrier()
+	{
+		RecordingListener listener = new RecordingListener();
+		EventRingBuffer buffer = new EventRingBuffer(listener, 16, Executors.defaultThreadFactory());
+		buffer.start();
+		try
+		{
+			buffer.publish(EventRingBuffer.BEFORE_INVOCATION, 1L, Durability.Phase.COMMIT, null, null, null, null, false);
+			long sequence = buffer.publish(EventRingBuffer.BEFORE_INVOKER, 1L, Durability.Phase.COMMIT, null, "db1", null, null, false);
+
+			buffer.await(sequence);
+
+			// Prior events must also have been recorded
+			Assert.assertEquals(1, listener.getInvocationEvents().size());
+			Assert.assertEquals(1, listener.getInvokerEvents().size());
+		}
+		finally
+		{
+			buffer.stop();
+		}
+	}
+
+	@Test
+	public void stop()
+	{
+		RecordingListener listener = new RecordingListener();
+		EventRingBuffer buffer = new EventRingBuffer(listener, 16, Executors.defaultThreadFactory());
+		buffer.start();
+
+		buffer.publish(EventRingBuffer.AFTER_INVOKER, 1L, Durability.Phase.COMMIT, null, "db1", 1, null, true);
+
+		buffer.stop();
+
+		Assert.assertEquals(1, listener.getInvokerEvents().size());
+		Assert.assertEquals(1, listener.getInvokerEvents().get(0).getResult().getValue());
+
+		// Events published after stop are forwarded directly
+		Assert.assertEquals(-1, buffer.publish(EventRingBuffer.AFTER_INVOCATION, 1L, Durability.Phase.COMMIT, null, null, null, null, false));
+		Assert.assertEquals(1, listener.getInvocationEvents().size());
+	}
+
+	@Test
+	public void concurrentStop() throws InterruptedException
+	{
+		for (int i = 0; i < 100; ++i)
+		{
+			final RecordingListener listener = new RecordingListener();
+			final EventRingBuffer buffer = new EventRingBuffer(listener, 8, Executors.defaultThreadFactory());
+			buffer.start();
+
+			Thread[] producers = new Thread[4];
+			for (int j = 0; j < producers.length; ++j)
+			{
+				final String databaseId = String.valueOf(j);
+				producers[j] = new Thread()
+				{
+					@Override
+					public void run()
+					{
+						for (long k = 0; k < 100; ++k)
+						{
+							// Barrier must not block indefinitely, even if buffer is stopped concurrently
+							buffer.await(buffer.publish(EventRingBuffer.BEFORE_INVOKER, k, Durability.Phase.COMMIT, null, databaseId, null, null, false));
+						}
+					}
+				};
+				producers[j].start();
+			}
+
+			buffer.stop();
+
+			for (Thread producer: producers)
+			{
+				producer.join();
+			}
+
+			// Every event was forwarded, either by the consumer or directly
+			Assert.assertEquals(400, listener.getInvokerEvents().size());
+		}
+	}
+
+	static class RecordingListener implements DurabilityListener
+	{
+		private final List<InvocationEvent> invocationEvents = new ArrayList<>();
+		private final List<InvokerEvent> invokerEvents = new ArrayList<>();
+
+		@Override
+		public synchronized void beforeInvocation(InvocationEvent event)
+		{
+			this.record(event);
+		}
+
+		@Override
+		public synchronized void afterInvocation(InvocationEvent event)
+		{
+			this.record(event);
+		}
+
+		@Override
+		public synchronized void beforeInvoker(InvokerEvent event)
+		{
+			this.record(event);
+		}
+
+		@Override
+		public synchronized void afterInvoker(InvokerEvent event)
+		{
+			this.record(event);
+		}
+
+		// Events are reused, so record copies
+		private void record(InvocationEvent event)
+		{
+			this.invocationEvents.add(new InvocationEventImpl(event.getTransactionId(), event.getPhase(), event.getExceptionType()));
+		}
+
+		private void record(InvokerEvent event)
+		{
+			InvokerEvent copy = new InvokerEventImpl(event.getTransactionId(), event.getPhase(), event.getDatabaseId());
+			InvokerResult result = event.getResult();
+			if (result != null)
+			{
+				copy.setResult((result.getException() != null) ? new InvokerResultImpl(result.getException()) : new InvokerResultImpl(result.getValue()));
+			}
+			this.invokerEvents.add(copy);
+		}
+
+		synchronized List<InvocationEvent> getInvocationEvents()
+		{
+			return new ArrayList<>(this.invocationEvents);
+		}
+
+		synchronized List<InvokerEvent> getInvokerEvents()
+		{
+			return new ArrayList<>(this.invokerEvents);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.coarse;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Verifies that concurrent recovery deactivates the same backups, and discards the same invocations, as sequential recovery.
+ * @author Paul Ferraro
+ */
+public class CoarseDurabilityTest
+{
+	private final MockDatabase primary = new MockDatabase("primary");
+	private final List<MockDatabase> backups = Arrays.asList(new MockDatabase("backup1"), new MockDatabase("backup2"), new MockDatabase("backup3"));
+
+	@Test
+	public void recover()
+	{
+		Map<InvocationEvent, Map<String, InvokerEvent>> map = new HashMap<>();
+		
+		for (long i = 0; i < 100; ++i)
+		{
+			map.put(new InvocationEventImpl(new LongTransactionIdentifier(i), Durability.Phase.COMMIT, ExceptionType.SQL), Collections.<String, InvokerEvent>emptyMap());
+		}
+		
+		// Invokers are not tracked, so every backup is suspect
+		Assert.assertEquals(this.backups, this.recover(map, 1));
+		Assert.assertEquals(this.backups, this.recover(map, 4));
+	}
+
+	/**
+	 * Recovers the specified invocations, using the specified number of threads.
+	 * @return the deactivated backups
+	 */
+	@SuppressWarnings("unchecked")
+	private List<MockDatabase> recover(Map<InvocationEvent, Map<String, InvokerEvent>> map, final int parallelism)
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Balancer<Void, MockDatabase> balancer = mock(Balancer.class);
+		StateManager stateManager = mock(StateManager.class);
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		
+		final List<MockDatabase> deactivated = Collections.synchronizedList(new ArrayList<MockDatabase>());
+		
+		when(cluster.getBalancer()).thenReturn(balancer);
+		when(cluster.getStateManager()).thenReturn(stateManager);
+		when(cluster.getExecutor()).thenReturn(executor);
+		when(balancer.primary()).thenReturn(this.primary);
+		when(balancer.backups()).thenReturn(this.backups);
+		when(cluster.deactivate(any(MockDatabase.class), same(stateManager))).thenAnswer(new Answer<Boolean>()
+		{
+			@Override
+			public Boolean answer(InvocationOnMock invocation)
+			{
+				deactivated.add((MockDatabase) invocation.getArguments()[0]);
+				return true;
+			}
+		});
+		
+		CoarseDurability<Void, MockDatabase> durability = new CoarseDurability<Void, MockDatabase>(cluster)
+		{
+			@Override
+			protected int getParallelism()
+			{
+				return parallelism;
+			}
+		};
+		
+		try
+		{
+			durability.recover(map);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		// Backups are deactivated before any invocation is discarded
+		InOrder order = inOrder(cluster, stateManager);
+		order.verify(cluster, times(this.backups.size())).deactivate(any(MockDatabase.class), same(stateManager));
+		order.verify(stateManager, times(map.size())).afterInvocation(any(InvocationEvent.class));
+		
+		for (InvocationEvent invocation: map.keySet())
+		{
+			verify(stateManager).afterInvocation(invocation);
+		}
+		
+		return deactivated;
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.durability.fine;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Verifies that concurrent recovery deactivates the same backups as sequential recovery.
+ * @author Paul Ferraro
+ */
+public class FineDurabilityTest
+{
+	private final MockDatabase primary = new MockDatabase("primary");
+	private final List<MockDatabase> backups = Arrays.asList(new MockDatabase("backup1"), new MockDatabase("backup2"), new MockDatabase("backup3"), new MockDatabase("backup4"));
+
+	@Test
+	public void recover() throws Exception
+	{
+		Map<InvocationEvent, Map<String, InvokerEvent>> map = new HashMap<>();
+		
+		for (long i = 0; i < 100; ++i)
+		{
+			Map<String, InvokerEvent> invokers = new HashMap<>();
+			
+			// Crashed before any invoker started
+			if ((i % 10) != 0)
+			{
+				invokers.put("primary", invoker(i, "primary", 1));
+				// Consistent with the primary
+				invokers.put("backup1", invoker(i, "backup1", 1));
+				// Differs from the primary in a single transaction
+				invokers.put("backup2", invoker(i, "backup2", (i == 57) ? 2 : 1));
+				// Never invoked in a single transaction
+				if (i != 33)
+				{
+					invokers.put("backup3", invoker(i, "backup3", 1));
+				}
+				// Incomplete in a single transaction
+				InvokerEvent event = new InvokerEventImpl(new LongTransactionIdentifier(i), Durability.Phase.COMMIT, "backup4");
+				if (i != 71)
+				{
+					event.setResult(new InvokerResultImpl(1));
+				}
+				invokers.put("backup4", event);
+			}
+			
+			map.put(new InvocationEventImpl(new LongTransactionIdentifier(i), Durability.Phase.COMMIT, ExceptionType.SQL), invokers);
+		}
+		
+		List<MockDatabase> sequential = this.recover(map, 1);
+		
+		Assert.assertEquals(this.backups.subList(1, 4), sequential);
+		
+		List<MockDatabase> concurrent = this.recover(map, 4);
+		
+		// Each inconsistent backup is deactivated once
+		Assert.assertEquals(sequential.size(), concurrent.size());
+		Assert.assertEquals(new HashSet<>(sequential), new HashSet<>(concurrent));
+	}
+
+	/**
+	 * Recovers the specified invocations, using the specified number of threads.
+	 * @return the deactivated backups
+	 */
+	@SuppressWarnings("unchecked")
+	private List<MockDatabase> recover(Map<InvocationEvent, Map<String, InvokerEvent>> map, final int parallelism)
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Balancer<Void, MockDatabase> balancer = mock(Balancer.class);
+		StateManager stateManager = mock(StateManager.class);
+		final AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable task)
+			{
+				threads.incrementAndGet();
+				return new Thread(task);
+			}
+		});
+		
+		final List<MockDatabase> deactivated = Collections.synchronizedList(new ArrayList<MockDatabase>());
+		
+		when(cluster.getBalancer()).thenReturn(balancer);
+		when(cluster.getStateManager()).thenReturn(stateManager);
+		when(cluster.getExecutor()).thenReturn(executor);
+		when(balancer.primary()).thenReturn(this.primary);
+		when(balancer.backups()).thenReturn(this.backups);
+		when(cluster.deactivate(any(MockDatabase.class), same(stateManager))).thenAnswer(new Answer<Boolean>()
+		{
+			@Override
+			public Boolean answer(InvocationOnMock invocation)
+			{
+				deactivated.add((MockDatabase) invocation.getArguments()[0]);
+				return true;
+			}
+		});
+		FineDurability<Void, MockDatabase> durability = new FineDurability<Void, MockDatabase>(cluster)
+		{
+			@Override
+			protected int getParallelism()
+			{
+				return parallelism;
+			}
+		};
+		
+		try
+		{
+			durability.recover(map);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		// Backups are deactivated before any invocation is discarded
+		InOrder order = inOrder(cluster, stateManager);
+		order.verify(cluster, times(deactivated.size())).deactivate(any(MockDatabase.class), same(stateManager));
+		order.verify(stateManager, times(map.size())).afterInvocation(any(InvocationEvent.class));
+		
+		for (InvocationEvent invocation: map.keySet())
+		{
+			verify(stateManager).afterInvocation(invocation);
+		}
+		
+		// Work is only split across threads if more than one is available
+		Assert.assertEquals((parallelism > 1) ? parallelism : 0, threads.get());
+		
+		return deactivated;
+	}
+
+	private static InvokerEvent invoker(long id, String databaseId, Object value)
+	{
+		InvokerEvent event = new InvokerEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, databaseId);
+		event.setResult(new InvokerResultImpl(value));
+		return event;
+	}
+}
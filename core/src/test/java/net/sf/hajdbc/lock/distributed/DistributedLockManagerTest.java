@@ -0,0 +1,132 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.lock.distributed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.distributed.Member;
+import net.sf.hajdbc.distributed.loopback.LoopbackCommandDispatcherFactory;
+import net.sf.hajdbc.distributed.loopback.LoopbackMember;
+import net.sf.hajdbc.lock.distributed.DistributedLockManager.RemoteLockDescriptorImpl;
+import net.sf.hajdbc.lock.semaphore.SemaphoreLockManager;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class DistributedLockManagerTest
+{
+	private final Member member = new LoopbackMember("member");
+
+	@Test
+	public void state() throws Exception
+	{
+		DistributedLockManager source = createLockManager();
+		DistributedLockManager target = createLockManager();
+
+		RemoteLockDescriptor a = new RemoteLockDescriptorImpl("a", LockType.WRITE, this.member);
+		RemoteLockDescriptor b = new RemoteLockDescriptorImpl("b", LockType.WRITE, this.member);
+		RemoteLockDescriptor c = new RemoteLockDescriptorImpl("c", LockType.READ, this.member);
+
+		source.added(this.member);
+		acquire(source, a);
+		acquire(source, b);
+
+		// Locks of a member unknown to the source
+		Member departed = new LoopbackMember("departed");
+		target.added(departed);
+		acquire(target, new RemoteLockDescriptorImpl("d", LockType.WRITE, departed));
+
+		transfer(source, target);
+
+		Map<LockDescriptor, Lock> locks = new HashMap<>(target.getRemoteLocks(a));
+		assertEquals(source.getRemoteLocks(a).keySet(), locks.keySet());
+		assertTrue(isLocked(target, "a"));
+		assertTrue(isLocked(target, "b"));
+		assertFalse(isLocked(target, "d"));
+
+		// Unchanged locks are not reacquired
+		transfer(source, target);
+
+		assertSame(locks.get(a), target.getRemoteLocks(a).get(a));
+		assertSame(locks.get(b), target.getRemoteLocks(b).get(b));
+
+		// Only changed locks are released or acquired
+		new MemberReleaseLockCommand(a).execute(source);
+		acquire(source, c);
+
+		transfer(source, target);
+
+		assertEquals(source.getRemoteLocks(a).keySet(), target.getRemoteLocks(a).keySet());
+		assertSame(locks.get(b), target.getRemoteLocks(b).get(b));
+		assertTrue(isLocked(target, "c"));
+		assertFalse(isLocked(target, "a"));
+	}
+
+	private boolean isLocked(DistributedLockManager manager, String id)
+	{
+		Lock lock = manager.getLock(new RemoteLockDescriptorImpl(id, LockType.WRITE, this.member));
+		if (!lock.tryLock()) return true;
+		lock.unlock();
+		return false;
+	}
+
+	private static void acquire(DistributedLockManager manager, RemoteLockDescriptor descriptor)
+	{
+		assertTrue(new MemberAcquireLockCommand(descriptor).execute(manager));
+	}
+
+	private static void transfer(DistributedLockManager source, DistributedLockManager target) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutput output = new ObjectOutputStream(bytes);
+		source.writeState(output);
+		output.flush();
+
+		target.readState(new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static DistributedLockManager createLockManager() throws Exception
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		when(cluster.getId()).thenReturn("cluster");
+		when(cluster.getLockManager()).thenReturn(new SemaphoreLockManager(false));
+		when(cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+		return new DistributedLockManager(cluster, new LoopbackCommandDispatcherFactory());
+	}
+}
@@ -120,6 +120,7 @@ public class DriverTest
 			when(lockManager.readLock(null)).thenReturn(mock(Lock.class));
 			when(cluster.getDurability()).thenReturn(mock(Durability.class));
 			when(cluster.getTransactionIdentifierFactory()).thenReturn(mock(TransactionIdentifierFactory.class));
+			when(cluster.getTransactionMode()).thenReturn(TransactionModeEnum.SERIAL);
 			
 			try (Connection result = driver.connect(url, null))
 			{
@@ -0,0 +1,141 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.TransactionMode;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.invocation.InvocationStrategies;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+import net.sf.hajdbc.invocation.Invoker;
+import net.sf.hajdbc.lock.LockManager;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that read-only connections neither acquire locks nor record durability events.
+ * @author Paul Ferraro
+ */
+public class LocalTransactionContextTest
+{
+	private final Lock lock = mock(Lock.class);
+	@SuppressWarnings("unchecked")
+	private final Durability<Void, MockDatabase> durability = mock(Durability.class);
+	private final Connection connection = mock(Connection.class);
+	private final InvocationStrategy strategy = mock(InvocationStrategy.class);
+	@SuppressWarnings("unchecked")
+	private final ProxyFactory<Void, MockDatabase, Object, SQLException> proxy = mock(ProxyFactory.class);
+	@SuppressWarnings("unchecked")
+	private final Invoker<Void, MockDatabase, Object, Object, SQLException> invoker = mock(Invoker.class);
+	private final Object transactionId = new Object();
+	private LocalTransactionContext<Void, MockDatabase> context;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void init() throws SQLException
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		LockManager lockManager = mock(LockManager.class);
+		TransactionIdentifierFactory<Object> transactionIdFactory = mock(TransactionIdentifierFactory.class);
+
+		when(cluster.getLockManager()).thenReturn(lockManager);
+		when(lockManager.readLock(null)).thenReturn(this.lock);
+		when(cluster.getDurability()).thenReturn(this.durability);
+		when(cluster.getTransactionIdentifierFactory()).thenReturn((TransactionIdentifierFactory) transactionIdFactory);
+		when(cluster.getTransactionMode()).thenReturn(mock(TransactionMode.class));
+		when(transactionIdFactory.createTransactionIdentifier()).thenReturn(this.transactionId);
+		when(this.strategy.invoke(this.proxy, this.invoker)).thenReturn(new TreeMap<MockDatabase, Object>());
+		when(this.durability.getInvocationStrategy(same(this.strategy), any(Durability.Phase.class), same(this.transactionId))).thenReturn(this.strategy);
+
+		this.context = new LocalTransactionContext<>(cluster);
+	}
+
+	@Test
+	public void readOnlyAutoCommit() throws SQLException
+	{
+		when(this.connection.isReadOnly()).thenReturn(true);
+		when(this.connection.getAutoCommit()).thenReturn(true);
+
+		InvocationStrategy result = this.context.start(this.strategy, this.connection);
+
+		assertSame(this.strategy, result);
+
+		result.invoke(this.proxy, this.invoker);
+
+		assertSame(this.invoker, this.context.start(this.invoker, this.connection));
+
+		verifyZeroInteractions(this.lock, this.durability);
+	}
+
+	@Test
+	public void readOnlyTransaction() throws SQLException
+	{
+		when(this.connection.isReadOnly()).thenReturn(true);
+		when(this.connection.getAutoCommit()).thenReturn(false);
+
+		// Statement locks are ignored
+		InvocationStrategy result = this.context.start(Collections.singletonList(mock(Lock.class)), this.connection);
+
+		assertSame(InvocationStrategies.TRANSACTION_INVOKE_ON_ALL, result);
+
+		this.context.start(this.strategy, this.connection).invoke(this.proxy, this.invoker);
+		this.context.end(this.strategy, Durability.Phase.COMMIT).invoke(this.proxy, this.invoker);
+
+		assertSame(this.invoker, this.context.end(this.invoker, Durability.Phase.COMMIT));
+
+		verifyZeroInteractions(this.lock, this.durability);
+	}
+
+	@Test
+	public void readWriteAutoCommit() throws SQLException
+	{
+		when(this.connection.isReadOnly()).thenReturn(false);
+		when(this.connection.getAutoCommit()).thenReturn(true);
+
+		this.context.start(this.strategy, this.connection).invoke(this.proxy, this.invoker);
+
+		verify(this.lock).lock();
+		verify(this.durability).getInvocationStrategy(this.strategy, Durability.Phase.COMMIT, this.transactionId);
+		verify(this.lock).unlock();
+	}
+
+	@Test
+	public void readWriteTransaction() throws SQLException
+	{
+		when(this.connection.isReadOnly()).thenReturn(false);
+		when(this.connection.getAutoCommit()).thenReturn(false);
+
+		this.context.start(this.strategy, this.connection).invoke(this.proxy, this.invoker);
+
+		verify(this.lock).lock();
+		verify(this.lock).unlock();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sql;
+
+import java.lang.reflect.Method;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.locks.Lock;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.invocation.InvocationStrategy;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Paul Ferraro
+ */
+@SuppressWarnings("unchecked")
+public class StatementInvocationHandlerTest
+{
+	private static final String SQL = "INSERT INTO test (name) VALUES ('1')";
+	private static final String IDENTITY_SQL = "INSERT INTO test (name, id) VALUES ('1', 1)";
+
+	private AbstractStatementProxyFactory<Void, Database<Void>, Statement> proxyFactory = mock(AbstractStatementProxyFactory.class);
+	private TransactionContext<Void, Database<Void>> context = mock(TransactionContext.class);
+	private InvocationStrategy strategy = mock(InvocationStrategy.class);
+	private Statement statement = mock(Statement.class);
+	private StatementInvocationHandler<Void, Database<Void>> handler;
+
+	@Before
+	public void before() throws Exception
+	{
+		when(this.proxyFactory.allocateIdentityColumns(SQL)).thenReturn(IDENTITY_SQL);
+		when(this.proxyFactory.extractLocks(anyString(), anyBoolean())).thenReturn(Collections.<Lock>emptyList());
+		when(this.proxyFactory.getTransactionContext()).thenReturn(this.context);
+		when(this.context.start(anyListOf(Lock.class), any(java.sql.Connection.class))).thenReturn(this.strategy);
+		
+		this.handler = new StatementInvocationHandler<>(this.proxyFactory);
+	}
+
+	@Test
+	public void execute() throws Exception
+	{
+		for (String name: new String[] { "execute", "executeUpdate" })
+		{
+			// Allocated identity column values are inserted, so the table need not be locked
+			this.execute(Statement.class.getMethod(name, String.class), new Object[] { SQL }, IDENTITY_SQL);
+		}
+	}
+
+	@Test
+	public void executeReturningGeneratedKeys() throws Exception
+	{
+		for (String name: new String[] { "execute", "executeUpdate" })
+		{
+			// Generated keys must be generated by the database
+			this.execute(Statement.class.getMethod(name, String.class, Integer.TYPE), new Object[] { SQL, Statement.RETURN_GENERATED_KEYS }, null);
+			this.execute(Statement.class.getMethod(name, String.class, int[].class), new Object[] { SQL, new int[] { 1 } }, null);
+			this.execute(Statement.class.getMethod(name, String.class, String[].class), new Object[] { SQL, new String[] { "id" } }, null);
+		}
+	}
+
+	private void execute(Method method, Object[] parameters, String identitySQL) throws Exception
+	{
+		reset(this.proxyFactory);
+		this.before();
+		
+		Assert.assertSame(this.strategy, this.handler.getInvocationStrategy(this.statement, method, parameters));
+		
+		if (identitySQL != null)
+		{
+			Assert.assertEquals(identitySQL, parameters[0]);
+			verify(this.proxyFactory).extractLocks(identitySQL, false);
+		}
+		else
+		{
+			Assert.assertEquals(SQL, parameters[0]);
+			verify(this.proxyFactory, never()).allocateIdentityColumns(anyString());
+			verify(this.proxyFactory).extractLocks(SQL, true);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class DeferredStateManagerTest
+{
+	@Test
+	public void elided() throws Exception
+	{
+		RecordingStateManager recorder = new RecordingStateManager();
+		DeferredStateManager manager = new DeferredStateManager(recorder, 60000, Executors.defaultThreadFactory());
+		manager.start();
+
+		manager.beforeInvocation(invocation(1));
+		manager.beforeInvoker(invoker(1, "db1"));
+		manager.afterInvoker(invoker(1, "db1"));
+		manager.afterInvocation(invocation(1));
+
+		manager.stop();
+
+		// Invocation completed within the window, so was never persisted
+		assertEquals(Arrays.asList("start", "stop"), recorder.getEvents());
+	}
+
+	@Test
+	public void expired() throws Exception
+	{
+		RecordingStateManager recorder = new RecordingStateManager();
+		DeferredStateManager manager = new DeferredStateManager(recorder, 50, Executors.defaultThreadFactory());
+		manager.start();
+		try
+		{
+			manager.beforeInvocation(invocation(1));
+			manager.beforeInvoker(invoker(1, "db1"));
+			manager.beforeInvocation(invocation(2));
+
+			// Wait for background persistence of both expired invocations
+			long timeout = System.currentTimeMillis() + 5000;
+			while ((recorder.getEvents().size() < 4) && (System.currentTimeMillis() < timeout))
+			{
+				Thread.sleep(10);
+			}
+
+			// Buffered events are persisted in order
+			assertEquals(Arrays.asList("start", "beforeInvocation:1", "beforeInvoker:1:db1", "beforeInvocation:2"), recorder.getEvents());
+
+			// Subsequent events of a persisted invocation are written directly
+			manager.afterInvoker(invoker(1, "db1"));
+			manager.afterInvocation(invocation(1));
+
+			assertEquals(Arrays.asList("start", "beforeInvocation:1", "beforeInvoker:1:db1", "beforeInvocation:2", "afterInvoker:1:db1", "afterInvocation:1"), recorder.getEvents());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void stop() throws Exception
+	{
+		RecordingStateManager recorder = new RecordingStateManager();
+		DeferredStateManager manager = new DeferredStateManager(recorder, 60000, Executors.defaultThreadFactory());
+		manager.start();
+
+		manager.beforeInvocation(invocation(1));
+		manager.beforeInvoker(invoker(1, "db1"));
+		manager.beforeInvocation(invocation(2));
+		manager.afterInvocation(invocation(2));
+
+		manager.stop();
+
+		// In-flight invocation is persisted before the underlying state manager stops
+		assertEquals(Arrays.asList("start", "beforeInvocation:1", "beforeInvoker:1:db1", "stop"), recorder.getEvents());
+		assertTrue(manager.recover().isEmpty());
+	}
+
+	private static InvocationEvent invocation(long id)
+	{
+		return new InvocationEventImpl(id, Durability.Phase.COMMIT, ExceptionType.SQL);
+	}
+
+	private static InvokerEvent invoker(long id, String databaseId)
+	{
+		return new InvokerEventImpl(id, Durability.Phase.COMMIT, databaseId);
+	}
+
+	static class RecordingStateManager implements StateManager
+	{
+		private final List<String> events = new ArrayList<>();
+
+		synchronized List<String> getEvents()
+		{
+			return new ArrayList<>(this.events);
+		}
+
+		private synchronized void record(String event)
+		{
+			this.events.add(event);
+		}
+
+		@Override
+		public void start()
+		{
+			this.record("start");
+		}
+
+		@Override
+		public void stop()
+		{
+			this.record("stop");
+		}
+
+		@Override
+		public void beforeInvocation(InvocationEvent event)
+		{
+			this.record("beforeInvocation:" + event.getTransactionId());
+		}
+
+		@Override
+		public void afterInvocation(InvocationEvent event)
+		{
+			this.record("afterInvocation:" + event.getTransactionId());
+		}
+
+		@Override
+		public void beforeInvoker(InvokerEvent event)
+		{
+			this.record("beforeInvoker:" + event.getTransactionId() + ":" + event.getDatabaseId());
+		}
+
+		@Override
+		public void afterInvoker(InvokerEvent event)
+		{
+			this.record("afterInvoker:" + event.getTransactionId() + ":" + event.getDatabaseId());
+		}
+
+		@Override
+		public Set<String> getActiveDatabases()
+		{
+			return Collections.emptySet();
+		}
+
+		@Override
+		public void setActiveDatabases(Set<String> databases)
+		{
+		}
+
+		@Override
+		public Map<InvocationEvent, Map<String, InvokerEvent>> recover()
+		{
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public boolean isEnabled()
+		{
+			return true;
+		}
+
+		@Override
+		public void activated(DatabaseEvent event)
+		{
+		}
+
+		@Override
+		public void deactivated(DatabaseEvent event)
+		{
+		}
+	}
+}
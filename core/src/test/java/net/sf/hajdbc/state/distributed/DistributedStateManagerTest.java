@@ -0,0 +1,210 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.distributed;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.balancer.Balancer;
+import net.sf.hajdbc.distributed.loopback.LoopbackCommandDispatcher;
+import net.sf.hajdbc.distributed.loopback.LoopbackCommandDispatcherFactory;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.durability.fine.FineDurability;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Replicates durability events between two loopback members, and recovers the invocations of a crashed member.
+ * @author Paul Ferraro
+ */
+public class DistributedStateManagerTest
+{
+	private static int counter = 0;
+
+	private final MockDatabase primary = new MockDatabase("primary");
+	private final MockDatabase backup = new MockDatabase("backup");
+	private DatabaseCluster<Void, MockDatabase> coordinatorCluster;
+	private DistributedStateManager<Void, MockDatabase> coordinator;
+	private DistributedStateManager<Void, MockDatabase> member;
+
+	@Before
+	public void init() throws Exception
+	{
+		String id = "cluster-" + (++counter);
+		this.coordinatorCluster = createCluster(id);
+		this.coordinator = createStateManager(this.coordinatorCluster, "coordinator");
+		this.member = createStateManager(createCluster(id), "member");
+
+		// First member to join is the coordinator
+		this.coordinator.start();
+		this.member.start();
+	}
+
+	@After
+	public void destroy()
+	{
+		this.member.stop();
+		this.coordinator.stop();
+	}
+
+	@Test
+	public void batch()
+	{
+		InvocationEvent invocation = new InvocationEventImpl(new LongTransactionIdentifier(1), Durability.Phase.ROLLBACK, ExceptionType.SQL);
+
+		this.member.beforeInvocation(invocation);
+		this.member.beforeInvoker(this.createInvokerEvent(invocation, this.primary, false));
+		this.member.beforeInvoker(this.createInvokerEvent(invocation, this.backup, false));
+
+		// Events that precede a rollback are held
+		Assert.assertTrue(this.getRemoteInvokers().isEmpty());
+
+		this.member.afterInvoker(this.createInvokerEvent(invocation, this.primary, true));
+
+		// Completion of an invoker multicasts all pending events, in order
+		Map<String, InvokerEvent> invokers = this.getRemoteInvokers().get(invocation);
+		Assert.assertNotNull(invokers);
+		Assert.assertNotNull(invokers.get(this.primary.getId()).getResult());
+		Assert.assertNull(invokers.get(this.backup.getId()).getResult());
+
+		this.member.afterInvoker(this.createInvokerEvent(invocation, this.backup, true));
+		this.member.afterInvocation(invocation);
+
+		Assert.assertTrue(this.getRemoteInvokers().isEmpty());
+	}
+
+	@Test
+	public void commit()
+	{
+		InvocationEvent invocation = new InvocationEventImpl(new LongTransactionIdentifier(2), Durability.Phase.COMMIT, ExceptionType.SQL);
+
+		this.member.beforeInvocation(invocation);
+		this.member.beforeInvoker(this.createInvokerEvent(invocation, this.primary, false));
+
+		// Group must know about a commit before any database is modified
+		Map<String, InvokerEvent> invokers = this.getRemoteInvokers().get(invocation);
+		Assert.assertNotNull(invokers);
+		Assert.assertEquals(Collections.singleton(this.primary.getId()), invokers.keySet());
+	}
+
+	@Test
+	public void committed() throws Exception
+	{
+		InvocationEvent invocation = new InvocationEventImpl(new LongTransactionIdentifier(3), Durability.Phase.COMMIT, ExceptionType.SQL);
+
+		this.member.beforeInvocation(invocation);
+		for (MockDatabase database: new MockDatabase[] { this.primary, this.backup })
+		{
+			this.member.beforeInvoker(this.createInvokerEvent(invocation, database, false));
+			this.member.afterInvoker(this.createInvokerEvent(invocation, database, true));
+		}
+
+		// Crash before the invocation completes
+		this.crash();
+
+		verify(this.coordinatorCluster, never()).deactivate(any(MockDatabase.class), any(StateManager.class));
+	}
+
+	@Test
+	public void interrupted() throws Exception
+	{
+		InvocationEvent invocation = new InvocationEventImpl(new LongTransactionIdentifier(4), Durability.Phase.COMMIT, ExceptionType.SQL);
+
+		this.member.beforeInvocation(invocation);
+		this.member.beforeInvoker(this.createInvokerEvent(invocation, this.primary, false));
+		this.member.afterInvoker(this.createInvokerEvent(invocation, this.primary, true));
+		this.member.beforeInvoker(this.createInvokerEvent(invocation, this.backup, false));
+
+		// Crash before the backup completes its commit
+		this.crash();
+
+		verify(this.coordinatorCluster).deactivate(same(this.backup), any(StateManager.class));
+	}
+
+	private void crash()
+	{
+		((LoopbackCommandDispatcher<?>) this.member.dispatcher).crash();
+	}
+
+	private Map<InvocationEvent, Map<String, InvokerEvent>> getRemoteInvokers()
+	{
+		return this.coordinator.getRemoteInvokers(new DistributedStateManager.RemoteDescriptor(this.member.dispatcher.getLocal()));
+	}
+
+	private InvokerEvent createInvokerEvent(InvocationEvent invocation, MockDatabase database, boolean completed)
+	{
+		InvokerEvent event = new InvokerEventImpl(invocation.getTransactionId(), invocation.getPhase(), database.getId());
+		if (completed)
+		{
+			event.setResult(new InvokerResultImpl(null));
+		}
+		return event;
+	}
+
+	@SuppressWarnings("unchecked")
+	private DatabaseCluster<Void, MockDatabase> createCluster(String id)
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Balancer<Void, MockDatabase> balancer = mock(Balancer.class);
+		when(balancer.size()).thenReturn(2);
+		when(balancer.iterator()).thenAnswer(new Answer<Iterator<MockDatabase>>()
+		{
+			@Override
+			public Iterator<MockDatabase> answer(InvocationOnMock invocation)
+			{
+				return Arrays.asList(DistributedStateManagerTest.this.primary, DistributedStateManagerTest.this.backup).iterator();
+			}
+		});
+		when(balancer.primary()).thenReturn(this.primary);
+		when(balancer.backups()).thenReturn(Collections.singleton(this.backup));
+		when(cluster.getId()).thenReturn(id);
+		when(cluster.getBalancer()).thenReturn(balancer);
+		when(cluster.getStateManager()).thenReturn(mock(StateManager.class));
+		when(cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+		when(cluster.getDurability()).thenReturn(new FineDurability<>(cluster));
+		return cluster;
+	}
+
+	private static DistributedStateManager<Void, MockDatabase> createStateManager(DatabaseCluster<Void, MockDatabase> cluster, String name) throws Exception
+	{
+		LoopbackCommandDispatcherFactory factory = new LoopbackCommandDispatcherFactory();
+		factory.setName(name);
+		return new DistributedStateManager<>(cluster, factory);
+	}
+}
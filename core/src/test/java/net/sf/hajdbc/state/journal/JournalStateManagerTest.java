@@ -0,0 +1,337 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.durability.fine.FineDurability;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.journal.JournalStateManager.SyncPolicy;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class JournalStateManagerTest
+{
+	private File directory;
+
+	@Before
+	public void before() throws IOException
+	{
+		// Other tests may request that local state be cleared on start
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+		this.directory = Files.createTempDirectory("journal").toFile();
+	}
+
+	@After
+	public void after()
+	{
+		for (File file: this.directory.listFiles())
+		{
+			file.delete();
+		}
+		this.directory.delete();
+	}
+
+	@Test
+	public void recover() throws Exception
+	{
+		JournalStateManager manager = this.createStateManager(4096);
+		manager.start();
+		try
+		{
+			manager.setActiveDatabases(new HashSet<>(Arrays.asList("db1", "db2")));
+
+			InvocationEvent incomplete = invocation(1);
+			manager.beforeInvocation(incomplete);
+			manager.beforeInvoker(invoker(1, "db1"));
+			InvokerEvent invoker = invoker(1, "db1");
+			invoker.setResult(new InvokerResultImpl(5));
+			manager.afterInvoker(invoker);
+			manager.beforeInvoker(invoker(1, "db2"));
+
+			InvocationEvent complete = invocation(2);
+			manager.beforeInvocation(complete);
+			manager.afterInvocation(complete);
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager(4096);
+		manager.start();
+		try
+		{
+			assertEquals(new HashSet<>(Arrays.asList("db1", "db2")), manager.getActiveDatabases());
+
+			Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+			assertEquals(1, invocations.size());
+
+			Map<String, InvokerEvent> invokers = invocations.get(invocation(1));
+			assertNotNull(invokers);
+			assertEquals(2, invokers.size());
+			assertEquals(5, invokers.get("db1").getResult().getValue());
+			assertNull(invokers.get("db2").getResult());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void tornRecord() throws Exception
+	{
+		JournalStateManager manager = this.createStateManager(4096);
+		manager.start();
+		try
+		{
+			manager.beforeInvocation(invocation(1));
+			manager.beforeInvocation(invocation(2));
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		// Simulate a partially written second record
+		File[] segments = this.segments();
+		assertEquals(1, segments.length);
+		try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw"))
+		{
+			int length = file.readInt();
+			long offset = 8 + length + 8 + 1;
+			file.seek(offset);
+			byte value = file.readByte();
+			file.seek(offset);
+			file.writeByte(~value);
+		}
+
+		manager = this.createStateManager(4096);
+		manager.start();
+		try
+		{
+			// Only the intact record is recovered
+			Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+			assertEquals(1, invocations.size());
+			assertTrue(invocations.containsKey(invocation(1)));
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void purge() throws Exception
+	{
+		// Small segments, such that each holds only a few records
+		JournalStateManager manager = this.createStateManager(64);
+		manager.start();
+		try
+		{
+			manager.beforeInvocation(invocation(1));
+
+			for (int i = 2; i < 20; ++i)
+			{
+				manager.beforeInvocation(invocation(i));
+				manager.afterInvocation(invocation(i));
+			}
+
+			// Segments following the one referenced by the incomplete invocation are retained
+			assertTrue(this.segments().length > 1);
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager(64);
+		manager.start();
+		try
+		{
+			Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+			assertEquals(1, invocations.size());
+			assertTrue(invocations.containsKey(invocation(1)));
+
+			manager.afterInvocation(invocation(1));
+
+			// Only the current segment remains
+			assertEquals(1, this.segments().length);
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager(64);
+		manager.start();
+		try
+		{
+			assertTrue(manager.recover().isEmpty());
+			assertTrue(manager.getActiveDatabases().isEmpty());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void restart() throws Exception
+	{
+		JournalStateManager manager = this.createStateManager(64);
+		manager.start();
+		try
+		{
+			manager.setActiveDatabases(new HashSet<>(Arrays.asList("db1")));
+			manager.beforeInvocation(invocation(1));
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		// Restarting the same instance must not duplicate segments, references, or active databases
+		manager.start();
+		try
+		{
+			assertEquals(new HashSet<>(Arrays.asList("db1")), manager.getActiveDatabases());
+
+			Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+			assertEquals(1, invocations.size());
+			assertTrue(invocations.containsKey(invocation(1)));
+
+			manager.afterInvocation(invocation(1));
+
+			for (int i = 2; i < 10; ++i)
+			{
+				manager.beforeInvocation(invocation(i));
+				manager.afterInvocation(invocation(i));
+			}
+
+			// Only the current segment remains
+			assertEquals(1, this.segments().length);
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager.start();
+		try
+		{
+			assertTrue(manager.recover().isEmpty());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void factoryLocale() throws Exception
+	{
+		Locale locale = Locale.getDefault();
+		// Upper casing "periodic" in a Turkish locale yields a dotted capital I
+		Locale.setDefault(new Locale("tr", "TR"));
+		try
+		{
+			JournalStateManagerFactory factory = new JournalStateManagerFactory();
+			factory.setLocationPattern(this.directory.getPath());
+			factory.setSyncPolicy("periodic");
+
+			DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+			when(cluster.getId()).thenReturn("cluster");
+
+			assertNotNull(factory.createStateManager(cluster));
+		}
+		finally
+		{
+			Locale.setDefault(locale);
+		}
+	}
+
+	private File[] segments()
+	{
+		return this.directory.listFiles(new FilenameFilter()
+		{
+			@Override
+			public boolean accept(File directory, String name)
+			{
+				return name.startsWith(JournalStateManager.SEGMENT_PREFIX);
+			}
+		});
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private JournalStateManager createStateManager(int segmentSize)
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Durability<Void, MockDatabase> durability = new FineDurability<>(cluster);
+		TransactionIdentifierFactory factory = new SimpleTransactionIdentifierFactory();
+		when(cluster.getDurability()).thenReturn(durability);
+		when(cluster.getTransactionIdentifierFactory()).thenReturn(factory);
+		when(cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+		return new JournalStateManager(cluster, this.directory, segmentSize, SyncPolicy.NEVER, 0);
+	}
+
+	private static InvocationEvent invocation(long id)
+	{
+		return new InvocationEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, ExceptionType.SQL);
+	}
+
+	private static InvokerEvent invoker(long id, String databaseId)
+	{
+		return new InvokerEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, databaseId);
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.leveldb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.InvokerEvent;
+import net.sf.hajdbc.durability.InvokerEventImpl;
+import net.sf.hajdbc.durability.InvokerResultImpl;
+import net.sf.hajdbc.durability.fine.FineDurability;
+import net.sf.hajdbc.state.DatabaseEvent;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteOptions;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class LevelDBStateManagerTest
+{
+	private File directory;
+
+	@Before
+	public void before() throws IOException
+	{
+		// Other tests may request that local state be cleared on start
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+		this.directory = Files.createTempDirectory("leveldb").toFile();
+	}
+
+	@After
+	public void after()
+	{
+		delete(this.directory);
+	}
+
+	@Test
+	public void recover() throws Exception
+	{
+		LevelDBStateManager manager = this.createStateManager();
+		manager.start();
+		try
+		{
+			manager.setActiveDatabases(new HashSet<>(Arrays.asList("db1", "db2")));
+
+			InvocationEvent incomplete = invocation(1);
+			manager.beforeInvocation(incomplete);
+			manager.beforeInvoker(invoker(1, "db1"));
+			InvokerEvent invoker = invoker(1, "db1");
+			invoker.setResult(new InvokerResultImpl(5));
+			manager.afterInvoker(invoker);
+			manager.beforeInvoker(invoker(1, "db2"));
+
+			InvocationEvent complete = invocation(2);
+			manager.beforeInvocation(complete);
+			manager.beforeInvoker(invoker(2, "db1"));
+			manager.afterInvocation(complete);
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager();
+		manager.start();
+		try
+		{
+			assertEquals(new HashSet<>(Arrays.asList("db1", "db2")), manager.getActiveDatabases());
+
+			Map<InvocationEvent, Map<String, InvokerEvent>> invocations = manager.recover();
+			assertEquals(1, invocations.size());
+
+			Map<String, InvokerEvent> invokers = invocations.get(invocation(1));
+			assertNotNull(invokers);
+			assertEquals(2, invokers.size());
+			assertEquals(5, invokers.get("db1").getResult().getValue());
+			assertNull(invokers.get("db2").getResult());
+
+			manager.afterInvocation(invocation(1));
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager();
+		manager.start();
+		try
+		{
+			assertTrue(manager.recover().isEmpty());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void activeDatabases() throws Exception
+	{
+		LevelDBStateManager manager = this.createStateManager();
+		manager.start();
+		try
+		{
+			assertTrue(manager.getActiveDatabases().isEmpty());
+
+			manager.activated(new DatabaseEvent("db1"));
+			manager.activated(new DatabaseEvent("db2"));
+			manager.deactivated(new DatabaseEvent("db1"));
+		}
+		finally
+		{
+			manager.stop();
+		}
+
+		manager = this.createStateManager();
+		manager.start();
+		try
+		{
+			assertEquals(new HashSet<>(Arrays.asList("db2")), manager.getActiveDatabases());
+
+			// Replaces, rather than amends, the persisted state
+			manager.setActiveDatabases(new HashSet<>(Arrays.asList("db1")));
+			assertEquals(new HashSet<>(Arrays.asList("db1")), manager.getActiveDatabases());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private LevelDBStateManager createStateManager()
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Durability<Void, MockDatabase> durability = new FineDurability<>(cluster);
+		TransactionIdentifierFactory factory = new SimpleTransactionIdentifierFactory();
+		when(cluster.getDurability()).thenReturn(durability);
+		when(cluster.getTransactionIdentifierFactory()).thenReturn(factory);
+		when(cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+		return new LevelDBStateManager(cluster, this.directory, Iq80DBFactory.factory, new Options().createIfMissing(true), new WriteOptions());
+	}
+
+	private static InvocationEvent invocation(long id)
+	{
+		return new InvocationEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, ExceptionType.SQL);
+	}
+
+	private static InvokerEvent invoker(long id, String databaseId)
+	{
+		return new InvokerEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, databaseId);
+	}
+
+	private static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null)
+		{
+			for (File child: files)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
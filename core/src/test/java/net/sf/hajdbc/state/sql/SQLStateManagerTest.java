@@ -0,0 +1,227 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.state.sql;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.DatabaseCluster;
+import net.sf.hajdbc.ExceptionType;
+import net.sf.hajdbc.MockDatabase;
+import net.sf.hajdbc.durability.Durability;
+import net.sf.hajdbc.durability.InvocationEvent;
+import net.sf.hajdbc.durability.InvocationEventImpl;
+import net.sf.hajdbc.durability.fine.FineDurability;
+import net.sf.hajdbc.pool.generic.GenericObjectPoolFactory;
+import net.sf.hajdbc.sql.DriverDatabase;
+import net.sf.hajdbc.sql.DriverDatabaseBuilder;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.tx.LongTransactionIdentifier;
+import net.sf.hajdbc.tx.SimpleTransactionIdentifierFactory;
+import net.sf.hajdbc.tx.TransactionIdentifierFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies group commit of durability events.
+ * @author Paul Ferraro
+ */
+public class SQLStateManagerTest
+{
+	private static int counter = 0;
+
+	private String url;
+
+	@Before
+	public void before()
+	{
+		// Other tests may request that local state be cleared on start
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+		this.url = "jdbc:hsqldb:mem:state-" + (++counter);
+	}
+
+	@Test
+	public void batch() throws Exception
+	{
+		RecordingStateManager manager = this.createStateManager(10, 1000);
+		manager.start();
+		try
+		{
+			write(manager, invocation(1), invocation(2), invocation(3), invocation(4), invocation(5));
+
+			// Concurrent events are committed together
+			assertTrue(manager.groups.toString(), manager.groups.size() < 5);
+			assertEquals(5, sum(manager.groups));
+			assertEquals(0, manager.retries.get());
+			assertEquals(5, manager.recover().size());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void fallback() throws Exception
+	{
+		// Group is committed as soon as it is full
+		RecordingStateManager manager = this.createStateManager(4, 10000);
+		manager.start();
+		try
+		{
+			// Duplicate invocation fails the whole group
+			write(manager, invocation(1), invocation(1), invocation(2), invocation(3));
+
+			assertEquals(Collections.singletonList(4), manager.groups);
+			// Each request is retried individually, so only the duplicate is lost
+			assertEquals(4, manager.retries.get());
+			assertEquals(new HashSet<>(Arrays.asList(invocation(1), invocation(2), invocation(3))), manager.recover().keySet());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	@Test
+	public void stop() throws Exception
+	{
+		long delay = 10000;
+		RecordingStateManager manager = this.createStateManager(10, delay);
+		manager.start();
+
+		Thread thread = writer(manager, invocation(1));
+		thread.start();
+
+		// Allow writer to collect the event, and wait for more
+		Thread.sleep(200);
+
+		long start = System.currentTimeMillis();
+		manager.stop();
+		thread.join();
+
+		// Pending events are committed immediately
+		assertTrue(System.currentTimeMillis() - start < delay);
+		assertEquals(Collections.singletonList(1), manager.groups);
+
+		manager = this.createStateManager(10, delay);
+		manager.start();
+		try
+		{
+			assertEquals(Collections.singleton(invocation(1)), manager.recover().keySet());
+		}
+		finally
+		{
+			manager.stop();
+		}
+	}
+
+	private static void write(StateManager manager, InvocationEvent... events) throws InterruptedException
+	{
+		List<Thread> threads = new ArrayList<>(events.length);
+		for (InvocationEvent event: events)
+		{
+			threads.add(writer(manager, event));
+		}
+		for (Thread thread: threads)
+		{
+			thread.start();
+		}
+		for (Thread thread: threads)
+		{
+			thread.join();
+		}
+	}
+
+	private static Thread writer(final StateManager manager, final InvocationEvent event)
+	{
+		return new Thread()
+		{
+			@Override
+			public void run()
+			{
+				manager.beforeInvocation(event);
+			}
+		};
+	}
+
+	private static int sum(List<Integer> values)
+	{
+		int sum = 0;
+		for (int value: values)
+		{
+			sum += value;
+		}
+		return sum;
+	}
+
+	private static InvocationEvent invocation(long id)
+	{
+		return new InvocationEventImpl(new LongTransactionIdentifier(id), Durability.Phase.COMMIT, ExceptionType.SQL);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private RecordingStateManager createStateManager(int batchSize, long batchDelay) throws SQLException
+	{
+		DatabaseCluster<Void, MockDatabase> cluster = mock(DatabaseCluster.class);
+		Durability<Void, MockDatabase> durability = new FineDurability<>(cluster);
+		TransactionIdentifierFactory factory = new SimpleTransactionIdentifierFactory();
+		when(cluster.getDurability()).thenReturn(durability);
+		when(cluster.getTransactionIdentifierFactory()).thenReturn(factory);
+		when(cluster.getThreadFactory()).thenReturn(Executors.defaultThreadFactory());
+		return new RecordingStateManager(cluster, new DriverDatabaseBuilder("state").url(this.url).build(), batchSize, batchDelay);
+	}
+
+	/**
+	 * Records the size of each committed group, and the number of individually retried requests.
+	 */
+	static class RecordingStateManager extends SQLStateManager<Void, MockDatabase>
+	{
+		final List<Integer> groups = Collections.synchronizedList(new ArrayList<Integer>());
+		final AtomicInteger retries = new AtomicInteger();
+
+		RecordingStateManager(DatabaseCluster<Void, MockDatabase> cluster, DriverDatabase database, int batchSize, long batchDelay)
+		{
+			super(cluster, database, new GenericObjectPoolFactory(new SQLStateManagerFactory()), batchSize, batchDelay);
+		}
+
+		@Override
+		void execute(List<Request> requests)
+		{
+			this.groups.add(requests.size());
+			super.execute(requests);
+		}
+
+		@Override
+		void execute(Request request) throws SQLException
+		{
+			this.retries.incrementAndGet();
+			super.execute(request);
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.hajdbc.ChecksumSupport;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.sql.DataSource;
+import net.sf.hajdbc.sql.DataSourceDatabase;
+import net.sf.hajdbc.sql.DataSourceDatabaseClusterConfigurationBuilder;
+import net.sf.hajdbc.sql.DatabaseClusterImpl;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.simple.SimpleStateManagerFactory;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Synchronizes embedded H2 databases, whose dialect lacks checksum support, using a mock {@link ChecksumSupport} that records the ranges compared.
+ * @author Paul Ferraro
+ */
+public class ChecksumSynchronizationStrategyTest
+{
+	private final List<String> predicates = Collections.synchronizedList(new ArrayList<String>());
+	private final ChecksumSupport support = mock(ChecksumSupport.class);
+
+	@Before
+	public void before() throws SQLException
+	{
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+		
+		// Checksum of the keys and the lengths of the names, so that changes to a name of the same length are not detected
+		when(this.support.getChecksumSQL(any(TableProperties.class), anyString())).thenAnswer(new Answer<String>()
+		{
+			@Override
+			public String answer(InvocationOnMock invocation)
+			{
+				String predicate = (String) invocation.getArguments()[1];
+				ChecksumSynchronizationStrategyTest.this.predicates.add(predicate);
+				return String.format("SELECT COUNT(*), SUM(id) + SUM(LENGTH(name)) FROM test WHERE %s", predicate);
+			}
+		});
+	}
+
+	@Test
+	public void identical() throws Exception
+	{
+		Map<Integer, String> target = this.synchronize("identical", new TreeMap<Integer, String>());
+		
+		// Only the checksums of the whole table are compared
+		Assert.assertEquals(Arrays.asList("ID IS NOT NULL"), this.predicates);
+		Assert.assertEquals(rows(), target);
+	}
+
+	@Test
+	public void leaf() throws Exception
+	{
+		Map<Integer, String> changes = new TreeMap<>();
+		// Detected by the checksum
+		changes.put(57, "x57");
+		// Not detected by the checksum
+		changes.put(10, "99");
+		
+		Map<Integer, String> target = this.synchronize("leaf", changes);
+		
+		// Keys 0 through 99 are split into ranges of width 25, then 7, descending, in key order, only into those that differ
+		List<String> expected = Arrays.asList(
+				"ID IS NOT NULL",
+				"ID < 25", "ID >= 25 AND ID < 50", "ID >= 50 AND ID < 75",
+				"ID >= 50 AND ID < 57", "ID >= 57 AND ID < 64", "ID >= 64 AND ID < 71", "ID >= 71 AND ID < 75",
+				"ID >= 75");
+		Assert.assertEquals(expected, this.predicates);
+		
+		// Only the rows of the differing leaf are synchronized
+		Map<Integer, String> rows = rows();
+		Assert.assertNotEquals(rows, target);
+		rows.put(10, "99");
+		Assert.assertEquals(rows, target);
+	}
+
+	/**
+	 * Synchronizes a table of 100 rows, using a fanout of 4 and a maximum leaf size of 10, to a target table containing the specified changes.
+	 * @return the rows of the target table, following synchronization
+	 */
+	private Map<Integer, String> synchronize(String name, Map<Integer, String> changes) throws Exception
+	{
+		JdbcDataSource ds1 = createDataSource(name + "1");
+		JdbcDataSource ds2 = createDataSource(name + "2");
+		
+		ChecksumSynchronizationStrategy strategy = new ChecksumSynchronizationStrategy();
+		strategy.setFanout(4);
+		strategy.setMaxLeafSize(10);
+		
+		try (Connection c1 = ds1.getConnection(); Connection c2 = ds2.getConnection())
+		{
+			try
+			{
+				Map<Integer, String> rows = rows();
+				for (Connection connection: new Connection[] { c1, c2 })
+				{
+					execute(connection, "CREATE TABLE test (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))");
+					for (Map.Entry<Integer, String> entry: rows.entrySet())
+					{
+						execute(connection, String.format("INSERT INTO test (id, name) VALUES (%d, '%s')", entry.getKey(), entry.getValue()));
+					}
+				}
+				for (Map.Entry<Integer, String> entry: changes.entrySet())
+				{
+					execute(c2, String.format("UPDATE test SET name = '%s' WHERE id = %d", entry.getValue(), entry.getKey()));
+				}
+				
+				try (DataSource ds = createDataSource(ds1, ds2, strategy))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					cluster.deactivate("db2");
+					
+					Dialect dialect = spy(cluster.getDialect());
+					doReturn(this.support).when(dialect).getChecksumSupport();
+					
+					try (SynchronizationContext<javax.sql.DataSource, DataSourceDatabase> context = spy(new SynchronizationContextImpl<>(cluster, cluster.getDatabase("db2"))))
+					{
+						doReturn(dialect).when(context).getDialect();
+						
+						strategy.synchronize(context);
+					}
+				}
+				
+				return select(c2);
+			}
+			finally
+			{
+				execute(c1, "SHUTDOWN");
+				execute(c2, "SHUTDOWN");
+			}
+		}
+	}
+
+	private static Map<Integer, String> rows()
+	{
+		Map<Integer, String> rows = new TreeMap<>();
+		for (int i = 0; i < 100; ++i)
+		{
+			rows.put(i, String.valueOf(i));
+		}
+		return rows;
+	}
+
+	private static JdbcDataSource createDataSource(String name)
+	{
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setUrl("jdbc:h2:mem:checksum-" + name);
+		ds.setUser("sa");
+		ds.setPassword("");
+		return ds;
+	}
+
+	private static DataSource createDataSource(javax.sql.DataSource ds1, javax.sql.DataSource ds2, ChecksumSynchronizationStrategy strategy)
+	{
+		DataSource ds = new DataSource();
+		ds.setCluster("checksum");
+		DataSourceDatabaseClusterConfigurationBuilder builder = ds.getConfigurationBuilder();
+		builder.addDatabase("db1").dataSource(ds1).credentials("sa", "");
+		builder.addDatabase("db2").dataSource(ds2).credentials("sa", "");
+		builder.addSynchronizationStrategy(strategy);
+		builder.defaultSynchronizationStrategy(strategy.getId());
+		builder.dialect("h2");
+		builder.metaDataCache("none");
+		builder.state(new SimpleStateManagerFactory());
+		return ds;
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute(sql);
+		}
+	}
+
+	private static Map<Integer, String> select(Connection connection) throws SQLException
+	{
+		Map<Integer, String> rows = new TreeMap<>();
+		try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery("SELECT id, name FROM test"))
+		{
+			while (results.next())
+			{
+				rows.put(results.getInt(1), results.getString(2));
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.dialect.Dialect;
+import net.sf.hajdbc.sql.DataSource;
+import net.sf.hajdbc.sql.DataSourceDatabase;
+import net.sf.hajdbc.sql.DataSourceDatabaseClusterConfigurationBuilder;
+import net.sf.hajdbc.sql.DatabaseClusterImpl;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.StateManagerFactory;
+import net.sf.hajdbc.state.sql.SQLStateManagerFactory;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Synchronizes embedded HSQLDB databases.
+ * H2 and Derby are not covered, since their dialects do not support triggers.
+ * @author Paul Ferraro
+ */
+public class FastDifferentialSynchronizationStrategyTest
+{
+	@Before
+	public void before()
+	{
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+	}
+
+	@Test
+	public void synchronize() throws Exception
+	{
+		JDBCDataSource ds1 = new JDBCDataSource();
+		ds1.setUrl("jdbc:hsqldb:mem:delta1");
+		ds1.setUser("sa");
+		ds1.setPassword("");
+		
+		JDBCDataSource ds2 = new JDBCDataSource();
+		ds2.setUrl("jdbc:hsqldb:mem:delta2");
+		ds2.setUser("sa");
+		ds2.setPassword("");
+		
+		// Cluster state must survive a restart
+		SQLStateManagerFactory state = new SQLStateManagerFactory();
+		state.setUrlPattern("jdbc:hsqldb:mem:{0}-state");
+		state.setUser("sa");
+		state.setPassword("");
+		
+		FastDifferentialSynchronizationStrategy strategy = new FastDifferentialSynchronizationStrategy();
+		// Only changes since deactivation are synchronized
+		strategy.setMaxTransactionDuration(0);
+		
+		try (Connection c1 = ds1.getConnection(); Connection c2 = ds2.getConnection())
+		{
+			try
+			{
+				for (Connection connection: new Connection[] { c1, c2 })
+				{
+					execute(connection, "CREATE TABLE test (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))");
+					execute(connection, "INSERT INTO test (id, name) VALUES (1, '1'), (2, '2'), (3, '3'), (5, '5')");
+				}
+				
+				try (DataSource ds = createDataSource(ds1, ds2, state, strategy))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					// Change tracking is not installed until the strategy is first used
+					Assert.assertFalse(exists(c1, "hajdbc.PUBLIC_TEST"));
+					
+					// Changes are unknown, so all rows are synchronized
+					cluster.deactivate("db2");
+					cluster.activate("db2", strategy.getId());
+					
+					Assert.assertTrue(exists(c1, "hajdbc.PUBLIC_TEST"));
+					Assert.assertTrue(exists(c2, "hajdbc.PUBLIC_TEST"));
+					
+					// Change tables are keyed by the primary key of their table
+					try (ResultSet keys = c1.getMetaData().getPrimaryKeys(null, "HAJDBC", "PUBLIC_TEST"))
+					{
+						Assert.assertTrue(keys.next());
+						Assert.assertEquals("ID", keys.getString("COLUMN_NAME"));
+						Assert.assertFalse(keys.next());
+					}
+					
+					// Change tables are not user tables
+					for (TableProperties table: cluster.getDatabaseMetaDataCache().getDatabaseProperties(cluster.getDatabase("db1"), c1).getTables())
+					{
+						Assert.assertFalse(table.getName().getDMLName(), Dialect.SCHEMA.equalsIgnoreCase(table.getName().getSchema()));
+					}
+					
+					cluster.deactivate("db2");
+					
+					try (Connection c = ds.getConnection())
+					{
+						execute(c, "INSERT INTO test (id, name) VALUES (4, '4')");
+						execute(c, "UPDATE test SET name = 'two' WHERE id = 2");
+						execute(c, "DELETE FROM test WHERE id = 3");
+					}
+					
+					// Changes that reached only the target are reverted
+					execute(c2, "UPDATE test SET name = 'one' WHERE id = 1");
+					
+					// Unrecorded changes are not, since unchanged rows are not synchronized
+					execute(c2, "UPDATE test SET name = 'five' WHERE id = 5");
+					execute(c2, "DELETE FROM hajdbc.PUBLIC_TEST WHERE id = 5");
+				}
+				
+				// Change tracking is retained while an inactive database needs it
+				Assert.assertTrue(exists(c1, "hajdbc.PUBLIC_TEST"));
+				
+				// Deactivation time survives a restart
+				try (DataSource ds = createDataSource(ds1, ds2, state, strategy))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					Assert.assertFalse(cluster.getBalancer().contains(cluster.getDatabase("db2")));
+					
+					cluster.activate("db2", strategy.getId());
+					
+					Map<Integer, String> expected = new TreeMap<>();
+					expected.put(1, "1");
+					expected.put(2, "two");
+					expected.put(4, "4");
+					expected.put(5, "five");
+					Assert.assertEquals(expected, select(c2));
+					expected.put(5, "5");
+					Assert.assertEquals(expected, select(c1));
+					
+					Assert.assertTrue(count(c1, "hajdbc.PUBLIC_TEST") > 0);
+					
+					// No database is inactive, so no changes are needed
+					Thread.sleep(10);
+					strategy.purge(cluster);
+					
+					Assert.assertEquals(0, count(c1, "hajdbc.PUBLIC_TEST"));
+					Assert.assertEquals(0, count(c2, "hajdbc.PUBLIC_TEST"));
+				}
+				
+				// Change tracking is removed once no inactive database needs it
+				for (Connection connection: new Connection[] { c1, c2 })
+				{
+					Assert.assertFalse(exists(connection, "hajdbc.PUBLIC_TEST"));
+					Assert.assertFalse(exists(connection, "hajdbc.hajdbc_tracking"));
+					Assert.assertFalse(exists(connection, "hajdbc.hajdbc_deactivation"));
+					
+					// Triggers are gone as well
+					execute(connection, "UPDATE test SET name = '4' WHERE id = 4");
+				}
+			}
+			finally
+			{
+				execute(c1, "SHUTDOWN");
+				execute(c2, "SHUTDOWN");
+			}
+		}
+	}
+
+	private static DataSource createDataSource(javax.sql.DataSource ds1, javax.sql.DataSource ds2, StateManagerFactory state, FastDifferentialSynchronizationStrategy strategy)
+	{
+		DataSource ds = new DataSource();
+		ds.setCluster("delta");
+		DataSourceDatabaseClusterConfigurationBuilder builder = ds.getConfigurationBuilder();
+		builder.addDatabase("db1").dataSource(ds1).credentials("sa", "");
+		builder.addDatabase("db2").dataSource(ds2).credentials("sa", "");
+		builder.addSynchronizationStrategy(strategy);
+		builder.defaultSynchronizationStrategy(strategy.getId());
+		builder.dialect("hsqldb");
+		builder.metaDataCache("none");
+		builder.state(state);
+		return ds;
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute(sql);
+		}
+	}
+
+	private static boolean exists(Connection connection, String table)
+	{
+		try
+		{
+			count(connection, table);
+			return true;
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	private static int count(Connection connection, String table) throws SQLException
+	{
+		try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + table))
+		{
+			results.next();
+			return results.getInt(1);
+		}
+	}
+
+	private static Map<Integer, String> select(Connection connection) throws SQLException
+	{
+		Map<Integer, String> rows = new TreeMap<>();
+		try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery("SELECT id, name FROM test"))
+		{
+			while (results.next())
+			{
+				rows.put(results.getInt(1), results.getString(2));
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,462 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.sync;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.hajdbc.Database;
+import net.sf.hajdbc.TableProperties;
+import net.sf.hajdbc.sql.DataSource;
+import net.sf.hajdbc.sql.DataSourceDatabase;
+import net.sf.hajdbc.sql.DataSourceDatabaseClusterConfigurationBuilder;
+import net.sf.hajdbc.sql.DatabaseClusterImpl;
+import net.sf.hajdbc.state.StateManager;
+import net.sf.hajdbc.state.simple.SimpleStateManagerFactory;
+import net.sf.hajdbc.sync.PerTableSynchronizationStrategy.Partition;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Synchronizes embedded H2 databases, recording the tables and key ranges synchronized by each task.
+ * @author Paul Ferraro
+ */
+public class PerTableSynchronizationStrategyTest
+{
+	@Before
+	public void before()
+	{
+		System.clearProperty(StateManager.CLEAR_LOCAL_STATE);
+	}
+
+	@Test
+	public void partition() throws Exception
+	{
+		JdbcDataSource ds1 = createDataSource("range1");
+		JdbcDataSource ds2 = createDataSource("range2");
+		
+		Recorder recorder = new Recorder();
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(recorder);
+		strategy.setPartitions(4);
+		
+		try (Connection c1 = ds1.getConnection(); Connection c2 = ds2.getConnection())
+		{
+			try
+			{
+				for (Connection connection: new Connection[] { c1, c2 })
+				{
+					execute(connection, "CREATE TABLE test (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))");
+					// Keys that are not integers are not split
+					execute(connection, "CREATE TABLE named (name VARCHAR(10) NOT NULL, id INTEGER NOT NULL, PRIMARY KEY (name))");
+				}
+				
+				for (int i = 10; i < 110; ++i)
+				{
+					execute(c1, String.format("INSERT INTO test (id, name) VALUES (%d, '%d')", i, i));
+					execute(c1, String.format("INSERT INTO named (name, id) VALUES ('%d', %d)", i, i));
+				}
+				
+				// Rows outside of the key values of the source
+				for (int i = 1; i < 5; ++i)
+				{
+					execute(c2, String.format("INSERT INTO test (id, name) VALUES (%d, '%d')", i, i));
+				}
+				for (int i = 200; i < 205; ++i)
+				{
+					execute(c2, String.format("INSERT INTO test (id, name) VALUES (%d, '%d')", i, i));
+				}
+				// Rows that differ, or are missing, within the key values of the source
+				for (int i = 20; i < 70; ++i)
+				{
+					execute(c2, String.format("INSERT INTO test (id, name) VALUES (%d, '%s')", i, (i < 40) ? String.valueOf(i) : "x"));
+				}
+				execute(c2, "INSERT INTO named (name, id) VALUES ('x', 0)");
+				
+				try (DataSource ds = createDataSource(ds1, ds2, strategy, "none"))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					cluster.deactivate("db2");
+					cluster.activate("db2", strategy.getId());
+				}
+				
+				Assert.assertEquals(select(c1, "test"), select(c2, "test"));
+				Assert.assertEquals(select(c1, "named"), select(c2, "named"));
+				
+				// Keys 10 through 109 are split into ranges of width 25, the outermost of which are unbounded
+				List<String> ranges = new ArrayList<>();
+				for (Partition partition: recorder.partitions)
+				{
+					if (partition.table.getName().getName().equalsIgnoreCase("test"))
+					{
+						Assert.assertNotNull(partition.range);
+						ranges.add(partition.range.getPredicate());
+					}
+					else
+					{
+						Assert.assertNull(partition.range);
+					}
+				}
+				Assert.assertEquals(5, recorder.partitions.size());
+				Assert.assertTrue(ranges.toString(), ranges.contains("ID < 35"));
+				Assert.assertTrue(ranges.toString(), ranges.contains("ID >= 35 AND ID < 60"));
+				Assert.assertTrue(ranges.toString(), ranges.contains("ID >= 60 AND ID < 85"));
+				Assert.assertTrue(ranges.toString(), ranges.contains("ID >= 85"));
+			}
+			finally
+			{
+				execute(c1, "SHUTDOWN");
+				execute(c2, "SHUTDOWN");
+			}
+		}
+	}
+
+	@Test
+	public void concurrent() throws Exception
+	{
+		this.concurrent("none", "concurrent", 2);
+	}
+
+	/**
+	 * Lazily loaded meta data is only available to the thread that loaded the database meta data, so must be loaded before tables are synchronized concurrently.
+	 * Tables are not partitioned, since this would also load the meta data of their primary keys.
+	 */
+	@Test
+	public void lazy() throws Exception
+	{
+		this.concurrent("lazy", "lazy", 1);
+	}
+
+	private void concurrent(String cache, String name, int partitions) throws Exception
+	{
+		JdbcDataSource ds1 = createDataSource(name + "1");
+		JdbcDataSource ds2 = createDataSource(name + "2");
+		
+		Recorder recorder = new Recorder();
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(recorder);
+		strategy.setMaxConcurrency(3);
+		strategy.setPartitions(partitions);
+		
+		try (Connection c1 = ds1.getConnection(); Connection c2 = ds2.getConnection())
+		{
+			try
+			{
+				for (int table = 1; table <= 3; ++table)
+				{
+					for (Connection connection: new Connection[] { c1, c2 })
+					{
+						execute(connection, String.format("CREATE TABLE test%d (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))", table));
+					}
+					// Tables of different sizes
+					for (int i = 0; i < table * 20; ++i)
+					{
+						execute(c1, String.format("INSERT INTO test%d (id, name) VALUES (%d, '%d')", table, i, i));
+					}
+					for (int i = 10; i < 30; ++i)
+					{
+						execute(c2, String.format("INSERT INTO test%d (id, name) VALUES (%d, 'x')", table, i));
+					}
+				}
+				
+				try (DataSource ds = createDataSource(ds1, ds2, strategy, cache))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					cluster.deactivate("db2");
+					cluster.activate("db2", strategy.getId());
+					
+					Assert.assertTrue(cluster.getBalancer().contains(cluster.getDatabase("db2")));
+				}
+				
+				for (int table = 1; table <= 3; ++table)
+				{
+					Assert.assertEquals(select(c1, "test" + table), select(c2, "test" + table));
+				}
+				
+				Assert.assertEquals(3 * partitions, recorder.partitions.size());
+			}
+			finally
+			{
+				execute(c1, "SHUTDOWN");
+				execute(c2, "SHUTDOWN");
+			}
+		}
+	}
+
+	/**
+	 * A failed table prevents other threads from starting any further tables.
+	 */
+	@Test
+	public void failure() throws Exception
+	{
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final AtomicInteger calls = new AtomicInteger();
+		
+		Recorder recorder = new Recorder()
+		{
+			private static final long serialVersionUID = -1825741427004318617L;
+
+			@Override
+			void record(Partition partition) throws SQLException
+			{
+				super.record(partition);
+				
+				int call = calls.incrementAndGet();
+				
+				if (call <= 2)
+				{
+					await(barrier);
+					
+					if (call == 1)
+					{
+						throw new SQLException("failed");
+					}
+					
+					try
+					{
+						// Allow the failed thread to discard the remaining tables
+						Thread.sleep(200);
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new SQLException(e);
+					}
+				}
+			}
+		};
+		
+		SQLException exception = this.fail(recorder, "failure");
+		
+		Assert.assertEquals("failed", exception.getMessage());
+		Assert.assertNull(exception.getNextException());
+		
+		// The table in progress completes, but no others are started
+		Assert.assertEquals(2, recorder.partitions.size());
+	}
+
+	/**
+	 * The failures of all threads are reported as a chain of exceptions.
+	 */
+	@Test
+	public void failures() throws Exception
+	{
+		final CyclicBarrier barrier = new CyclicBarrier(2);
+		final AtomicInteger calls = new AtomicInteger();
+		
+		Recorder recorder = new Recorder()
+		{
+			private static final long serialVersionUID = 2384659201548861524L;
+
+			@Override
+			void record(Partition partition) throws SQLException
+			{
+				super.record(partition);
+				
+				int call = calls.incrementAndGet();
+				
+				await(barrier);
+				
+				throw new SQLException(String.valueOf(call));
+			}
+		};
+		
+		SQLException exception = this.fail(recorder, "failures");
+		
+		Set<String> messages = new HashSet<>();
+		messages.add(exception.getMessage());
+		Assert.assertNotNull(exception.getNextException());
+		messages.add(exception.getNextException().getMessage());
+		Assert.assertNull(exception.getNextException().getNextException());
+		
+		Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2")), messages);
+		Assert.assertEquals(2, recorder.partitions.size());
+	}
+
+	/**
+	 * Synchronizes 4 tables, using 2 threads, via the specified recorder, which is expected to fail.
+	 */
+	private SQLException fail(Recorder recorder, String name) throws Exception
+	{
+		JdbcDataSource ds1 = createDataSource(name + "1");
+		JdbcDataSource ds2 = createDataSource(name + "2");
+		
+		PerTableSynchronizationStrategy strategy = new PerTableSynchronizationStrategy(recorder);
+		strategy.setMaxConcurrency(2);
+		
+		try (Connection c1 = ds1.getConnection(); Connection c2 = ds2.getConnection())
+		{
+			try
+			{
+				for (int table = 1; table <= 4; ++table)
+				{
+					for (Connection connection: new Connection[] { c1, c2 })
+					{
+						execute(connection, String.format("CREATE TABLE test%d (id INTEGER NOT NULL, name VARCHAR(10) NOT NULL, PRIMARY KEY (id))", table));
+					}
+					execute(c1, String.format("INSERT INTO test%d (id, name) VALUES (1, '1')", table));
+				}
+				
+				try (DataSource ds = createDataSource(ds1, ds2, strategy, "none"))
+				{
+					DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase> cluster = (DatabaseClusterImpl<javax.sql.DataSource, DataSourceDatabase>) ds.getDatabaseCluster();
+					
+					cluster.deactivate("db2");
+					
+					// Synchronize directly, since cluster activation does not preserve the exception chain
+					try (SynchronizationContext<javax.sql.DataSource, DataSourceDatabase> context = new SynchronizationContextImpl<>(cluster, cluster.getDatabase("db2")))
+					{
+						strategy.synchronize(context);
+						Assert.fail();
+						return null;
+					}
+					catch (SQLException e)
+					{
+						return e;
+					}
+				}
+			}
+			finally
+			{
+				execute(c1, "SHUTDOWN");
+				execute(c2, "SHUTDOWN");
+			}
+		}
+	}
+
+	static void await(CyclicBarrier barrier) throws SQLException
+	{
+		try
+		{
+			barrier.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException(e);
+		}
+		catch (BrokenBarrierException e)
+		{
+			throw new SQLException(e);
+		}
+	}
+
+	private static JdbcDataSource createDataSource(String name)
+	{
+		JdbcDataSource ds = new JdbcDataSource();
+		ds.setUrl("jdbc:h2:mem:" + name);
+		ds.setUser("sa");
+		ds.setPassword("");
+		return ds;
+	}
+
+	private static DataSource createDataSource(javax.sql.DataSource ds1, javax.sql.DataSource ds2, PerTableSynchronizationStrategy strategy, String cache)
+	{
+		DataSource ds = new DataSource();
+		ds.setCluster("per-table");
+		DataSourceDatabaseClusterConfigurationBuilder builder = ds.getConfigurationBuilder();
+		builder.addDatabase("db1").dataSource(ds1).credentials("sa", "");
+		builder.addDatabase("db2").dataSource(ds2).credentials("sa", "");
+		builder.addSynchronizationStrategy(strategy);
+		builder.defaultSynchronizationStrategy(strategy.getId());
+		builder.dialect("h2");
+		builder.metaDataCache(cache);
+		builder.state(new SimpleStateManagerFactory());
+		return ds;
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException
+	{
+		try (Statement statement = connection.createStatement())
+		{
+			statement.execute(sql);
+		}
+	}
+
+	private static Map<String, String> select(Connection connection, String table) throws SQLException
+	{
+		Map<String, String> rows = new TreeMap<>();
+		try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery("SELECT * FROM " + table))
+		{
+			while (results.next())
+			{
+				rows.put(results.getString(1), results.getString(2));
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Records the tables and key ranges synchronized via a {@link DifferentialSynchronizationStrategy}.
+	 */
+	static class Recorder implements TableRangeSynchronizationStrategy
+	{
+		private static final long serialVersionUID = 6452785264512867035L;
+		
+		private final DifferentialSynchronizationStrategy strategy = new DifferentialSynchronizationStrategy();
+		final Queue<Partition> partitions = new ConcurrentLinkedQueue<>();
+		
+		void record(Partition partition) throws SQLException
+		{
+			this.partitions.add(partition);
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table) throws SQLException
+		{
+			this.record(new Partition(table, null));
+			this.strategy.synchronize(context, table, null);
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void synchronize(SynchronizationContext<Z, D> context, TableProperties table, KeyRange range) throws SQLException
+		{
+			this.record(new Partition(table, range));
+			this.strategy.synchronize(context, table, range);
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void dropConstraints(SynchronizationContext<Z, D> context) throws SQLException
+		{
+			this.strategy.dropConstraints(context);
+		}
+
+		@Override
+		public <Z, D extends Database<Z>> void restoreConstraints(SynchronizationContext<Z, D> context) throws SQLException
+		{
+			this.strategy.restoreConstraints(context);
+		}
+	}
+}
@@ -25,18 +25,18 @@ import org.junit.Test;
  */
 public class SimpleTransactionIdentifierFactoryTest
 {
-	private TransactionIdentifierFactory<Long> factory = new SimpleTransactionIdentifierFactory();
+	private TransactionIdentifierFactory<LongTransactionIdentifier> factory = new SimpleTransactionIdentifierFactory();
 	
 	@Test
 	public void test()
 	{
-		long expected = this.factory.createTransactionIdentifier();
+		LongTransactionIdentifier expected = this.factory.createTransactionIdentifier();
 		
 		byte[] bytes = this.factory.serialize(expected);
 		
 		Assert.assertEquals(this.factory.size(), bytes.length);
 		
-		long result = this.factory.deserialize(bytes);
+		LongTransactionIdentifier result = this.factory.deserialize(bytes);
 		
 		Assert.assertEquals(expected, result);
 	}
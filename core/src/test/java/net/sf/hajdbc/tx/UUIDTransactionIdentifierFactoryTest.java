@@ -17,8 +17,6 @@
  */
 package net.sf.hajdbc.tx;
 
-import java.util.UUID;
-
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -27,18 +25,18 @@ import org.junit.Test;
  */
 public class UUIDTransactionIdentifierFactoryTest
 {
-	private TransactionIdentifierFactory<UUID> factory = new UUIDTransactionIdentifierFactory();
+	private TransactionIdentifierFactory<UUIDTransactionIdentifier> factory = new UUIDTransactionIdentifierFactory();
 	
 	@Test
 	public void test()
 	{
-		UUID expected = this.factory.createTransactionIdentifier();
+		UUIDTransactionIdentifier expected = this.factory.createTransactionIdentifier();
 		
 		byte[] bytes = this.factory.serialize(expected);
 		
 		Assert.assertEquals(this.factory.size(), bytes.length);
 		
-		UUID result = this.factory.deserialize(bytes);
+		UUIDTransactionIdentifier result = this.factory.deserialize(bytes);
 		
 		Assert.assertEquals(expected, result);
 	}
@@ -0,0 +1,106 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import net.sf.hajdbc.messages.Messages;
+import net.sf.hajdbc.messages.MessagesFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class ProcessesTest
+{
+	private final Messages messages = MessagesFactory.getMessages();
+	private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+	@Test(timeout = 10000)
+	public void pipe() throws Exception
+	{
+		// Target only terminates if its standard input was closed
+		long count = Processes.pipe(new ProcessBuilder("printf", "hello"), new ProcessBuilder("cat"), this.threadFactory);
+		
+		Assert.assertEquals(5, count);
+	}
+
+	@Test(timeout = 10000)
+	public void sourceFailure() throws Exception
+	{
+		ProcessBuilder source = new ProcessBuilder("false");
+		try
+		{
+			Processes.pipe(source, new ProcessBuilder("cat"), this.threadFactory);
+			Assert.fail();
+		}
+		catch (Exception e)
+		{
+			Assert.assertEquals(this.messages.status(source, 1), e.getMessage());
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void sourceFailureDestroysTarget() throws Exception
+	{
+		File file = Files.createTempFile(".marker");
+		Files.delete(file);
+		try
+		{
+			// Target would create the marker file if allowed to process its truncated input
+			ProcessBuilder target = new ProcessBuilder("sh", "-c", "cat > /dev/null; touch " + file.getPath());
+			ProcessBuilder source = new ProcessBuilder("sh", "-c", "printf partial; exit 1");
+			try
+			{
+				Processes.pipe(source, target, this.threadFactory);
+				Assert.fail();
+			}
+			catch (Exception e)
+			{
+				Assert.assertEquals(this.messages.status(source, 1), e.getMessage());
+			}
+			
+			Thread.sleep(500);
+			
+			Assert.assertFalse(file.exists());
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void targetFailure() throws Exception
+	{
+		ProcessBuilder target = new ProcessBuilder("false");
+		try
+		{
+			Processes.pipe(new ProcessBuilder("sh", "-c", "head -c 10000000 /dev/zero"), target, this.threadFactory);
+			Assert.fail();
+		}
+		catch (Exception e)
+		{
+			Assert.assertEquals(this.messages.status(target, 1), e.getMessage());
+		}
+	}
+}
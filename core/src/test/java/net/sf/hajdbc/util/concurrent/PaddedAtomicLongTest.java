@@ -0,0 +1,87 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class PaddedAtomicLongTest
+{
+	@Test
+	public void test()
+	{
+		PaddedAtomicLong value = new PaddedAtomicLong(1);
+		
+		Assert.assertEquals(1, value.get());
+		Assert.assertEquals(2, value.incrementAndGet());
+		Assert.assertEquals(1, value.decrementAndGet());
+		Assert.assertEquals(4, value.addAndGet(3));
+		Assert.assertFalse(value.compareAndSet(1, 5));
+		Assert.assertTrue(value.compareAndSet(4, 5));
+		value.set(6);
+		Assert.assertEquals(6, value.get());
+		Assert.assertEquals("6", value.toString());
+	}
+
+	@Test
+	public void concurrent() throws Exception
+	{
+		final PaddedAtomicLong value = new PaddedAtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			List<Future<Void>> futures = new ArrayList<>(4);
+			for (int i = 0; i < 4; ++i)
+			{
+				futures.add(executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call()
+					{
+						for (int j = 0; j < 10000; ++j)
+						{
+							value.incrementAndGet();
+							value.incrementAndGet();
+							value.decrementAndGet();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future: futures)
+			{
+				future.get();
+			}
+			Assert.assertEquals(40000, value.get());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+}
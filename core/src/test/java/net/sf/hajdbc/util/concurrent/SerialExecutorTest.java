@@ -0,0 +1,149 @@
+/*
+ * HA-JDBC: High-Availability JDBC
+ * Copyright (C) 2012  Paul Ferraro
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.hajdbc.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author Paul Ferraro
+ */
+public class SerialExecutorTest
+{
+	@Test
+	public void test() throws InterruptedException
+	{
+		ExecutorService service = Executors.newFixedThreadPool(4);
+		try
+		{
+			SerialExecutor executor = new SerialExecutor(service);
+			final List<Integer> order = new CopyOnWriteArrayList<>();
+			List<Integer> expected = new ArrayList<>();
+
+			for (int i = 0; i < 100; ++i)
+			{
+				final int index = i;
+				expected.add(i);
+				executor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						if (index % 10 == 0)
+						{
+							Thread.yield();
+						}
+						order.add(index);
+					}
+				});
+			}
+
+			executor.await();
+
+			Assert.assertEquals(expected, order);
+		}
+		finally
+		{
+			service.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failure() throws InterruptedException
+	{
+		ExecutorService service = Executors.newSingleThreadExecutor();
+		try
+		{
+			SerialExecutor executor = new SerialExecutor(service);
+			final List<Integer> order = new CopyOnWriteArrayList<>();
+
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					throw new IllegalStateException();
+				}
+			});
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					order.add(1);
+				}
+			});
+
+			executor.await();
+
+			Assert.assertEquals(1, order.size());
+		}
+		finally
+		{
+			service.shutdownNow();
+		}
+	}
+
+	@Test
+	public void error() throws InterruptedException
+	{
+		ExecutorService service = Executors.newSingleThreadExecutor();
+		try
+		{
+			SerialExecutor executor = new SerialExecutor(service);
+			final List<Integer> order = new CopyOnWriteArrayList<>();
+
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					throw new AssertionError();
+				}
+			});
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					order.add(1);
+				}
+			});
+
+			executor.await();
+
+			Assert.assertEquals(1, order.size());
+
+			// Consumer completes after the barrier task
+			service.shutdown();
+			Assert.assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+			Assert.assertTrue(executor.isIdle());
+		}
+		finally
+		{
+			service.shutdownNow();
+		}
+	}
+}
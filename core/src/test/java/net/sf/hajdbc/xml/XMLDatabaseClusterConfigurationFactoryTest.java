@@ -52,6 +52,7 @@ import net.sf.hajdbc.balancer.load.LoadBalancerFactory;
 import net.sf.hajdbc.cache.eager.EagerDatabaseMetaDataCacheFactory;
 import net.sf.hajdbc.dialect.StandardDialectFactory;
 import net.sf.hajdbc.durability.coarse.CoarseDurabilityFactory;
+import net.sf.hajdbc.sql.BlockIdentityColumnAllocator;
 import net.sf.hajdbc.sql.DataSourceDatabase;
 import net.sf.hajdbc.sql.DataSourceDatabaseClusterConfigurationBuilder;
 import net.sf.hajdbc.sql.DriverDatabase;
@@ -175,6 +176,8 @@ public class XMLDatabaseClusterConfigurationFactoryTest
 		assertFalse(configuration.isCurrentTimeEvaluationEnabled());
 		assertFalse(configuration.isCurrentTimestampEvaluationEnabled());
 		assertFalse(configuration.isIdentityColumnDetectionEnabled());
+		assertFalse(configuration.isIdentityColumnAllocationEnabled());
+		assertEquals(BlockIdentityColumnAllocator.DEFAULT_BLOCK_SIZE, configuration.getIdentityColumnBlockSize());
 		assertFalse(configuration.isRandEvaluationEnabled());
 		assertFalse(configuration.isSequenceDetectionEnabled());
 		